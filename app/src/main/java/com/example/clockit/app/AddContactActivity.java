@@ -11,9 +11,11 @@ import android.util.Log;
 import android.view.Menu;
 import android.view.View;
 import android.widget.EditText;
+import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
-import com.example.clockit.app.model.Client;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
 
 /**
  * Allows the user to add a contact to a client. User can select from their
@@ -30,6 +32,9 @@ public class AddContactActivity extends Activity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
 	/** Edit text view associated with the contact's first name. */
 	EditText etContactFirstName;
 
@@ -42,8 +47,8 @@ public class AddContactActivity extends Activity {
 	/** Edit text view associated with the contact's phone number. */
 	EditText etContactPhone;
 
-	/** Reference to the client that the contact is being added to. */
-	Client client;
+	/** The id of the client that the contact is being added to. */
+	int clientId;
 
 	/**
 	 * Sets up the page and references to all page variables.
@@ -64,10 +69,10 @@ public class AddContactActivity extends Activity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
+		repository = new ClockItRepository(datasource);
 
-		// Retrieve client id from intent and return corresponding client
-		client = datasource.getClientById(intent.getIntExtra(
-				ManageClientsActivity.CLIENT_ID, 0));
+		// Retrieve client id from intent
+		clientId = intent.getIntExtra(ManageClientsActivity.CLIENT_ID, 0);
 	}
 
 	/**
@@ -174,18 +179,60 @@ public class AddContactActivity extends Activity {
 	 *            The view that was clicked to call this method.
 	 */
 	public void addContact(View view) {
-		// Create the contact in the database
-		datasource.createContact(client.getId(), etContactFirstName.getText()
+		// Create the contact in the database in the background
+		repository.createContact(clientId, etContactFirstName.getText()
 				.toString(), etContactLastName.getText().toString(),
 				etContactEmail.getText().toString(), etContactPhone.getText()
-						.toString());
+						.toString(), new Callback<Integer>() {
+					@Override
+					public void onResult(Integer contactId) {
+						onCreated(contactId);
+					}
+				});
+	}
+
+	/**
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
+	 */
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
+
+		// Close data source if open
+		if (datasource.isOpen()) {
+			datasource.close();
+		}
+	}
+
+	// Private Methods
+
+	/**
+	 * Sends the user back to ManageClientContactsActivity and ends the current
+	 * activity once the contact is created, or lets the user know it could
+	 * not be.
+	 * 
+	 * @param contactId
+	 *            The created contact's id, or -1 or null if creating it
+	 *            failed.
+	 */
+	private void onCreated(Integer contactId) {
+		if (contactId == null || contactId == -1) {
+			Toast.makeText(this, "Unable to add contact", Toast.LENGTH_SHORT)
+					.show();
+			return;
+		}
 
 		// Create and start an intent directed to ManageClientContactsActivity
 		Intent intent = new Intent(this, ManageClientContactsActivity.class);
-		intent.putExtra(ManageClientsActivity.CLIENT_ID, client.getId());
+		intent.putExtra(ManageClientsActivity.CLIENT_ID, clientId);
 		startActivity(intent);
 
 		// End the current activity
 		this.finish();
 	}
+
 }
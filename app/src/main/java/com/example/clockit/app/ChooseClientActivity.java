@@ -1,5 +1,6 @@
 package com.example.clockit.app;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import android.app.ActionBar;
@@ -13,8 +14,11 @@ import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
 import com.example.clockit.app.model.Client;
 
 /**
@@ -28,9 +32,15 @@ public class ChooseClientActivity extends ListActivity {
 	/** String used to send the client id to the choose service activity. */
 	public static final String CLIENT_ID = "client_id";
 
+	/** String used to send the client's name to the next activity. */
+	public static final String CLIENT_NAME = "client_name";
+
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
 	/** A reference to the list of available clients. */
 	List<Client> clients;
 
@@ -44,11 +54,23 @@ public class ChooseClientActivity extends ListActivity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
+		repository = new ClockItRepository(datasource);
 
-		// Retrieve all existing clients and display in list.
-		clients = datasource.getAllClients();
-        ClientAdapter adapter = new ClientAdapter(this, clients);
-		setListAdapter(adapter);
+		// Retrieve all existing clients in the background and display in list.
+		repository.getClientSummaries(new Callback<List<Client>>() {
+			@Override
+			public void onResult(List<Client> result) {
+				// Show an empty list if they could not be loaded
+				if (result == null) {
+					Toast.makeText(ChooseClientActivity.this,
+							"Unable to load clients", Toast.LENGTH_SHORT).show();
+					result = new ArrayList<Client>();
+				}
+				clients = result;
+				setListAdapter(new ClientAdapter(ChooseClientActivity.this,
+						clients));
+			}
+		});
 	}
 
 	/**
@@ -70,10 +92,29 @@ public class ChooseClientActivity extends ListActivity {
 		// Start a new intent directed to ChooseServiceActivity
 		Intent intent = new Intent(this, ChooseServiceActivity.class);
 
-		// Add selected clients id as an extra
+		// Add selected clients id and name as extras
 		intent.putExtra(CLIENT_ID, clients.get(position).getId());
+		intent.putExtra(CLIENT_NAME, clients.get(position).getName());
 
 		// Send to new activity
 		startActivity(intent);
 	}
+
+	/**
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
+	 */
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
+
+		// Close data source if open
+		if (datasource.isOpen()) {
+			datasource.close();
+		}
+	}
+
 }
@@ -1,5 +1,6 @@
 package com.example.clockit.app;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import android.app.ActionBar;
@@ -16,6 +17,9 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
+import com.example.clockit.app.db.OpenShift;
 import com.example.clockit.app.model.Services;
 
 /**
@@ -32,9 +36,15 @@ public class ChooseServiceActivity extends ListActivity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
 	/** A reference to the list of available services. */
 	List<Services> services;
 
+	/** Set while a clock in is waiting for its open shift. */
+	boolean clockingIn = false;
+
 	/**
 	 * Retrieves the list of services and sets up the page's display.
 	 */
@@ -45,11 +55,23 @@ public class ChooseServiceActivity extends ListActivity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
-
-		// Retrieve all existing services and display in list.
-		services = datasource.getAllServices();
-		ServiceAdapter adapter = new ServiceAdapter(this, services);
-		setListAdapter(adapter);
+		repository = new ClockItRepository(datasource);
+
+		// Retrieve all existing services in the background and display in list.
+		repository.getAllServices(new Callback<List<Services>>() {
+			@Override
+			public void onResult(List<Services> result) {
+				// Show an empty list if they could not be loaded
+				if (result == null) {
+					Toast.makeText(ChooseServiceActivity.this,
+							"Unable to load services", Toast.LENGTH_SHORT).show();
+					result = new ArrayList<Services>();
+				}
+				services = result;
+				setListAdapter(new ServiceAdapter(ChooseServiceActivity.this,
+						services));
+			}
+		});
 	}
 
 	/**
@@ -68,32 +90,84 @@ public class ChooseServiceActivity extends ListActivity {
 	 */
 	@Override
 	protected void onListItemClick(ListView l, View v, int position, long id) {
+		// Ignore further taps until the clock in has been recorded
+		if (clockingIn) {
+			return;
+		}
+
 		// Redirect the intent to main activity.
-		Intent intent = getIntent();
+		final Intent intent = getIntent();
 		intent.setClass(getBaseContext(), MainActivity.class);
 
-		// Retrieve the client id from the previous activity
+		// Retrieve the client from the previous activity
 		int clientId = intent.getIntExtra(ChooseClientActivity.CLIENT_ID, -1);
+		String clientName = intent
+				.getStringExtra(ChooseClientActivity.CLIENT_NAME);
 
-		// Get the selected service's id
-		int serviceId = services.get(position).getId();
+		// Get the selected service
+		Services service = services.get(position);
 
 		// Add selected service's id as an extra
-		intent.putExtra(SERVICE_ID, serviceId);
+		intent.putExtra(SERVICE_ID, service.getId());
+
+		// Clock the user in through the clock journal, which writes the time
+		// stamp in the background
+		clockingIn = true;
+		repository.clockIn(clientId, clientName, service,
+				new Callback<OpenShift>() {
+					@Override
+					public void onResult(OpenShift shift) {
+						onClockedIn(intent, shift);
+					}
+				});
+	}
+
+	/**
+	 * Sends the user to the main activity once the clock in is recorded, or
+	 * lets them try again if it failed.
+	 * 
+	 * @param intent
+	 *            The intent directed to the main activity.
+	 * @param shift
+	 *            The open shift, or null if clocking in failed.
+	 */
+	void onClockedIn(Intent intent, OpenShift shift) {
+		clockingIn = false;
+		if (shift == null) {
+			Toast.makeText(this, "Unable to clock in", Toast.LENGTH_LONG)
+					.show();
+			return;
+		}
 
 		// Send to new activity
 		startActivity(intent);
 
-		// Clock the user in
-		datasource.createTimeStamp(clientId, serviceId);
 		// Notify user of clock in
 		Toast.makeText(
 				this,
-				"Clocked in for \nClient: " + clientId + "\nService: "
-						+ serviceId, Toast.LENGTH_LONG).show();
+				"Clocked in for \nClient: " + shift.getClientName()
+						+ "\nService: " + shift.getServiceName(),
+				Toast.LENGTH_LONG).show();
 
 		// Finish activity
-		this.finish();
+		finish();
+	}
+
+	/**
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
+	 */
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
+
+		// Close data source if open
+		if (datasource.isOpen()) {
+			datasource.close();
+		}
 	}
 
 }
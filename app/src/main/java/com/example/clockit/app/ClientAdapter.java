@@ -13,26 +13,44 @@ import java.util.List;
 
 public class ClientAdapter extends ArrayAdapter<Client> {
 
-    private final Context context;
+    private final LayoutInflater inflater;
     private final List<Client> clients;
 
     public ClientAdapter(Context context, List<Client> clients) {
         super(context, R.layout.client_row, clients);
-        this.context = context;
+        this.inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         this.clients = clients;
     }
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
-        LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-        View rowView = inflater.inflate(R.layout.client_row, parent, false);
-
-        TextView tvClientName = (TextView) rowView.findViewById(R.id.tvClientName);
+        // Reuse the recycled row and its view references if there is one
+        View rowView = convertView;
+        ViewHolder holder;
+        if (rowView == null) {
+            rowView = inflater.inflate(R.layout.client_row, parent, false);
+            holder = new ViewHolder(rowView);
+            rowView.setTag(holder);
+        } else {
+            holder = (ViewHolder) rowView.getTag();
+        }
 
         Client client = clients.get(position);
 
-        tvClientName.setText(client.getName());
+        holder.tvClientName.setText(client.getName());
 
         return rowView;
     }
+
+    /**
+     * View references of a client row, looked up once when the row is
+     * inflated.
+     */
+    private static class ViewHolder {
+        final TextView tvClientName;
+
+        ViewHolder(View rowView) {
+            tvClientName = (TextView) rowView.findViewById(R.id.tvClientName);
+        }
+    }
 }
@@ -0,0 +1,204 @@
+package com.example.clockit.app;
+
+import android.app.Application;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.clockit.app.db.ActiveShiftRegistry;
+import com.example.clockit.app.db.ClockItDBOpenHelper;
+import com.example.clockit.app.db.ClockJournal;
+
+/**
+ * Application that owns the single database connection shared by every data
+ * source in the process. Data sources acquire a reference to the connection
+ * when they are opened and release it when they are closed, so moving between
+ * activities does not reopen the database file. Opening the connection can
+ * upgrade the database, which takes a while on a long history, so it is
+ * started on a background thread when the process starts. Data sources only
+ * ask for it when they run a statement, which activities do through
+ * ClockItRepository and the clock journal does on its writer thread, so the
+ * main thread never waits for it to open.
+ * 
+ * @author Cameron Irwin
+ * 
+ */
+public class ClockItApplication extends Application {
+
+	/** Tag used for logcat */
+	private static final String LOGTAG = "CLOCKIT";
+
+	/** Helper that creates, upgrades and opens the database. */
+	private ClockItDBOpenHelper dbhelper;
+
+	/** The shared database connection or null if it is not open. */
+	private SQLiteDatabase database;
+
+	/**
+	 * Held while the connection is opened, so the opening and any upgrade
+	 * run once without holding up the reference counting.
+	 */
+	private final Object openLock = new Object();
+
+	/** Number of data sources currently holding the connection. */
+	private int openReferences = 0;
+
+	/** Shifts the user is clocked in to, shared by every data source. */
+	private final ActiveShiftRegistry activeShifts = new ActiveShiftRegistry();
+
+	/** Journal of clock events, or null until it is first used. */
+	private ClockJournal clockJournal;
+
+	/**
+	 * Creates the database helper and starts opening the database and the
+	 * clock journal on a background thread, so the first activity does not
+	 * wait for an upgrade or a replay.
+	 */
+	@Override
+	public void onCreate() {
+		super.onCreate();
+
+		dbhelper = new ClockItDBOpenHelper(this);
+
+		Thread opener = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				try {
+					getDatabase();
+					getClockJournal();
+				} catch (RuntimeException e) {
+					// Left to the first data source to open and report
+					Log.e(LOGTAG, "Unable to open database", e);
+				}
+			}
+		}, "ClockItOpen");
+		opener.setDaemon(true);
+		opener.start();
+	}
+
+	/**
+	 * Counts a new reference to the shared connection, keeping it open once it
+	 * has been opened. Does not open it, so it is safe on the main thread.
+	 */
+	public synchronized void acquireDatabase() {
+		openReferences++;
+	}
+
+	/**
+	 * Allows access to the shared connection, opening it in write-ahead
+	 * logging mode if needed. Opening it runs any upgrade of the database, so
+	 * it must not be called on the main thread; activities run their
+	 * statements through ClockItRepository instead.
+	 * 
+	 * @return The shared database connection.
+	 */
+	public SQLiteDatabase getDatabase() {
+		synchronized (openLock) {
+			SQLiteDatabase opened;
+			synchronized (this) {
+				opened = database;
+			}
+			if (opened == null || !opened.isOpen()) {
+				opened = dbhelper.getWritableDatabase();
+
+				// Let readers run alongside the clock in and clock out writes
+				opened.enableWriteAheadLogging();
+
+				synchronized (this) {
+					database = opened;
+				}
+				Log.i(LOGTAG, "Database opened");
+			}
+			return opened;
+		}
+	}
+
+	/**
+	 * Allows access to the registry of open shifts. It is loaded by the first
+	 * ActiveShiftStore created in the process.
+	 * 
+	 * @return The registry of open shifts.
+	 */
+	public ActiveShiftRegistry getActiveShifts() {
+		return activeShifts;
+	}
+
+	/**
+	 * Allows access to the journal of clock events, creating it the first time
+	 * it is used. The journal opens its file and replays any events that were
+	 * not applied before the process last ended on its own writer thread, so
+	 * this does not touch the disk.
+	 * 
+	 * @return The journal of clock events.
+	 */
+	public synchronized ClockJournal getClockJournal() {
+		if (clockJournal == null) {
+			clockJournal = new ClockJournal(this);
+		}
+		return clockJournal;
+	}
+
+	/**
+	 * Releases a reference to the shared connection. The connection stays open
+	 * so the next activity can reuse it.
+	 */
+	public synchronized void releaseDatabase() {
+		if (openReferences > 0) {
+			openReferences--;
+		}
+	}
+
+	/**
+	 * Closes the shared connection once the app's UI is hidden and no data
+	 * source is holding it.
+	 */
+	@Override
+	public void onTrimMemory(int level) {
+		super.onTrimMemory(level);
+
+		if (level >= TRIM_MEMORY_UI_HIDDEN) {
+			releaseUnused();
+		}
+	}
+
+	/**
+	 * Closes the shared connection under memory pressure if no data source is
+	 * holding it.
+	 */
+	@Override
+	public void onLowMemory() {
+		super.onLowMemory();
+
+		releaseUnused();
+	}
+
+	/**
+	 * Has the clock journal release its reference to the shared connection,
+	 * which closes the connection afterwards if it is unused.
+	 */
+	private void releaseUnused() {
+		ClockJournal journal;
+		synchronized (this) {
+			journal = clockJournal;
+		}
+		if (journal != null) {
+			journal.releaseDatabase();
+		} else {
+			closeIfUnused();
+		}
+	}
+
+	/**
+	 * Closes the shared connection if there are no outstanding references.
+	 */
+	public synchronized void closeIfUnused() {
+		if (openReferences == 0 && database != null) {
+			dbhelper.close();
+			database = null;
+
+			Log.i(LOGTAG, "Database closed");
+		}
+	}
+
+}
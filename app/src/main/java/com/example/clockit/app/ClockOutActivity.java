@@ -10,7 +10,7 @@ import android.widget.EditText;
 import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
-import com.example.clockit.app.model.TimeStamp;
+import com.example.clockit.app.db.OpenShift;
 
 /**
  * Allows the user to enter a description for what they did while working and
@@ -27,6 +27,9 @@ public class ClockOutActivity extends Activity {
 	/** Edit text holding the description of what was done while working. */
 	EditText etClockOutDescription;
 
+	/** The id of the open time stamp being clocked out of. */
+	int timeStampId;
+
 	/**
 	 * Sets up the view and retrieves the data source.
 	 */
@@ -40,6 +43,14 @@ public class ClockOutActivity extends Activity {
 
 		// Set reference to description text box
 		etClockOutDescription = (EditText) findViewById(R.id.etClockOutDescription);
+
+		// Get the time stamp to clock out of and show which shift it is
+		timeStampId = getIntent().getIntExtra(
+				ManageTimeStampsActivity.TIME_STAMP_ID, -1);
+		OpenShift shift = datasource.getActiveShift().getShift(timeStampId);
+		if (shift != null) {
+			setTitle("Clock Out - " + shift);
+		}
 	}
 
 	/**
@@ -61,22 +72,40 @@ public class ClockOutActivity extends Activity {
 		// Retrieve the supplied description
 		String description = etClockOutDescription.getText().toString();
 
-		// Clock the user out
-		TimeStamp timeStamp = datasource.ClockOut(description);
+		// Clock the user out through the clock journal, which completes the
+		// time stamp in the background
+		boolean open = datasource.getClockJournal().clockOut(timeStampId,
+				description);
 
 		// Create an intent directed to the main activity
 		Intent intent = new Intent(this, MainActivity.class);
 		startActivity(intent);
 
 		// Notify user that they have been clocked out
-		Toast.makeText(
-				this,
-				"Clocked out of \nTimestamp: " + timeStamp.getId()
-						+ "\nDescription: " + timeStamp.getDescription(),
-				Toast.LENGTH_LONG).show();
+		if (open) {
+			Toast.makeText(
+					this,
+					"Clocked out of \nTimestamp: " + timeStampId
+							+ "\nDescription: " + description,
+					Toast.LENGTH_LONG).show();
+		}
 
 		// Finish the activity
-		this.finish();
+		finish();
+	}
+
+	/**
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
+	 */
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Close data source if open
+		if (datasource.isOpen()) {
+			datasource.close();
+		}
 	}
 
 }
@@ -15,6 +15,8 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
 import com.example.clockit.app.model.Client;
 
 /**
@@ -29,6 +31,9 @@ public class CreateClientActivity extends Activity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
 	/** Text view associated with the client's name. */
 	TextView tvClientName;
 
@@ -82,6 +87,7 @@ public class CreateClientActivity extends Activity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
+		repository = new ClockItRepository(datasource);
 
 		// Give client name focus so user is ready to type
 		etClientName.requestFocus();
@@ -143,25 +149,29 @@ public class CreateClientActivity extends Activity {
 			return;
 		}
 
-		// Create new client and save into Client object
-		Client newClient = datasource.createClient(etClientName.getText()
-				.toString(), etClientDescription.getText().toString());
-
-		// Create toast to notify user of created service's details
-		Toast.makeText(this, "Created Client -\n" + newClient.toString(),
-				Toast.LENGTH_LONG).show();
-
-		// Call toParent to return to parent activity
-		toParent(view);
+		// Create new client in the background and return to the parent
+		// activity once it is saved
+		final View button = view;
+		repository.createClient(etClientName.getText().toString(),
+				etClientDescription.getText().toString(),
+				new Callback<Client>() {
+					@Override
+					public void onResult(Client newClient) {
+						onCreated(newClient, button);
+					}
+				});
 	}
 
 	/**
-	 * Closes the data source when the activity is paused (or deleted) to free
-	 * resources.
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
 	 */
 	@Override
-	public void onPause() {
-		super.onPause();
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
 
 		// Close data source if open
 		if (datasource.isOpen()) {
@@ -169,18 +179,30 @@ public class CreateClientActivity extends Activity {
 		}
 	}
 
+	// Private Methods
+
 	/**
-	 * Opens the data source when activity is resumed (or started) to allow
-	 * access.
+	 * Notifies the user of the created client's details and returns to the
+	 * parent activity, or lets the user know it could not be created.
+	 * 
+	 * @param newClient
+	 *            The created client, or null if creating it failed.
+	 * @param view
+	 *            The button that triggered the creation.
 	 */
-	@Override
-	public void onResume() {
-		super.onResume();
-
-		// Open data source if closed
-		if (!datasource.isOpen()) {
-			datasource.open();
+	private void onCreated(Client newClient, View view) {
+		if (newClient == null) {
+			Toast.makeText(this, "Unable to create client",
+					Toast.LENGTH_SHORT).show();
+			return;
 		}
+
+		// Create toast to notify user of created client's details
+		Toast.makeText(this, "Created Client -\n" + newClient.toString(),
+				Toast.LENGTH_LONG).show();
+
+		// Call toParent to return to parent activity
+		toParent(view);
 	}
 
 }
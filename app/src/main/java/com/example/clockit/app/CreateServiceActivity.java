@@ -15,6 +15,9 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
+import com.example.clockit.app.model.Money;
 import com.example.clockit.app.model.Services;
 
 /**
@@ -30,6 +33,9 @@ public class CreateServiceActivity extends Activity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
 	/** Text view associated with the service's name. */
 	TextView tvServiceName;
 
@@ -130,6 +136,7 @@ public class CreateServiceActivity extends Activity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
+		repository = new ClockItRepository(datasource);
 		
 		// Give service name focus so user is ready to type
 		etServiceName.requestFocus();
@@ -207,26 +214,30 @@ public class CreateServiceActivity extends Activity {
 			return;
 		}
 
-		// Create new service and save into Services object
-		Services newService = datasource.createService(etServiceName.getText()
-				.toString(), etServiceDescription.getText().toString(), Double
-				.valueOf(etServiceRate.getText().toString()));
-
-		// Create toast to notify user of created service's details
-		Toast.makeText(this, "Created Service -\n" + newService.toString(),
-				Toast.LENGTH_LONG).show();
-
-		// Call toParent to return to parent activity
-		toParent(view);
+		// Create new service in the background and return to the parent
+		// activity once it is saved
+		final View button = view;
+		repository.createService(etServiceName.getText().toString(),
+				etServiceDescription.getText().toString(),
+				Money.parse(etServiceRate.getText().toString()),
+				new Callback<Services>() {
+					@Override
+					public void onResult(Services newService) {
+						onCreated(newService, button);
+					}
+				});
 	}
 
 	/**
-	 * Closes the data source when the activity is paused (or deleted) to free
-	 * resources.
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
 	 */
 	@Override
-	public void onPause() {
-		super.onPause();
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
 
 		// Close data source if open
 		if (datasource.isOpen()) {
@@ -234,18 +245,30 @@ public class CreateServiceActivity extends Activity {
 		}
 	}
 
+	// Private Methods
+
 	/**
-	 * Opens the data source when activity is resumed (or started) to allow
-	 * access.
+	 * Notifies the user of the created service's details and returns to the
+	 * parent activity, or lets the user know it could not be created.
+	 * 
+	 * @param newService
+	 *            The created service, or null if creating it failed.
+	 * @param view
+	 *            The button that triggered the creation.
 	 */
-	@Override
-	public void onResume() {
-		super.onResume();
-
-		// Open data source if closed
-		if (!datasource.isOpen()) {
-			datasource.open();
+	private void onCreated(Services newService, View view) {
+		if (newService == null) {
+			Toast.makeText(this, "Unable to create service",
+					Toast.LENGTH_SHORT).show();
+			return;
 		}
+
+		// Create toast to notify user of created service's details
+		Toast.makeText(this, "Created Service -\n" + newService.toString(),
+				Toast.LENGTH_LONG).show();
+
+		// Call toParent to return to parent activity
+		toParent(view);
 	}
 
-}
\ No newline at end of file
+}
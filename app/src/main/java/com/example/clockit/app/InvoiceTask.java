@@ -0,0 +1,247 @@
+package com.example.clockit.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.AsyncTask;
+import android.os.Environment;
+import android.util.Log;
+
+import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.model.Money;
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.Image;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+
+/**
+ * Generates a client's invoice PDF in the background using the iText library.
+ * Rows are read straight from a database cursor and written to the document a
+ * chunk at a time, so only one chunk of the table is held in memory no matter
+ * how many time stamps the client has. Each invoice is written to its own file.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class InvoiceTask extends AsyncTask<Void, Integer, File> {
+
+	/**
+	 * Receives the progress and result of the task on the main thread.
+	 */
+	public interface Listener {
+		void onProgress(int rowsWritten, int rowCount);
+
+		/**
+		 * @param invoice
+		 *            The finished invoice or null if it could not be created.
+		 */
+		void onFinished(File invoice);
+	}
+
+	/** Number of table rows written to the document at a time. */
+	private static final int CHUNK_SIZE = 100;
+
+	/** JPEG bytes of the ClockIt logo, encoded the first time they are needed. */
+	private static byte[] logoBytes;
+
+	private final Context context;
+	private final ClockItDataSource datasource;
+	private final int clientId;
+	private final boolean group;
+	private final Listener listener;
+
+	/**
+	 * Constructor that sets up the invoice to create.
+	 *
+	 * @param context
+	 *            Context used to load the logo.
+	 * @param datasource
+	 *            Open data source to read the invoice rows from.
+	 * @param clientId
+	 *            The id of the client to create the invoice for.
+	 * @param group
+	 *            True to total the earnings of each service, false to list each
+	 *            time stamp separately.
+	 * @param listener
+	 *            Receives the progress and the finished invoice.
+	 */
+	public InvoiceTask(Context context, ClockItDataSource datasource,
+			int clientId, boolean group, Listener listener) {
+		this.context = context.getApplicationContext();
+		this.datasource = datasource;
+		this.clientId = clientId;
+		this.group = group;
+		this.listener = listener;
+	}
+
+	/**
+	 * Holds the data source open until the task has finished or been
+	 * cancelled, so the activity closing it does not pull the connection out
+	 * from under the cursor.
+	 */
+	@Override
+	protected void onPreExecute() {
+		datasource.acquire();
+	}
+
+	@Override
+	protected File doInBackground(Void... params) {
+		// Reference to location the document will be stored
+		File dir = new File(Environment.getExternalStorageDirectory()
+				.getAbsolutePath() + "/ClientInvoice");
+
+		// Check to make sure the full path exists, and if it doesn't, try to
+		// create the missing directories
+		if (!dir.exists())
+			dir.mkdirs();
+
+		Document doc = new Document();
+		File file = null;
+		Cursor cursor = null;
+		boolean written = false;
+
+		try {
+			// Give every invoice its own file so one being viewed is never
+			// overwritten by the next
+			file = File.createTempFile("invoice_" + clientId + "_", ".pdf", dir);
+			PdfWriter.getInstance(doc, new FileOutputStream(file));
+			doc.open();
+
+			// Add the ClockIt logo and spacing below it
+			Image logo = Image.getInstance(getLogoBytes(context));
+			logo.setAlignment(Image.MIDDLE);
+			logo.scalePercent(60);
+			doc.add(logo);
+			doc.add(new Paragraph(" "));
+
+			// Grouped invoices read one precomputed total per service, separate
+			// invoices read every finished time stamp
+			cursor = group ? datasource.getClientServiceTotals(clientId)
+					: datasource.getClientInvoiceRows(clientId);
+			int rowCount = cursor.getCount();
+
+			PdfPTable table = group ? createTable("Service", "Earned Income")
+					: createTable("Service", "Description", "Earned Income");
+
+			// Let the table be flushed to the document as it grows
+			table.setComplete(false);
+
+			int rows = 0;
+
+			while (cursor.moveToNext()) {
+				if (isCancelled()) {
+					return null;
+				}
+
+				if (group) {
+					table.addCell(cursor
+							.getString(ClockItDataSource.SERVICE_TOTAL_NAME));
+					table.addCell("$"
+							+ Money.format(cursor
+									.getLong(ClockItDataSource.SERVICE_TOTAL_CENTS)));
+				} else {
+					table.addCell(cursor
+							.getString(ClockItDataSource.INVOICE_SERVICE_NAME));
+					table.addCell(cursor
+							.getString(ClockItDataSource.INVOICE_DESCRIPTION));
+					table.addCell("$"
+							+ Money.format(Money.earned(
+									cursor.getLong(ClockItDataSource.INVOICE_DURATION),
+									cursor.getLong(ClockItDataSource.INVOICE_RATE_CENTS))));
+				}
+
+				// Write the finished rows and drop them from the table
+				if (++rows % CHUNK_SIZE == 0) {
+					doc.add(table);
+					publishProgress(rows, rowCount);
+				}
+			}
+
+			table.setComplete(true);
+			doc.add(table);
+			written = true;
+
+		} catch (DocumentException de) {
+			Log.e(ClockItDataSource.LOGTAG, "DocumentException:" + de);
+		} catch (IOException e) {
+			Log.e(ClockItDataSource.LOGTAG, "ioException:" + e);
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+
+			// Close the document to commit to memory
+			if (doc.isOpen()) {
+				doc.close();
+			}
+
+			// Don't leave partial invoices behind
+			if (!written && file != null) {
+				file.delete();
+			}
+		}
+
+		return file;
+	}
+
+	@Override
+	protected void onProgressUpdate(Integer... values) {
+		listener.onProgress(values[0], values[1]);
+	}
+
+	@Override
+	protected void onPostExecute(File invoice) {
+		datasource.release();
+		listener.onFinished(invoice);
+	}
+
+	@Override
+	protected void onCancelled(File invoice) {
+		datasource.release();
+	}
+
+	/**
+	 * Creates a table with a centered header cell for each column.
+	 */
+	private static PdfPTable createTable(String... headers) {
+		PdfPTable table = new PdfPTable(headers.length);
+		table.setWidthPercentage(90);
+
+		for (String header : headers) {
+			PdfPCell cell = new PdfPCell(new Phrase(header));
+			cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+			table.addCell(cell);
+		}
+		table.setHeaderRows(1);
+
+		return table;
+	}
+
+	/**
+	 * Returns the ClockIt logo as JPEG bytes, decoding and compressing it only
+	 * the first time it is needed.
+	 */
+	private static synchronized byte[] getLogoBytes(Context context) {
+		if (logoBytes == null) {
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			Bitmap bitmap = BitmapFactory.decodeResource(
+					context.getResources(), R.drawable.clockit_logo);
+			bitmap.compress(Bitmap.CompressFormat.JPEG, 100, stream);
+			bitmap.recycle();
+			logoBytes = stream.toByteArray();
+		}
+		return logoBytes;
+	}
+
+}
@@ -2,20 +2,27 @@ package com.example.clockit.app;
 
 import android.app.ActionBar;
 import android.app.Activity;
+import android.app.AlertDialog;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
 import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.widget.Button;
 import android.widget.Chronometer;
 import android.widget.TextView;
 
+import com.example.clockit.app.db.ActiveShiftStore;
 import com.example.clockit.app.db.ClockItDataSource;
-import com.example.clockit.app.model.TimeStamp;
-
-import java.text.DecimalFormat;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
+import com.example.clockit.app.db.ClockJournal;
+import com.example.clockit.app.db.OpenShift;
+import com.example.clockit.app.model.ShiftDisplay;
 
 /**
  * Launch activity that allows user to quickly navigate to clock in, manage
@@ -29,6 +36,9 @@ public class MainActivity extends Activity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
 	/** Button view used to clock in or clock out. */
 	Button btnClock;
 
@@ -43,8 +53,26 @@ public class MainActivity extends Activity {
 	/** Value used to determine if user is currently clocked in or not. */
 	Boolean clockedIn;
 
-	long startTime;
-	TimeStamp currentStamp;
+	/** The shifts the user is clocked in to, oldest clock in first. */
+	OpenShift[] shifts;
+
+	/** Renders the elapsed time and earnings without creating objects. */
+	private final ShiftDisplay display = new ShiftDisplay();
+
+	/** Handler used to redraw the shift every second. */
+	private final Handler handler = new Handler();
+
+	/**
+	 * Redraws the elapsed time and earnings, then runs again when the next
+	 * second starts.
+	 */
+	private final Runnable tickRunnable = new Runnable() {
+		@Override
+		public void run() {
+			long time = showShifts(System.currentTimeMillis());
+			handler.postDelayed(this, 1000 - time % 1000);
+		}
+	};
 
 	/**
 	 * Sets up the page's display based on whether the user is currently clocked
@@ -57,6 +85,7 @@ public class MainActivity extends Activity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
+		repository = new ClockItRepository(datasource);
 
 		// Set reference to views
 		btnClock = (Button) findViewById(R.id.btnClock);
@@ -70,7 +99,7 @@ public class MainActivity extends Activity {
 			@Override
 			public void onClick(View view) {
 				if (clockedIn) {
-					toClockOut();
+					chooseShift();
 				} else {
 					toClockIn();
 				}
@@ -81,8 +110,9 @@ public class MainActivity extends Activity {
 		chronTimeWorked.setText("00:00:00");
 		tvEarnedIncome.setText("$0.00");
 
-		// Determine if user is clocked in from the database
-		clockedIn = datasource.isClockedIn();
+		// Determine if user is clocked in from the open shift record
+		ActiveShiftStore activeShift = datasource.getActiveShift();
+		clockedIn = activeShift.isClockedIn();
 
 		// If the user is clocked in, change the clock button and text view's
 		// text
@@ -91,32 +121,48 @@ public class MainActivity extends Activity {
 			chronTimeWorked.setTextColor(Color.GREEN);
 			tvEarnedIncome.setTextColor(Color.GREEN);
 
-			currentStamp = datasource.getCurrentTimeStamp();
-			startTime = currentStamp.getClockIn();
-
-			chronTimeWorked
-					.setOnChronometerTickListener(new Chronometer.OnChronometerTickListener() {
-
-						@Override
-						public void onChronometerTick(Chronometer cArg) {
-                            DecimalFormat decimalFormat = new DecimalFormat("#0.00");
-							long time = System.currentTimeMillis() - startTime;
-							int h = (int) (time / 3600000);
-							int m = (int) (time - h * 3600000) / 60000;
-							int s = (int) (time - h * 3600000 - m * 60000) / 1000;
-							String hh = h < 10 ? "0" + h : h + "";
-							String mm = m < 10 ? "0" + m : m + "";
-							String ss = s < 10 ? "0" + s : s + "";
-							cArg.setText(hh + ":" + mm + ":" + ss);
-							double earnedIncome = currentStamp.getEarnedIncome();
-							tvEarnedIncome.setText("$" + decimalFormat.format(earnedIncome));
-						}
-					});
+			shifts = activeShift.getShifts();
+			showShifts(System.currentTimeMillis());
+		}
+
+		// Bring the widget and notification in line with the open shifts
+		ShiftStatus.update(this);
+
+		// Check the open shift record against the database in the background
+		// and redraw the page if it was out of date
+		repository.reconcileActiveShift(new Callback<Boolean>() {
+			@Override
+			public void onResult(Boolean changed) {
+				// A failed check leaves the page as the record shows it
+				if (changed != null && changed && !isFinishing()) {
+					recreate();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Starts redrawing the open shift every second while the page is visible.
+	 */
+	@Override
+	protected void onResume() {
+		super.onResume();
 
-			chronTimeWorked.start();
+		if (clockedIn) {
+			handler.post(tickRunnable);
 		}
 	}
 
+	/**
+	 * Stops redrawing the open shift while the page is hidden.
+	 */
+	@Override
+	protected void onPause() {
+		super.onPause();
+
+		handler.removeCallbacks(tickRunnable);
+	}
+
 	/**
 	 * Sets up the options menu (currently unchanged).
 	 */
@@ -127,6 +173,18 @@ public class MainActivity extends Activity {
 		return true;
 	}
 
+	/**
+	 * Sends the user to the SearchActivity when search is selected.
+	 */
+	@Override
+	public boolean onOptionsItemSelected(MenuItem item) {
+		if (item.getItemId() == R.id.action_search) {
+			startActivity(new Intent(this, SearchActivity.class));
+			return true;
+		}
+		return super.onOptionsItemSelected(item);
+	}
+
 	/**
 	 * Sends the user to the ChooseClientActivity to select a client to clock in
 	 * for
@@ -138,14 +196,64 @@ public class MainActivity extends Activity {
 	}
 
 	/**
-	 * Sends the user to the ClockOutActivity so they may clock out.
+	 * Sends the user to the ClockOutActivity so they may clock out of a shift.
+	 * 
+	 * @param timeStampId
+	 *            The id of the open time stamp to clock out of.
 	 */
-	public void toClockOut() {
+	public void toClockOut(int timeStampId) {
 		// Start a new intent to direct to clock out
 		Intent intent = new Intent(this, ClockOutActivity.class);
+		intent.putExtra(ManageTimeStampsActivity.TIME_STAMP_ID, timeStampId);
 		startActivity(intent);
 	}
 
+	/**
+	 * Lets the user pick an open shift to clock out of, pause or resume, or
+	 * clock in to another shift alongside the open ones.
+	 */
+	public void chooseShift() {
+		String[] choices = new String[shifts.length * 2 + 1];
+		for (int i = 0; i < shifts.length; i++) {
+			choices[i * 2] = "Clock out of " + shifts[i];
+			choices[i * 2 + 1] = (shifts[i].isPaused() ? "Resume " : "Pause ")
+					+ shifts[i];
+		}
+		choices[shifts.length * 2] = "Clock in to another shift";
+
+		new AlertDialog.Builder(this)
+				.setItems(choices, new DialogInterface.OnClickListener() {
+					public void onClick(DialogInterface dialog, int which) {
+						if (which == shifts.length * 2) {
+							toClockIn();
+						} else if (which % 2 == 0) {
+							toClockOut(shifts[which / 2].getTimeStampId());
+						} else {
+							togglePause(shifts[which / 2]);
+						}
+					}
+				}).create().show();
+	}
+
+	/**
+	 * Pauses a running shift or resumes a paused one through the clock
+	 * journal, then redraws the page with the new breaks.
+	 * 
+	 * @param shift
+	 *            The open shift to pause or resume.
+	 */
+	public void togglePause(OpenShift shift) {
+		ClockJournal journal = datasource.getClockJournal();
+		if (shift.isPaused()) {
+			journal.resume(shift.getTimeStampId());
+		} else {
+			journal.pause(shift.getTimeStampId());
+		}
+
+		ShiftStatus.update(this);
+		recreate();
+	}
+
 	/**
 	 * Sends user to the manage clients activity.
 	 * 
@@ -183,30 +291,42 @@ public class MainActivity extends Activity {
 	}
 
 	/**
-	 * Closes the data source when the activity is paused (or deleted) to free
-	 * resources.
+	 * Shows the time worked in the oldest open shift and the earnings of
+	 * every open shift, leaving out their breaks, only updating the views
+	 * whose text changed. The views display the renderer's buffers directly so
+	 * no strings are created.
+	 * 
+	 * @param now
+	 *            The current time in milliseconds.
+	 * @return The time shown in milliseconds.
 	 */
-	@Override
-	public void onPause() {
-		super.onPause();
-
-		// Close data source if open
-		if (datasource.isOpen()) {
-			datasource.close();
+	private long showShifts(long now) {
+		long time = shifts[0].getWorkedMillis(now);
+		if (display.setElapsed(time)) {
+			chronTimeWorked.setText(display.getTime(), 0,
+					display.getTimeLength());
+		}
+		if (display.setEarnedCents(OpenShift.getEarnedCents(shifts, now))) {
+			tvEarnedIncome.setText(display.getEarned(), 0,
+					display.getEarnedLength());
 		}
+		return time;
 	}
 
 	/**
-	 * Opens the data source when activity is resumed (or started) to allow
-	 * access.
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
 	 */
 	@Override
-	public void onResume() {
-		super.onResume();
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
 
-		// Open data source if closed
-		if (!datasource.isOpen()) {
-			datasource.open();
+		// Close data source if open
+		if (datasource.isOpen()) {
+			datasource.close();
 		}
 	}
 }
@@ -13,9 +13,11 @@ import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
-import com.example.clockit.app.model.Client;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
 import com.example.clockit.app.model.Contact;
 
 /**
@@ -30,11 +32,14 @@ public class ManageClientContactsActivity extends ListActivity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
 	/** A reference to the list of contacts for the client. */
 	List<Contact> contacts;
 
-	/** A reference to the client whose contacts are being viewed. */
-	Client client;
+	/** The id of the client whose contacts are being viewed. */
+	int clientId;
 
 	/**
 	 * Retrieves the list of clients and sets up the page's display.
@@ -46,16 +51,36 @@ public class ManageClientContactsActivity extends ListActivity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
+		repository = new ClockItRepository(datasource);
 
 		// Get the intent that started the activity
 		Intent intent = getIntent();
 
-		// Retrieve client id from intent and return corresponding client
-		client = datasource.getClientById(intent.getIntExtra(
-				ManageClientsActivity.CLIENT_ID, 0));
+		// Retrieve client id from intent
+		clientId = intent.getIntExtra(ManageClientsActivity.CLIENT_ID, 0);
+
+		// Retrieve the contacts associated with the client in the background
+		repository.getClientContacts(clientId, new Callback<List<Contact>>() {
+			@Override
+			public void onResult(List<Contact> result) {
+				showContacts(result);
+			}
+		});
+	}
 
-		// Retrieve the contacts associated with the client
-		contacts = datasource.getClientContacts(client.getId());
+	/**
+	 * Displays the client's contacts in the list once they have been loaded.
+	 * 
+	 * @param loaded
+	 *            The client's contacts, or null if they could not be loaded.
+	 */
+	void showContacts(List<Contact> loaded) {
+		if (loaded == null) {
+			Toast.makeText(this, "Unable to load contacts", Toast.LENGTH_SHORT)
+					.show();
+			return;
+		}
+		contacts = loaded;
 
 		// Display the contacts in the list
 		ArrayAdapter<Contact> adapter = new ArrayAdapter<Contact>(this,
@@ -108,7 +133,7 @@ public class ManageClientContactsActivity extends ListActivity {
 	public void toAddContact(View view) {
 		// Start a new intent directed to AddContactActivity
 		Intent intent = new Intent(this, AddContactActivity.class);
-		intent.putExtra(ManageClientsActivity.CLIENT_ID, client.getId());
+		intent.putExtra(ManageClientsActivity.CLIENT_ID, clientId);
 		startActivity(intent);
 	}
 
@@ -128,12 +153,15 @@ public class ManageClientContactsActivity extends ListActivity {
 	}
 
 	/**
-	 * Closes the data source when the activity is paused (or deleted) to free
-	 * resources.
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
 	 */
 	@Override
-	public void onPause() {
-		super.onPause();
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
 
 		// Close data source if open
 		if (datasource.isOpen()) {
@@ -141,18 +169,4 @@ public class ManageClientContactsActivity extends ListActivity {
 		}
 	}
 
-	/**
-	 * Opens the data source when activity is resumed (or started) to allow
-	 * access.
-	 */
-	@Override
-	public void onResume() {
-		super.onResume();
-
-		// Open data source if closed
-		if (!datasource.isOpen()) {
-			datasource.open();
-		}
-	}
-
 }
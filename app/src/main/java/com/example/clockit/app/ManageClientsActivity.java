@@ -1,5 +1,6 @@
 package com.example.clockit.app;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import android.app.ActionBar;
@@ -13,8 +14,11 @@ import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
 import com.example.clockit.app.model.Client;
 
 /**
@@ -32,6 +36,9 @@ public class ManageClientsActivity extends ListActivity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
 	/** A reference to the list of available clients. */
 	List<Client> clients;
 
@@ -45,11 +52,23 @@ public class ManageClientsActivity extends ListActivity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
-
-		// Retrieve all existing clients and display in list.
-		clients = datasource.getAllClients();
-        ClientAdapter adapter = new ClientAdapter(this, clients);
-		setListAdapter(adapter);
+		repository = new ClockItRepository(datasource);
+
+		// Retrieve all existing clients in the background and display in list.
+		repository.getClientSummaries(new Callback<List<Client>>() {
+			@Override
+			public void onResult(List<Client> result) {
+				// Show an empty list if they could not be loaded
+				if (result == null) {
+					Toast.makeText(ManageClientsActivity.this,
+							"Unable to load clients", Toast.LENGTH_SHORT).show();
+					result = new ArrayList<Client>();
+				}
+				clients = result;
+				setListAdapter(new ClientAdapter(ManageClientsActivity.this,
+						clients));
+			}
+		});
 	}
 
 	/**
@@ -106,12 +125,15 @@ public class ManageClientsActivity extends ListActivity {
 	}
 
 	/**
-	 * Closes the data source when the activity is paused (or deleted) to free
-	 * resources.
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
 	 */
 	@Override
-	public void onPause() {
-		super.onPause();
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
 
 		// Close data source if open
 		if (datasource.isOpen()) {
@@ -119,18 +141,4 @@ public class ManageClientsActivity extends ListActivity {
 		}
 	}
 
-	/**
-	 * Opens the data source when activity is resumed (or started) to allow
-	 * access.
-	 */
-	@Override
-	public void onResume() {
-		super.onResume();
-
-		// Open data source if closed
-		if (!datasource.isOpen()) {
-			datasource.open();
-		}
-	}
-
 }
@@ -1,5 +1,6 @@
 package com.example.clockit.app;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import android.app.ActionBar;
@@ -13,8 +14,11 @@ import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
 import com.example.clockit.app.model.Services;
 
 /**
@@ -32,6 +36,9 @@ public class ManageServicesActivity extends ListActivity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
 	/** A reference to the list of available services. */
 	List<Services> services;
 
@@ -45,11 +52,23 @@ public class ManageServicesActivity extends ListActivity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
-
-		// Retrieve all existing services and display in list.
-		services = datasource.getAllServices();
-		ServiceAdapter adapter = new ServiceAdapter(this, services);
-		setListAdapter(adapter);
+		repository = new ClockItRepository(datasource);
+
+		// Retrieve all existing services in the background and display in list.
+		repository.getAllServices(new Callback<List<Services>>() {
+			@Override
+			public void onResult(List<Services> result) {
+				// Show an empty list if they could not be loaded
+				if (result == null) {
+					Toast.makeText(ManageServicesActivity.this,
+							"Unable to load services", Toast.LENGTH_SHORT).show();
+					result = new ArrayList<Services>();
+				}
+				services = result;
+				setListAdapter(new ServiceAdapter(ManageServicesActivity.this,
+						services));
+			}
+		});
 	}
 
 	/**
@@ -106,12 +125,15 @@ public class ManageServicesActivity extends ListActivity {
 	}
 
 	/**
-	 * Closes the data source when the activity is paused (or deleted) to free
-	 * resources.
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
 	 */
 	@Override
-	public void onPause() {
-		super.onPause();
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
 
 		// Close data source if open
 		if (datasource.isOpen()) {
@@ -119,18 +141,4 @@ public class ManageServicesActivity extends ListActivity {
 		}
 	}
 
-	/**
-	 * Opens the data source when activity is resumed (or started) to allow
-	 * access.
-	 */
-	@Override
-	public void onResume() {
-		super.onResume();
-
-		// Open data source if closed
-		if (!datasource.isOpen()) {
-			datasource.open();
-		}
-	}
-
 }
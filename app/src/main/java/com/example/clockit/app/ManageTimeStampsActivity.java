@@ -1,26 +1,38 @@
 package com.example.clockit.app;
 
+import java.util.Calendar;
 import java.util.List;
 
 import android.app.ActionBar;
+import android.app.AlertDialog;
 import android.app.ListActivity;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.graphics.Color;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
+import android.widget.EditText;
 import android.widget.ListView;
+import android.widget.Spinner;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
-import com.example.clockit.app.model.TimeStamp;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
+import com.example.clockit.app.db.TimeStampFilter;
+import com.example.clockit.app.model.Client;
+import com.example.clockit.app.model.Services;
 
 /**
- * Allows the user to view a list of the time stamps they have recorded.
+ * Allows the user to view a list of the time stamps they have recorded and
+ * narrow it down by time range, client, service and text.
  * 
  * @author Cameron Irwin
  * 
@@ -33,8 +45,18 @@ public class ManageTimeStampsActivity extends ListActivity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
-	/** A reference to the list of available time stamps. */
-	List<TimeStamp> timeStamps;
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
+	/** Adapter paging the time stamps into the list. */
+	TimeStampAdapter adapter;
+
+	// Positions of the time ranges in the filter dialog's drop down list
+	private static final int RANGE_TODAY = 1;
+	private static final int RANGE_THIS_WEEK = 2;
+	private static final int RANGE_THIS_MONTH = 3;
+	private static final int RANGE_LAST_MONTH = 4;
+	private static final int RANGE_THIS_YEAR = 5;
 
 	/**
 	 * Retrieves the list of time stamps and sets up the activity's view.
@@ -46,15 +68,15 @@ public class ManageTimeStampsActivity extends ListActivity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
+		repository = new ClockItRepository(datasource);
 
-		// Retrieve all existing time stamps and display in list.
-		timeStamps = datasource.getAllTimeStamps();
-        TimeStampAdapter adapter = new TimeStampAdapter(this, timeStamps);
+		// Page existing time stamps into the list as it scrolls.
+		adapter = new TimeStampAdapter(this, repository);
 		setListAdapter(adapter);
 	}
 
 	/**
-	 * Creates the options menu for the activity (currently unchanged)
+	 * Creates the options menu for the activity.
 	 */
 	@Override
 	public boolean onCreateOptionsMenu(Menu menu) {
@@ -63,13 +85,35 @@ public class ManageTimeStampsActivity extends ListActivity {
 		return true;
 	}
 
+	/**
+	 * Opens the filter dialog or clears the current filter.
+	 */
+	@Override
+	public boolean onOptionsItemSelected(MenuItem item) {
+		switch (item.getItemId()) {
+		case R.id.action_filter:
+			showFilterDialog();
+			return true;
+		case R.id.action_clear_filter:
+			adapter.setFilter(null);
+			return true;
+		default:
+			return super.onOptionsItemSelected(item);
+		}
+	}
+
 	@Override
 	protected void onListItemClick(ListView l, View v, int position, long id) {
+		// Ignore rows whose page has not loaded yet
+		if (id == -1) {
+			return;
+		}
+
 		// Start a new intent directed to ViewTimeStampActivity
 		Intent intent = new Intent(this, ViewTimeStampActivity.class);
 
 		// Add selected time stamp's id as an extra
-		intent.putExtra(TIME_STAMP_ID, timeStamps.get(position).getId());
+		intent.putExtra(TIME_STAMP_ID, (int) id);
 
 		// Send to new activity
 		startActivity(intent);
@@ -90,31 +134,180 @@ public class ManageTimeStampsActivity extends ListActivity {
 		this.finish();
 	}
 
+	// Private Methods
+
+	/**
+	 * Loads the clients and services in the background and then lets the user
+	 * choose the conditions to filter the time stamps by.
+	 */
+	private void showFilterDialog() {
+		repository.getClientSummaries(new Callback<List<Client>>() {
+			@Override
+			public void onResult(final List<Client> clients) {
+				if (clients == null) {
+					onFilterLoadFailed();
+					return;
+				}
+				repository.getAllServices(new Callback<List<Services>>() {
+					@Override
+					public void onResult(List<Services> services) {
+						if (services == null) {
+							onFilterLoadFailed();
+							return;
+						}
+						showFilterDialog(clients, services);
+					}
+				});
+			}
+		});
+	}
+
 	/**
-	 * Closes the data source when the activity is paused (or deleted) to free
-	 * resources.
+	 * Lets the user know the filter dialog could not be shown because its
+	 * clients or services could not be loaded.
 	 */
-	@Override
-	public void onPause() {
-		super.onPause();
+	private void onFilterLoadFailed() {
+		Toast.makeText(this, "Unable to load filters", Toast.LENGTH_SHORT)
+				.show();
+	}
 
-		// Close data source if open
-		if (datasource.isOpen()) {
-			datasource.close();
+	/**
+	 * Shows the filter dialog with the supplied clients and services to choose
+	 * from and applies the chosen filter to the list.
+	 * 
+	 * @param clients
+	 *            The clients that can be filtered by.
+	 * @param services
+	 *            The services that can be filtered by.
+	 */
+	private void showFilterDialog(final List<Client> clients,
+			final List<Services> services) {
+		final View view = getLayoutInflater().inflate(
+				R.layout.dialog_time_stamp_filter, null);
+		final EditText etText = (EditText) view.findViewById(R.id.etFilterText);
+		final Spinner ddlRange = (Spinner) view
+				.findViewById(R.id.ddlFilterRange);
+		final Spinner ddlClient = (Spinner) view
+				.findViewById(R.id.ddlFilterClient);
+		final Spinner ddlService = (Spinner) view
+				.findViewById(R.id.ddlFilterService);
+
+		// First entry of each list matches everything
+		ArrayAdapter<Object> clientAdapter = new ArrayAdapter<Object>(this,
+				android.R.layout.simple_spinner_item);
+		clientAdapter.add("All Clients");
+		for (Client client : clients) {
+			clientAdapter.add(client.getName());
+		}
+		clientAdapter
+				.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+		ddlClient.setAdapter(clientAdapter);
+
+		ArrayAdapter<Object> serviceAdapter = new ArrayAdapter<Object>(this,
+				android.R.layout.simple_spinner_item);
+		serviceAdapter.add("All Services");
+		for (Services service : services) {
+			serviceAdapter.add(service.getName());
 		}
+		serviceAdapter
+				.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+		ddlService.setAdapter(serviceAdapter);
+
+		new AlertDialog.Builder(this)
+				.setTitle(R.string.title_filter_time_stamps)
+				.setView(view)
+				.setNegativeButton(R.string.cancel, null)
+				.setPositiveButton(R.string.apply,
+						new DialogInterface.OnClickListener() {
+							public void onClick(DialogInterface dialog, int id) {
+								TimeStampFilter filter = new TimeStampFilter();
+								filter.setText(etText.getText().toString());
+
+								long[] range = getTimeRange(ddlRange
+										.getSelectedItemPosition());
+								filter.setTimeRange(range[0], range[1]);
+
+								int client = ddlClient.getSelectedItemPosition();
+								if (client > 0) {
+									filter.setClientIds(clients.get(client - 1)
+											.getId());
+								}
+
+								int service = ddlService
+										.getSelectedItemPosition();
+								if (service > 0) {
+									filter.setServiceIds(services.get(
+											service - 1).getId());
+								}
+
+								adapter.setFilter(filter.isEmpty() ? null
+										: filter);
+							}
+						}).create().show();
 	}
 
 	/**
-	 * Opens the data source when activity is resumed (or started) to allow
-	 * access.
+	 * Works out the clock in times covered by one of the filter dialog's time
+	 * ranges.
+	 * 
+	 * @param position
+	 *            The position of the range in the drop down list.
+	 * @return The start and end of the range, each -1 if it is unbounded.
+	 */
+	private static long[] getTimeRange(int position) {
+		// Start from midnight today
+		Calendar start = Calendar.getInstance();
+		start.set(Calendar.HOUR_OF_DAY, 0);
+		start.set(Calendar.MINUTE, 0);
+		start.set(Calendar.SECOND, 0);
+		start.set(Calendar.MILLISECOND, 0);
+		Calendar end = (Calendar) start.clone();
+
+		switch (position) {
+		case RANGE_TODAY:
+			end.add(Calendar.DAY_OF_MONTH, 1);
+			break;
+		case RANGE_THIS_WEEK:
+			start.set(Calendar.DAY_OF_WEEK, start.getFirstDayOfWeek());
+			end.setTimeInMillis(start.getTimeInMillis());
+			end.add(Calendar.WEEK_OF_YEAR, 1);
+			break;
+		case RANGE_THIS_MONTH:
+			start.set(Calendar.DAY_OF_MONTH, 1);
+			end.setTimeInMillis(start.getTimeInMillis());
+			end.add(Calendar.MONTH, 1);
+			break;
+		case RANGE_LAST_MONTH:
+			start.set(Calendar.DAY_OF_MONTH, 1);
+			end.setTimeInMillis(start.getTimeInMillis());
+			start.add(Calendar.MONTH, -1);
+			break;
+		case RANGE_THIS_YEAR:
+			start.set(Calendar.DAY_OF_YEAR, 1);
+			end.setTimeInMillis(start.getTimeInMillis());
+			end.add(Calendar.YEAR, 1);
+			break;
+		default:
+			return new long[] { -1, -1 };
+		}
+
+		return new long[] { start.getTimeInMillis(), end.getTimeInMillis() };
+	}
+
+	/**
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
 	 */
 	@Override
-	public void onResume() {
-		super.onResume();
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
 
-		// Open data source if closed
-		if (!datasource.isOpen()) {
-			datasource.open();
+		// Close data source if open
+		if (datasource.isOpen()) {
+			datasource.close();
 		}
 	}
 
@@ -0,0 +1,217 @@
+package com.example.clockit.app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.app.ListActivity;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.Menu;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.ListView;
+import android.widget.Toast;
+
+import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
+import com.example.clockit.app.model.SearchResult;
+
+/**
+ * Allows the user to search the descriptions of their time stamps along with
+ * their clients, services and contacts. Results are shown best match first as
+ * the user types, and selecting one opens it.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class SearchActivity extends ListActivity {
+
+	/** Time to wait after the last key press before searching. */
+	private static final int SEARCH_DELAY_MS = 250;
+
+	/** Maximum number of results shown. */
+	private static final int MAX_RESULTS = 50;
+
+	/** Data source that interacts with database using CRUD operations. */
+	ClockItDataSource datasource;
+
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
+	/** Results currently shown in the list. */
+	List<SearchResult> results = new ArrayList<SearchResult>();
+
+	/** Edit text view holding the search query. */
+	EditText etSearch;
+
+	/** Handler used to wait for the user to stop typing. */
+	private final Handler handler = new Handler();
+
+	/** Number of the latest search, so results of older ones are ignored. */
+	private int searchNumber = 0;
+
+	/** Runs a search for the current query. */
+	private final Runnable searchRunnable = new Runnable() {
+		@Override
+		public void run() {
+			search(etSearch.getText().toString());
+		}
+	};
+
+	/**
+	 * Sets up the activity's view and searches as the query changes.
+	 */
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		setContentView(R.layout.activity_search);
+
+		// Set data source
+		datasource = new ClockItDataSource(this);
+		repository = new ClockItRepository(datasource);
+
+		setListAdapter(new SearchResultAdapter(this, results));
+
+		// Search once the user pauses typing
+		etSearch = (EditText) findViewById(R.id.etSearch);
+		etSearch.addTextChangedListener(new TextWatcher() {
+			@Override
+			public void beforeTextChanged(CharSequence s, int start,
+					int count, int after) {
+			}
+
+			@Override
+			public void onTextChanged(CharSequence s, int start, int before,
+					int count) {
+			}
+
+			@Override
+			public void afterTextChanged(Editable s) {
+				handler.removeCallbacks(searchRunnable);
+				handler.postDelayed(searchRunnable, SEARCH_DELAY_MS);
+			}
+		});
+	}
+
+	/**
+	 * Sets up the options menu (currently unchanged).
+	 */
+	@Override
+	public boolean onCreateOptionsMenu(Menu menu) {
+		// Inflate the menu; this adds items to the action bar if it is present.
+		getMenuInflater().inflate(R.menu.main, menu);
+		return true;
+	}
+
+	/**
+	 * Opens the selected result in the page that manages it.
+	 */
+	@Override
+	protected void onListItemClick(ListView l, View v, int position, long id) {
+		SearchResult result = results.get(position);
+
+		Intent intent;
+		switch (result.getType()) {
+		case SearchResult.TYPE_TIME_STAMP:
+			intent = new Intent(this, ViewTimeStampActivity.class);
+			intent.putExtra(ManageTimeStampsActivity.TIME_STAMP_ID,
+					result.getId());
+			break;
+		case SearchResult.TYPE_CLIENT:
+			intent = new Intent(this, ViewClientActivity.class);
+			intent.putExtra(ManageClientsActivity.CLIENT_ID, result.getId());
+			break;
+		case SearchResult.TYPE_SERVICE:
+			intent = new Intent(this, ViewServiceActivity.class);
+			intent.putExtra(ManageServicesActivity.SERVICE_ID, result.getId());
+			break;
+		case SearchResult.TYPE_CONTACT:
+			// Contacts are managed from their client's page
+			repository.getContactClientId(result.getId(),
+					new Callback<Integer>() {
+						@Override
+						public void onResult(Integer clientId) {
+							if (clientId == null) {
+								Toast.makeText(SearchActivity.this,
+										"Unable to open contact",
+										Toast.LENGTH_SHORT).show();
+								return;
+							}
+							if (clientId != -1) {
+								Intent intent = new Intent(SearchActivity.this,
+										ManageClientContactsActivity.class);
+								intent.putExtra(ManageClientsActivity.CLIENT_ID,
+										clientId.intValue());
+								startActivity(intent);
+							}
+						}
+					});
+			return;
+		default:
+			return;
+		}
+
+		// Send to new activity
+		startActivity(intent);
+	}
+
+	/**
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
+	 */
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop any search waiting to run
+		handler.removeCallbacks(searchRunnable);
+
+		// Stop delivering results to this activity
+		repository.cancel();
+
+		// Close data source if open
+		if (datasource.isOpen()) {
+			datasource.close();
+		}
+	}
+
+	// Private Methods
+
+	/**
+	 * Searches in the background and shows the results if no newer search has
+	 * been started since.
+	 *
+	 * @param query
+	 *            The words to search for.
+	 */
+	private void search(String query) {
+		final int number = ++searchNumber;
+
+		repository.search(query, MAX_RESULTS,
+				new Callback<List<SearchResult>>() {
+					@Override
+					public void onResult(List<SearchResult> found) {
+						if (number != searchNumber) {
+							return;
+						}
+
+						// Show no results if the search failed
+						results.clear();
+						if (found == null) {
+							Toast.makeText(SearchActivity.this,
+									"Unable to search", Toast.LENGTH_SHORT)
+									.show();
+						} else {
+							results.addAll(found);
+						}
+						((SearchResultAdapter) getListAdapter())
+								.notifyDataSetChanged();
+					}
+				});
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.example.clockit.app;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.TextView;
+
+import com.example.clockit.app.model.SearchResult;
+
+import java.util.List;
+
+public class SearchResultAdapter extends ArrayAdapter<SearchResult> {
+
+    /** Labels of the result types, indexed by type. */
+    private static final String[] TYPE_LABELS = { "Time Stamp", "Client", "Service", "Contact" };
+
+    private final LayoutInflater inflater;
+    private final List<SearchResult> results;
+
+    public SearchResultAdapter(Context context, List<SearchResult> results) {
+        super(context, android.R.layout.simple_list_item_2, results);
+        this.inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        this.results = results;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        // Reuse the recycled row and its view references if there is one
+        View rowView = convertView;
+        ViewHolder holder;
+        if (rowView == null) {
+            rowView = inflater.inflate(android.R.layout.simple_list_item_2, parent, false);
+            holder = new ViewHolder(rowView);
+            rowView.setTag(holder);
+        } else {
+            holder = (ViewHolder) rowView.getTag();
+        }
+
+        SearchResult result = results.get(position);
+
+        String label = TYPE_LABELS[result.getType()];
+        holder.tvTitle.setText(result.getTitle().length() > 0
+                ? label + ": " + result.getTitle() : label);
+        holder.tvSnippet.setText(result.getSnippet());
+
+        return rowView;
+    }
+
+    /**
+     * View references of a search result row, looked up once when the row is
+     * inflated.
+     */
+    private static class ViewHolder {
+        final TextView tvTitle;
+        final TextView tvSnippet;
+
+        ViewHolder(View rowView) {
+            tvTitle = (TextView) rowView.findViewById(android.R.id.text1);
+            tvSnippet = (TextView) rowView.findViewById(android.R.id.text2);
+        }
+    }
+}
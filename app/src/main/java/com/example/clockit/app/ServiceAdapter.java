@@ -7,38 +7,55 @@ import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.TextView;
 
+import com.example.clockit.app.model.Money;
 import com.example.clockit.app.model.Services;
 
-import java.text.DecimalFormat;
 import java.util.List;
 
 public class ServiceAdapter extends ArrayAdapter<Services> {
 
-    private final Context context;
+    private final LayoutInflater inflater;
     private final List<Services> services;
 
     public ServiceAdapter(Context context, List<Services> services) {
         super(context, R.layout.service_row, services);
-        this.context = context;
+        this.inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         this.services = services;
     }
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
-        LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-        View rowView = inflater.inflate(R.layout.service_row, parent, false);
-
-        TextView tvServiceName = (TextView) rowView.findViewById(R.id.tvServiceName);
-        TextView tvServiceRate = (TextView) rowView.findViewById(R.id.tvServiceRate);
+        // Reuse the recycled row and its view references if there is one
+        View rowView = convertView;
+        ViewHolder holder;
+        if (rowView == null) {
+            rowView = inflater.inflate(R.layout.service_row, parent, false);
+            holder = new ViewHolder(rowView);
+            rowView.setTag(holder);
+        } else {
+            holder = (ViewHolder) rowView.getTag();
+        }
 
         Services service = services.get(position);
 
-        DecimalFormat decimalFormat = new DecimalFormat("#0.00");
-
-        tvServiceName.setText(service.getName());
-        tvServiceRate.setText("$" + decimalFormat.format(service.getRate()));
+        holder.tvServiceName.setText(service.getName());
+        holder.tvServiceRate.setText("$" + Money.format(service.getRateCents()));
 
         return rowView;
     }
 
+    /**
+     * View references of a service row, looked up once when the row is
+     * inflated.
+     */
+    private static class ViewHolder {
+        final TextView tvServiceName;
+        final TextView tvServiceRate;
+
+        ViewHolder(View rowView) {
+            tvServiceName = (TextView) rowView.findViewById(R.id.tvServiceName);
+            tvServiceRate = (TextView) rowView.findViewById(R.id.tvServiceRate);
+        }
+    }
+
 }
@@ -0,0 +1,148 @@
+package com.example.clockit.app;
+
+import android.app.AlarmManager;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.widget.RemoteViews;
+
+import com.example.clockit.app.db.ActiveShiftStore;
+import com.example.clockit.app.db.OpenShift;
+import com.example.clockit.app.model.ShiftDisplay;
+
+/**
+ * Shows the open shifts outside the app, in the home screen widget and an
+ * ongoing notification. Everything is built from the open shift record, so no
+ * database query is needed. The elapsed time is shown with chronometers that
+ * the launcher and status bar run themselves, and the earnings are refreshed
+ * by an inexact alarm that never wakes the device.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public final class ShiftStatus {
+
+	/** Broadcast sent to the widget provider by the refresh alarm. */
+	static final String ACTION_REFRESH = "com.example.clockit.app.action.REFRESH_SHIFT";
+
+	/** Id of the ongoing notification. */
+	private static final int NOTIFICATION_ID = 1;
+
+	/** Prevents instantiation of the helper class. */
+	private ShiftStatus() {
+	}
+
+	/**
+	 * Updates the widget and notification to match the open shift record, and
+	 * starts or stops the refresh alarm. Should be called whenever the user
+	 * clocks in or out.
+	 *
+	 * @param context
+	 *            Context used to reach the system services.
+	 */
+	public static void update(Context context) {
+		context = context.getApplicationContext();
+		ActiveShiftStore activeShift = new ActiveShiftStore(context);
+		NotificationManager notifications = (NotificationManager) context
+				.getSystemService(Context.NOTIFICATION_SERVICE);
+		AlarmManager alarms = (AlarmManager) context
+				.getSystemService(Context.ALARM_SERVICE);
+		PendingIntent refresh = PendingIntent.getBroadcast(context, 0,
+				new Intent(ACTION_REFRESH, null, context,
+						ShiftWidgetProvider.class), 0);
+
+		RemoteViews views = new RemoteViews(context.getPackageName(),
+				R.layout.widget_shift);
+		views.setOnClickPendingIntent(R.id.widgetShift,
+				openMainActivity(context));
+
+		OpenShift[] shifts = activeShift.getShifts();
+		if (shifts.length > 0) {
+			// Time is counted from the oldest shift and earnings are summed
+			long now = System.currentTimeMillis();
+			long worked = shifts[0].getWorkedMillis(now);
+			boolean paused = shifts[0].isPaused();
+			String shift = shifts.length == 1 ? shifts[0].toString()
+					: shifts.length + " open shifts";
+			String earned = formatEarned(shifts, now);
+
+			// The chronometer counts on from the time worked on its own, and
+			// is stopped while the shift is paused
+			views.setChronometer(R.id.chronWidgetTime,
+					SystemClock.elapsedRealtime() - worked, null, !paused);
+			views.setTextViewText(R.id.tvWidgetEarned, earned);
+			views.setTextViewText(R.id.tvWidgetShift, shift);
+
+			notifications.notify(NOTIFICATION_ID, buildNotification(context,
+					now - worked, paused, shift, earned));
+
+			// Refresh the earnings now and then while the device is awake
+			alarms.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+					SystemClock.elapsedRealtime()
+							+ AlarmManager.INTERVAL_FIFTEEN_MINUTES,
+					AlarmManager.INTERVAL_FIFTEEN_MINUTES, refresh);
+		} else {
+			views.setChronometer(R.id.chronWidgetTime,
+					SystemClock.elapsedRealtime(), null, false);
+			views.setTextViewText(R.id.tvWidgetEarned, "$0.00");
+			views.setTextViewText(R.id.tvWidgetShift, "Clocked out");
+
+			notifications.cancel(NOTIFICATION_ID);
+			alarms.cancel(refresh);
+		}
+
+		AppWidgetManager.getInstance(context).updateAppWidget(
+				new ComponentName(context, ShiftWidgetProvider.class), views);
+	}
+
+	// Private Methods
+
+	/**
+	 * Builds the ongoing notification for the open shift. On devices that
+	 * support it the notification counts up the time worked unless the shift
+	 * is paused.
+	 */
+	@SuppressWarnings("deprecation")
+	private static Notification buildNotification(Context context,
+			long start, boolean paused, String shift, String earned) {
+		Notification.Builder builder = new Notification.Builder(context)
+				.setSmallIcon(R.drawable.ic_launcher)
+				.setContentTitle(shift)
+				.setContentText(paused ? "Paused - " + earned + " earned"
+						: earned + " earned")
+				.setWhen(start)
+				.setOngoing(true)
+				.setOnlyAlertOnce(true)
+				.setContentIntent(openMainActivity(context));
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			return builder.setUsesChronometer(!paused).build();
+		}
+		return builder.getNotification();
+	}
+
+	/**
+	 * Renders the amount earned in every open shift with the same renderer as
+	 * the main page.
+	 */
+	private static String formatEarned(OpenShift[] shifts, long now) {
+		ShiftDisplay display = new ShiftDisplay();
+		display.setEarnedCents(OpenShift.getEarnedCents(shifts, now));
+		return new String(display.getEarned(), 0, display.getEarnedLength());
+	}
+
+	/**
+	 * Creates the pending intent that opens the main page.
+	 */
+	private static PendingIntent openMainActivity(Context context) {
+		return PendingIntent.getActivity(context, 0, new Intent(context,
+				MainActivity.class), 0);
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.example.clockit.app;
+
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Home screen widget showing the open shift's elapsed time and earnings. The
+ * views are built by ShiftStatus, which also sends this provider its refresh
+ * alarm.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ShiftWidgetProvider extends AppWidgetProvider {
+
+	/**
+	 * Refreshes the open shift when the refresh alarm goes off.
+	 */
+	@Override
+	public void onReceive(Context context, Intent intent) {
+		if (ShiftStatus.ACTION_REFRESH.equals(intent.getAction())) {
+			ShiftStatus.update(context);
+		} else {
+			super.onReceive(context, intent);
+		}
+	}
+
+	/**
+	 * Draws the open shift when widgets are added or the launcher asks for an
+	 * update.
+	 */
+	@Override
+	public void onUpdate(Context context, AppWidgetManager appWidgetManager,
+			int[] appWidgetIds) {
+		ShiftStatus.update(context);
+	}
+
+}
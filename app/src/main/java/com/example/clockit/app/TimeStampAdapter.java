@@ -1,60 +1,287 @@
 package com.example.clockit.app;
 
 import android.content.Context;
-import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
 import android.widget.TextView;
 
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
+import com.example.clockit.app.db.TimeStampFilter;
+import com.example.clockit.app.model.Money;
 import com.example.clockit.app.model.TimeStamp;
 
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
-public class TimeStampAdapter extends ArrayAdapter<TimeStamp> {
+/**
+ * Adapter that shows finished time stamps newest first, optionally narrowed
+ * by a filter, loading them a page at a time as the list scrolls. Only the
+ * pages around the visible rows are kept in memory, pages that scroll far away
+ * are dropped and reloaded from their key if they come back into view.
+ */
+public class TimeStampAdapter extends BaseAdapter {
 
-    private final Context context;
-    private final List<TimeStamp> TimeStamps;
+    /** Number of time stamps loaded per page. */
+    private static final int PAGE_SIZE = 50;
 
-    public TimeStampAdapter(Context context, List<TimeStamp> timeStamps) {
-        super(context, R.layout.time_stamp_row, timeStamps);
-        this.context = context;
-        this.TimeStamps = timeStamps;
+    /** Number of pages kept on either side of the visible page. */
+    private static final int PAGE_WINDOW = 2;
+
+    private final LayoutInflater inflater;
+    private final ClockItRepository repository;
+
+    /** Formatters shared by every row. */
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d", Locale.US);
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("hh:mm a", Locale.US);
+    private final DecimalFormat decimalFormat = new DecimalFormat("#0.00");
+
+    /** Loaded pages by page number. */
+    private final SparseArray<List<TimeStamp>> pages = new SparseArray<List<TimeStamp>>();
+
+    /** Pages that are currently being loaded. */
+    private final SparseBooleanArray loading = new SparseBooleanArray();
+
+    /** Clock in time and id of the last time stamp of each page seen so far. */
+    private final List<long[]> pageEnds = new ArrayList<long[]>();
+
+    /** Number of rows known to exist. */
+    private int count = 0;
+
+    /** Whether there may be more time stamps after the last loaded page. */
+    private boolean hasMore = true;
+
+    /** Conditions the listed time stamps must match, or null for all. */
+    private TimeStampFilter filter;
+
+    /** Bumped when the filter changes so pages of the old list are ignored. */
+    private int generation = 0;
+
+    public TimeStampAdapter(Context context, ClockItRepository repository) {
+        this.inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        this.repository = repository;
+
+        // Start with the newest page
+        loadPage(0);
+    }
+
+    /**
+     * Replaces the conditions the listed time stamps must match and reloads
+     * the list from the first page.
+     *
+     * @param filter The new conditions, or null to list every time stamp.
+     */
+    public void setFilter(TimeStampFilter filter) {
+        this.filter = filter;
+
+        // Forget the old list, including pages that are still loading
+        generation++;
+        pages.clear();
+        loading.clear();
+        pageEnds.clear();
+        count = 0;
+        hasMore = true;
+        notifyDataSetChanged();
+
+        loadPage(0);
+    }
+
+    /**
+     * Returns the conditions the listed time stamps must match, or null if
+     * every time stamp is listed.
+     */
+    public TimeStampFilter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the time stamp at the position, or null if its page is not
+     * loaded.
+     */
+    @Override
+    public TimeStamp getItem(int position) {
+        List<TimeStamp> page = pages.get(position / PAGE_SIZE);
+        int index = position % PAGE_SIZE;
+        return page == null || index >= page.size() ? null : page.get(index);
+    }
+
+    /**
+     * Returns the id of the time stamp at the position, or -1 if its page is
+     * not loaded.
+     */
+    @Override
+    public long getItemId(int position) {
+        TimeStamp timeStamp = getItem(position);
+        return timeStamp == null ? -1 : timeStamp.getId();
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
     }
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
-        LayoutInflater inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-        View rowView = inflater.inflate(R.layout.time_stamp_row, parent, false);
-
-        TextView tvClient = (TextView) rowView.findViewById(R.id.tvClientName);
-        TextView tvService = (TextView) rowView.findViewById(R.id.tvServiceName);
-        TextView tvClockInDate = (TextView) rowView.findViewById(R.id.tvClockInDate);
-        TextView tvClockInTime = (TextView) rowView.findViewById(R.id.tvClockInTime);
-        TextView tvClockOutDate = (TextView) rowView.findViewById(R.id.tvClockOutDate);
-        TextView tvClockOutTime = (TextView) rowView.findViewById(R.id.tvClockOutTime);
-        TextView tvHours = (TextView) rowView.findViewById(R.id.tvHours);
-        TextView tvEarnings = (TextView) rowView.findViewById(R.id.tvEarnings);
-
-        TimeStamp timestamp = TimeStamps.get(position);
-        SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d", Locale.US);
-        SimpleDateFormat timeFormat = new SimpleDateFormat("hh:mm a", Locale.US);
-        DecimalFormat decimalFormat = new DecimalFormat("#0.00");
-
-        tvClient.setText(timestamp.getClient().getName());
-        tvService.setText(timestamp.getService().getName());
-        tvClockInDate.setText(dateFormat.format(timestamp.getClockIn()));
-        tvClockInTime.setText(timeFormat.format(timestamp.getClockIn()));
-        tvClockOutDate.setText(dateFormat.format(timestamp.getClockOut()));
-        tvClockOutTime.setText(timeFormat.format(timestamp.getClockOut()));
-        tvHours.setText(String.valueOf(decimalFormat.format(timestamp.getEarnedIncome()/timestamp.getService().getRate())));
-        tvEarnings.setText("$" + decimalFormat.format(timestamp.getEarnedIncome()));
+        int pageNumber = position / PAGE_SIZE;
+
+        // Make sure the row's page is loaded and that the next page is on its
+        // way once the user gets close to the end
+        if (pages.get(pageNumber) == null) {
+            loadPage(pageNumber);
+        }
+        if (hasMore && position >= count - PAGE_SIZE / 2) {
+            loadPage(pageEnds.size());
+        }
+        evictPagesAround(pageNumber);
+
+        // Reuse the recycled row and its view references if there is one
+        View rowView = convertView;
+        ViewHolder holder;
+        if (rowView == null) {
+            rowView = inflater.inflate(R.layout.time_stamp_row, parent, false);
+            holder = new ViewHolder(rowView);
+            rowView.setTag(holder);
+        } else {
+            holder = (ViewHolder) rowView.getTag();
+        }
+
+        TimeStamp timestamp = getItem(position);
+        if (timestamp == null) {
+            // Blank the row until the page arrives
+            holder.clear();
+            return rowView;
+        }
+
+        holder.tvClient.setText(timestamp.getClient().getName());
+        holder.tvService.setText(timestamp.getService().getName());
+        holder.tvClockInDate.setText(dateFormat.format(timestamp.getClockIn()));
+        holder.tvClockInTime.setText(timeFormat.format(timestamp.getClockIn()));
+        holder.tvClockOutDate.setText(dateFormat.format(timestamp.getClockOut()));
+        holder.tvClockOutTime.setText(timeFormat.format(timestamp.getClockOut()));
+        holder.tvHours.setText(decimalFormat.format(timestamp.getHoursWorked()));
+        holder.tvEarnings.setText("$" + Money.format(timestamp.getEarnedCents()));
 
         return rowView;
     }
 
+    /**
+     * View references of a time stamp row, looked up once when the row is
+     * inflated.
+     */
+    private static class ViewHolder {
+        final TextView tvClient;
+        final TextView tvService;
+        final TextView tvClockInDate;
+        final TextView tvClockInTime;
+        final TextView tvClockOutDate;
+        final TextView tvClockOutTime;
+        final TextView tvHours;
+        final TextView tvEarnings;
+
+        ViewHolder(View rowView) {
+            tvClient = (TextView) rowView.findViewById(R.id.tvClientName);
+            tvService = (TextView) rowView.findViewById(R.id.tvServiceName);
+            tvClockInDate = (TextView) rowView.findViewById(R.id.tvClockInDate);
+            tvClockInTime = (TextView) rowView.findViewById(R.id.tvClockInTime);
+            tvClockOutDate = (TextView) rowView.findViewById(R.id.tvClockOutDate);
+            tvClockOutTime = (TextView) rowView.findViewById(R.id.tvClockOutTime);
+            tvHours = (TextView) rowView.findViewById(R.id.tvHours);
+            tvEarnings = (TextView) rowView.findViewById(R.id.tvEarnings);
+        }
+
+        void clear() {
+            tvClient.setText("");
+            tvService.setText("");
+            tvClockInDate.setText("");
+            tvClockInTime.setText("");
+            tvClockOutDate.setText("");
+            tvClockOutTime.setText("");
+            tvHours.setText("");
+            tvEarnings.setText("");
+        }
+    }
+
+    /**
+     * Starts loading a page in the background unless it is already loading.
+     * A page can only be loaded once the page before it has been seen, since
+     * its key is the last time stamp of that page.
+     */
+    private void loadPage(final int pageNumber) {
+        if (loading.get(pageNumber) || pageNumber > pageEnds.size()) {
+            return;
+        }
+        loading.put(pageNumber, true);
+
+        long afterClockIn = Long.MAX_VALUE;
+        int afterId = Integer.MAX_VALUE;
+        if (pageNumber > 0) {
+            long[] key = pageEnds.get(pageNumber - 1);
+            afterClockIn = key[0];
+            afterId = (int) key[1];
+        }
+
+        final int loadGeneration = generation;
+        repository.getTimeStampsPage(filter, afterClockIn, afterId, PAGE_SIZE,
+                new Callback<List<TimeStamp>>() {
+                    @Override
+                    public void onResult(List<TimeStamp> page) {
+                        // Drop pages of a list that has since been filtered
+                        if (loadGeneration != generation) {
+                            return;
+                        }
+                        loading.delete(pageNumber);
+
+                        // Leave a page that failed to load to be asked for
+                        // again the next time its rows are shown
+                        if (page == null) {
+                            return;
+                        }
+                        onPageLoaded(pageNumber, page);
+                    }
+                });
+    }
+
+    /**
+     * Stores a loaded page, records its key the first time it is seen and
+     * updates the row count.
+     */
+    private void onPageLoaded(int pageNumber, List<TimeStamp> page) {
+        pages.put(pageNumber, page);
+
+        if (pageNumber == pageEnds.size()) {
+            if (!page.isEmpty()) {
+                TimeStamp last = page.get(page.size() - 1);
+                pageEnds.add(new long[] { last.getClockIn(), last.getId() });
+            }
+            count = pageNumber * PAGE_SIZE + page.size();
+            hasMore = page.size() == PAGE_SIZE;
+        }
+
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Drops loaded pages that are more than the page window away from the
+     * visible page.
+     */
+    private void evictPagesAround(int pageNumber) {
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            if (Math.abs(pages.keyAt(i) - pageNumber) > PAGE_WINDOW) {
+                pages.removeAt(i);
+            }
+        }
+    }
+
 }
@@ -1,29 +1,19 @@
 package com.example.clockit.app;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
 
 import android.app.ActionBar;
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.app.ProgressDialog;
 import android.content.ActivityNotFoundException;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.Environment;
 import android.support.v4.app.NavUtils;
 import android.text.Editable;
 import android.text.TextWatcher;
-import android.util.Log;
 import android.view.Gravity;
 import android.view.Menu;
 import android.view.View;
@@ -34,17 +24,9 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
 import com.example.clockit.app.model.Client;
-import com.example.clockit.app.model.TimeStamp;
-import com.lowagie.text.Document;
-import com.lowagie.text.DocumentException;
-import com.lowagie.text.Element;
-import com.lowagie.text.Image;
-import com.lowagie.text.Paragraph;
-import com.lowagie.text.Phrase;
-import com.lowagie.text.pdf.PdfPCell;
-import com.lowagie.text.pdf.PdfPTable;
-import com.lowagie.text.pdf.PdfWriter;
 
 /**
  * Allows the user to manage a single client entry. From this page the user can
@@ -60,6 +42,12 @@ public class ViewClientActivity extends Activity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
+	/** Invoice being generated in the background, or null if there is none. */
+	InvoiceTask invoiceTask;
+
 	// Views
 
 	/** Text view associated with the client's name. */
@@ -84,7 +72,10 @@ public class ViewClientActivity extends Activity {
 
 	// Page Properties
 
-	/** A full object reference to the currently viewed client. */
+	/**
+	 * A full object reference to the currently viewed client, or null until it
+	 * has been loaded.
+	 */
 	Client client;
 
 	/** Indicates if the page is in edit mode. */
@@ -108,6 +99,7 @@ public class ViewClientActivity extends Activity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
+		repository = new ClockItRepository(datasource);
 
 		// Set references to views
 		tvClientName = (TextView) findViewById(R.id.tvClientName);
@@ -120,9 +112,66 @@ public class ViewClientActivity extends Activity {
 		// Get the intent that started the activity
 		Intent intent = getIntent();
 
-		// Retrieve client id from intent and return corresponding client
-		client = datasource.getClientById(intent.getIntExtra(
-				ManageClientsActivity.CLIENT_ID, 0));
+		// Retrieve client id from intent and load corresponding client in the
+		// background
+		repository.getClientById(
+				intent.getIntExtra(ManageClientsActivity.CLIENT_ID, 0),
+				new Callback<Client>() {
+					@Override
+					public void onResult(Client result) {
+						showClient(result);
+					}
+				});
+	}
+
+	/**
+	 * Sets up the options menu (currently unchanged).
+	 */
+	@Override
+	public boolean onCreateOptionsMenu(Menu menu) {
+		// Inflate the menu; this adds items to the action bar if it is present.
+		getMenuInflater().inflate(R.menu.view_client, menu);
+		return true;
+	}
+
+	/**
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
+	 */
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop building an invoice nobody will see
+		if (invoiceTask != null) {
+			invoiceTask.cancel(true);
+		}
+
+		// Stop delivering results to this activity
+		repository.cancel();
+
+		// Close data source if open
+		if (datasource.isOpen()) {
+			datasource.close();
+		}
+	}
+
+	/**
+	 * Displays the client once it has been loaded and starts watching the
+	 * fields for edits, or returns to the manage clients page if it no longer
+	 * exists.
+	 * 
+	 * @param loaded
+	 *            The client, or null if it could not be loaded.
+	 */
+	void showClient(Client loaded) {
+		if (loaded == null) {
+			Toast.makeText(this, "Unable to load client", Toast.LENGTH_SHORT)
+					.show();
+			navigateUp();
+			return;
+		}
+		client = loaded;
 
 		// Set text fields to client's associated values
 		etClientName.setText(client.getName());
@@ -169,45 +218,6 @@ public class ViewClientActivity extends Activity {
 		// Attach text watcher to each field
 		etClientName.addTextChangedListener(tw);
 		etClientDescription.addTextChangedListener(tw);
-
-	}
-
-	/**
-	 * Sets up the options menu (currently unchanged).
-	 */
-	@Override
-	public boolean onCreateOptionsMenu(Menu menu) {
-		// Inflate the menu; this adds items to the action bar if it is present.
-		getMenuInflater().inflate(R.menu.view_client, menu);
-		return true;
-	}
-
-	/**
-	 * Closes the data source when the activity is paused (or deleted) to free
-	 * resources.
-	 */
-	@Override
-	public void onPause() {
-		super.onPause();
-
-		// Close data source if open
-		if (datasource.isOpen()) {
-			datasource.close();
-		}
-	}
-
-	/**
-	 * Opens the data source when activity is resumed (or started) to allow
-	 * access.
-	 */
-	@Override
-	public void onResume() {
-		super.onResume();
-
-		// Open data source if closed
-		if (!datasource.isOpen()) {
-			datasource.open();
-		}
 	}
 
 	/**
@@ -244,12 +254,19 @@ public class ViewClientActivity extends Activity {
 								public void onClick(DialogInterface dialog,
 										int id) {
 									if (valid) {
-										datasource.updateClient(etClientName
+										// Return once the client is saved
+										repository.updateClient(etClientName
 												.getText().toString(),
 												etClientDescription.getText()
 														.toString(), client
-														.getId());
-										navigateUp();
+														.getId(),
+												new Callback<Client>() {
+													@Override
+													public void onResult(
+															Client result) {
+														onSaved(result, true);
+													}
+												});
 									} else {
 										etClientName.requestFocus();
 									}
@@ -287,6 +304,11 @@ public class ViewClientActivity extends Activity {
 	 *            The view that was clicked to call this method.
 	 */
 	public void editClient(View view) {
+		// Nothing can be edited until the client has loaded
+		if (client == null) {
+			return;
+		}
+
 		if (editable) {
 			// If edit mode is on we need to save changes if any were made and
 			// turn edit mode off
@@ -311,13 +333,19 @@ public class ViewClientActivity extends Activity {
 									public void onClick(DialogInterface dialog,
 											int id) {
 										// Update client and turn edit mode off
-										client = datasource.updateClient(
-												etClientName.getText()
-														.toString(),
+										// once it is saved
+										repository.updateClient(etClientName
+												.getText().toString(),
 												etClientDescription.getText()
 														.toString(), client
-														.getId());
-										setEditMode(false);
+														.getId(),
+												new Callback<Client>() {
+													@Override
+													public void onResult(
+															Client result) {
+														onSaved(result, false);
+													}
+												});
 									}
 								})
 						.setPositiveButton("Cancel",
@@ -387,6 +415,11 @@ public class ViewClientActivity extends Activity {
 	 *            The view that was clicked to call this method.
 	 */
 	public void displayConfirmationPopup(View view) {
+		// Nothing can be removed until the client has loaded
+		if (client == null) {
+			return;
+		}
+
 		new AlertDialog.Builder(this)
 				.setTitle("Remove Client")
 				.setMessage(
@@ -395,10 +428,15 @@ public class ViewClientActivity extends Activity {
 				.setNegativeButton("Remove",
 						new DialogInterface.OnClickListener() {
 							public void onClick(DialogInterface dialog, int id) {
-								// Delete the client
-								datasource.deleteClient(client.getId());
-								// Return to manage clients list
-								navigateUp();
+								// Delete the client and return to manage
+								// clients list once it is gone
+								repository.deleteClient(client.getId(),
+										new Callback<Boolean>() {
+											@Override
+											public void onResult(Boolean deleted) {
+												onDeleted(deleted);
+											}
+										});
 							}
 						})
 				.setPositiveButton("Cancel",
@@ -433,6 +471,10 @@ public class ViewClientActivity extends Activity {
 	 *            The view that was clicked to call this method.
 	 */
 	public void toAssociationActivity(View view) {
+		// Nothing is associated until the client has loaded
+		if (client == null) {
+			return;
+		}
 
 		// If contacts is selected, send to ManageClientContactsActivity
 		if (ddlItems.getSelectedItem().toString().equals("Contacts")) {
@@ -453,7 +495,6 @@ public class ViewClientActivity extends Activity {
 								public void onClick(DialogInterface dialog,
 										int id) {
 									createPDF(true);
-									viewPDF();
 								}
 							})
 					.setPositiveButton("Separate",
@@ -461,7 +502,6 @@ public class ViewClientActivity extends Activity {
 								public void onClick(DialogInterface dialog,
 										int id) {
 									createPDF(false);
-									viewPDF();
 								}
 							}).create().show();
 		}
@@ -469,6 +509,49 @@ public class ViewClientActivity extends Activity {
 
 	// Private Methods
 
+	/**
+	 * Shows the saved client and turns edit mode off or returns to the manage
+	 * clients page, or lets the user know it could not be saved.
+	 * 
+	 * @param saved
+	 *            The updated client, or null if saving it failed.
+	 * @param leave
+	 *            True to return to the manage clients page once saved.
+	 */
+	private void onSaved(Client saved, boolean leave) {
+		if (saved == null) {
+			Toast.makeText(this, "Unable to update client", Toast.LENGTH_SHORT)
+					.show();
+			return;
+		}
+		client = saved;
+
+		if (leave) {
+			navigateUp();
+		} else {
+			setEditMode(false);
+		}
+	}
+
+	/**
+	 * Updates the open shift display and returns to the manage clients
+	 * page once the client is deleted, or lets the user know it could not be.
+	 * 
+	 * @param deleted
+	 *            True if deleted, or null if deleting failed.
+	 */
+	private void onDeleted(Boolean deleted) {
+		if (deleted == null) {
+			Toast.makeText(this, "Unable to remove client", Toast.LENGTH_SHORT)
+					.show();
+			return;
+		}
+
+		// Shifts open on its time stamps were removed with them
+		ShiftStatus.update(this);
+		navigateUp();
+	}
+
 	/**
 	 * Sends user back to the manage clients page.
 	 */
@@ -529,134 +612,72 @@ public class ViewClientActivity extends Activity {
 	}
 
 	/**
-	 * Generates a pdf of the current client's invoice using the iText library.
+	 * Starts generating the current client's invoice in the background and
+	 * shows its progress. The invoice is opened once it is finished.
+	 * 
+	 * @param group
+	 *            True to total the earnings of each service, false to list each
+	 *            time stamp separately.
 	 */
 	public void createPDF(Boolean group) {
+		// Only build one invoice at a time
+		if (invoiceTask != null) {
+			invoiceTask.cancel(true);
+		}
 
-		// Create the document to build
-		Document doc = new Document();
-
-		try {
-			// Reference to location the document will be stored
-			String path = Environment.getExternalStorageDirectory()
-					.getAbsolutePath() + "/ClientInvoice";
-
-			// Check to make sure the full path exists, and if it doesn't,
-			// try to create the missing directories
-			File dir = new File(path);
-			if (!dir.exists())
-				dir.mkdirs();
-
-			// Name the file within the directory and opens a stream to write to
-			// the document
-			File file = new File(dir, "sample.pdf");
-			FileOutputStream fOut = new FileOutputStream(file);
-
-			// Set up the PDF writer
-			PdfWriter.getInstance(doc, fOut);
-
-			// Open the document
-			doc.open();
-
-			// Format the ClockIt logo to use in the PDF
-			ByteArrayOutputStream stream = new ByteArrayOutputStream();
-			Bitmap bitmap = BitmapFactory.decodeResource(getBaseContext()
-					.getResources(), R.drawable.clockit_logo);
-			bitmap.compress(Bitmap.CompressFormat.JPEG, 100, stream);
-			Image myImg = Image.getInstance(stream.toByteArray());
-			myImg.setAlignment(Image.MIDDLE);
-			myImg.scalePercent(60);
-
-			// Add the ClockIt logo to the PDF
-			doc.add(myImg);
-
-			// Add spacing below the logo
-			doc.add(new Paragraph(" "));
-
-			// Create table to add data to
-			PdfPTable table;
-
-			// Retrieve the time stamps for the client
-			List<TimeStamp> timeStamps = datasource.getClientsTimeStamps(client.getId());
-
-			if (group) {
-				table = new PdfPTable(2);
-				table.setWidthPercentage(90);
-
-				// Add the header cells for each column
-				PdfPCell c1 = new PdfPCell(new Phrase("Service"));
-				c1.setHorizontalAlignment(Element.ALIGN_CENTER);
-				table.addCell(c1);
-				c1 = new PdfPCell(new Phrase("Earned Income"));
-				c1.setHorizontalAlignment(Element.ALIGN_CENTER);
-				table.addCell(c1);
-				table.setHeaderRows(1);
-
-				Map<String, Double> jobs = new HashMap<String, Double>();
-				for (TimeStamp timeStamp : timeStamps) {
-					if (!jobs.containsKey(timeStamp.getService().getName())) {
-						jobs.put(timeStamp.getService().getName(),
-								timeStamp.getEarnedIncome());
-					} else {
-						jobs.put(timeStamp.getService().getName(),
-								jobs.get(timeStamp.getService().getName())
-										+ timeStamp.getEarnedIncome());
+		final ProgressDialog progress = new ProgressDialog(this);
+		progress.setMessage("Creating invoice...");
+		progress.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+		progress.setIndeterminate(true);
+
+		invoiceTask = new InvoiceTask(this, datasource, client.getId(), group,
+				new InvoiceTask.Listener() {
+					@Override
+					public void onProgress(int rowsWritten, int rowCount) {
+						progress.setIndeterminate(false);
+						progress.setMax(rowCount);
+						progress.setProgress(rowsWritten);
 					}
-				}
-				
-				Iterator<String> iterator = jobs.keySet().iterator();
-				while (iterator.hasNext()) {
-					String key = iterator.next().toString();
-					table.addCell(key);
-					table.addCell("$" + jobs.get(key).toString());
-				}
-			} else {
-				table = new PdfPTable(3);
-				table.setWidthPercentage(90);
-
-				// Add the header cells for each column
-				PdfPCell c1 = new PdfPCell(new Phrase("Service"));
-				c1.setHorizontalAlignment(Element.ALIGN_CENTER);
-				table.addCell(c1);
-				c1 = new PdfPCell(new Phrase("Description"));
-				c1.setHorizontalAlignment(Element.ALIGN_CENTER);
-				table.addCell(c1);
-				c1 = new PdfPCell(new Phrase("Earned Income"));
-				c1.setHorizontalAlignment(Element.ALIGN_CENTER);
-				table.addCell(c1);
-				table.setHeaderRows(1);
-
-				// Retrieve the pieces of data to display for each time stamp
-				for (TimeStamp timeStamp : timeStamps) {
-					table.addCell(timeStamp.getService().getName());
-					table.addCell(timeStamp.getDescription());
-					table.addCell("$" + Math.round(timeStamp.getEarnedIncome()*100) / 100.0);
-				}
-			}
 
-			// Add the table to the document
-			doc.add(table);
-
-		} catch (DocumentException de) {
-			Log.e(ClockItDataSource.LOGTAG, "DocumentException:" + de);
-		} catch (IOException e) {
-			Log.e(ClockItDataSource.LOGTAG, "ioException:" + e);
-		} finally {
-			// Close the document to commit to memory
-			doc.close();
-		}
+					@Override
+					public void onFinished(File invoice) {
+						invoiceTask = null;
+						progress.dismiss();
+
+						if (invoice != null) {
+							viewPDF(invoice);
+						} else {
+							Toast.makeText(ViewClientActivity.this,
+									"Unable to create invoice",
+									Toast.LENGTH_SHORT).show();
+						}
+					}
+				});
+
+		// Let the user stop a long invoice
+		progress.setButton(DialogInterface.BUTTON_NEGATIVE, "Cancel",
+				new DialogInterface.OnClickListener() {
+					public void onClick(DialogInterface dialog, int which) {
+						if (invoiceTask != null) {
+							invoiceTask.cancel(true);
+							invoiceTask = null;
+						}
+					}
+				});
+		progress.setCancelable(false);
+		progress.show();
 
+		invoiceTask.execute();
 	}
 
 	/**
 	 * Prompts the user to choose a PDF viewer to view the created PDF, or lets
 	 * the user know they have no viewer.
+	 * 
+	 * @param file
+	 *            The invoice that was just created.
 	 */
-	public void viewPDF() {
-		// Reference to invoice that was just created
-		File file = new File(Environment.getExternalStorageDirectory()
-				.getAbsolutePath() + "/ClientInvoice/sample.pdf");
-
+	public void viewPDF(File file) {
 		if (file.exists()) {
 			// Create an intent to send user to view the PDF
 			Uri path = Uri.fromFile(file);
@@ -18,6 +18,9 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
+import com.example.clockit.app.model.Money;
 import com.example.clockit.app.model.Services;
 
 /**
@@ -33,6 +36,9 @@ public class ViewServiceActivity extends Activity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
 	// Views
 
 	/** Text view associated with the service's name. */
@@ -58,7 +64,10 @@ public class ViewServiceActivity extends Activity {
 
 	// Page Properties
 
-	/** A full object reference to the currently viewed service. */
+	/**
+	 * A full object reference to the currently viewed service, or null until
+	 * it has been loaded.
+	 */
 	Services service;
 
 	/** Indicates if the page is in edit mode. */
@@ -82,6 +91,7 @@ public class ViewServiceActivity extends Activity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
+		repository = new ClockItRepository(datasource);
 
 		// Set references to views
 		tvServiceName = (TextView) findViewById(R.id.tvServiceName);
@@ -95,14 +105,66 @@ public class ViewServiceActivity extends Activity {
 		// Get the intent that started the activity
 		Intent intent = getIntent();
 
-		// Retrieve service id from intent and return corresponding service
-		service = datasource.getServiceById(intent.getIntExtra(
-				ManageServicesActivity.SERVICE_ID, 0));
+		// Retrieve service id from intent and load corresponding service in the
+		// background
+		repository.getServiceById(
+				intent.getIntExtra(ManageServicesActivity.SERVICE_ID, 0),
+				new Callback<Services>() {
+					@Override
+					public void onResult(Services result) {
+						showService(result);
+					}
+				});
+	}
+
+	/**
+	 * Sets up the options menu (currently unchanged).
+	 */
+	@Override
+	public boolean onCreateOptionsMenu(Menu menu) {
+		// Inflate the menu; this adds items to the action bar if it is present.
+		getMenuInflater().inflate(R.menu.view_service, menu);
+		return true;
+	}
+
+	/**
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
+	 */
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
+
+		// Close data source if open
+		if (datasource.isOpen()) {
+			datasource.close();
+		}
+	}
+
+	/**
+	 * Displays the service once it has been loaded and starts watching the
+	 * fields for edits, or returns to the manage services page if it no longer
+	 * exists.
+	 * 
+	 * @param loaded
+	 *            The service, or null if it could not be loaded.
+	 */
+	void showService(Services loaded) {
+		if (loaded == null) {
+			Toast.makeText(this, "Unable to load service", Toast.LENGTH_SHORT)
+					.show();
+			navigateUp();
+			return;
+		}
+		service = loaded;
 
 		// Set text fields to service's associated values
 		etServiceName.setText(service.getName());
 		etServiceDescription.setText(service.getDescription());
-		etServiceRate.setText(String.valueOf(service.getRate()));
+		etServiceRate.setText(Money.format(service.getRateCents()));
 
 		// Create text watcher to determine if text has been edited and if input
 		// exists and is valid
@@ -117,7 +179,7 @@ public class ViewServiceActivity extends Activity {
 						|| !etServiceDescription.getText().toString()
 								.equals(service.getDescription())
 						|| !etServiceRate.getText().toString()
-								.equals(String.valueOf(service.getRate()));
+								.equals(Money.format(service.getRateCents()));
 
 				valid = true;
 
@@ -174,45 +236,6 @@ public class ViewServiceActivity extends Activity {
 		etServiceName.addTextChangedListener(tw);
 		etServiceDescription.addTextChangedListener(tw);
 		etServiceRate.addTextChangedListener(tw);
-
-	}
-
-	/**
-	 * Sets up the options menu (currently unchanged).
-	 */
-	@Override
-	public boolean onCreateOptionsMenu(Menu menu) {
-		// Inflate the menu; this adds items to the action bar if it is present.
-		getMenuInflater().inflate(R.menu.view_service, menu);
-		return true;
-	}
-
-	/**
-	 * Closes the data source when the activity is paused (or deleted) to free
-	 * resources.
-	 */
-	@Override
-	public void onPause() {
-		super.onPause();
-
-		// Close data source if open
-		if (datasource.isOpen()) {
-			datasource.close();
-		}
-	}
-
-	/**
-	 * Opens the data source when activity is resumed (or started) to allow
-	 * access.
-	 */
-	@Override
-	public void onResume() {
-		super.onResume();
-
-		// Open data source if closed
-		if (!datasource.isOpen()) {
-			datasource.open();
-		}
 	}
 
 	/**
@@ -258,17 +281,23 @@ public class ViewServiceActivity extends Activity {
 								public void onClick(DialogInterface dialog,
 										int id) {
 									if (valid) {
-										// Update the service
-										datasource.updateService(etServiceName
+										// Update the service and return to
+										// ManageServices once it is saved
+										repository.updateService(etServiceName
 												.getText().toString(),
 												etServiceDescription.getText()
-														.toString(), Double
-														.valueOf(etServiceRate
+														.toString(), Money
+														.parse(etServiceRate
 																.getText()
 																.toString()),
-												service.getId());
-										// Return to ManageServices
-										navigateUp();
+												service.getId(),
+												new Callback<Services>() {
+													@Override
+													public void onResult(
+															Services result) {
+														onSaved(result, true);
+													}
+												});
 									} else {
 										// Give focus to invalid field
 										if (etServiceName.getText().toString()
@@ -312,6 +341,11 @@ public class ViewServiceActivity extends Activity {
 	 *            The view that was clicked to call this method.
 	 */
 	public void editService(View view) {
+		// Nothing can be edited until the service has loaded
+		if (service == null) {
+			return;
+		}
+
 		if (editable) {
 			// If edit mode is on we need to save changes if any were made and
 			// turn edit mode off
@@ -353,17 +387,22 @@ public class ViewServiceActivity extends Activity {
 									public void onClick(DialogInterface dialog,
 											int id) {
 										// Update service and turn edit mode off
-										service = datasource.updateService(
-												etServiceName.getText()
-														.toString(),
+										// once it is saved
+										repository.updateService(etServiceName
+												.getText().toString(),
 												etServiceDescription.getText()
-														.toString(), Double
-														.valueOf(etServiceRate
+														.toString(), Money
+														.parse(etServiceRate
 																.getText()
 																.toString()),
-												service.getId());
-										// Turn off edit mode
-										setEditMode(false);
+												service.getId(),
+												new Callback<Services>() {
+													@Override
+													public void onResult(
+															Services result) {
+														onSaved(result, false);
+													}
+												});
 									}
 								})
 						.setPositiveButton("Cancel",
@@ -435,6 +474,11 @@ public class ViewServiceActivity extends Activity {
 	 *            The view that was clicked to call this method.
 	 */
 	public void displayConfirmationPopup(View view) {
+		// Nothing can be removed until the service has loaded
+		if (service == null) {
+			return;
+		}
+
 		new AlertDialog.Builder(this)
 				.setTitle("Remove Service")
 				.setMessage(
@@ -444,9 +488,14 @@ public class ViewServiceActivity extends Activity {
 						new DialogInterface.OnClickListener() {
 							public void onClick(DialogInterface dialog, int id) {
 								// Delete the current service and return to
-								// ManageServicesActivity
-								datasource.deleteService(service.getId());
-								navigateUp();
+								// ManageServicesActivity once it is gone
+								repository.deleteService(service.getId(),
+										new Callback<Boolean>() {
+											@Override
+											public void onResult(Boolean deleted) {
+												onDeleted(deleted);
+											}
+										});
 							}
 						})
 				.setPositiveButton("Cancel",
@@ -485,6 +534,49 @@ public class ViewServiceActivity extends Activity {
 
 	// Private Methods
 
+	/**
+	 * Shows the saved service and turns edit mode off or returns to the manage
+	 * services page, or lets the user know it could not be saved.
+	 * 
+	 * @param saved
+	 *            The updated service, or null if saving it failed.
+	 * @param leave
+	 *            True to return to the manage services page once saved.
+	 */
+	private void onSaved(Services saved, boolean leave) {
+		if (saved == null) {
+			Toast.makeText(this, "Unable to update service", Toast.LENGTH_SHORT)
+					.show();
+			return;
+		}
+		service = saved;
+
+		if (leave) {
+			navigateUp();
+		} else {
+			setEditMode(false);
+		}
+	}
+
+	/**
+	 * Updates the open shift display and returns to the manage services
+	 * page once the service is deleted, or lets the user know it could not be.
+	 * 
+	 * @param deleted
+	 *            True if deleted, or null if deleting failed.
+	 */
+	private void onDeleted(Boolean deleted) {
+		if (deleted == null) {
+			Toast.makeText(this, "Unable to remove service", Toast.LENGTH_SHORT)
+					.show();
+			return;
+		}
+
+		// Shifts open on its time stamps were removed with them
+		ShiftStatus.update(this);
+		navigateUp();
+	}
+
 	/**
 	 * Sends user back to the manage services page.
 	 */
@@ -552,7 +644,7 @@ public class ViewServiceActivity extends Activity {
 			// Set text of fields to service's current name, description, and rate
 			etServiceName.setText(service.getName());
 			etServiceDescription.setText(service.getDescription());
-			etServiceRate.setText(String.valueOf(service.getRate()));
+			etServiceRate.setText(Money.format(service.getRateCents()));
 		}
 	}
 }
\ No newline at end of file
@@ -13,8 +13,12 @@ import android.view.Menu;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.Toast;
 
 import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
+import com.example.clockit.app.model.Money;
 import com.example.clockit.app.model.TimeStamp;
 
 public class ViewTimeStampActivity extends Activity {
@@ -22,6 +26,9 @@ public class ViewTimeStampActivity extends Activity {
 	/** Data source that interacts with database using CRUD operations. */
 	ClockItDataSource datasource;
 
+	/** Runs data source operations off the main thread. */
+	ClockItRepository repository;
+
 	// Views
 
 	EditText etTimeStampEarnedIncome;
@@ -31,6 +38,7 @@ public class ViewTimeStampActivity extends Activity {
 
 	// Page Properties
 
+	/** The time stamp being viewed, or null until it has been loaded. */
 	TimeStamp TimeStamp;
 
 	/** Indicates if the page is in edit mode. */
@@ -46,6 +54,7 @@ public class ViewTimeStampActivity extends Activity {
 
 		// Set data source
 		datasource = new ClockItDataSource(this);
+		repository = new ClockItRepository(datasource);
 
 		// Set references to views
 		etTimeStampEarnedIncome = (EditText) findViewById(R.id.etTimeStampEarnedIncome);
@@ -56,12 +65,61 @@ public class ViewTimeStampActivity extends Activity {
 		// Get the intent that started the activity
 		Intent intent = getIntent();
 
-		// Retrieve service id from intent and return corresponding service
-		TimeStamp = datasource.getTimeStampById(intent.getIntExtra(
-				ManageTimeStampsActivity.TIME_STAMP_ID, 0));
+		// Retrieve time stamp id from intent and load corresponding time stamp
+		// in the background
+		repository.getTimeStampById(
+				intent.getIntExtra(ManageTimeStampsActivity.TIME_STAMP_ID, 0),
+				new Callback<TimeStamp>() {
+					@Override
+					public void onResult(TimeStamp result) {
+						showTimeStamp(result);
+					}
+				});
+	}
+
+	@Override
+	public boolean onCreateOptionsMenu(Menu menu) {
+		// Inflate the menu; this adds items to the action bar if it is present.
+		getMenuInflater().inflate(R.menu.view_time_stamp, menu);
+		return true;
+	}
+
+	/**
+	 * Closes the data source when the activity is destroyed to release its
+	 * reference to the shared database connection.
+	 */
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+
+		// Stop delivering results to this activity
+		repository.cancel();
+
+		// Close data source if open
+		if (datasource.isOpen()) {
+			datasource.close();
+		}
+	}
+
+	/**
+	 * Displays the time stamp once it has been loaded and starts watching the
+	 * description for edits, or returns to the manage time stamps page if it
+	 * no longer exists.
+	 * 
+	 * @param loaded
+	 *            The time stamp, or null if it could not be loaded.
+	 */
+	void showTimeStamp(TimeStamp loaded) {
+		if (loaded == null) {
+			Toast.makeText(this, "Unable to load time stamp",
+					Toast.LENGTH_SHORT).show();
+			navigateUp();
+			return;
+		}
+		TimeStamp = loaded;
 
 		// Set text fields to service's associated values
-		etTimeStampEarnedIncome.setText("$" + TimeStamp.getEarnedIncome());
+		etTimeStampEarnedIncome.setText("$" + Money.format(TimeStamp.getEarnedCents()));
 		etTimeStampDescription.setText(TimeStamp.getDescription());
 
 		// Create text watcher to determine if text has been edited and if input
@@ -92,42 +150,6 @@ public class ViewTimeStampActivity extends Activity {
 
 		// Attach text watcher to each field
 		etTimeStampDescription.addTextChangedListener(tw);
-
-	}
-
-	@Override
-	public boolean onCreateOptionsMenu(Menu menu) {
-		// Inflate the menu; this adds items to the action bar if it is present.
-		getMenuInflater().inflate(R.menu.view_time_stamp, menu);
-		return true;
-	}
-
-	/**
-	 * Closes the data source when the activity is paused (or deleted) to free
-	 * resources.
-	 */
-	@Override
-	public void onPause() {
-		super.onPause();
-
-		// Close data source if open
-		if (datasource.isOpen()) {
-			datasource.close();
-		}
-	}
-
-	/**
-	 * Opens the data source when activity is resumed (or started) to allow
-	 * access.
-	 */
-	@Override
-	public void onResume() {
-		super.onResume();
-
-		// Open data source if closed
-		if (!datasource.isOpen()) {
-			datasource.open();
-		}
 	}
 
 	/**
@@ -155,8 +177,12 @@ public class ViewTimeStampActivity extends Activity {
 							new DialogInterface.OnClickListener() {
 								public void onClick(DialogInterface dialog,
 										int id) {
-									TimeStamp = datasource.updateTimeStamp(etTimeStampDescription.getText().toString(), TimeStamp.getId());
-									navigateUp();
+									repository.updateTimeStamp(etTimeStampDescription.getText().toString(), TimeStamp.getId(), new Callback<TimeStamp>() {
+										@Override
+										public void onResult(TimeStamp result) {
+											onSaved(result, true);
+										}
+									});
 								}
 							})
 					.setNeutralButton(neutralButton,
@@ -181,6 +207,11 @@ public class ViewTimeStampActivity extends Activity {
 	}
 
 	public void editTimeStamp(View view) {
+		// Nothing can be edited until the time stamp has loaded
+		if (TimeStamp == null) {
+			return;
+		}
+
 		if (editable) {
 			// If edit mode is on we need to save changes if any were made and
 			// turn edit mode off
@@ -194,9 +225,13 @@ public class ViewTimeStampActivity extends Activity {
 								new DialogInterface.OnClickListener() {
 									public void onClick(DialogInterface dialog,
 											int id) {
-										TimeStamp = datasource.updateTimeStamp(etTimeStampDescription.getText().toString(), TimeStamp.getId());
-										// Turn off edit mode
-										setEditMode(false);
+										// Turn off edit mode once saved
+										repository.updateTimeStamp(etTimeStampDescription.getText().toString(), TimeStamp.getId(), new Callback<TimeStamp>() {
+											@Override
+											public void onResult(TimeStamp result) {
+												onSaved(result, false);
+											}
+										});
 									}
 								})
 						.setPositiveButton("Cancel",
@@ -268,6 +303,11 @@ public class ViewTimeStampActivity extends Activity {
 	 *            The view that was clicked to call this method.
 	 */
 	public void displayConfirmationPopup(View view) {
+		// Nothing can be removed until the time stamp has loaded
+		if (TimeStamp == null) {
+			return;
+		}
+
 		new AlertDialog.Builder(this)
 				.setTitle("Remove Time Stamp")
 				.setMessage(
@@ -276,8 +316,13 @@ public class ViewTimeStampActivity extends Activity {
 				.setNegativeButton("Remove",
 						new DialogInterface.OnClickListener() {
 							public void onClick(DialogInterface dialog, int id) {
-								datasource.deleteTimeStamp(TimeStamp.getId());
-								navigateUp();
+								repository.deleteTimeStamp(TimeStamp.getId(),
+										new Callback<Boolean>() {
+											@Override
+											public void onResult(Boolean deleted) {
+												onDeleted(deleted);
+											}
+										});
 							}
 						})
 				.setPositiveButton("Cancel",
@@ -306,6 +351,48 @@ public class ViewTimeStampActivity extends Activity {
 
 	// Private Methods
 
+	/**
+	 * Shows the saved time stamp and turns edit mode off or returns to the
+	 * manage time stamps page, or lets the user know it could not be saved.
+	 * 
+	 * @param saved
+	 *            The updated time stamp, or null if saving it failed.
+	 * @param leave
+	 *            True to return to the manage time stamps page once saved.
+	 */
+	private void onSaved(TimeStamp saved, boolean leave) {
+		if (saved == null) {
+			Toast.makeText(this, "Unable to update time stamp",
+					Toast.LENGTH_SHORT).show();
+			return;
+		}
+		TimeStamp = saved;
+
+		if (leave) {
+			navigateUp();
+		} else {
+			setEditMode(false);
+		}
+	}
+
+	/**
+	 * Updates the open shift display and returns to the manage time stamps
+	 * page once the time stamp is deleted, or lets the user know it could not
+	 * be.
+	 * 
+	 * @param deleted
+	 *            True if deleted, or null if deleting failed.
+	 */
+	private void onDeleted(Boolean deleted) {
+		if (deleted == null) {
+			Toast.makeText(this, "Unable to remove time stamp",
+					Toast.LENGTH_SHORT).show();
+			return;
+		}
+		ShiftStatus.update(this);
+		navigateUp();
+	}
+
 	/**
 	 * Sends user back to the manage services page.
 	 */
@@ -365,7 +452,7 @@ public class ViewTimeStampActivity extends Activity {
 
 			// Set text of fields to service's current name, description, and
 			// rate
-			etTimeStampEarnedIncome.setText("$" + TimeStamp.getEarnedIncome());
+			etTimeStampEarnedIncome.setText("$" + Money.format(TimeStamp.getEarnedCents()));
 			etTimeStampDescription.setText(TimeStamp.getDescription());
 		}
 	}
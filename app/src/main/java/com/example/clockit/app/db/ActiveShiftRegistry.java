@@ -0,0 +1,209 @@
+package com.example.clockit.app.db;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.example.clockit.app.model.Segments;
+
+/**
+ * In-memory registry of the shifts the user is clocked in to, shared by every
+ * data source in the process. The shifts are held as an immutable array,
+ * ordered by clock in and then time stamp id like the open time stamps in the
+ * database. The array is replaced with compare-and-set, so the UI, the widget
+ * and background work can clock in and out at the same time without locking
+ * and readers always see a consistent snapshot.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ActiveShiftRegistry {
+
+	/** Snapshot held before the registry has been loaded. */
+	private static final OpenShift[] UNLOADED = new OpenShift[0];
+
+	/** Snapshot of a loaded registry with no open shifts. */
+	private static final OpenShift[] NONE = new OpenShift[0];
+
+	/** The current snapshot of open shifts. */
+	private final AtomicReference<OpenShift[]> shifts = new AtomicReference<OpenShift[]>(
+			UNLOADED);
+
+	/**
+	 * Lets the caller know if the registry has been loaded.
+	 *
+	 * @return True once load has been called.
+	 */
+	boolean isLoaded() {
+		return shifts.get() != UNLOADED;
+	}
+
+	/**
+	 * Sets the open shifts the first time the registry is used. Does nothing
+	 * if it has already been loaded.
+	 *
+	 * @param loaded
+	 *            The persisted open shifts, oldest clock in first.
+	 */
+	void load(OpenShift[] loaded) {
+		shifts.compareAndSet(UNLOADED, loaded.length == 0 ? NONE : loaded);
+	}
+
+	/**
+	 * Retrieves the open shifts. The array must not be modified.
+	 *
+	 * @return The open shifts, oldest clock in first.
+	 */
+	public OpenShift[] getShifts() {
+		return shifts.get();
+	}
+
+	/**
+	 * Finds an open shift by its time stamp.
+	 *
+	 * @param timeStampId
+	 *            The id of the time stamp.
+	 * @return The shift or null if the time stamp is not open.
+	 */
+	public OpenShift get(int timeStampId) {
+		OpenShift[] current = shifts.get();
+		int index = indexOf(current, timeStampId);
+		return index < 0 ? null : current[index];
+	}
+
+	/**
+	 * Adds an open shift, replacing any shift with the same time stamp.
+	 *
+	 * @param shift
+	 *            The shift that was clocked in to.
+	 */
+	void put(OpenShift shift) {
+		OpenShift[] current;
+		OpenShift[] updated;
+		do {
+			current = shifts.get();
+			updated = without(current, shift.getTimeStampId());
+
+			// Insert in clock in order, then time stamp order
+			int position = updated.length;
+			while (position > 0 && isAfter(updated[position - 1], shift)) {
+				position--;
+			}
+			OpenShift[] inserted = new OpenShift[updated.length + 1];
+			System.arraycopy(updated, 0, inserted, 0, position);
+			inserted[position] = shift;
+			System.arraycopy(updated, position, inserted, position + 1,
+					updated.length - position);
+			updated = inserted;
+		} while (!shifts.compareAndSet(current, updated));
+	}
+
+	/**
+	 * Removes the open shift of a time stamp.
+	 *
+	 * @param timeStampId
+	 *            The id of the time stamp.
+	 * @return True if the shift was open and false otherwise.
+	 */
+	boolean remove(int timeStampId) {
+		OpenShift[] current;
+		OpenShift[] updated;
+		do {
+			current = shifts.get();
+			updated = without(current, timeStampId);
+			if (updated == current) {
+				return false;
+			}
+		} while (!shifts.compareAndSet(current, updated));
+		return true;
+	}
+
+	/**
+	 * Records new pause and resume times for an open shift. Times are only
+	 * ever appended, so the update is skipped if the shift already holds as
+	 * many times; racing pauses and resumes then settle on the longest.
+	 *
+	 * @param timeStampId
+	 *            The id of the time stamp.
+	 * @param segments
+	 *            The packed pause and resume times read from the database.
+	 * @return True if the shift was updated and false otherwise.
+	 */
+	boolean updateSegments(int timeStampId, byte[] segments) {
+		int count = Segments.getTimeCount(segments);
+		OpenShift[] current;
+		OpenShift[] updated;
+		do {
+			current = shifts.get();
+			int index = indexOf(current, timeStampId);
+			if (index < 0
+					|| Segments.getTimeCount(current[index]
+							.getPackedSegments()) >= count) {
+				return false;
+			}
+			updated = current.clone();
+			updated[index] = current[index].withSegments(segments);
+		} while (!shifts.compareAndSet(current, updated));
+		return true;
+	}
+
+	/**
+	 * Replaces every open shift, unless the shifts have changed since the
+	 * snapshot was taken.
+	 *
+	 * @param snapshot
+	 *            The shifts the replacement was worked out from.
+	 * @param replacement
+	 *            The open shifts, oldest clock in first.
+	 * @return True if the shifts were replaced and false otherwise.
+	 */
+	boolean replaceAll(OpenShift[] snapshot, OpenShift[] replacement) {
+		return shifts.compareAndSet(snapshot, replacement.length == 0 ? NONE
+				: replacement);
+	}
+
+	// Private Methods
+
+	/**
+	 * Finds the position of a time stamp's shift in a snapshot.
+	 *
+	 * @return The position or -1 if it is not there.
+	 */
+	private static int indexOf(OpenShift[] snapshot, int timeStampId) {
+		for (int i = 0; i < snapshot.length; i++) {
+			if (snapshot[i].getTimeStampId() == timeStampId) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Lets the caller know if a shift is ordered after another.
+	 */
+	private static boolean isAfter(OpenShift shift, OpenShift other) {
+		if (shift.getClockIn() != other.getClockIn()) {
+			return shift.getClockIn() > other.getClockIn();
+		}
+		return shift.getTimeStampId() > other.getTimeStampId();
+	}
+
+	/**
+	 * Copies a snapshot without a time stamp's shift.
+	 *
+	 * @return The copy, or the same snapshot if the shift is not there.
+	 */
+	private static OpenShift[] without(OpenShift[] snapshot, int timeStampId) {
+		int index = indexOf(snapshot, timeStampId);
+		if (index < 0) {
+			return snapshot;
+		}
+		if (snapshot.length == 1) {
+			return NONE;
+		}
+		OpenShift[] updated = new OpenShift[snapshot.length - 1];
+		System.arraycopy(snapshot, 0, updated, 0, index);
+		System.arraycopy(snapshot, index + 1, updated, index,
+				updated.length - index);
+		return updated;
+	}
+
+}
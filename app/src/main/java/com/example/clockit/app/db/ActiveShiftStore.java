@@ -0,0 +1,252 @@
+package com.example.clockit.app.db;
+
+import java.util.List;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.clockit.app.ClockItApplication;
+import com.example.clockit.app.model.Segments;
+import com.example.clockit.app.model.TimeStamp;
+
+/**
+ * Small persisted record of the shifts the user is currently clocked in to. It
+ * allows the clocked in state, clock in times and pay rates to be read without
+ * querying the time stamps table. The shifts are held in the application's
+ * active shift registry, loaded from preferences the first time it is used and
+ * written back whenever the user clocks in or out. The record can be
+ * reconciled against the database.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ActiveShiftStore {
+
+	// Name of the preferences file and its keys. The per shift keys are
+	// followed by the shift's time stamp id.
+	private static final String PREFS_NAME = "active_shift";
+	private static final String KEY_TIME_STAMP_IDS = "time_stamp_ids";
+	private static final String KEY_CLOCK_IN = "clock_in_";
+	private static final String KEY_CLIENT_NAME = "client_name_";
+	private static final String KEY_SERVICE_NAME = "service_name_";
+	private static final String KEY_RATE_CENTS = "rate_cents_";
+	private static final String KEY_SEGMENTS = "segments_";
+
+	// Keys of the single shift record written by earlier versions
+	private static final String LEGACY_TIME_STAMP_ID = "time_stamp_id";
+	private static final String LEGACY_CLOCK_IN = "clock_in";
+	private static final String LEGACY_CLIENT_NAME = "client_name";
+	private static final String LEGACY_SERVICE_NAME = "service_name";
+	private static final String LEGACY_RATE_CENTS = "rate_cents";
+
+	/** Preferences holding the record. */
+	private final SharedPreferences prefs;
+
+	/** The application's registry of open shifts. */
+	private final ActiveShiftRegistry registry;
+
+	/**
+	 * Constructor that opens the preferences file holding the record and loads
+	 * it into the registry if this is the first use in the process.
+	 *
+	 * @param context
+	 *            Context in which the class is being instantiated.
+	 */
+	public ActiveShiftStore(Context context) {
+		prefs = context.getApplicationContext().getSharedPreferences(
+				PREFS_NAME, Context.MODE_PRIVATE);
+		registry = ((ClockItApplication) context.getApplicationContext())
+				.getActiveShifts();
+
+		if (!registry.isLoaded()) {
+			registry.load(read());
+		}
+	}
+
+	/**
+	 * Lets the caller know if the user is clocked in.
+	 *
+	 * @return True if any shift is recorded as open and false otherwise.
+	 */
+	public boolean isClockedIn() {
+		return registry.getShifts().length > 0;
+	}
+
+	/**
+	 * Retrieves the open shifts. The array must not be modified.
+	 *
+	 * @return The open shifts, oldest clock in first.
+	 */
+	public OpenShift[] getShifts() {
+		return registry.getShifts();
+	}
+
+	/**
+	 * Retrieves the open shift of a time stamp.
+	 *
+	 * @param timeStampId
+	 *            The id of the time stamp.
+	 * @return The shift or null if the time stamp is not open.
+	 */
+	public OpenShift getShift(int timeStampId) {
+		return registry.get(timeStampId);
+	}
+
+	/**
+	 * Removes the open shift of a time stamp. Used when the user clocks out.
+	 *
+	 * @param timeStampId
+	 *            The id of the time stamp.
+	 */
+	public void remove(int timeStampId) {
+		if (registry.remove(timeStampId)) {
+			write();
+		}
+	}
+
+	/**
+	 * Records new pause and resume times for an open shift. Used when the user
+	 * pauses or resumes.
+	 *
+	 * @param timeStampId
+	 *            The id of the time stamp.
+	 * @param segments
+	 *            The packed pause and resume times read from the database.
+	 */
+	public void updateSegments(int timeStampId, byte[] segments) {
+		if (registry.updateSegments(timeStampId, segments)) {
+			write();
+		}
+	}
+
+	/**
+	 * Lets the caller know if a snapshot of the record matches the open time
+	 * stamps from the database.
+	 *
+	 * @param shifts
+	 *            The snapshot of the record.
+	 * @param open
+	 *            The open time stamps from the database, oldest clock in
+	 *            first.
+	 * @return True if they match and false otherwise.
+	 */
+	public static boolean matches(OpenShift[] shifts, List<TimeStamp> open) {
+		if (shifts.length != open.size()) {
+			return false;
+		}
+		for (int i = 0; i < shifts.length; i++) {
+			if (!shifts[i].matches(open.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the registry's current shifts to preferences in a single commit.
+	 * Also used by the clock journal once it has applied an event.
+	 * Writers are serialized and each writes the latest snapshot, so the last
+	 * write always holds the latest shifts.
+	 */
+	void write() {
+		synchronized (registry) {
+			OpenShift[] shifts = registry.getShifts();
+			SharedPreferences.Editor editor = prefs.edit().clear();
+
+			StringBuilder ids = new StringBuilder();
+			for (OpenShift shift : shifts) {
+				String id = String.valueOf(shift.getTimeStampId());
+				if (ids.length() > 0) {
+					ids.append(',');
+				}
+				ids.append(id);
+
+				editor.putLong(KEY_CLOCK_IN + id, shift.getClockIn())
+						.putString(KEY_CLIENT_NAME + id, shift.getClientName())
+						.putString(KEY_SERVICE_NAME + id, shift.getServiceName())
+						.putLong(KEY_RATE_CENTS + id, shift.getRateCents());
+
+				String segments = writeSegments(shift.getPackedSegments());
+				if (segments != null) {
+					editor.putString(KEY_SEGMENTS + id, segments);
+				}
+			}
+
+			editor.putString(KEY_TIME_STAMP_IDS, ids.toString()).commit();
+		}
+	}
+
+	// Private Methods
+
+	/**
+	 * Reads the open shifts from preferences, converting the single shift
+	 * record of earlier versions.
+	 */
+	private OpenShift[] read() {
+		if (!prefs.contains(KEY_TIME_STAMP_IDS)) {
+			int timeStampId = prefs.getInt(LEGACY_TIME_STAMP_ID, -1);
+			if (timeStampId == -1) {
+				return new OpenShift[0];
+			}
+			return new OpenShift[] { new OpenShift(timeStampId,
+					prefs.getLong(LEGACY_CLOCK_IN, 0), prefs.getString(
+							LEGACY_CLIENT_NAME, ""), prefs.getString(
+							LEGACY_SERVICE_NAME, ""), prefs.getLong(
+							LEGACY_RATE_CENTS, 0), null) };
+		}
+
+		String ids = prefs.getString(KEY_TIME_STAMP_IDS, "");
+		if (ids.length() == 0) {
+			return new OpenShift[0];
+		}
+
+		String[] split = ids.split(",");
+		OpenShift[] shifts = new OpenShift[split.length];
+		for (int i = 0; i < split.length; i++) {
+			shifts[i] = new OpenShift(Integer.parseInt(split[i]),
+					prefs.getLong(KEY_CLOCK_IN + split[i], 0),
+					prefs.getString(KEY_CLIENT_NAME + split[i], ""),
+					prefs.getString(KEY_SERVICE_NAME + split[i], ""),
+					prefs.getLong(KEY_RATE_CENTS + split[i], 0),
+					readSegments(prefs.getString(KEY_SEGMENTS + split[i], null)));
+		}
+		return shifts;
+	}
+
+	/**
+	 * Packs pause and resume times stored as a comma separated list.
+	 *
+	 * @return The packed times, or null if there are none.
+	 */
+	private static byte[] readSegments(String times) {
+		if (times == null || times.length() == 0) {
+			return null;
+		}
+		byte[] packed = null;
+		for (String time : times.split(",")) {
+			packed = Segments.append(packed, Long.parseLong(time));
+		}
+		return packed;
+	}
+
+	/**
+	 * Lists packed pause and resume times separated by commas.
+	 *
+	 * @return The list of times, or null if there are none.
+	 */
+	private static String writeSegments(byte[] packed) {
+		int count = Segments.getTimeCount(packed);
+		if (count == 0) {
+			return null;
+		}
+		StringBuilder times = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				times.append(',');
+			}
+			times.append(Segments.getTime(packed, i));
+		}
+		return times.toString();
+	}
+
+}
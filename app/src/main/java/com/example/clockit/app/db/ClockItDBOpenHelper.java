@@ -1,5 +1,7 @@
 package com.example.clockit.app.db;
 
+import java.util.Locale;
+
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
@@ -16,9 +18,9 @@ public class ClockItDBOpenHelper extends SQLiteOpenHelper {
 	// Tag used for logcat
 	private static final String LOGTAG = "CLOCKIT";
 
-	// Databases name and original version
+	// Databases name and current version
 	private static final String DATABASE_NAME = "clock_juvo.db";
-	private static final int DATABASE_VERSION = 1;
+	private static final int DATABASE_VERSION = 9;
 
 	// Client table and associated columns
 	public static final String TABLE_CLIENTS = "clients";
@@ -37,7 +39,11 @@ public class ClockItDBOpenHelper extends SQLiteOpenHelper {
 	public static final String SERVICES_ID = "_id";
 	public static final String SERVICES_NAME = "name";
 	public static final String SERVICES_DESCRIPTION = "description";
-	public static final String SERVICES_RATE = "rate";
+	public static final String SERVICES_RATE_CENTS = "rate_cents";
+
+	// Version 1 rate column in dollars, replaced by the rate in cents in
+	// version 4
+	private static final String SERVICES_RATE = "rate";
 
 	// Statement to create service table
 	private static final String TABLE_SERVICES_CREATE = "CREATE TABLE "
@@ -46,6 +52,14 @@ public class ClockItDBOpenHelper extends SQLiteOpenHelper {
 			+ " TEXT NOT NULL, " + SERVICES_DESCRIPTION + " TEXT NOT NULL, "
 			+ SERVICES_RATE + " REAL NOT NULL" + ")";
 
+	// Statement to create the version 4 service table holding the rate in
+	// cents per hour under a temporary name
+	private static final String TABLE_SERVICES_V4_CREATE = "CREATE TABLE "
+			+ TABLE_SERVICES + "_v4 (" + SERVICES_ID
+			+ " INTEGER PRIMARY KEY AUTOINCREMENT, " + SERVICES_NAME
+			+ " TEXT NOT NULL, " + SERVICES_DESCRIPTION + " TEXT NOT NULL, "
+			+ SERVICES_RATE_CENTS + " INTEGER NOT NULL" + ")";
+
 	// Client to service table and associated columns
 	public static final String TABLE_CLIENTS_TO_SERVICES = "clients_to_services";
 	public static final String CLIENTS_TO_SERVICES_ID = "_id";
@@ -81,6 +95,13 @@ public class ClockItDBOpenHelper extends SQLiteOpenHelper {
 	public static final String TIME_STAMPS_CLOCK_OUT = "clock_out";
 	public static final String TIME_STAMPS_DESCRIPTION = "description";
 
+	// Pause and resume columns of the time stamp table (added in version 7).
+	// Segments holds the packed pause and resume times read by the Segments
+	// helper, and break millis the total time on breaks once clocked out so
+	// totals can be summed without unpacking them.
+	public static final String TIME_STAMPS_SEGMENTS = "segments";
+	public static final String TIME_STAMPS_BREAK_MILLIS = "break_millis";
+
 	// Statement to create time stamp table
 	private static final String TABLE_TIME_STAMPS_CREATE = "CREATE TABLE "
 			+ TABLE_TIME_STAMPS + " (" + TIME_STAMPS_ID
@@ -134,6 +155,144 @@ public class ClockItDBOpenHelper extends SQLiteOpenHelper {
 			+ TABLE_CONTACTS
 			+ "(_id) ON DELETE CASCADE" + ")";
 
+	// Daily totals table and associated columns (added in version 5). Each row
+	// holds the finished time stamps of one client to service that were
+	// clocked in on one local day, which is stored as yyyymmdd.
+	public static final String TABLE_DAILY_TOTALS = "daily_totals";
+	public static final String DAILY_TOTALS_DAY = "day";
+	public static final String DAILY_TOTALS_CLIENT_TO_SERVICE_ID = "client_to_service_id";
+	public static final String DAILY_TOTALS_MILLIS = "total_millis";
+	public static final String DAILY_TOTALS_CENTS = "total_cents";
+	public static final String DAILY_TOTALS_STAMPS = "stamp_count";
+
+	// Statement to create daily totals table
+	private static final String TABLE_DAILY_TOTALS_CREATE = "CREATE TABLE "
+			+ TABLE_DAILY_TOTALS + " (" + DAILY_TOTALS_DAY
+			+ " INTEGER NOT NULL, " + DAILY_TOTALS_CLIENT_TO_SERVICE_ID
+			+ " INTEGER NOT NULL, " + DAILY_TOTALS_MILLIS
+			+ " INTEGER NOT NULL, " + DAILY_TOTALS_CENTS + " INTEGER NOT NULL, "
+			+ DAILY_TOTALS_STAMPS + " INTEGER NOT NULL, " + "PRIMARY KEY("
+			+ DAILY_TOTALS_DAY + ", " + DAILY_TOTALS_CLIENT_TO_SERVICE_ID
+			+ "), " + "FOREIGN KEY(" + DAILY_TOTALS_CLIENT_TO_SERVICE_ID
+			+ ") REFERENCES " + TABLE_CLIENTS_TO_SERVICES
+			+ "(_id) ON DELETE CASCADE" + ")";
+
+	// Statement that totals the time worked in finished time stamps by local
+	// clock in day and client to service into the daily totals table.
+	// Earnings are rounded per time stamp the same way as Money.earned.
+	private static final String DAILY_TOTALS_FILL = "INSERT INTO "
+			+ TABLE_DAILY_TOTALS + " (" + DAILY_TOTALS_DAY + ", "
+			+ DAILY_TOTALS_CLIENT_TO_SERVICE_ID + ", " + DAILY_TOTALS_MILLIS
+			+ ", " + DAILY_TOTALS_CENTS + ", " + DAILY_TOTALS_STAMPS
+			+ ") SELECT " + localDay("ts." + TIME_STAMPS_CLOCK_IN) + ", ts."
+			+ TIME_STAMPS_CLIENT_TO_SERVICE_ID + ", SUM(ts."
+			+ TIME_STAMPS_CLOCK_OUT + " - ts." + TIME_STAMPS_CLOCK_IN + " - ts."
+			+ TIME_STAMPS_BREAK_MILLIS + "), SUM(((ts." + TIME_STAMPS_CLOCK_OUT
+			+ " - ts." + TIME_STAMPS_CLOCK_IN + " - ts."
+			+ TIME_STAMPS_BREAK_MILLIS + ") * s." + SERVICES_RATE_CENTS
+			+ " + 1800000) / 3600000), COUNT(*) FROM " + TABLE_TIME_STAMPS
+			+ " ts INNER JOIN " + TABLE_CLIENTS_TO_SERVICES + " cs ON ts."
+			+ TIME_STAMPS_CLIENT_TO_SERVICE_ID + " = cs." + CLIENTS_TO_SERVICES_ID
+			+ " INNER JOIN " + TABLE_SERVICES + " s ON cs."
+			+ CLIENTS_TO_SERVICES_SERVICE_ID + " = s." + SERVICES_ID
+			+ " WHERE ts." + TIME_STAMPS_CLOCK_OUT + " != -1";
+
+	// Clock journal state table and associated columns (added in version 8).
+	// Its single row holds the sequence of the last clock event applied from
+	// the clock journal, updated in the same transaction as the event.
+	public static final String TABLE_CLOCK_JOURNAL = "clock_journal";
+	public static final String CLOCK_JOURNAL_ID = "_id";
+	public static final String CLOCK_JOURNAL_APPLIED_SEQUENCE = "applied_sequence";
+
+	// Statement to create clock journal state table
+	private static final String TABLE_CLOCK_JOURNAL_CREATE = "CREATE TABLE "
+			+ TABLE_CLOCK_JOURNAL + " (" + CLOCK_JOURNAL_ID
+			+ " INTEGER PRIMARY KEY, " + CLOCK_JOURNAL_APPLIED_SEQUENCE
+			+ " INTEGER NOT NULL" + ")";
+
+	// Full text search table and associated columns (added in version 6). Each
+	// row indexes one time stamp, client, service or contact. The row's docid
+	// is the entity's id times SEARCH_TYPES plus its SEARCH_TYPE_ value.
+	public static final String TABLE_SEARCH = "search_index";
+	public static final String SEARCH_DOCID = "docid";
+	public static final String SEARCH_TITLE = "title";
+	public static final String SEARCH_BODY = "body";
+	public static final int SEARCH_TYPE_TIME_STAMP = 0;
+	public static final int SEARCH_TYPE_CLIENT = 1;
+	public static final int SEARCH_TYPE_SERVICE = 2;
+	public static final int SEARCH_TYPE_CONTACT = 3;
+	public static final int SEARCH_TYPES = 4;
+
+	// Statement to create full text search table
+	private static final String TABLE_SEARCH_CREATE = "CREATE VIRTUAL TABLE "
+			+ TABLE_SEARCH + " USING fts4(" + SEARCH_TITLE + ", " + SEARCH_BODY
+			+ ")";
+
+	// Statements to create the triggers that keep the search table in sync,
+	// one per searchable table. Each gets the table's name, the type to put in
+	// the docid, the title and body expressions over the NEW or OLD row and
+	// the columns they read. The update trigger only fires when one of those
+	// columns is set, so clocking out or pausing does not reindex the row.
+	private static final String SEARCH_INSERT_TRIGGER = "CREATE TRIGGER %1$s_search_insert AFTER INSERT ON %1$s BEGIN "
+			+ "INSERT INTO " + TABLE_SEARCH + " (" + SEARCH_DOCID + ", "
+			+ SEARCH_TITLE + ", " + SEARCH_BODY + ") VALUES (NEW._id * "
+			+ SEARCH_TYPES + " + %2$d, %3$s, %4$s); END";
+	private static final String SEARCH_UPDATE_TRIGGER = "CREATE TRIGGER %1$s_search_update AFTER UPDATE OF %5$s ON %1$s BEGIN "
+			+ "UPDATE " + TABLE_SEARCH + " SET " + SEARCH_TITLE + " = %3$s, "
+			+ SEARCH_BODY + " = %4$s WHERE " + SEARCH_DOCID + " = NEW._id * "
+			+ SEARCH_TYPES + " + %2$d; END";
+	private static final String SEARCH_UPDATE_TRIGGER_DROP = "DROP TRIGGER IF EXISTS %1$s_search_update";
+	private static final String SEARCH_DELETE_TRIGGER = "CREATE TRIGGER %1$s_search_delete AFTER DELETE ON %1$s BEGIN "
+			+ "DELETE FROM " + TABLE_SEARCH + " WHERE " + SEARCH_DOCID
+			+ " = OLD._id * " + SEARCH_TYPES + " + %2$d; END";
+	private static final String SEARCH_FILL = "INSERT INTO " + TABLE_SEARCH
+			+ " (" + SEARCH_DOCID + ", " + SEARCH_TITLE + ", " + SEARCH_BODY
+			+ ") SELECT _id * " + SEARCH_TYPES + " + %2$d, %3$s, %4$s FROM %1$s";
+
+	// Parts of the search index built by createSearchIndexes
+	private static final int SEARCH_ROWS = 1;
+	private static final int SEARCH_TRIGGERS = 2;
+	private static final int SEARCH_UPDATE_TRIGGERS = 4;
+
+	// Statements to create the secondary indexes (added in version 2)
+	private static final String INDEX_TIME_STAMPS_CLOCK_OUT_CREATE = "CREATE INDEX IF NOT EXISTS idx_time_stamps_clock_out ON "
+			+ TABLE_TIME_STAMPS + " (" + TIME_STAMPS_CLOCK_OUT + ")";
+	private static final String INDEX_TIME_STAMPS_CLIENT_TO_SERVICE_CREATE = "CREATE INDEX IF NOT EXISTS idx_time_stamps_client_to_service_id ON "
+			+ TABLE_TIME_STAMPS + " (" + TIME_STAMPS_CLIENT_TO_SERVICE_ID + ")";
+	private static final String INDEX_CLIENTS_TO_SERVICES_CREATE = "CREATE INDEX IF NOT EXISTS idx_clients_to_services_client_service ON "
+			+ TABLE_CLIENTS_TO_SERVICES
+			+ " ("
+			+ CLIENTS_TO_SERVICES_CLIENT_ID
+			+ ", "
+			+ CLIENTS_TO_SERVICES_SERVICE_ID + ")";
+	private static final String INDEX_CLIENTS_TO_CONTACTS_CREATE = "CREATE INDEX IF NOT EXISTS idx_clients_to_contacts_client_id ON "
+			+ TABLE_CLIENTS_TO_CONTACTS + " (" + CLIENTS_TO_CONTACTS_CLIENT_ID + ")";
+
+	// Statement to create the clock in index used for paging (added in
+	// version 3)
+	private static final String INDEX_TIME_STAMPS_CLOCK_IN_CREATE = "CREATE INDEX IF NOT EXISTS idx_time_stamps_clock_in ON "
+			+ TABLE_TIME_STAMPS + " (" + TIME_STAMPS_CLOCK_IN + ")";
+
+	// Statement to create the index used to cascade deletes and total by
+	// client to service (added in version 5)
+	private static final String INDEX_DAILY_TOTALS_CLIENT_TO_SERVICE_CREATE = "CREATE INDEX IF NOT EXISTS idx_daily_totals_client_to_service_id ON "
+			+ TABLE_DAILY_TOTALS + " (" + DAILY_TOTALS_CLIENT_TO_SERVICE_ID + ")";
+
+	/**
+	 * Builds the SQL expression converting a time in milliseconds to its local
+	 * day in the yyyymmdd form used by the daily totals table. Days are only
+	 * ever worked out in SQL with this expression, so the totals filled here
+	 * and those kept by the data source fall on the same days.
+	 * 
+	 * @param millis
+	 *            The SQL expression or parameter holding the time.
+	 * @return The SQL expression for the day.
+	 */
+	static String localDay(String millis) {
+		return "CAST(strftime('%Y%m%d', " + millis
+				+ " / 1000, 'unixepoch', 'localtime') AS INTEGER)";
+	}
+
 	/**
 	 * Makes a super call to the constructor passing in the given context and
 	 * set database name and version.
@@ -164,11 +323,31 @@ public class ClockItDBOpenHelper extends SQLiteOpenHelper {
 
 		// Record to logcat
 		Log.i(LOGTAG, "ClockIt database tables created");
+
+		// Bring the new schema up to the current version
+		onUpgrade(db, 1, DATABASE_VERSION);
+	}
+
+	/**
+	 * Turns foreign key constraints on each time the database is opened.
+	 * 
+	 * @param db
+	 *            The database object that was opened.
+	 */
+	@Override
+	public void onOpen(SQLiteDatabase db) {
+		super.onOpen(db);
+
+		// Enable foreign key constraints
+		if (!db.isReadOnly()) {
+			db.execSQL("PRAGMA foreign_keys = ON;");
+		}
 	}
 
 	/**
-	 * Deletes each of the database tables if they exist and calls the onCreate
-	 * function to recreate the database.
+	 * Migrates the database one version at a time from the old version to the
+	 * new version so existing data is kept. Each case falls through to the next
+	 * so every step after the old version is applied in order.
 	 * 
 	 * @param db
 	 *            The database object that is being upgraded
@@ -179,16 +358,168 @@ public class ClockItDBOpenHelper extends SQLiteOpenHelper {
 	 */
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-		// Drop all the tables if they exist
-		db.execSQL("DROP TABLE IF EXISTS " + TABLE_CLIENTS);
-		db.execSQL("DROP TABLE IF EXISTS " + TABLE_SERVICES);
-		db.execSQL("DROP TABLE IF EXISTS " + TABLE_CLIENTS_TO_SERVICES);
-		db.execSQL("DROP TABLE IF EXISTS " + TABLE_TIME_STAMPS);
-		db.execSQL("DROP TABLE IF EXISTS " + TABLE_CONTACTS);
-		db.execSQL("DROP TABLE IF EXISTS " + TABLE_CLIENTS_TO_CONTACTS);
-
-		// Recreate tables with call to onCreate
-		onCreate(db);
+		switch (oldVersion) {
+		case 1:
+			// Version 2: secondary indexes for the open shift lookup, time
+			// stamp joins and client lookups
+			db.execSQL(INDEX_TIME_STAMPS_CLOCK_OUT_CREATE);
+			db.execSQL(INDEX_TIME_STAMPS_CLIENT_TO_SERVICE_CREATE);
+			db.execSQL(INDEX_CLIENTS_TO_SERVICES_CREATE);
+			db.execSQL(INDEX_CLIENTS_TO_CONTACTS_CREATE);
+		case 2:
+			// Version 3: clock in index for newest first paging
+			db.execSQL(INDEX_TIME_STAMPS_CLOCK_IN_CREATE);
+		case 3:
+			// Version 4: rates move from dollars stored as REAL to whole cents
+			// per hour. SQLite cannot change a column's type so the table is
+			// rebuilt. Foreign keys are not enforced yet during an upgrade
+			// (they are turned on in onOpen) so dropping the old table does
+			// not cascade into clients_to_services.
+			db.execSQL(TABLE_SERVICES_V4_CREATE);
+			db.execSQL("INSERT INTO " + TABLE_SERVICES + "_v4 (" + SERVICES_ID
+					+ ", " + SERVICES_NAME + ", " + SERVICES_DESCRIPTION + ", "
+					+ SERVICES_RATE_CENTS + ") SELECT " + SERVICES_ID + ", "
+					+ SERVICES_NAME + ", " + SERVICES_DESCRIPTION
+					+ ", CAST(ROUND(" + SERVICES_RATE + " * 100) AS INTEGER) FROM "
+					+ TABLE_SERVICES);
+			db.execSQL("DROP TABLE " + TABLE_SERVICES);
+			db.execSQL("ALTER TABLE " + TABLE_SERVICES + "_v4 RENAME TO "
+					+ TABLE_SERVICES);
+		case 4:
+			// Version 5: daily totals rollup, filled from the existing time
+			// stamps
+			db.execSQL(TABLE_DAILY_TOTALS_CREATE);
+			db.execSQL(INDEX_DAILY_TOTALS_CLIENT_TO_SERVICE_CREATE);
+		case 5:
+			// Version 6: full text search over time stamp descriptions,
+			// clients, services and contacts, kept in sync by triggers. A table
+			// that is rebuilt later loses its triggers and must have them
+			// created again with createSearchIndex.
+			db.execSQL(TABLE_SEARCH_CREATE);
+			createSearchIndexes(db, SEARCH_ROWS | SEARCH_TRIGGERS);
+		case 6:
+			// Version 7: pause and resume times of each time stamp
+			db.execSQL("ALTER TABLE " + TABLE_TIME_STAMPS + " ADD COLUMN "
+					+ TIME_STAMPS_SEGMENTS + " BLOB");
+			db.execSQL("ALTER TABLE " + TABLE_TIME_STAMPS + " ADD COLUMN "
+					+ TIME_STAMPS_BREAK_MILLIS + " INTEGER NOT NULL DEFAULT 0");
+		case 7:
+			// Version 8: last clock event applied from the clock journal
+			db.execSQL(TABLE_CLOCK_JOURNAL_CREATE);
+			db.execSQL("INSERT INTO " + TABLE_CLOCK_JOURNAL + " ("
+					+ CLOCK_JOURNAL_ID + ", " + CLOCK_JOURNAL_APPLIED_SEQUENCE
+					+ ") VALUES (0, 0)");
+		case 8:
+			// Version 9: search update triggers only fire when an indexed
+			// column changes instead of on every update
+			createSearchIndexes(db, SEARCH_UPDATE_TRIGGERS);
+		}
+
+		// Version 5 daily totals are filled from the existing time stamps once
+		// every column the fill reads has been added
+		if (oldVersion <= 4) {
+			fillDailyTotals(db, null, new Object[0]);
+		}
+
+		// Record to logcat
+		Log.i(LOGTAG, "ClockIt database upgraded from version " + oldVersion
+				+ " to " + newVersion);
+	}
+
+	/**
+	 * Indexes the existing rows of every searchable table in the empty search
+	 * table. Used to rebuild the index after it was cleared.
+	 * 
+	 * @param db
+	 *            The database to fill the index in.
+	 */
+	static void fillSearchIndex(SQLiteDatabase db) {
+		createSearchIndexes(db, SEARCH_ROWS);
+	}
+
+	/**
+	 * Builds parts of the search index for the time stamps, clients, services
+	 * and contacts: their rows in the search table, the triggers that keep
+	 * each table in sync, or only the update triggers, replacing any that
+	 * exist.
+	 */
+	private static void createSearchIndexes(SQLiteDatabase db, int parts) {
+		createSearchIndex(db, TABLE_TIME_STAMPS, SEARCH_TYPE_TIME_STAMP, "''",
+				"NEW." + TIME_STAMPS_DESCRIPTION, TIME_STAMPS_DESCRIPTION,
+				parts);
+		createSearchIndex(db, TABLE_CLIENTS, SEARCH_TYPE_CLIENT, "NEW."
+				+ CLIENTS_NAME, "NEW." + CLIENTS_DESCRIPTION, CLIENTS_NAME
+				+ ", " + CLIENTS_DESCRIPTION, parts);
+		createSearchIndex(db, TABLE_SERVICES, SEARCH_TYPE_SERVICE, "NEW."
+				+ SERVICES_NAME, "NEW." + SERVICES_DESCRIPTION, SERVICES_NAME
+				+ ", " + SERVICES_DESCRIPTION, parts);
+		createSearchIndex(db, TABLE_CONTACTS, SEARCH_TYPE_CONTACT, "NEW."
+				+ CONTACTS_FIRST_NAME + " || ' ' || NEW." + CONTACTS_LAST_NAME,
+				"IFNULL(NEW." + CONTACTS_EMAIL + ", '') || ' ' || IFNULL(NEW."
+						+ CONTACTS_NUMBER + ", '')", CONTACTS_FIRST_NAME + ", "
+						+ CONTACTS_LAST_NAME + ", " + CONTACTS_EMAIL + ", "
+						+ CONTACTS_NUMBER, parts);
+	}
+
+	/**
+	 * Indexes the existing rows of a table in the search table and creates
+	 * the triggers that keep them in sync as rows are inserted, updated and
+	 * deleted, as asked for by the parts.
+	 * 
+	 * @param db
+	 *            The database to create the triggers in.
+	 * @param table
+	 *            The table to index.
+	 * @param type
+	 *            The SEARCH_TYPE_ value of the table's rows.
+	 * @param title
+	 *            Expression for the title over the NEW row.
+	 * @param body
+	 *            Expression for the body over the NEW row.
+	 * @param columns
+	 *            The columns the title and body read, separated by commas.
+	 * @param parts
+	 *            The SEARCH_ROWS, SEARCH_TRIGGERS and SEARCH_UPDATE_TRIGGERS
+	 *            flags of the parts to build.
+	 */
+	private static void createSearchIndex(SQLiteDatabase db, String table,
+			int type, String title, String body, String columns, int parts) {
+		if ((parts & SEARCH_ROWS) != 0) {
+			db.execSQL(String.format(Locale.US, SEARCH_FILL, table, type,
+					title.replace("NEW.", ""), body.replace("NEW.", "")));
+		}
+		if ((parts & SEARCH_TRIGGERS) != 0) {
+			db.execSQL(String.format(Locale.US, SEARCH_INSERT_TRIGGER, table,
+					type, title, body));
+			db.execSQL(String.format(Locale.US, SEARCH_DELETE_TRIGGER, table,
+					type));
+		}
+		if ((parts & (SEARCH_TRIGGERS | SEARCH_UPDATE_TRIGGERS)) != 0) {
+			db.execSQL(String.format(Locale.US, SEARCH_UPDATE_TRIGGER_DROP,
+					table));
+			db.execSQL(String.format(Locale.US, SEARCH_UPDATE_TRIGGER, table,
+					type, title, body, columns));
+		}
+	}
+
+	/**
+	 * Totals the finished time stamps matching the selection into the daily
+	 * totals table. Existing totals for those time stamps must be deleted
+	 * first.
+	 * 
+	 * @param db
+	 *            The database to fill the totals in.
+	 * @param selection
+	 *            Extra condition on the time stamps (aliased ts), or null for
+	 *            every time stamp.
+	 * @param bindArgs
+	 *            The values bound to the selection.
+	 */
+	static void fillDailyTotals(SQLiteDatabase db, String selection,
+			Object[] bindArgs) {
+		db.execSQL(DAILY_TOTALS_FILL
+				+ (selection == null ? "" : " AND " + selection) + " GROUP BY 1, 2",
+				bindArgs);
 	}
 
 }
@@ -1,18 +1,28 @@
 package com.example.clockit.app.db;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
+import android.util.SparseArray;
 
+import com.example.clockit.app.ClockItApplication;
 import com.example.clockit.app.model.Client;
 import com.example.clockit.app.model.Contact;
+import com.example.clockit.app.model.Money;
+import com.example.clockit.app.model.SearchResult;
+import com.example.clockit.app.model.Segments;
 import com.example.clockit.app.model.Services;
 import com.example.clockit.app.model.TimeStamp;
 
@@ -28,22 +38,70 @@ public class ClockItDataSource {
 	/** Tag used for logcat */
 	public static final String LOGTAG = "CLOCKIT";
 
-	/** Variable to access the database helper. */
-	SQLiteOpenHelper dbhelper;
+	/** Application owning the shared database connection. */
+	ClockItApplication application;
 
-	/** Variable to access the database. */
-	SQLiteDatabase database;
+	/**
+	 * The shared database connection, or null until the first statement is
+	 * run. Read through getDatabase().
+	 */
+	private volatile SQLiteDatabase database;
+
+	/** Persisted record of the shift the user is clocked in to. */
+	ActiveShiftStore activeShift;
+
+	/**
+	 * Scalar lookups compiled on the connection while it is held, set before
+	 * the connection is. Read through getStatements().
+	 */
+	private StatementCache statements;
+
+	/** Generation counters shared by the entity caches of every data source. */
+	private static final AtomicInteger clientGeneration = new AtomicInteger();
+	private static final AtomicInteger serviceGeneration = new AtomicInteger();
+
+	/** Clients loaded by this data source by id. */
+	private final EntityCache<Client> clientCache = new EntityCache<Client>(
+			clientGeneration);
+
+	/** Services loaded by this data source by id. */
+	private final EntityCache<Services> serviceCache = new EntityCache<Services>(
+			serviceGeneration);
+
+	/** Loads a client's services the first time the client is asked for them. */
+	private final Client.ServicesLoader servicesLoader = new Client.ServicesLoader() {
+		@Override
+		public List<Services> load(int clientId) {
+			return getClientServices(clientId);
+		}
+	};
+
+	/** Columns of the clients table needed to list clients */
+	private static final String[] clientSummaryColumns = {
+			ClockItDBOpenHelper.CLIENTS_ID, ClockItDBOpenHelper.CLIENTS_NAME };
 
 	/** List of all columns of the clients table */
 	private static final String[] allClientColumns = {
 			ClockItDBOpenHelper.CLIENTS_ID, ClockItDBOpenHelper.CLIENTS_NAME,
 			ClockItDBOpenHelper.CLIENTS_DESCRIPTION };
 
+	// Column ordinals of a client, counted from its first column. Every query
+	// reading clients selects their columns in this order.
+	private static final int CLIENT_ID = 0;
+	private static final int CLIENT_NAME = 1;
+	private static final int CLIENT_DESCRIPTION = 2;
+
 	/** List of all columns of the services table */
 	private static final String[] allServiceColumns = {
 			ClockItDBOpenHelper.SERVICES_ID, ClockItDBOpenHelper.SERVICES_NAME,
 			ClockItDBOpenHelper.SERVICES_DESCRIPTION,
-			ClockItDBOpenHelper.SERVICES_RATE };
+			ClockItDBOpenHelper.SERVICES_RATE_CENTS };
+
+	// Column ordinals of a service, counted from its first column
+	private static final int SERVICE_ID = 0;
+	private static final int SERVICE_NAME = 1;
+	private static final int SERVICE_DESCRIPTION = 2;
+	private static final int SERVICE_RATE = 3;
 
 	/** List of all columns of the time stamps table */
 	private static final String[] allTimeStampColumns = {
@@ -51,75 +109,358 @@ public class ClockItDataSource {
 			ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID,
 			ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN,
 			ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT,
-			ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION };
-
-	/** List of all columns of the clients to services table */
-	private static final String[] allClientToServiceColumns = {
-			ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID,
-			ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID,
-			ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID };
-
-	/** List of all columns of the contacts table */
-	private static final String[] allContactColumns = {
-			ClockItDBOpenHelper.CONTACTS_ID,
-			ClockItDBOpenHelper.CONTACTS_FIRST_NAME,
-			ClockItDBOpenHelper.CONTACTS_LAST_NAME,
-			ClockItDBOpenHelper.CONTACTS_EMAIL,
-			ClockItDBOpenHelper.CONTACTS_NUMBER };
-
-	/** List of all columns of the clients to contacts table */
-	private static final String[] allClientToContactColumns = {
-			ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_ID,
-			ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CLIENT_ID,
-			ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CONTACT_ID };
+			ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION,
+			ClockItDBOpenHelper.TIME_STAMPS_SEGMENTS };
+
+	// Column ordinals of a time stamp, counted from its first column
+	private static final int TIME_STAMP_ID = 0;
+	private static final int TIME_STAMP_CLIENT_TO_SERVICE_ID = 1;
+	private static final int TIME_STAMP_CLOCK_IN = 2;
+	private static final int TIME_STAMP_CLOCK_OUT = 3;
+	private static final int TIME_STAMP_DESCRIPTION = 4;
+	private static final int TIME_STAMP_SEGMENTS = 5;
+
+	// Column ordinals of a contact, counted from its first column
+	private static final int CONTACT_ID = 0;
+	private static final int CONTACT_FIRST_NAME = 1;
+	private static final int CONTACT_LAST_NAME = 2;
+	private static final int CONTACT_EMAIL = 3;
+	private static final int CONTACT_NUMBER = 4;
+
+	/**
+	 * Select statement joining each time stamp to its client to service, client
+	 * and service so a full TimeStamp can be built from a single cursor row.
+	 * The time stamp, client and service columns start at the ordinals defined
+	 * below.
+	 */
+	private static final String TIME_STAMP_JOIN_SELECT = "SELECT ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_ID + ", ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID + ", ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN + ", ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT + ", ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION + ", ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_SEGMENTS + ", c."
+			+ ClockItDBOpenHelper.CLIENTS_ID + ", c."
+			+ ClockItDBOpenHelper.CLIENTS_NAME + ", c."
+			+ ClockItDBOpenHelper.CLIENTS_DESCRIPTION + ", s."
+			+ ClockItDBOpenHelper.SERVICES_ID + ", s."
+			+ ClockItDBOpenHelper.SERVICES_NAME + ", s."
+			+ ClockItDBOpenHelper.SERVICES_DESCRIPTION + ", s."
+			+ ClockItDBOpenHelper.SERVICES_RATE_CENTS + " FROM "
+			+ ClockItDBOpenHelper.TABLE_TIME_STAMPS + " ts INNER JOIN "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES + " cs ON ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID + " = cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID + " INNER JOIN "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS + " c ON cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID + " = c."
+			+ ClockItDBOpenHelper.CLIENTS_ID + " INNER JOIN "
+			+ ClockItDBOpenHelper.TABLE_SERVICES + " s ON cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID + " = s."
+			+ ClockItDBOpenHelper.SERVICES_ID;
+
+	// First column of each entity in the time stamp join select
+	private static final int JOIN_TIME_STAMP = 0;
+	private static final int JOIN_CLIENT = 6;
+	private static final int JOIN_SERVICE = 9;
+
+	/**
+	 * Select statement for the rows of a client's invoice: the service name,
+	 * description, time worked less breaks and rate of each finished time
+	 * stamp. Columns are read by the INVOICE_ ordinals.
+	 */
+	private static final String INVOICE_SELECT = "SELECT s."
+			+ ClockItDBOpenHelper.SERVICES_NAME + ", ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION + ", ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT + " - ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN + " - ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_BREAK_MILLIS + ", s."
+			+ ClockItDBOpenHelper.SERVICES_RATE_CENTS + " FROM "
+			+ ClockItDBOpenHelper.TABLE_TIME_STAMPS + " ts INNER JOIN "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES + " cs ON ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID + " = cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID + " INNER JOIN "
+			+ ClockItDBOpenHelper.TABLE_SERVICES + " s ON cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID + " = s."
+			+ ClockItDBOpenHelper.SERVICES_ID + " WHERE cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID + " = ? AND ts."
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT + " != -1";
+
+	/**
+	 * Select statement for the services linked to a client, in the order they
+	 * were first used.
+	 */
+	private static final String CLIENT_SERVICES_SELECT = "SELECT s."
+			+ ClockItDBOpenHelper.SERVICES_ID + ", s."
+			+ ClockItDBOpenHelper.SERVICES_NAME + ", s."
+			+ ClockItDBOpenHelper.SERVICES_DESCRIPTION + ", s."
+			+ ClockItDBOpenHelper.SERVICES_RATE_CENTS + " FROM "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES + " cs INNER JOIN "
+			+ ClockItDBOpenHelper.TABLE_SERVICES + " s ON cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID + " = s."
+			+ ClockItDBOpenHelper.SERVICES_ID + " WHERE cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID + " = ? ORDER BY cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID;
+
+	/** Select statement for the contacts of a client, oldest first. */
+	private static final String CLIENT_CONTACTS_SELECT = "SELECT c."
+			+ ClockItDBOpenHelper.CONTACTS_ID + ", c."
+			+ ClockItDBOpenHelper.CONTACTS_FIRST_NAME + ", c."
+			+ ClockItDBOpenHelper.CONTACTS_LAST_NAME + ", c."
+			+ ClockItDBOpenHelper.CONTACTS_EMAIL + ", c."
+			+ ClockItDBOpenHelper.CONTACTS_NUMBER + " FROM "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_CONTACTS + " cc INNER JOIN "
+			+ ClockItDBOpenHelper.TABLE_CONTACTS + " c ON cc."
+			+ ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CONTACT_ID + " = c."
+			+ ClockItDBOpenHelper.CONTACTS_ID + " WHERE cc."
+			+ ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CLIENT_ID + " = ? ORDER BY cc."
+			+ ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_ID;
+
+	/**
+	 * Select statement for a client's total time and earnings per service name
+	 * from the daily totals. Columns are read by the SERVICE_TOTAL_ ordinals.
+	 */
+	private static final String SERVICE_TOTALS_SELECT = "SELECT s."
+			+ ClockItDBOpenHelper.SERVICES_NAME + ", SUM(dt."
+			+ ClockItDBOpenHelper.DAILY_TOTALS_MILLIS + "), SUM(dt."
+			+ ClockItDBOpenHelper.DAILY_TOTALS_CENTS + ") FROM "
+			+ ClockItDBOpenHelper.TABLE_DAILY_TOTALS + " dt INNER JOIN "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES + " cs ON dt."
+			+ ClockItDBOpenHelper.DAILY_TOTALS_CLIENT_TO_SERVICE_ID + " = cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID + " INNER JOIN "
+			+ ClockItDBOpenHelper.TABLE_SERVICES + " s ON cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID + " = s."
+			+ ClockItDBOpenHelper.SERVICES_ID + " WHERE cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID + " = ? GROUP BY s."
+			+ ClockItDBOpenHelper.SERVICES_NAME + " ORDER BY s."
+			+ ClockItDBOpenHelper.SERVICES_NAME;
+
+	// Column ordinals of the service totals select
+	public static final int SERVICE_TOTAL_NAME = 0;
+	public static final int SERVICE_TOTAL_MILLIS = 1;
+	public static final int SERVICE_TOTAL_CENTS = 2;
+
+	/** Statement adding to an existing daily total. */
+	private static final String DAILY_TOTAL_ADD = "UPDATE "
+			+ ClockItDBOpenHelper.TABLE_DAILY_TOTALS + " SET "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_MILLIS + " = "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_MILLIS + " + ?, "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_CENTS + " = "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_CENTS + " + ?, "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_STAMPS + " = "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_STAMPS + " + ? WHERE "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_DAY + " = "
+			+ ClockItDBOpenHelper.localDay("?") + " AND "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_CLIENT_TO_SERVICE_ID + " = ?";
+
+	/** Statement starting the daily total of a clock in time's day. */
+	private static final String DAILY_TOTAL_INSERT = "INSERT INTO "
+			+ ClockItDBOpenHelper.TABLE_DAILY_TOTALS + " ("
+			+ ClockItDBOpenHelper.DAILY_TOTALS_DAY + ", "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_CLIENT_TO_SERVICE_ID + ", "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_MILLIS + ", "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_CENTS + ", "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_STAMPS + ") VALUES ("
+			+ ClockItDBOpenHelper.localDay("?") + ", ?, ?, ?, ?)";
+
+	/** Statement dropping a daily total left without any time stamps. */
+	private static final String DAILY_TOTAL_DELETE = "DELETE FROM "
+			+ ClockItDBOpenHelper.TABLE_DAILY_TOTALS + " WHERE "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_DAY + " = "
+			+ ClockItDBOpenHelper.localDay("?") + " AND "
+			+ ClockItDBOpenHelper.DAILY_TOTALS_CLIENT_TO_SERVICE_ID
+			+ " = ? AND " + ClockItDBOpenHelper.DAILY_TOTALS_STAMPS + " <= 0";
+
+	/**
+	 * Number of times clocking out reads a time stamp again after it was
+	 * paused or resumed between being read and updated.
+	 */
+	private static final int CLOCK_OUT_ATTEMPTS = 3;
+
+	/**
+	 * Statement appending a pause or resume time to an open time stamp. The
+	 * last argument is the number of times already held modulo 2, so a pause
+	 * only applies to a running time stamp and a resume to a paused one.
+	 */
+	private static final String TIME_STAMP_SEGMENT_APPEND = "UPDATE "
+			+ ClockItDBOpenHelper.TABLE_TIME_STAMPS + " SET "
+			+ ClockItDBOpenHelper.TIME_STAMPS_SEGMENTS + " = CAST(IFNULL("
+			+ ClockItDBOpenHelper.TIME_STAMPS_SEGMENTS
+			+ ", X'') || ? AS BLOB) WHERE "
+			+ ClockItDBOpenHelper.TIME_STAMPS_ID + " = ? AND "
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT
+			+ " = -1 AND LENGTH(IFNULL("
+			+ ClockItDBOpenHelper.TIME_STAMPS_SEGMENTS + ", X'')) / "
+			+ Segments.TIME_BYTES + " % 2 = ?";
+
+	/**
+	 * Select statement for the last time stamp id handed out, the larger of
+	 * the table's autoincrement sequence and its largest id.
+	 */
+	private static final String TIME_STAMP_LAST_ID_SELECT = "SELECT MAX(IFNULL((SELECT seq FROM sqlite_sequence WHERE name = ?), 0), IFNULL((SELECT MAX("
+			+ ClockItDBOpenHelper.TIME_STAMPS_ID + ") FROM "
+			+ ClockItDBOpenHelper.TABLE_TIME_STAMPS + "), 0))";
+
+	/** Select statement for the last clock event applied from the journal. */
+	private static final String CLOCK_JOURNAL_SELECT = "SELECT "
+			+ ClockItDBOpenHelper.CLOCK_JOURNAL_APPLIED_SEQUENCE + " FROM "
+			+ ClockItDBOpenHelper.TABLE_CLOCK_JOURNAL + " WHERE "
+			+ ClockItDBOpenHelper.CLOCK_JOURNAL_ID + " = ?";
+
+	// Statements used to import time stamps and contacts in bulk
+	private static final String TIME_STAMP_INSERT = "INSERT INTO "
+			+ ClockItDBOpenHelper.TABLE_TIME_STAMPS + " ("
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID + ", "
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN + ", "
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT + ", "
+			+ ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION
+			+ ") VALUES (?, ?, ?, ?)";
+	private static final String CONTACT_INSERT = "INSERT INTO "
+			+ ClockItDBOpenHelper.TABLE_CONTACTS + " ("
+			+ ClockItDBOpenHelper.CONTACTS_FIRST_NAME + ", "
+			+ ClockItDBOpenHelper.CONTACTS_LAST_NAME + ", "
+			+ ClockItDBOpenHelper.CONTACTS_EMAIL + ", "
+			+ ClockItDBOpenHelper.CONTACTS_NUMBER + ") VALUES (?, ?, ?, ?)";
+	private static final String CLIENT_TO_CONTACT_INSERT = "INSERT INTO "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_CONTACTS + " ("
+			+ ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CLIENT_ID + ", "
+			+ ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CONTACT_ID
+			+ ") VALUES (?, ?)";
+
+	// Rate of the service of a client to service
+	private static final String CLIENT_TO_SERVICE_RATE = "SELECT s."
+			+ ClockItDBOpenHelper.SERVICES_RATE_CENTS + " FROM "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES + " cs JOIN "
+			+ ClockItDBOpenHelper.TABLE_SERVICES + " s ON s."
+			+ ClockItDBOpenHelper.SERVICES_ID + " = cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID + " WHERE cs."
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID + " = ?";
+
+	// Lookups by id, kept constant so the connection reuses their compiled
+	// statements
+	private static final String CLIENT_BY_ID_SELECT = "SELECT "
+			+ ClockItDBOpenHelper.CLIENTS_ID + ", "
+			+ ClockItDBOpenHelper.CLIENTS_NAME + ", "
+			+ ClockItDBOpenHelper.CLIENTS_DESCRIPTION + " FROM "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS + " WHERE "
+			+ ClockItDBOpenHelper.CLIENTS_ID + " = ?";
+	private static final String SERVICE_BY_ID_SELECT = "SELECT "
+			+ ClockItDBOpenHelper.SERVICES_ID + ", "
+			+ ClockItDBOpenHelper.SERVICES_NAME + ", "
+			+ ClockItDBOpenHelper.SERVICES_DESCRIPTION + ", "
+			+ ClockItDBOpenHelper.SERVICES_RATE_CENTS + " FROM "
+			+ ClockItDBOpenHelper.TABLE_SERVICES + " WHERE "
+			+ ClockItDBOpenHelper.SERVICES_ID + " = ?";
+	private static final String CONTACT_BY_ID_SELECT = "SELECT "
+			+ ClockItDBOpenHelper.CONTACTS_ID + ", "
+			+ ClockItDBOpenHelper.CONTACTS_FIRST_NAME + ", "
+			+ ClockItDBOpenHelper.CONTACTS_LAST_NAME + ", "
+			+ ClockItDBOpenHelper.CONTACTS_EMAIL + ", "
+			+ ClockItDBOpenHelper.CONTACTS_NUMBER + " FROM "
+			+ ClockItDBOpenHelper.TABLE_CONTACTS + " WHERE "
+			+ ClockItDBOpenHelper.CONTACTS_ID + " = ?";
+
+	// Scalar lookups run through the statement cache
+	private static final String CLIENT_TO_SERVICE_ID_SELECT = "SELECT "
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID + " FROM "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES + " WHERE "
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID + " = ? AND "
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID + " = ?";
+	private static final String CLIENT_TO_SERVICE_SERVICE_ID_SELECT = "SELECT "
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID + " FROM "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES + " WHERE "
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID + " = ?";
+	private static final String CLIENT_TO_SERVICE_CLIENT_ID_SELECT = "SELECT "
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID + " FROM "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES + " WHERE "
+			+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID + " = ?";
+	private static final String CONTACT_CLIENT_ID_SELECT = "SELECT "
+			+ ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CLIENT_ID + " FROM "
+			+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_CONTACTS + " WHERE "
+			+ ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CONTACT_ID + " = ?";
+	private static final String CLOCKED_IN_SELECT = "SELECT EXISTS (SELECT 1 FROM "
+			+ ClockItDBOpenHelper.TABLE_TIME_STAMPS + " WHERE "
+			+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT + " = ?)";
+
+	/** Weight of a match in each column of the search table when ranking. */
+	private static final double[] SEARCH_COLUMN_WEIGHTS = { 2.0, 1.0 };
+
+	/** Orders search results best match first. */
+	private static final Comparator<SearchResult> BEST_MATCH_FIRST = new Comparator<SearchResult>() {
+		@Override
+		public int compare(SearchResult lhs, SearchResult rhs) {
+			return Double.compare(rhs.getScore(), lhs.getScore());
+		}
+	};
+
+	// Column ordinals of the invoice select
+	public static final int INVOICE_SERVICE_NAME = 0;
+	public static final int INVOICE_DESCRIPTION = 1;
+	public static final int INVOICE_DURATION = 2;
+	public static final int INVOICE_RATE_CENTS = 3;
 
 	/** Variable that indicates if database is open */
 	Boolean open = false;
 
+	/** Number of background tasks holding the data source open. */
+	private int tasks = 0;
+
+	/** Set when the data source was closed while tasks were holding it. */
+	private boolean closeRequested = false;
+
 	/**
-	 * Constructor gets instance of the database helper and opens the database.
+	 * Constructor gets the application owning the shared database connection
+	 * and acquires a reference to it. The connection itself is only opened
+	 * when the first statement is run, so creating a data source on the main
+	 * thread never opens or upgrades the database.
 	 * 
 	 * @param context
 	 *            Context in which the class is being instantiated.
 	 */
 	public ClockItDataSource(Context context) {
-		// Sets helper variable to a new instance of the helper class
-		dbhelper = new ClockItDBOpenHelper(context);
+		// Sets the application that owns the shared connection
+		application = (ClockItApplication) context.getApplicationContext();
+
+		// Sets the record of the currently open shift
+		activeShift = new ActiveShiftStore(context);
 
 		// Open the database
 		open();
 	}
 
 	/**
-	 * If closed, opens the database, creates log, and turns foreign keys on
+	 * If closed, acquires a reference to the shared database connection. The
+	 * connection is opened by the first statement run.
 	 */
-	public void open() {
-		// Log to log cat
-		// Log.i(LOGTAG, "Database opened");
-
+	public synchronized void open() {
+		closeRequested = false;
 		if (!open) {
-			// Open database
-			database = dbhelper.getWritableDatabase();
+			// Acquire the shared connection
+			application.acquireDatabase();
 
 			open = true;
-
-			// Enable foreign key constraints
-			if (!database.isReadOnly()) {
-				database.execSQL("PRAGMA foreign_keys = ON;");
-			}
 		}
 	}
 
 	/**
-	 * If opened, closes the database. Used when app is paused or closed.
+	 * If opened, releases the reference to the shared database connection.
+	 * Used when the owning activity is destroyed. If background tasks are
+	 * still holding the data source, it is closed once the last of them
+	 * releases it.
 	 */
-	public void close() {
-		// Log to log cat
-		// Log.i(LOGTAG, "Database closed");
+	public synchronized void close() {
+		if (open && tasks > 0) {
+			closeRequested = true;
+		} else if (open) {
+			// Release the compiled statements and then the shared connection
+			if (database != null) {
+				statements.close();
+				statements = null;
+				database = null;
+			}
+			application.releaseDatabase();
 
-		if (open) {
-			// Close database
-			dbhelper.close();
+			Log.i(LOGTAG, "Client cache: " + clientCache + ", service cache: "
+					+ serviceCache);
 
 			open = false;
 		}
@@ -130,10 +471,82 @@ public class ClockItDataSource {
 	 * 
 	 * @return True if database is open and false otherwise.
 	 */
-	public Boolean isOpen() {
+	public synchronized Boolean isOpen() {
 		return open;
 	}
 
+	/**
+	 * Holds the data source open for a background task, so closing it while
+	 * the task is queued or running waits for the task to release it. Must be
+	 * called before the task is started.
+	 */
+	public synchronized void acquire() {
+		tasks++;
+	}
+
+	/**
+	 * Releases the hold of a background task, finishing a close that was
+	 * waiting for it.
+	 */
+	public synchronized void release() {
+		tasks--;
+		if (tasks == 0 && closeRequested) {
+			closeRequested = false;
+			close();
+		}
+	}
+
+	/**
+	 * Allows access to the shared database connection, opening it the first
+	 * time it is needed. Opening it can upgrade the database, so statements
+	 * must not be run on the main thread.
+	 * 
+	 * @return The shared database connection.
+	 */
+	SQLiteDatabase getDatabase() {
+		SQLiteDatabase connection = database;
+		if (connection == null) {
+			synchronized (this) {
+				if (database == null) {
+					SQLiteDatabase opened = application.getDatabase();
+					statements = new StatementCache(opened);
+					database = opened;
+				}
+				connection = database;
+			}
+		}
+		return connection;
+	}
+
+	/**
+	 * Allows access to the scalar lookups compiled on the shared connection,
+	 * opening it the first time it is needed.
+	 */
+	private StatementCache getStatements() {
+		getDatabase();
+		return statements;
+	}
+
+	/**
+	 * Retrieves the cache of clients loaded by this data source, used to read
+	 * its hit and miss counters.
+	 * 
+	 * @return The client cache.
+	 */
+	public EntityCache<Client> getClientCache() {
+		return clientCache;
+	}
+
+	/**
+	 * Retrieves the cache of services loaded by this data source, used to read
+	 * its hit and miss counters.
+	 * 
+	 * @return The service cache.
+	 */
+	public EntityCache<Services> getServiceCache() {
+		return serviceCache;
+	}
+
 	/**
 	 * Creates a new client entry in the database from the supplied name and
 	 * description values.
@@ -155,8 +568,8 @@ public class ClockItDataSource {
 		// Insert new entry and return the generated id
 		int insertId;
 		try {
-			insertId = (int) database.insert(ClockItDBOpenHelper.TABLE_CLIENTS,
-					null, values);
+			insertId = (int) getDatabase().insert(
+					ClockItDBOpenHelper.TABLE_CLIENTS, null, values);
 		} catch (Exception e) {
 			e.printStackTrace();
 			return null;
@@ -165,7 +578,7 @@ public class ClockItDataSource {
 		Log.i(LOGTAG, "Created client " + insertId);
 
 		// Return a client object corresponding to the entry
-		return new Client(insertId, name, description, null);
+		return new Client(insertId, name, description, servicesLoader);
 	}
 
 	/**
@@ -178,27 +591,12 @@ public class ClockItDataSource {
 		List<Client> clients = new ArrayList<Client>();
 
 		// Cursor holding query to database for all clients
-		Cursor cursor = database.query(ClockItDBOpenHelper.TABLE_CLIENTS,
+		Cursor cursor = getDatabase().query(ClockItDBOpenHelper.TABLE_CLIENTS,
 				allClientColumns, null, null, null, null, null);
 
-		int clientId;
-		if (cursor.getCount() > 0) {
-			// Loop through values retrieved by cursor
-			while (cursor.moveToNext()) {
-				// Create client object from cursor location
-				clientId = cursor.getInt(cursor
-						.getColumnIndex(ClockItDBOpenHelper.CLIENTS_ID));
-				Client client = new Client(
-						clientId,
-						cursor.getString(cursor
-								.getColumnIndex(ClockItDBOpenHelper.CLIENTS_NAME)),
-						cursor.getString(cursor
-								.getColumnIndex(ClockItDBOpenHelper.CLIENTS_DESCRIPTION)),
-						getClientServices(clientId));
-
-				// Add client to list
-				clients.add(client);
-			}
+		// Loop through values retrieved by cursor, reusing cached clients
+		while (cursor.moveToNext()) {
+			clients.add(readCachedClient(cursor, 0));
 		}
 		cursor.close();
 
@@ -216,10 +614,15 @@ public class ClockItDataSource {
 	 * @return The client or null.
 	 */
 	public Client getClientById(int clientId) {
+		// Return the client if it was already loaded
+		Client cached = clientCache.get(clientId);
+		if (cached != null) {
+			return cached;
+		}
+
 		// Cursor holding query for client by id
-		Cursor cursor = database.query(ClockItDBOpenHelper.TABLE_CLIENTS,
-				allClientColumns, ClockItDBOpenHelper.CLIENTS_ID + " = ?",
-				new String[] { String.valueOf(clientId) }, null, null, null);
+		Cursor cursor = getDatabase().rawQuery(CLIENT_BY_ID_SELECT,
+				new String[] { String.valueOf(clientId) });
 
 		// Empty client variable to hold the client from the table if it exists
 		Client client = null;
@@ -228,14 +631,8 @@ public class ClockItDataSource {
 			cursor.moveToFirst();
 
 			// Creates client object from cursor location
-			client = new Client(
-					cursor.getInt(cursor
-							.getColumnIndex(ClockItDBOpenHelper.CLIENTS_ID)),
-					cursor.getString(cursor
-							.getColumnIndex(ClockItDBOpenHelper.CLIENTS_NAME)),
-					cursor.getString(cursor
-							.getColumnIndex(ClockItDBOpenHelper.CLIENTS_DESCRIPTION)),
-					getClientServices(clientId));
+			client = readClient(cursor, 0);
+			clientCache.put(clientId, client);
 
 			Log.i(LOGTAG, "Retrieved client " + clientId);
 		} else {
@@ -248,31 +645,61 @@ public class ClockItDataSource {
 	}
 
 	/**
-	 * Retrieves the services that have been completed for a client.
+	 * Retrieves the id and name of every client for showing in a list. The
+	 * clients are not cached since their descriptions are not loaded, and
+	 * their services are only loaded if asked for.
+	 * 
+	 * @return The list of clients with only their ids and names set.
+	 */
+	public List<Client> getClientSummaries() {
+		// Cursor holding query to database for the id and name of all clients
+		Cursor cursor = getDatabase().query(ClockItDBOpenHelper.TABLE_CLIENTS,
+				clientSummaryColumns, null, null, null, null, null);
+
+		// Variable to hold clients
+		List<Client> clients = new ArrayList<Client>(cursor.getCount());
+
+		try {
+			// Loop through values retrieved by cursor
+			while (cursor.moveToNext()) {
+				clients.add(new Client(cursor.getInt(CLIENT_ID), cursor
+						.getString(CLIENT_NAME), null, servicesLoader));
+			}
+		} finally {
+			cursor.close();
+		}
+
+		Log.i(LOGTAG, "Retrieved " + clients.size() + " client summaries");
+
+		// Return the list of clients
+		return clients;
+	}
+
+	/**
+	 * Retrieves the services that have been completed for a client with a
+	 * single query joining the client's links to the services table.
 	 * 
 	 * @param clientId
 	 *            The id of the client to retrieve the services for.
 	 * @return The list of Services objects associated with the client.
 	 */
 	public List<Services> getClientServices(int clientId) {
-		// Variable to hold services
-		List<Services> services = new ArrayList<Services>();
+		// Cursor holding the services linked to the client
+		Cursor cursor = getDatabase().rawQuery(CLIENT_SERVICES_SELECT,
+				new String[] { String.valueOf(clientId) });
 
-		// Cursor holding query to database for client to services associated
-		// with the client
-		Cursor cursor = database.query(
-				ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES,
-				allClientToServiceColumns,
-				ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID + " = ?",
-				new String[] { String.valueOf(clientId) }, null, null, null);
+		// Variable to hold services
+		List<Services> services = new ArrayList<Services>(cursor.getCount());
 
-		if (cursor.getCount() > 0) {
+		try {
 			// Loop through values retrieved by cursor
 			while (cursor.moveToNext()) {
-				// Add each service to the list of services
-				services.add(getServiceById(cursor.getInt(cursor
-						.getColumnIndex(ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID))));
+				// Reuse the service if it was already loaded, otherwise create
+				// it
+				services.add(readCachedService(cursor, 0));
 			}
+		} finally {
+			cursor.close();
 		}
 
 		// Return the list of services
@@ -301,7 +728,7 @@ public class ClockItDataSource {
 
 		// Update entry and return the generated id
 		try {
-			database.update(ClockItDBOpenHelper.TABLE_CLIENTS, values,
+			getDatabase().update(ClockItDBOpenHelper.TABLE_CLIENTS, values,
 					ClockItDBOpenHelper.CLIENTS_ID + " = ?",
 					new String[] { String.valueOf(clientId) });
 		} catch (Exception e) {
@@ -310,24 +737,49 @@ public class ClockItDataSource {
 		}
 
 		Log.i(LOGTAG, "Updated client " + clientId);
+
+		// Drop the old client from every cache
+		clientCache.invalidate(clientId);
+
 		// Return a client object corresponding to the entry
-		return new Client(clientId, name, description,
-				getClientServices(clientId));
+		Client client = new Client(clientId, name, description,
+				servicesLoader);
+		clientCache.put(clientId, client);
+		return client;
 	}
 
 	/**
-	 * Deletes the client associated with the supplied id
+	 * Deletes the client associated with the supplied id, along with its time
+	 * stamps. Any of them the user is clocked in to are removed from the open
+	 * shift record.
 	 * 
 	 * @param clientId
 	 *            The id of the client to delete.
 	 */
 	public void deleteClient(int clientId) {
-		// Query the clients table to delete the client with the supplied id
-		database.delete(ClockItDBOpenHelper.TABLE_CLIENTS,
-				ClockItDBOpenHelper.CLIENTS_ID + " = ?",
-				new String[] { String.valueOf(clientId) });
+		List<TimeStamp> open;
+		getDatabase().beginTransaction();
+		try {
+			// The delete cascades to the client's time stamps, so find the
+			// open ones first
+			open = getOpenTimeStamps("c." + ClockItDBOpenHelper.CLIENTS_ID,
+					clientId);
+
+			// Query the clients table to delete the client with the supplied
+			// id
+			getDatabase().delete(ClockItDBOpenHelper.TABLE_CLIENTS,
+					ClockItDBOpenHelper.CLIENTS_ID + " = ?",
+					new String[] { String.valueOf(clientId) });
+
+			getDatabase().setTransactionSuccessful();
+		} finally {
+			getDatabase().endTransaction();
+		}
+		clientCache.invalidate(clientId);
 
 		Log.i(LOGTAG, "Deleted client " + clientId);
+
+		removeOpenShifts(open);
 	}
 
 	/**
@@ -338,23 +790,24 @@ public class ClockItDataSource {
 	 *            The name of the service to be created.
 	 * @param description
 	 *            The description of the service to be created.
-	 * @param rate
-	 *            The pay rate of the service to be created.
+	 * @param rateCents
+	 *            The pay rate of the service to be created in cents per hour.
 	 * @return The newly created service entry as an object.
 	 */
-	public Services createService(String name, String description, double rate) {
+	public Services createService(String name, String description,
+			long rateCents) {
 		// Variable to hold map of values to columns
 		ContentValues values = new ContentValues();
 
 		// Put supplied values into variable
 		values.put(ClockItDBOpenHelper.SERVICES_NAME, name);
 		values.put(ClockItDBOpenHelper.SERVICES_DESCRIPTION, description);
-		values.put(ClockItDBOpenHelper.SERVICES_RATE, rate);
+		values.put(ClockItDBOpenHelper.SERVICES_RATE_CENTS, rateCents);
 
 		// Insert new entry and return the generated id
 		int insertId;
 		try {
-			insertId = (int) database.insert(
+			insertId = (int) getDatabase().insert(
 					ClockItDBOpenHelper.TABLE_SERVICES, null, values);
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -364,7 +817,7 @@ public class ClockItDataSource {
 		Log.i(LOGTAG, "Created service " + insertId);
 
 		// Return a service object corresponding to the entry
-		return new Services(insertId, name, description, rate);
+		return new Services(insertId, name, description, rateCents);
 	}
 
 	/**
@@ -377,26 +830,12 @@ public class ClockItDataSource {
 		List<Services> services = new ArrayList<Services>();
 
 		// Cursor holding query to database for all services
-		Cursor cursor = database.query(ClockItDBOpenHelper.TABLE_SERVICES,
+		Cursor cursor = getDatabase().query(ClockItDBOpenHelper.TABLE_SERVICES,
 				allServiceColumns, null, null, null, null, null);
 
-		if (cursor.getCount() > 0) {
-			// Loops through values retrieved by cursor
-			while (cursor.moveToNext()) {
-				// Creates service object from cursor location
-				Services service = new Services(
-						cursor.getInt(cursor
-								.getColumnIndex(ClockItDBOpenHelper.SERVICES_ID)),
-						cursor.getString(cursor
-								.getColumnIndex(ClockItDBOpenHelper.SERVICES_NAME)),
-						cursor.getString(cursor
-								.getColumnIndex(ClockItDBOpenHelper.SERVICES_DESCRIPTION)),
-						cursor.getDouble(cursor
-								.getColumnIndex(ClockItDBOpenHelper.SERVICES_RATE)));
-
-				// Add service to list
-				services.add(service);
-			}
+		// Loops through values retrieved by cursor, reusing cached services
+		while (cursor.moveToNext()) {
+			services.add(readCachedService(cursor, 0));
 		}
 		cursor.close();
 
@@ -414,26 +853,22 @@ public class ClockItDataSource {
 	 * @return The service or null.
 	 */
 	public Services getServiceById(int serviceId) {
-		// Cursor holding query for service by id
-		Cursor cursor = database.query(ClockItDBOpenHelper.TABLE_SERVICES,
-				allServiceColumns, ClockItDBOpenHelper.SERVICES_ID + " = ?",
-				new String[] { String.valueOf(serviceId) }, null, null, null);
+		// Return the service if it was already loaded
+		Services service = serviceCache.get(serviceId);
+		if (service != null) {
+			return service;
+		}
 
-		Services service = null;
+		// Cursor holding query for service by id
+		Cursor cursor = getDatabase().rawQuery(SERVICE_BY_ID_SELECT,
+				new String[] { String.valueOf(serviceId) });
 
 		if (cursor.getCount() > 0) {
 			cursor.moveToFirst();
 
 			// Creates service object from cursor location and returns
-			service = new Services(
-					cursor.getInt(cursor
-							.getColumnIndex(ClockItDBOpenHelper.SERVICES_ID)),
-					cursor.getString(cursor
-							.getColumnIndex(ClockItDBOpenHelper.SERVICES_NAME)),
-					cursor.getString(cursor
-							.getColumnIndex(ClockItDBOpenHelper.SERVICES_DESCRIPTION)),
-					cursor.getDouble(cursor
-							.getColumnIndex(ClockItDBOpenHelper.SERVICES_RATE)));
+			service = readService(cursor, 0);
+			serviceCache.put(serviceId, service);
 		}
 		cursor.close();
 
@@ -451,51 +886,97 @@ public class ClockItDataSource {
 	 *            The new name value for the service.
 	 * @param description
 	 *            The new description value for the service.
-	 * @param rate
-	 *            The new rate value for the service.
+	 * @param rateCents
+	 *            The new rate value for the service in cents per hour.
 	 * @param serviceId
 	 *            The id of the service to update.
 	 * @return The updated service object.
 	 */
-	public Services updateService(String name, String description, Double rate,
-			int serviceId) {
+	public Services updateService(String name, String description,
+			long rateCents, int serviceId) {
 		// Variable to hold map of values to columns
 		ContentValues values = new ContentValues();
 
 		// Put supplied values into variable
 		values.put(ClockItDBOpenHelper.SERVICES_NAME, name);
 		values.put(ClockItDBOpenHelper.SERVICES_DESCRIPTION, description);
-		values.put(ClockItDBOpenHelper.SERVICES_RATE, rate);
+		values.put(ClockItDBOpenHelper.SERVICES_RATE_CENTS, rateCents);
 
-		// Update entry and return the generated id
+		// Update entry and total the service's time stamps again at the new
+		// rate
+		getDatabase().beginTransaction();
 		try {
-			database.update(ClockItDBOpenHelper.TABLE_SERVICES, values,
+			getDatabase().update(ClockItDBOpenHelper.TABLE_SERVICES, values,
 					ClockItDBOpenHelper.SERVICES_ID + " = ?",
 					new String[] { String.valueOf(serviceId) });
+
+			String linksOfService = ClockItDBOpenHelper.DAILY_TOTALS_CLIENT_TO_SERVICE_ID
+					+ " IN (SELECT "
+					+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID
+					+ " FROM "
+					+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES
+					+ " WHERE "
+					+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID
+					+ " = ?)";
+			getDatabase().delete(ClockItDBOpenHelper.TABLE_DAILY_TOTALS,
+					linksOfService, new String[] { String.valueOf(serviceId) });
+			ClockItDBOpenHelper.fillDailyTotals(getDatabase(), "ts."
+					+ linksOfService, new Object[] { serviceId });
+
+			getDatabase().setTransactionSuccessful();
 		} catch (Exception e) {
 			e.printStackTrace();
 			return null;
+		} finally {
+			getDatabase().endTransaction();
 		}
 
 		Log.i(LOGTAG, "Updated service " + serviceId);
 
+		// Drop the old service from every cache, along with the clients whose
+		// service lists hold it
+		serviceCache.invalidate(serviceId);
+		clientCache.invalidateAll();
+
 		// Return a service object corresponding to the entry
-		return new Services(serviceId, name, description, rate);
+		Services service = new Services(serviceId, name, description, rateCents);
+		serviceCache.put(serviceId, service);
+		return service;
 	}
 
 	/**
-	 * Deletes the service associated with the supplied id.
+	 * Deletes the service associated with the supplied id, along with its time
+	 * stamps. Any of them the user is clocked in to are removed from the open
+	 * shift record.
 	 * 
 	 * @param serviceId
 	 *            The id of the service to delete.
 	 */
 	public void deleteService(int serviceId) {
-		// Query the services table to delete the service with the supplied id
-		database.delete(ClockItDBOpenHelper.TABLE_SERVICES,
-				ClockItDBOpenHelper.SERVICES_ID + " = ?",
-				new String[] { String.valueOf(serviceId) });
+		List<TimeStamp> open;
+		getDatabase().beginTransaction();
+		try {
+			// The delete cascades to the service's time stamps, so find the
+			// open ones first
+			open = getOpenTimeStamps("s." + ClockItDBOpenHelper.SERVICES_ID,
+					serviceId);
+
+			// Query the services table to delete the service with the
+			// supplied id
+			getDatabase().delete(ClockItDBOpenHelper.TABLE_SERVICES,
+					ClockItDBOpenHelper.SERVICES_ID + " = ?",
+					new String[] { String.valueOf(serviceId) });
+
+			getDatabase().setTransactionSuccessful();
+		} finally {
+			getDatabase().endTransaction();
+		}
+		serviceCache.invalidate(serviceId);
+		clientCache.invalidateAll();
 
 		Log.i(LOGTAG, "Deleted service " + serviceId);
+
+		removeOpenShifts(open);
 	}
 
 	/**
@@ -504,73 +985,101 @@ public class ClockItDataSource {
 	 * @return True if the user is clocked in. False otherwise.
 	 */
 	public boolean isClockedIn() {
-		// Cursor holding query for time stamp with no clock out
-		Cursor cursor = database.query(ClockItDBOpenHelper.TABLE_TIME_STAMPS,
-				allTimeStampColumns, ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT
-						+ " = ?", new String[] { String.valueOf(-1) }, null,
-				null, null);
-
 		// If a time stamp exists with no clock out then user is clocked in
-		Boolean isClockedIn = cursor.getCount() > 0;
-		cursor.close();
+		return getStatements().queryForLong(CLOCKED_IN_SELECT, -1, 0) != 0;
+	}
 
-		return isClockedIn;
+	/**
+	 * Retrieves the persisted record of the open shifts. Reading it does not
+	 * touch the database.
+	 * 
+	 * @return The open shift record.
+	 */
+	public ActiveShiftStore getActiveShift() {
+		return activeShift;
 	}
 
-	public TimeStamp getCurrentTimeStamp() {
-		// Cursor holding query for time stamp with no clock out
-		Cursor cursor = database.query(ClockItDBOpenHelper.TABLE_TIME_STAMPS,
-				allTimeStampColumns, ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT
-						+ " = ?", new String[] { String.valueOf(-1) }, null,
-				null, null);
+	/**
+	 * Retrieves the application's journal of clock events, through which the
+	 * user clocks in and out, pauses and resumes without waiting on the
+	 * database.
+	 * 
+	 * @return The journal of clock events.
+	 */
+	public ClockJournal getClockJournal() {
+		return application.getClockJournal();
+	}
 
-		TimeStamp timeStamp = null;
+	/**
+	 * Retrieves the time stamps the user is currently clocked in to.
+	 * 
+	 * @return The open time stamps, oldest clock in first.
+	 */
+	public List<TimeStamp> getOpenTimeStamps() {
+		// Query for the time stamps with no clock out joined to their client
+		// and service
+		return queryTimeStamps("ts." + ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT
+				+ " = ?", new String[] { String.valueOf(-1) }, "ts."
+				+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN + ", ts."
+				+ ClockItDBOpenHelper.TIME_STAMPS_ID);
+	}
 
-		if (cursor.getCount() > 0) {
-			cursor.moveToFirst();
+	/**
+	 * Retrieves the open time stamps of a single client or service.
+	 * 
+	 * @param column
+	 *            The client or service id column of the time stamp join
+	 *            select.
+	 * @param id
+	 *            The id of the client or service.
+	 * @return The open time stamps.
+	 */
+	private List<TimeStamp> getOpenTimeStamps(String column, int id) {
+		return queryTimeStamps("ts." + ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT
+				+ " = ? AND " + column + " = ?", new String[] {
+				String.valueOf(-1), String.valueOf(id) }, null);
+	}
 
-			int clientToServiceId = cursor
-					.getInt(cursor
-							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID));
-
-			timeStamp = new TimeStamp(
-					cursor.getInt(cursor
-							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_ID)),
-					clientToServiceId,
-					cursor.getLong(cursor
-							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN)),
-					cursor.getLong(cursor
-							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT)),
-					cursor.getString(cursor
-							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION)),
-					getServiceById(getClientToServiceServiceId(clientToServiceId)),
-					getClientById(getClientToServiceClientId(clientToServiceId)));
+	/**
+	 * Removes the shifts of deleted time stamps from the open shift record.
+	 * 
+	 * @param deleted
+	 *            The open time stamps that were deleted.
+	 */
+	private void removeOpenShifts(List<TimeStamp> deleted) {
+		for (TimeStamp timeStamp : deleted) {
+			activeShift.remove(timeStamp.getId());
 		}
-		cursor.close();
-
-		return timeStamp;
 	}
 
 	/**
-	 * Clocks the user in for the supplied client and service.
+	 * Clocks the user in at the time of a clock in event from the clock
+	 * journal. The user is only clocked in through the journal, which keeps
+	 * the open shift record in line with the events, so the record is left to
+	 * it.
 	 * 
+	 * @param timeStampId
+	 *            The id reserved for the time stamp, or 0 to generate one.
 	 * @param clientId
 	 *            The client to clock in for.
 	 * @param serviceId
 	 *            The service to clock in to.
-	 * @return The created TimeStamp object.
+	 * @param clockIn
+	 *            The clock in time in milliseconds.
+	 * @return The created TimeStamp object, or null if it was not created.
 	 */
-	public TimeStamp createTimeStamp(int clientId, int serviceId) {
+	TimeStamp createTimeStamp(int timeStampId, int clientId, int serviceId,
+			long clockIn) {
 		// Variable to hold map of values to columns
 		ContentValues values = new ContentValues();
 
 		// Get service id if it exists or create if it doesn't
 		int clientToServiceId = getClientToServiceId(clientId, serviceId);
 
-		// Get the current time
-		long clockIn = System.currentTimeMillis();
-
 		// Put supplied values into variable
+		if (timeStampId > 0) {
+			values.put(ClockItDBOpenHelper.TIME_STAMPS_ID, timeStampId);
+		}
 		values.put(ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID,
 				clientToServiceId);
 		values.put(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN, clockIn);
@@ -579,183 +1088,568 @@ public class ClockItDataSource {
 		// Insert new entry and return the generated id
 		int insertId;
 		try {
-			insertId = (int) database.insert(
+			insertId = (int) getDatabase().insert(
 					ClockItDBOpenHelper.TABLE_TIME_STAMPS, null, values);
 		} catch (Exception e) {
 			e.printStackTrace();
 			return null;
 		}
 
+		// Insert reports a failure, such as a taken id or a missing client to
+		// service, by returning -1 instead of throwing
+		if (insertId == -1) {
+			Log.e(LOGTAG, "Unable to create time stamp " + timeStampId);
+			return null;
+		}
+
 		Log.i(LOGTAG, "Created time stamp " + insertId);
 
-		// Return a time stamp object corresponding to the entry
-		return new TimeStamp(insertId, clientToServiceId, clockIn, 0, null,
+		// Create a time stamp object corresponding to the entry
+		return new TimeStamp(insertId, clientToServiceId, clockIn, -1, null,
 				getServiceById(serviceId), getClientById(clientId));
 	}
 
 	/**
-	 * Clocks the user out of the current time stamp.
+	 * Reserves a block of time stamp ids so clock ins can be acknowledged
+	 * before their time stamps are inserted. The table's autoincrement
+	 * sequence is moved past the block so no other insert takes its ids.
 	 * 
+	 * @param count
+	 *            The number of ids to reserve.
+	 * @return The first reserved id.
+	 */
+	int reserveTimeStampIds(int count) {
+		getDatabase().beginTransaction();
+		try {
+			Cursor cursor = getDatabase().rawQuery(TIME_STAMP_LAST_ID_SELECT,
+					new String[] { ClockItDBOpenHelper.TABLE_TIME_STAMPS });
+			long first;
+			try {
+				cursor.moveToFirst();
+				first = cursor.getLong(0) + 1;
+			} finally {
+				cursor.close();
+			}
+			long last = first + count - 1;
+
+			ContentValues values = new ContentValues();
+			values.put("seq", last);
+			if (getDatabase().update("sqlite_sequence", values, "name = ?",
+					new String[] { ClockItDBOpenHelper.TABLE_TIME_STAMPS }) == 0) {
+				values.put("name", ClockItDBOpenHelper.TABLE_TIME_STAMPS);
+				getDatabase().insert("sqlite_sequence", null, values);
+			}
+
+			getDatabase().setTransactionSuccessful();
+			return (int) first;
+		} finally {
+			getDatabase().endTransaction();
+		}
+	}
+
+	/**
+	 * Retrieves the sequence of the last clock event applied from the clock
+	 * journal.
+	 * 
+	 * @return The sequence, or 0 if no event has been applied.
+	 */
+	long getAppliedClockEvent() {
+		return getStatements().queryForLong(CLOCK_JOURNAL_SELECT, 0, 0);
+	}
+
+	/**
+	 * Records the sequence of the last clock event applied from the clock
+	 * journal. Called in the same transaction as the event is applied, or on
+	 * its own when an event that failed to apply is quarantined.
+	 * 
+	 * @param sequence
+	 *            The sequence of the applied event.
+	 */
+	void setAppliedClockEvent(long sequence) {
+		ContentValues values = new ContentValues();
+		values.put(ClockItDBOpenHelper.CLOCK_JOURNAL_APPLIED_SEQUENCE, sequence);
+		getDatabase().update(ClockItDBOpenHelper.TABLE_CLOCK_JOURNAL, values,
+				ClockItDBOpenHelper.CLOCK_JOURNAL_ID + " = 0", null);
+	}
+
+	/**
+	 * Imports finished time stamps, such as shifts kept before the app was
+	 * used, in a single transaction with precompiled inserts. Each time stamp's
+	 * client to service, clock in, clock out and description are written and
+	 * it is added to its daily total. Either every time stamp is imported or
+	 * none are.
+	 * 
+	 * Open time stamps (clock out of -1) are skipped. The user can only be
+	 * clocked in through the clock journal, which keeps the open shift record
+	 * in step with the database.
+	 * 
+	 * @param timeStamps
+	 *            The time stamps to import. Their ids are ignored.
+	 * @return The number of time stamps imported, or 0 if the import failed.
+	 */
+	public int createTimeStamps(List<TimeStamp> timeStamps) {
+		SQLiteStatement insert = getDatabase().compileStatement(
+				TIME_STAMP_INSERT);
+		SQLiteStatement rate = getDatabase()
+				.compileStatement(CLIENT_TO_SERVICE_RATE);
+		SQLiteStatement add = getDatabase().compileStatement(DAILY_TOTAL_ADD);
+
+		// Rates of the client to services seen so far
+		SparseArray<Long> rates = new SparseArray<Long>();
+
+		// Number of finished time stamps imported
+		int imported = 0;
+
+		getDatabase().beginTransaction();
+		try {
+			for (TimeStamp timeStamp : timeStamps) {
+				int clientToServiceId = timeStamp.getClientToServiceId();
+				long clockIn = timeStamp.getClockIn();
+				long clockOut = timeStamp.getClockOut();
+
+				// Open time stamps would be missing from the open shift record
+				if (clockOut == -1) {
+					continue;
+				}
+
+				insert.bindLong(1, clientToServiceId);
+				insert.bindLong(2, clockIn);
+				insert.bindLong(3, clockOut);
+				bindStringOrNull(insert, 4, timeStamp.getDescription());
+				insert.executeInsert();
+				imported++;
+
+				Long rateCents = rates.get(clientToServiceId);
+				if (rateCents == null) {
+					rate.bindLong(1, clientToServiceId);
+					rateCents = rate.simpleQueryForLong();
+					rates.put(clientToServiceId, rateCents);
+				}
+
+				long millis = clockOut - clockIn;
+				addToDailyTotal(add, clientToServiceId, clockIn, millis,
+						Money.earned(millis, rateCents), 1);
+			}
+			getDatabase().setTransactionSuccessful();
+		} catch (Exception e) {
+			e.printStackTrace();
+			return 0;
+		} finally {
+			getDatabase().endTransaction();
+			insert.close();
+			rate.close();
+			add.close();
+		}
+
+		Log.i(LOGTAG, "Imported " + imported + " of " + timeStamps.size()
+				+ " time stamps");
+
+		return imported;
+	}
+
+	/**
+	 * Clocks the user out of one of their open time stamps at the time of a
+	 * clock out event from the clock journal. If the time stamp is clocked out
+	 * by two callers at once only one of them succeeds, and if it is paused or
+	 * resumed while clocking out its breaks are read again.
+	 * 
+	 * @param timeStampId
+	 *            The id of the open time stamp to clock out of.
 	 * @param description
 	 *            A description of what was done during the shift.
-	 * @return The completed time stamp.
+	 * @param clockOut
+	 *            The clock out time in milliseconds.
+	 * @return The completed time stamp, or null if the time stamp was not
+	 *         open.
+	 * @throws IllegalStateException
+	 *             If the time stamp's pause and resume times are damaged, or
+	 *             it is still changing after CLOCK_OUT_ATTEMPTS tries.
 	 */
-	public TimeStamp ClockOut(String description) {
-		// Retrieve the current jobs time stamp
-		Cursor cursor = database.query(ClockItDBOpenHelper.TABLE_TIME_STAMPS,
-				allTimeStampColumns, ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT
-						+ " = ?", new String[] { String.valueOf(-1) }, null,
-				null, null);
-
-		if (cursor.getCount() > 0) {
-			cursor.moveToFirst();
+	TimeStamp ClockOut(int timeStampId, String description, long clockOut) {
+		for (int attempt = 0; attempt < CLOCK_OUT_ATTEMPTS; attempt++) {
+			// Retrieve the open time stamp
+			Cursor cursor = getDatabase().query(
+					ClockItDBOpenHelper.TABLE_TIME_STAMPS,
+					allTimeStampColumns,
+					ClockItDBOpenHelper.TIME_STAMPS_ID + " = ? AND "
+							+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT
+							+ " = ?", new String[] {
+							String.valueOf(timeStampId), String.valueOf(-1) },
+					null, null, null);
+
+			if (!cursor.moveToFirst()) {
+				cursor.close();
+
+				Log.e(LOGTAG, "Time stamp " + timeStampId
+						+ " is not open and cannot be clocked out of");
+
+				// Nothing is open so the record should not be either
+				activeShift.remove(timeStampId);
+
+				return null;
+			}
 
 			// Retrieve the values
-			int timeStampId = cursor.getInt(cursor
-					.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_ID));
 			int clientToServiceId = cursor
-					.getInt(cursor
-							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID));
-			long clockIn = cursor.getLong(cursor
-					.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN));
-			long clockOut = System.currentTimeMillis();
+					.getInt(TIME_STAMP_CLIENT_TO_SERVICE_ID);
+			long clockIn = cursor.getLong(TIME_STAMP_CLOCK_IN);
+			byte[] segments = cursor.getBlob(TIME_STAMP_SEGMENTS);
+			cursor.close();
+
+			// Damaged times would never match the length checked below
+			if (segments != null
+					&& segments.length % Segments.TIME_BYTES != 0) {
+				throw new IllegalStateException("Time stamp " + timeStampId
+						+ " has " + segments.length
+						+ " bytes of pause and resume times");
+			}
 
 			// Variable to hold map of values to columns
 			ContentValues values = new ContentValues();
 
-			// Put supplied values into variable
-			values.put(ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION, description);
+			// Put supplied values into variable. A break still running ends
+			// at the clock out.
+			values.put(ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION,
+					description);
 			values.put(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT, clockOut);
-
-			// Update the time stamp with the clock out time and description
-			database.update(ClockItDBOpenHelper.TABLE_TIME_STAMPS, values,
-					ClockItDBOpenHelper.TIME_STAMPS_ID + " = ?",
-					new String[] { String.valueOf(timeStampId) });
+			values.put(ClockItDBOpenHelper.TIME_STAMPS_BREAK_MILLIS,
+					Segments.getBreakMillis(segments, clockOut));
 
 			// Create a new TimeStamp object from the data
-			TimeStamp timeStamp = new TimeStamp(
-					timeStampId,
-					clientToServiceId,
-					clockIn,
-					clockOut,
-					description,
+			TimeStamp timeStamp = new TimeStamp(timeStampId,
+					clientToServiceId, clockIn, clockOut, description,
+					segments,
 					getServiceById(getClientToServiceServiceId(clientToServiceId)),
 					getClientById(getClientToServiceClientId(clientToServiceId)));
 
-			Log.i(LOGTAG, "Clocked out of timestamp " + timeStampId);
-
-			cursor.close();
+			// Update the time stamp with the clock out time and description
+			// only if it is still open and has not been paused or resumed
+			// since it was read, and add it to its daily total
+			int updated;
+			getDatabase().beginTransaction();
+			try {
+				updated = getDatabase().update(
+						ClockItDBOpenHelper.TABLE_TIME_STAMPS,
+						values,
+						ClockItDBOpenHelper.TIME_STAMPS_ID + " = ? AND "
+								+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT
+								+ " = ? AND LENGTH(IFNULL("
+								+ ClockItDBOpenHelper.TIME_STAMPS_SEGMENTS
+								+ ", X'')) = "
+								+ Segments.getTimeCount(segments)
+								* Segments.TIME_BYTES, new String[] {
+								String.valueOf(timeStampId),
+								String.valueOf(-1) });
+				if (updated == 1) {
+					addToDailyTotal(clientToServiceId, clockIn,
+							timeStamp.getDurationMillis(),
+							timeStamp.getEarnedCents(), 1);
+				}
+				getDatabase().setTransactionSuccessful();
+			} finally {
+				getDatabase().endTransaction();
+			}
 
-			// Return the timestamp
-			return timeStamp;
+			if (updated == 1) {
+				// Remove the shift from the open shift record
+				activeShift.remove(timeStampId);
 
-		} else {
-			cursor.close();
+				Log.i(LOGTAG, "Clocked out of timestamp " + timeStampId);
 
-			Log.e(LOGTAG, "Failed to retrieve a timestamp to clock out of");
+				// Return the timestamp
+				return timeStamp;
+			}
 
-			return null;
+			// Clocked out of, paused or resumed elsewhere. Trying again either
+			// finds the time stamp closed or reads its new breaks.
+			Log.w(LOGTAG, "Time stamp " + timeStampId
+					+ " changed while clocking out");
 		}
 
+		throw new IllegalStateException("Time stamp " + timeStampId
+				+ " kept changing while clocking out");
 	}
 
-	public TimeStamp getTimeStampById(int timeStampID) {
-		// Cursor holding query for time stamp with no clock out
-		Cursor cursor = database.query(ClockItDBOpenHelper.TABLE_TIME_STAMPS,
-				allTimeStampColumns, ClockItDBOpenHelper.TIME_STAMPS_ID
-						+ " = ?", new String[] { String.valueOf(timeStampID) }, null,
-				null, null);
+	/**
+	 * Appends the time of a pause or resume event from the clock journal to
+	 * an open time stamp's packed pause and resume times in place, so pausing
+	 * costs the same however many breaks were taken. The open shift record is
+	 * then given the new times.
+	 * 
+	 * @param timeStampId
+	 *            The id of the open time stamp.
+	 * @param paused
+	 *            True to resume a paused time stamp, false to pause a running
+	 *            one.
+	 * @param time
+	 *            The pause or resume time in milliseconds.
+	 * @return True if the time was appended and false otherwise.
+	 */
+	boolean appendSegmentTime(int timeStampId, boolean paused, long time) {
+		SQLiteStatement append = getDatabase()
+				.compileStatement(TIME_STAMP_SEGMENT_APPEND);
+		byte[] segments = null;
+		boolean appended;
 
-		TimeStamp timeStamp = null;
+		getDatabase().beginTransaction();
+		try {
+			append.bindBlob(1, Segments.pack(time));
+			append.bindLong(2, timeStampId);
+			append.bindLong(3, paused ? 1 : 0);
+			appended = append.executeUpdateDelete() == 1;
+
+			// Read the times back for the open shift record
+			if (appended) {
+				Cursor cursor = getDatabase().rawQuery("SELECT "
+						+ ClockItDBOpenHelper.TIME_STAMPS_SEGMENTS + " FROM "
+						+ ClockItDBOpenHelper.TABLE_TIME_STAMPS + " WHERE "
+						+ ClockItDBOpenHelper.TIME_STAMPS_ID + " = ?",
+						new String[] { String.valueOf(timeStampId) });
+				try {
+					cursor.moveToFirst();
+					segments = cursor.getBlob(0);
+				} finally {
+					cursor.close();
+				}
+			}
 
-		if (cursor.getCount() > 0) {
-			cursor.moveToFirst();
+			// Also ended successfully when nothing was appended, since a
+			// failed inner transaction would roll back the caller's
+			// transaction with it
+			getDatabase().setTransactionSuccessful();
+		} finally {
+			getDatabase().endTransaction();
+			append.close();
+		}
 
-			int clientToServiceId = cursor
-					.getInt(cursor
-							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID));
-
-			timeStamp = new TimeStamp(
-					cursor.getInt(cursor
-							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_ID)),
-					clientToServiceId,
-					cursor.getLong(cursor
-							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN)),
-					cursor.getLong(cursor
-							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT)),
-					cursor.getString(cursor
-							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION)),
-					getServiceById(getClientToServiceServiceId(clientToServiceId)),
-					getClientById(getClientToServiceClientId(clientToServiceId)));
+		if (!appended) {
+			Log.e(LOGTAG, "Time stamp " + timeStampId + " cannot be "
+					+ (paused ? "resumed" : "paused"));
+			return false;
 		}
-		cursor.close();
 
-		return timeStamp;
+		Log.i(LOGTAG, (paused ? "Resumed" : "Paused") + " time stamp "
+				+ timeStampId);
+
+		activeShift.updateSegments(timeStampId, segments);
+		return true;
 	}
 
 	/**
-	 * Retrieves all of the finished time stamps
+	 * Retrieves a single time stamp that corresponds to the supplied id.
+	 * 
+	 * @param timeStampID
+	 *            The id of the time stamp to retrieve.
+	 * @return The time stamp or null.
+	 */
+	public TimeStamp getTimeStampById(int timeStampID) {
+		// Query for the time stamp joined to its client and service
+		List<TimeStamp> timeStamps = queryTimeStamps("ts."
+				+ ClockItDBOpenHelper.TIME_STAMPS_ID + " = ?",
+				new String[] { String.valueOf(timeStampID) }, null);
+
+		// Return the time stamp or null if one was not found
+		return timeStamps.isEmpty() ? null : timeStamps.get(0);
+	}
+
+	/**
+	 * Retrieves all of the finished time stamps, newest first.
 	 * 
 	 * @return The list of time stamps.
 	 */
 	public List<TimeStamp> getAllTimeStamps() {
-		// Variable to hold time stamps
-		List<TimeStamp> timeStamps = new ArrayList<TimeStamp>();
+		// Query for all completed time stamps joined to their clients and
+		// services
+		List<TimeStamp> timeStamps = queryTimeStamps("ts."
+				+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT + " != ?",
+				new String[] { String.valueOf(-1) }, "ts."
+						+ ClockItDBOpenHelper.TIME_STAMPS_ID + " DESC");
+
+		Log.i(LOGTAG, "Retrieved " + timeStamps.size() + " time stamps");
 
-		// Cursor holding query to database for all completed time stamps
-		Cursor cursor = database.query(ClockItDBOpenHelper.TABLE_TIME_STAMPS,
-				allTimeStampColumns, ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT
-						+ " != ?", new String[] { String.valueOf(-1) }, null,
-				null, null);
+		// Return list of time stamps
+		return timeStamps;
+	}
 
-		int clientToServiceId;
+	/**
+	 * Retrieves one page of finished time stamps, newest clock in first. Pages
+	 * are keyed by the last time stamp of the previous page so each page is an
+	 * index range scan no matter how deep into the history it is.
+	 * 
+	 * @param afterClockIn
+	 *            The clock in time of the last time stamp on the previous page,
+	 *            or Long.MAX_VALUE for the first page.
+	 * @param afterId
+	 *            The id of the last time stamp on the previous page, or
+	 *            Integer.MAX_VALUE for the first page.
+	 * @param limit
+	 *            The maximum number of time stamps on the page.
+	 * @return The page of time stamps.
+	 */
+	public List<TimeStamp> getTimeStampsPage(long afterClockIn, int afterId,
+			int limit) {
+		return getTimeStampsPage(null, afterClockIn, afterId, limit);
+	}
 
-		if (cursor.getCount() > 0) {
-			// Loops through values retrieved by cursor
-			while (cursor.moveToNext()) {
-				clientToServiceId = cursor
-						.getInt(cursor
-								.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID));
-
-				// Creates time stamp object from cursor location
-				TimeStamp timeStamp = new TimeStamp(
-						cursor.getInt(cursor
-								.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_ID)),
-						clientToServiceId,
-						cursor.getLong(cursor
-								.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN)),
-						cursor.getLong(cursor
-								.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT)),
-						cursor.getString(cursor
-								.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION)),
-						getServiceById(getClientToServiceServiceId(clientToServiceId)),
-						getClientById(getClientToServiceClientId(clientToServiceId)));
-
-				// Add time stamp to list
-				timeStamps.add(timeStamp);
-			}
+	/**
+	 * Retrieves one page of the finished time stamps matching a filter, newest
+	 * clock in first. The filter is added to the page's where clause so the
+	 * database only reads the matching rows.
+	 * 
+	 * @param filter
+	 *            The conditions the time stamps must match, or null for all
+	 *            time stamps.
+	 * @param afterClockIn
+	 *            The clock in time of the last time stamp on the previous page,
+	 *            or Long.MAX_VALUE for the first page.
+	 * @param afterId
+	 *            The id of the last time stamp on the previous page, or
+	 *            Integer.MAX_VALUE for the first page.
+	 * @param limit
+	 *            The maximum number of time stamps on the page.
+	 * @return The page of time stamps.
+	 */
+	public List<TimeStamp> getTimeStampsPage(TimeStampFilter filter,
+			long afterClockIn, int afterId, int limit) {
+		// Select the completed time stamps that sort after the key
+		StringBuilder where = new StringBuilder("ts."
+				+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT + " != ? AND (ts."
+				+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN + " < ? OR (ts."
+				+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN + " = ? AND ts."
+				+ ClockItDBOpenHelper.TIME_STAMPS_ID + " < ?))");
+		List<String> args = new ArrayList<String>();
+		args.add(String.valueOf(-1));
+		args.add(String.valueOf(afterClockIn));
+		args.add(String.valueOf(afterClockIn));
+		args.add(String.valueOf(afterId));
+
+		// Narrow them down by the filter
+		if (filter != null) {
+			filter.appendTo(where, args);
 		}
-		cursor.close();
 
-		Log.i(LOGTAG, "Retrieved " + timeStamps.size() + " time stamps");
+		return queryTimeStamps(where.toString(),
+				args.toArray(new String[args.size()]), "ts."
+						+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN + " DESC, ts."
+						+ ClockItDBOpenHelper.TIME_STAMPS_ID + " DESC LIMIT "
+						+ limit);
+	}
 
-		Collections.reverse(timeStamps);
+	/**
+	 * Opens a cursor over the rows of a client's invoice, oldest first, so they
+	 * can be streamed without building TimeStamp objects. The caller must close
+	 * the cursor.
+	 * 
+	 * @param clientId
+	 *            The id of the client to retrieve invoice rows for.
+	 * @return Cursor whose columns are read by the INVOICE_ ordinals.
+	 */
+	public Cursor getClientInvoiceRows(int clientId) {
+		return getDatabase().rawQuery(INVOICE_SELECT + " ORDER BY ts."
+				+ ClockItDBOpenHelper.TIME_STAMPS_ID,
+				new String[] { String.valueOf(clientId) });
+	}
 
-		// Return list of time stamps
-		return timeStamps;
+	/**
+	 * Opens a cursor over a client's total time and earnings for each service
+	 * name, read from the daily totals so the cost grows with the number of
+	 * days worked rather than the number of time stamps. The caller must close
+	 * the cursor.
+	 * 
+	 * @param clientId
+	 *            The id of the client to total.
+	 * @return Cursor whose columns are read by the SERVICE_TOTAL_ ordinals.
+	 */
+	public Cursor getClientServiceTotals(int clientId) {
+		return getDatabase().rawQuery(SERVICE_TOTALS_SELECT,
+				new String[] { String.valueOf(clientId) });
 	}
 
-	public List<TimeStamp> getClientsTimeStamps(int clientID) {
-		// Variable to hold time stamps
-		List<TimeStamp> timeStamps = getAllTimeStamps();
+	/**
+	 * Totals the time and earnings of every time stamp clocked in between the
+	 * supplied times, counting whole local days, from the daily totals.
+	 * 
+	 * @param start
+	 *            A time on the first day to total.
+	 * @param end
+	 *            A time on the last day to total.
+	 * @return The total milliseconds worked and cents earned, in that order.
+	 */
+	public long[] getTotalsBetween(long start, long end) {
+		Cursor cursor = getDatabase().rawQuery("SELECT TOTAL("
+				+ ClockItDBOpenHelper.DAILY_TOTALS_MILLIS + "), TOTAL("
+				+ ClockItDBOpenHelper.DAILY_TOTALS_CENTS + ") FROM "
+				+ ClockItDBOpenHelper.TABLE_DAILY_TOTALS + " WHERE "
+				+ ClockItDBOpenHelper.DAILY_TOTALS_DAY + " BETWEEN "
+				+ ClockItDBOpenHelper.localDay("?") + " AND "
+				+ ClockItDBOpenHelper.localDay("?"),
+				new String[] { String.valueOf(start), String.valueOf(end) });
 
-		Collections.reverse(timeStamps);
+		try {
+			cursor.moveToFirst();
+			return new long[] { cursor.getLong(0), cursor.getLong(1) };
+		} finally {
+			cursor.close();
+		}
+	}
 
-		for (TimeStamp timeStamp : timeStamps) {
-			if (timeStamp.getClient().getId() != clientID) {
-				timeStamps.remove(timeStamp);
-			}
+	/**
+	 * Throws away the daily totals and totals every finished time stamp again.
+	 * Used to check or repair the totals kept up to date by clocking out and
+	 * deleting time stamps.
+	 */
+	public void rebuildDailyTotals() {
+		getDatabase().beginTransaction();
+		try {
+			getDatabase().delete(ClockItDBOpenHelper.TABLE_DAILY_TOTALS, null,
+					null);
+			ClockItDBOpenHelper.fillDailyTotals(getDatabase(), null,
+					new Object[0]);
+			getDatabase().setTransactionSuccessful();
+		} finally {
+			getDatabase().endTransaction();
 		}
+
+		Log.i(LOGTAG, "Rebuilt daily totals");
+	}
+
+	/**
+	 * Throws away the search index and indexes every time stamp, client,
+	 * service and contact again. Used to repair the index, or to fill it after
+	 * rows were written with its triggers dropped.
+	 */
+	public void rebuildSearchIndex() {
+		getDatabase().beginTransaction();
+		try {
+			getDatabase().delete(ClockItDBOpenHelper.TABLE_SEARCH, null, null);
+			ClockItDBOpenHelper.fillSearchIndex(getDatabase());
+			getDatabase().setTransactionSuccessful();
+		} finally {
+			getDatabase().endTransaction();
+		}
+
+		Log.i(LOGTAG, "Rebuilt search index");
+	}
+
+	/**
+	 * Retrieves the finished time stamps for a single client, oldest first.
+	 * 
+	 * @param clientID
+	 *            The id of the client to retrieve time stamps for.
+	 * @return The list of time stamps for the client.
+	 */
+	public List<TimeStamp> getClientsTimeStamps(int clientID) {
+		// Query for the client's completed time stamps through the client to
+		// service link
+		List<TimeStamp> timeStamps = queryTimeStamps("cs."
+				+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID + " = ? AND ts."
+				+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT + " != ?",
+				new String[] { String.valueOf(clientID), String.valueOf(-1) },
+				"ts." + ClockItDBOpenHelper.TIME_STAMPS_ID);
+
+		Log.i(LOGTAG, "Retrieved " + timeStamps.size()
+				+ " time stamps for client " + clientID);
+
 		// Return list of time stamps for client
 		return timeStamps;
 	}
@@ -769,7 +1663,7 @@ public class ClockItDataSource {
 
 		// Update entry and return the generated id
 		try {
-			database.update(ClockItDBOpenHelper.TABLE_TIME_STAMPS, values,
+			getDatabase().update(ClockItDBOpenHelper.TABLE_TIME_STAMPS, values,
 					ClockItDBOpenHelper.TIME_STAMPS_ID + " = ?",
 					new String[] { String.valueOf(timeStampId) });
 		} catch (Exception e) {
@@ -779,16 +1673,239 @@ public class ClockItDataSource {
 
 		Log.i(LOGTAG, "Updated time stamp " + timeStampId);
 
+		// Only the description changes, so the daily totals stay as they are
 		return getTimeStampById(timeStampId);
 	}
 	
 	public void deleteTimeStamp(int timeStampId) {
-		// Query the services table to delete the time stamp with the supplied id
-		database.delete(ClockItDBOpenHelper.TABLE_TIME_STAMPS,
-				ClockItDBOpenHelper.TIME_STAMPS_ID + " = ?",
-				new String[] { String.valueOf(timeStampId) });
+		// Finished time stamps are taken back out of their daily total
+		TimeStamp timeStamp = getTimeStampById(timeStampId);
+
+		getDatabase().beginTransaction();
+		try {
+			// Query the services table to delete the time stamp with the
+			// supplied id
+			getDatabase().delete(ClockItDBOpenHelper.TABLE_TIME_STAMPS,
+					ClockItDBOpenHelper.TIME_STAMPS_ID + " = ?",
+					new String[] { String.valueOf(timeStampId) });
+
+			if (timeStamp != null && timeStamp.getClockOut() != -1) {
+				addToDailyTotal(timeStamp.getClientToServiceId(),
+						timeStamp.getClockIn(), -timeStamp.getDurationMillis(),
+						-timeStamp.getEarnedCents(), -1);
+			}
+
+			getDatabase().setTransactionSuccessful();
+		} finally {
+			getDatabase().endTransaction();
+		}
 
 		Log.i(LOGTAG, "Deleted time stamp " + timeStampId);
+
+		// Remove the deleted time stamp from the open shift record
+		activeShift.remove(timeStampId);
+	}
+
+	/**
+	 * Adds a finished time stamp to, or with negative amounts takes it out of,
+	 * the daily total of its client to service and clock in day. Totals left
+	 * without any time stamps are removed.
+	 * 
+	 * @param clientToServiceId
+	 *            The client to service of the time stamp.
+	 * @param clockIn
+	 *            The clock in time of the time stamp.
+	 * @param millis
+	 *            The time worked to add.
+	 * @param cents
+	 *            The earnings to add.
+	 * @param stamps
+	 *            1 when adding a time stamp, -1 when taking one out.
+	 */
+	private void addToDailyTotal(int clientToServiceId, long clockIn,
+			long millis, long cents, int stamps) {
+		SQLiteStatement add = getDatabase().compileStatement(DAILY_TOTAL_ADD);
+		try {
+			addToDailyTotal(add, clientToServiceId, clockIn, millis, cents,
+					stamps);
+		} finally {
+			add.close();
+		}
+	}
+
+	/**
+	 * Adds a finished time stamp to its daily total using an already compiled
+	 * DAILY_TOTAL_ADD statement, so totalling many time stamps compiles it
+	 * once.
+	 */
+	private void addToDailyTotal(SQLiteStatement add, int clientToServiceId,
+			long clockIn, long millis, long cents, int stamps) {
+		// Add to the existing total for the clock in day, which is worked
+		// out by SQLite the same way the daily totals were first filled
+		add.bindLong(1, millis);
+		add.bindLong(2, cents);
+		add.bindLong(3, stamps);
+		add.bindLong(4, clockIn);
+		add.bindLong(5, clientToServiceId);
+		int updated = add.executeUpdateDelete();
+
+		if (updated == 0 && stamps > 0) {
+			// First time stamp of the day, so start a new total
+			getDatabase().execSQL(DAILY_TOTAL_INSERT, new Object[] { clockIn,
+					clientToServiceId, millis, cents, stamps });
+		} else if (stamps < 0) {
+			// Drop the total once its last time stamp is gone
+			getDatabase().execSQL(DAILY_TOTAL_DELETE,
+					new Object[] { clockIn, clientToServiceId });
+		}
+	}
+
+	/**
+	 * Creates a client from the client columns of the cursor's current row.
+	 * 
+	 * @param cursor
+	 *            The cursor positioned on the row.
+	 * @param first
+	 *            The ordinal of the row's first client column.
+	 * @return The client.
+	 */
+	private Client readClient(Cursor cursor, int first) {
+		return new Client(cursor.getInt(first + CLIENT_ID),
+				cursor.getString(first + CLIENT_NAME),
+				cursor.getString(first + CLIENT_DESCRIPTION), servicesLoader);
+	}
+
+	/**
+	 * Returns the cached client of the cursor's current row, or creates it from
+	 * the row and caches it.
+	 */
+	private Client readCachedClient(Cursor cursor, int first) {
+		int clientId = cursor.getInt(first + CLIENT_ID);
+		Client client = clientCache.get(clientId);
+		if (client == null) {
+			client = readClient(cursor, first);
+			clientCache.put(clientId, client);
+		}
+		return client;
+	}
+
+	/**
+	 * Creates a service from the service columns of the cursor's current row.
+	 * 
+	 * @param cursor
+	 *            The cursor positioned on the row.
+	 * @param first
+	 *            The ordinal of the row's first service column.
+	 * @return The service.
+	 */
+	private static Services readService(Cursor cursor, int first) {
+		return new Services(cursor.getInt(first + SERVICE_ID),
+				cursor.getString(first + SERVICE_NAME), cursor.getString(first
+						+ SERVICE_DESCRIPTION), cursor.getLong(first
+						+ SERVICE_RATE));
+	}
+
+	/**
+	 * Returns the cached service of the cursor's current row, or creates it
+	 * from the row and caches it.
+	 */
+	private Services readCachedService(Cursor cursor, int first) {
+		int serviceId = cursor.getInt(first + SERVICE_ID);
+		Services service = serviceCache.get(serviceId);
+		if (service == null) {
+			service = readService(cursor, first);
+			serviceCache.put(serviceId, service);
+		}
+		return service;
+	}
+
+	/**
+	 * Creates a contact from the contact columns of the cursor's current row.
+	 * 
+	 * @param cursor
+	 *            The cursor positioned on the row.
+	 * @param first
+	 *            The ordinal of the row's first contact column.
+	 * @return The contact.
+	 */
+	private static Contact readContact(Cursor cursor, int first) {
+		return new Contact(cursor.getInt(first + CONTACT_ID),
+				cursor.getString(first + CONTACT_FIRST_NAME),
+				cursor.getString(first + CONTACT_LAST_NAME),
+				cursor.getString(first + CONTACT_EMAIL), cursor.getString(first
+						+ CONTACT_NUMBER));
+	}
+
+	/**
+	 * Binds a string that may be null to a statement.
+	 */
+	private static void bindStringOrNull(SQLiteStatement statement, int index,
+			String value) {
+		if (value == null) {
+			statement.bindNull(index);
+		} else {
+			statement.bindString(index, value);
+		}
+	}
+
+	/**
+	 * Runs the time stamp join select and builds a TimeStamp from each row in a
+	 * single pass over the cursor. Clients and services come from the entity
+	 * caches, so each is built once and shared by every time stamp that
+	 * references them.
+	 * 
+	 * @param selection
+	 *            The where clause to filter by, or null for all time stamps.
+	 * @param selectionArgs
+	 *            The values bound to the where clause.
+	 * @param orderBy
+	 *            The order by clause (and optional limit), or null for no
+	 *            ordering.
+	 * @return The list of time stamps matching the selection.
+	 */
+	private List<TimeStamp> queryTimeStamps(String selection,
+			String[] selectionArgs, String orderBy) {
+		// Build the full statement from the join select
+		StringBuilder sql = new StringBuilder(TIME_STAMP_JOIN_SELECT);
+		if (selection != null) {
+			sql.append(" WHERE ").append(selection);
+		}
+		if (orderBy != null) {
+			sql.append(" ORDER BY ").append(orderBy);
+		}
+
+		// Cursor holding the joined rows
+		Cursor cursor = getDatabase().rawQuery(sql.toString(), selectionArgs);
+
+		// Variable to hold time stamps
+		List<TimeStamp> timeStamps = new ArrayList<TimeStamp>(
+				cursor.getCount());
+
+		try {
+			// Loops through values retrieved by cursor
+			while (cursor.moveToNext()) {
+				// Reuse the client and service if they were already loaded,
+				// otherwise create them
+				Client client = readCachedClient(cursor, JOIN_CLIENT);
+				Services service = readCachedService(cursor, JOIN_SERVICE);
+
+				// Creates time stamp object from cursor location and adds it to
+				// the list
+				int first = JOIN_TIME_STAMP;
+				timeStamps.add(new TimeStamp(cursor.getInt(first + TIME_STAMP_ID),
+						cursor.getInt(first + TIME_STAMP_CLIENT_TO_SERVICE_ID),
+						cursor.getLong(first + TIME_STAMP_CLOCK_IN), cursor
+								.getLong(first + TIME_STAMP_CLOCK_OUT), cursor
+								.getString(first + TIME_STAMP_DESCRIPTION), cursor
+								.getBlob(first + TIME_STAMP_SEGMENTS), service,
+						client));
+			}
+		} finally {
+			cursor.close();
+		}
+
+		// Return list of time stamps
+		return timeStamps;
 	}
 
 	/**
@@ -802,27 +1919,12 @@ public class ClockItDataSource {
 	 * @return The ClientToService's id.
 	 */
 	public int getClientToServiceId(int clientId, int serviceId) {
-		// Cursor holding query for client to service
-		Cursor cursor = database.query(
-				ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES,
-				allClientToServiceColumns,
-				ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID + " = ? AND "
-						+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID
-						+ " = ?", new String[] { String.valueOf(clientId),
-						String.valueOf(serviceId) }, null, null, null);
-
-		int id;
-		// If there is an existing one, retrieve it
-		if (cursor.getCount() > 0) {
-			cursor.moveToFirst();
-			id = cursor
-					.getInt(cursor
-							.getColumnIndex(ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID));
-			// If not then create a new one
-		} else {
+		// Retrieve the existing one, or if there is none create a new one
+		int id = (int) getStatements().queryForLong(CLIENT_TO_SERVICE_ID_SELECT,
+				clientId, serviceId, -1);
+		if (id == -1) {
 			id = createClientToService(clientId, serviceId);
 		}
-		cursor.close();
 
 		Log.i(LOGTAG, "Retrieved client to service " + id);
 
@@ -838,27 +1940,9 @@ public class ClockItDataSource {
 	 * @return The service id associated with the ClientToService.
 	 */
 	public int getClientToServiceServiceId(int clientToServiceId) {
-		// Query to database for clients to services given the id
-		Cursor cursor = database.query(
-				ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES,
-				allClientToServiceColumns,
-				ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID + " = ?",
-				new String[] { String.valueOf(clientToServiceId) }, null, null,
-				null);
-
-		int id = -1;
-		if (cursor.getCount() > 0) {
-			cursor.moveToFirst();
-
-			// Retrieve the service id
-			id = cursor
-					.getInt(cursor
-							.getColumnIndex(ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID));
-		}
-		cursor.close();
-
-		// Return the service id
-		return id;
+		// Return the service id or -1 if there is no such client to service
+		return (int) getStatements().queryForLong(
+				CLIENT_TO_SERVICE_SERVICE_ID_SELECT, clientToServiceId, -1);
 	}
 
 	/**
@@ -869,27 +1953,9 @@ public class ClockItDataSource {
 	 * @return The client id associated with the ClientToService.
 	 */
 	public int getClientToServiceClientId(int clientToClientId) {
-		// Query to database for clients to services given the id
-		Cursor cursor = database.query(
-				ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES,
-				allClientToServiceColumns,
-				ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID + " = ?",
-				new String[] { String.valueOf(clientToClientId) }, null, null,
-				null);
-
-		int id = -1;
-		if (cursor.getCount() > 0) {
-			cursor.moveToFirst();
-
-			// Retrieve the client id
-			id = cursor
-					.getInt(cursor
-							.getColumnIndex(ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID));
-		}
-		cursor.close();
-
-		// Return the client id
-		return id;
+		// Return the client id or -1 if there is no such client to service
+		return (int) getStatements().queryForLong(
+				CLIENT_TO_SERVICE_CLIENT_ID_SELECT, clientToClientId, -1);
 	}
 
 	/**
@@ -913,7 +1979,7 @@ public class ClockItDataSource {
 		// Insert new entry and return the generated id
 		int insertId;
 		try {
-			insertId = (int) database
+			insertId = (int) getDatabase()
 					.insert(ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES,
 							null, values);
 		} catch (Exception e) {
@@ -921,6 +1987,9 @@ public class ClockItDataSource {
 			return -1;
 		}
 
+		// The client's service list now has another service
+		clientCache.invalidate(clientId);
+
 		Log.i(LOGTAG, "Created client to service " + insertId);
 
 		// Return the client to service id
@@ -953,26 +2022,74 @@ public class ClockItDataSource {
 		values.put(ClockItDBOpenHelper.CONTACTS_EMAIL, email);
 		values.put(ClockItDBOpenHelper.CONTACTS_NUMBER, phone);
 
-		// Insert new entry and return the generated id
+		// Insert the contact and connect it to the client together, so a
+		// contact is never left without its client
 		int insertId;
+		getDatabase().beginTransaction();
 		try {
-			insertId = (int) database.insert(
+			insertId = (int) getDatabase().insert(
 					ClockItDBOpenHelper.TABLE_CONTACTS, null, values);
+			if (insertId == -1 || createClientToContact(clientId, insertId) == -1) {
+				return -1;
+			}
+			getDatabase().setTransactionSuccessful();
 		} catch (Exception e) {
 			e.printStackTrace();
 			return -1;
+		} finally {
+			getDatabase().endTransaction();
 		}
 
-		// If the contact was successfully created, connect it to the client
-		if (insertId != -1) {
-			Log.i(LOGTAG, "Created contact " + insertId);
-			createClientToContact(clientId, insertId);
-		}
+		Log.i(LOGTAG, "Created contact " + insertId);
 
 		// Return the created contact's id
 		return insertId;
 	}
 
+	/**
+	 * Creates contacts for a client, such as ones imported from another app,
+	 * in a single transaction with precompiled inserts. Either every contact is
+	 * created and connected to the client or none are.
+	 * 
+	 * @param clientId
+	 *            The client the contacts are for.
+	 * @param contacts
+	 *            The contacts to create. Their ids are ignored.
+	 * @return The number of contacts created, or 0 if creating them failed.
+	 */
+	public int createContacts(int clientId, List<Contact> contacts) {
+		SQLiteStatement insert = getDatabase().compileStatement(CONTACT_INSERT);
+		SQLiteStatement link = getDatabase()
+				.compileStatement(CLIENT_TO_CONTACT_INSERT);
+
+		getDatabase().beginTransaction();
+		try {
+			for (Contact contact : contacts) {
+				insert.bindString(1, contact.getFirstName());
+				insert.bindString(2, contact.getLastName());
+				bindStringOrNull(insert, 3, contact.getEmail());
+				bindStringOrNull(insert, 4, contact.getPhone());
+
+				link.bindLong(1, clientId);
+				link.bindLong(2, insert.executeInsert());
+				link.executeInsert();
+			}
+			getDatabase().setTransactionSuccessful();
+		} catch (Exception e) {
+			e.printStackTrace();
+			return 0;
+		} finally {
+			getDatabase().endTransaction();
+			insert.close();
+			link.close();
+		}
+
+		Log.i(LOGTAG, "Created " + contacts.size() + " contacts for client "
+				+ clientId);
+
+		return contacts.size();
+	}
+
 	/**
 	 * Creates a ClientToContact entry for a client and contact.
 	 * 
@@ -994,7 +2111,7 @@ public class ClockItDataSource {
 		// Insert new entry and return the generated id
 		int insertId;
 		try {
-			insertId = (int) database
+			insertId = (int) getDatabase()
 					.insert(ClockItDBOpenHelper.TABLE_CLIENTS_TO_CONTACTS,
 							null, values);
 		} catch (Exception e) {
@@ -1019,28 +2136,14 @@ public class ClockItDataSource {
 		// Variable to hold contacts
 		List<Contact> contacts = new ArrayList<Contact>();
 
-		// Cursor holding query to database for contacts for client
-		Cursor cursor = database.query(
-				ClockItDBOpenHelper.TABLE_CLIENTS_TO_CONTACTS,
-				allClientToContactColumns,
-				ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CLIENT_ID + " = ?",
-				new String[] { String.valueOf(clientId) }, null, null, null);
-
-		// Variable to hold the id of each contact
-		int contactId;
+		// Cursor holding the contacts linked to the client, read with a
+		// single join rather than one lookup per contact
+		Cursor cursor = getDatabase().rawQuery(CLIENT_CONTACTS_SELECT,
+				new String[] { String.valueOf(clientId) });
 
-		if (cursor.getCount() > 0) {
-			// Loops through values retrieved by cursor
-			while (cursor.moveToNext()) {
-				// Set contactId to the current contact's id
-				contactId = cursor
-						.getInt(cursor
-								.getColumnIndex(ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CONTACT_ID));
-
-				// Creates contact object from cursor location and adds to the
-				// list of contacts
-				contacts.add(getContactById(contactId));
-			}
+		// Creates contact objects from the cursor and adds them to the list
+		while (cursor.moveToNext()) {
+			contacts.add(readContact(cursor, 0));
 		}
 		cursor.close();
 
@@ -1059,9 +2162,8 @@ public class ClockItDataSource {
 	 */
 	public Contact getContactById(int contactId) {
 		// Cursor holding query for contact by id
-		Cursor cursor = database.query(ClockItDBOpenHelper.TABLE_CONTACTS,
-				allContactColumns, ClockItDBOpenHelper.CONTACTS_ID + " = ?",
-				new String[] { String.valueOf(contactId) }, null, null, null);
+		Cursor cursor = getDatabase().rawQuery(CONTACT_BY_ID_SELECT,
+				new String[] { String.valueOf(contactId) });
 
 		// Variable to hold contact (null by default)
 		Contact contact = null;
@@ -1070,17 +2172,7 @@ public class ClockItDataSource {
 			cursor.moveToFirst();
 
 			// Creates contact object from cursor location and returns
-			contact = new Contact(
-					cursor.getInt(cursor
-							.getColumnIndex(ClockItDBOpenHelper.CONTACTS_ID)),
-					cursor.getString(cursor
-							.getColumnIndex(ClockItDBOpenHelper.CONTACTS_FIRST_NAME)),
-					cursor.getString(cursor
-							.getColumnIndex(ClockItDBOpenHelper.CONTACTS_LAST_NAME)),
-					cursor.getString(cursor
-							.getColumnIndex(ClockItDBOpenHelper.CONTACTS_EMAIL)),
-					cursor.getString(cursor
-							.getColumnIndex(ClockItDBOpenHelper.CONTACTS_NUMBER)));
+			contact = readContact(cursor, 0);
 		}
 		cursor.close();
 
@@ -1090,4 +2182,141 @@ public class ClockItDataSource {
 		return contact;
 	}
 
+	/**
+	 * Finds the time stamps, clients, services and contacts whose text contains
+	 * words starting with each word of the query, best matches first. Matches
+	 * are ranked from the search table's match statistics alone, and the
+	 * titles and snippets are only read for the results that are returned.
+	 * 
+	 * @param query
+	 *            The words to search for.
+	 * @param limit
+	 *            The maximum number of results.
+	 * @return The matching results, best match first.
+	 */
+	public List<SearchResult> search(String query, int limit) {
+		List<SearchResult> results = new ArrayList<SearchResult>();
+
+		// Match every word as a prefix, dropping the search syntax characters
+		StringBuilder match = new StringBuilder();
+		for (String word : query.split("[^\\p{L}\\p{N}]+")) {
+			if (word.length() > 0) {
+				match.append(match.length() == 0 ? "" : " ").append(word)
+						.append('*');
+			}
+		}
+		if (match.length() == 0) {
+			return results;
+		}
+
+		// Rank every match
+		Cursor cursor = getDatabase().rawQuery("SELECT "
+				+ ClockItDBOpenHelper.SEARCH_DOCID + ", matchinfo("
+				+ ClockItDBOpenHelper.TABLE_SEARCH + ", 'pcx') FROM "
+				+ ClockItDBOpenHelper.TABLE_SEARCH + " WHERE "
+				+ ClockItDBOpenHelper.TABLE_SEARCH + " MATCH ?",
+				new String[] { match.toString() });
+		try {
+			while (cursor.moveToNext()) {
+				long docid = cursor.getLong(0);
+				results.add(new SearchResult(
+						(int) (docid % ClockItDBOpenHelper.SEARCH_TYPES),
+						(int) (docid / ClockItDBOpenHelper.SEARCH_TYPES), null,
+						null, score(cursor.getBlob(1))));
+			}
+		} finally {
+			cursor.close();
+		}
+
+		Collections.sort(results, BEST_MATCH_FIRST);
+		if (results.size() > limit) {
+			results = results.subList(0, limit);
+		}
+		if (results.isEmpty()) {
+			return results;
+		}
+
+		// Read the titles and snippets of the results being returned
+		StringBuilder docids = new StringBuilder();
+		for (SearchResult result : results) {
+			docids.append(docids.length() == 0 ? "" : ", ").append(
+					(long) result.getId() * ClockItDBOpenHelper.SEARCH_TYPES
+							+ result.getType());
+		}
+		SparseArray<String[]> text = new SparseArray<String[]>(results.size());
+		cursor = getDatabase().rawQuery("SELECT "
+				+ ClockItDBOpenHelper.SEARCH_DOCID + ", "
+				+ ClockItDBOpenHelper.SEARCH_TITLE + ", snippet("
+				+ ClockItDBOpenHelper.TABLE_SEARCH + ", '', '', '...', -1, 10) FROM "
+				+ ClockItDBOpenHelper.TABLE_SEARCH + " WHERE "
+				+ ClockItDBOpenHelper.TABLE_SEARCH + " MATCH ? AND "
+				+ ClockItDBOpenHelper.SEARCH_DOCID + " IN (" + docids + ")",
+				new String[] { match.toString() });
+		try {
+			while (cursor.moveToNext()) {
+				text.put(cursor.getInt(0), new String[] { cursor.getString(1),
+						cursor.getString(2) });
+			}
+		} finally {
+			cursor.close();
+		}
+
+		List<SearchResult> ranked = new ArrayList<SearchResult>(results.size());
+		for (SearchResult result : results) {
+			String[] values = text.get(result.getId()
+					* ClockItDBOpenHelper.SEARCH_TYPES + result.getType());
+			if (values != null) {
+				ranked.add(new SearchResult(result.getType(), result.getId(),
+						values[0] == null ? "" : values[0],
+						values[1] == null ? "" : values[1], result.getScore()));
+			}
+		}
+
+		Log.i(LOGTAG, "Found " + ranked.size() + " results for " + match);
+
+		return ranked;
+	}
+
+	/**
+	 * Retrieves the id of the client a contact belongs to.
+	 * 
+	 * @param contactId
+	 *            The id of the contact.
+	 * @return The id of the contact's client or -1 if it has none.
+	 */
+	public int getContactClientId(int contactId) {
+		return (int) getStatements().queryForLong(CONTACT_CLIENT_ID_SELECT,
+				contactId, -1);
+	}
+
+	/**
+	 * Scores a search match from its matchinfo 'pcx' statistics. Each word
+	 * adds its share of all the hits of that word in each column, weighted by
+	 * the column, so rare words and matches in names count for more.
+	 * 
+	 * @param matchInfo
+	 *            The matchinfo blob of the match.
+	 * @return The match's score.
+	 */
+	private static double score(byte[] matchInfo) {
+		IntBuffer info = ByteBuffer.wrap(matchInfo)
+				.order(ByteOrder.nativeOrder()).asIntBuffer();
+		int phrases = info.get(0);
+		int columns = info.get(1);
+
+		double score = 0;
+		for (int phrase = 0; phrase < phrases; phrase++) {
+			for (int column = 0; column < columns; column++) {
+				int base = 2 + 3 * (phrase * columns + column);
+				int hitsInRow = info.get(base);
+				int hitsInAllRows = info.get(base + 1);
+				if (hitsInRow > 0 && hitsInAllRows > 0) {
+					score += SEARCH_COLUMN_WEIGHTS[column] * hitsInRow
+							/ hitsInAllRows;
+				}
+			}
+		}
+		return score;
+	}
+
 }
@@ -0,0 +1,693 @@
+package com.example.clockit.app.db;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.clockit.app.model.Client;
+import com.example.clockit.app.model.Contact;
+import com.example.clockit.app.model.SearchResult;
+import com.example.clockit.app.model.Services;
+import com.example.clockit.app.model.TimeStamp;
+
+/**
+ * Runs data source operations on a small shared pool of background threads and
+ * delivers their results on the main thread. Each activity owns one repository
+ * and cancels it when destroyed so no results are delivered to a dead
+ * activity. Every operation holds the activity's data source open until it
+ * has run, so closing the data source when the activity is destroyed waits
+ * for operations that are queued or running.
+ * 
+ * @author Cameron Irwin
+ * 
+ */
+public class ClockItRepository {
+
+	/**
+	 * Receives the result of an operation on the main thread. The result is
+	 * null if the operation failed.
+	 * 
+	 * @param <T>
+	 *            The type of the result.
+	 */
+	public interface Callback<T> {
+		void onResult(T result);
+	}
+
+	/**
+	 * An operation to run against the data source on a background thread.
+	 * 
+	 * @param <T>
+	 *            The type of the result.
+	 */
+	public interface Query<T> {
+		T run(ClockItDataSource datasource);
+	}
+
+	/** Tag used for logcat */
+	private static final String LOGTAG = "CLOCKIT";
+
+	/** Number of background threads shared by every repository. */
+	private static final int POOL_SIZE = 2;
+
+	/** Executor running every repository operation in the process. */
+	private static final ExecutorService executor = Executors
+			.newFixedThreadPool(POOL_SIZE);
+
+	/** Handler used to deliver results on the main thread. */
+	private static final Handler mainHandler = new Handler(
+			Looper.getMainLooper());
+
+	/** Data source the operations run against. */
+	private final ClockItDataSource datasource;
+
+	/** Set once the owning activity is destroyed. */
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Constructor that sets the data source to run operations against.
+	 * 
+	 * @param datasource
+	 *            The data source owned by the calling activity.
+	 */
+	public ClockItRepository(ClockItDataSource datasource) {
+		this.datasource = datasource;
+	}
+
+	/**
+	 * Runs a read in the background and delivers its result on the main
+	 * thread. Reads that have not started yet are dropped when the repository
+	 * is cancelled.
+	 * 
+	 * @param query
+	 *            The read to run.
+	 * @param callback
+	 *            Receives the result, or null if no result is needed.
+	 */
+	public <T> void execute(Query<T> query, Callback<T> callback) {
+		executor.execute(task(query, callback, true));
+	}
+
+	/**
+	 * Runs a write in the background and delivers its result on the main
+	 * thread. Writes always run even if the repository is cancelled, only the
+	 * delivery of their result is skipped.
+	 * 
+	 * @param query
+	 *            The write to run.
+	 * @param callback
+	 *            Receives the result, or null if no result is needed.
+	 */
+	public <T> void executeWrite(Query<T> query, Callback<T> callback) {
+		executor.execute(task(query, callback, false));
+	}
+
+	/**
+	 * Drops any reads that have not started and stops delivering results. Called
+	 * when the owning activity is destroyed.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Retrieves all finished time stamps in the background.
+	 * 
+	 * @param callback
+	 *            Receives the list of time stamps.
+	 */
+	public void getAllTimeStamps(Callback<List<TimeStamp>> callback) {
+		execute(new Query<List<TimeStamp>>() {
+			@Override
+			public List<TimeStamp> run(ClockItDataSource datasource) {
+				return datasource.getAllTimeStamps();
+			}
+		}, callback);
+	}
+
+	/**
+	 * Retrieves one page of finished time stamps in the background.
+	 * 
+	 * @param afterClockIn
+	 *            The clock in time of the last time stamp on the previous page.
+	 * @param afterId
+	 *            The id of the last time stamp on the previous page.
+	 * @param limit
+	 *            The maximum number of time stamps on the page.
+	 * @param callback
+	 *            Receives the page of time stamps.
+	 */
+	public void getTimeStampsPage(final long afterClockIn, final int afterId,
+			final int limit, Callback<List<TimeStamp>> callback) {
+		getTimeStampsPage(null, afterClockIn, afterId, limit, callback);
+	}
+
+	/**
+	 * Retrieves one page of the finished time stamps matching a filter in the
+	 * background.
+	 * 
+	 * @param filter
+	 *            The conditions the time stamps must match, or null for all
+	 *            time stamps.
+	 * @param afterClockIn
+	 *            The clock in time of the last time stamp on the previous page.
+	 * @param afterId
+	 *            The id of the last time stamp on the previous page.
+	 * @param limit
+	 *            The maximum number of time stamps on the page.
+	 * @param callback
+	 *            Receives the page of time stamps.
+	 */
+	public void getTimeStampsPage(final TimeStampFilter filter,
+			final long afterClockIn, final int afterId, final int limit,
+			Callback<List<TimeStamp>> callback) {
+		execute(new Query<List<TimeStamp>>() {
+			@Override
+			public List<TimeStamp> run(ClockItDataSource datasource) {
+				return datasource.getTimeStampsPage(filter, afterClockIn,
+						afterId, limit);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Retrieves all clients in the background.
+	 * 
+	 * @param callback
+	 *            Receives the list of clients.
+	 */
+	public void getAllClients(Callback<List<Client>> callback) {
+		execute(new Query<List<Client>>() {
+			@Override
+			public List<Client> run(ClockItDataSource datasource) {
+				return datasource.getAllClients();
+			}
+		}, callback);
+	}
+
+	/**
+	 * Retrieves the id and name of every client in the background.
+	 * 
+	 * @param callback
+	 *            Receives the list of clients.
+	 */
+	public void getClientSummaries(Callback<List<Client>> callback) {
+		execute(new Query<List<Client>>() {
+			@Override
+			public List<Client> run(ClockItDataSource datasource) {
+				return datasource.getClientSummaries();
+			}
+		}, callback);
+	}
+
+	/**
+	 * Retrieves all services in the background.
+	 * 
+	 * @param callback
+	 *            Receives the list of services.
+	 */
+	public void getAllServices(Callback<List<Services>> callback) {
+		execute(new Query<List<Services>>() {
+			@Override
+			public List<Services> run(ClockItDataSource datasource) {
+				return datasource.getAllServices();
+			}
+		}, callback);
+	}
+
+	/**
+	 * Runs a full text search in the background.
+	 * 
+	 * @param query
+	 *            The words to search for.
+	 * @param limit
+	 *            The maximum number of results.
+	 * @param callback
+	 *            Receives the results, best match first.
+	 */
+	public void search(final String query, final int limit,
+			Callback<List<SearchResult>> callback) {
+		execute(new Query<List<SearchResult>>() {
+			@Override
+			public List<SearchResult> run(ClockItDataSource datasource) {
+				return datasource.search(query, limit);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Looks up the client a contact belongs to in the background.
+	 * 
+	 * @param contactId
+	 *            The id of the contact.
+	 * @param callback
+	 *            Receives the client's id or -1.
+	 */
+	public void getContactClientId(final int contactId,
+			Callback<Integer> callback) {
+		execute(new Query<Integer>() {
+			@Override
+			public Integer run(ClockItDataSource datasource) {
+				return datasource.getContactClientId(contactId);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Retrieves a client in the background.
+	 * 
+	 * @param clientId
+	 *            The id of the client.
+	 * @param callback
+	 *            Receives the client, or null if it does not exist.
+	 */
+	public void getClientById(final int clientId, Callback<Client> callback) {
+		execute(new Query<Client>() {
+			@Override
+			public Client run(ClockItDataSource datasource) {
+				return datasource.getClientById(clientId);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Retrieves a service in the background.
+	 * 
+	 * @param serviceId
+	 *            The id of the service.
+	 * @param callback
+	 *            Receives the service, or null if it does not exist.
+	 */
+	public void getServiceById(final int serviceId, Callback<Services> callback) {
+		execute(new Query<Services>() {
+			@Override
+			public Services run(ClockItDataSource datasource) {
+				return datasource.getServiceById(serviceId);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Retrieves a time stamp in the background.
+	 * 
+	 * @param timeStampId
+	 *            The id of the time stamp.
+	 * @param callback
+	 *            Receives the time stamp, or null if it does not exist.
+	 */
+	public void getTimeStampById(final int timeStampId,
+			Callback<TimeStamp> callback) {
+		execute(new Query<TimeStamp>() {
+			@Override
+			public TimeStamp run(ClockItDataSource datasource) {
+				return datasource.getTimeStampById(timeStampId);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Retrieves the contacts of a client in the background.
+	 * 
+	 * @param clientId
+	 *            The id of the client.
+	 * @param callback
+	 *            Receives the client's contacts, oldest first.
+	 */
+	public void getClientContacts(final int clientId,
+			Callback<List<Contact>> callback) {
+		execute(new Query<List<Contact>>() {
+			@Override
+			public List<Contact> run(ClockItDataSource datasource) {
+				return datasource.getClientContacts(clientId);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Creates a client in the background.
+	 * 
+	 * @param name
+	 *            The name of the client.
+	 * @param description
+	 *            The description of the client.
+	 * @param callback
+	 *            Receives the new client, or null if it could not be created.
+	 */
+	public void createClient(final String name, final String description,
+			Callback<Client> callback) {
+		executeWrite(new Query<Client>() {
+			@Override
+			public Client run(ClockItDataSource datasource) {
+				return datasource.createClient(name, description);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Updates a client in the background.
+	 * 
+	 * @param name
+	 *            The new name of the client.
+	 * @param description
+	 *            The new description of the client.
+	 * @param clientId
+	 *            The id of the client.
+	 * @param callback
+	 *            Receives the updated client, or null if updating it failed.
+	 */
+	public void updateClient(final String name, final String description,
+			final int clientId, Callback<Client> callback) {
+		executeWrite(new Query<Client>() {
+			@Override
+			public Client run(ClockItDataSource datasource) {
+				return datasource.updateClient(name, description, clientId);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Deletes a client and its time stamps in the background, removing any
+	 * of them the user is clocked in to from the open shift record.
+	 * 
+	 * @param clientId
+	 *            The id of the client.
+	 * @param callback
+	 *            Receives true once deleted, or null if deleting failed.
+	 */
+	public void deleteClient(final int clientId, Callback<Boolean> callback) {
+		executeWrite(new Query<Boolean>() {
+			@Override
+			public Boolean run(ClockItDataSource datasource) {
+				datasource.deleteClient(clientId);
+				return true;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Creates a service in the background.
+	 * 
+	 * @param name
+	 *            The name of the service.
+	 * @param description
+	 *            The description of the service.
+	 * @param rateCents
+	 *            The hourly rate of the service in cents.
+	 * @param callback
+	 *            Receives the new service, or null if it could not be created.
+	 */
+	public void createService(final String name, final String description,
+			final long rateCents, Callback<Services> callback) {
+		executeWrite(new Query<Services>() {
+			@Override
+			public Services run(ClockItDataSource datasource) {
+				return datasource.createService(name, description, rateCents);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Updates a service in the background, which also rebuilds the daily
+	 * totals of its time stamps.
+	 * 
+	 * @param name
+	 *            The new name of the service.
+	 * @param description
+	 *            The new description of the service.
+	 * @param rateCents
+	 *            The new hourly rate of the service in cents.
+	 * @param serviceId
+	 *            The id of the service.
+	 * @param callback
+	 *            Receives the updated service, or null if updating it failed.
+	 */
+	public void updateService(final String name, final String description,
+			final long rateCents, final int serviceId,
+			Callback<Services> callback) {
+		executeWrite(new Query<Services>() {
+			@Override
+			public Services run(ClockItDataSource datasource) {
+				return datasource.updateService(name, description, rateCents,
+						serviceId);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Deletes a service and its time stamps in the background, removing any
+	 * of them the user is clocked in to from the open shift record.
+	 * 
+	 * @param serviceId
+	 *            The id of the service.
+	 * @param callback
+	 *            Receives true once deleted, or null if deleting failed.
+	 */
+	public void deleteService(final int serviceId, Callback<Boolean> callback) {
+		executeWrite(new Query<Boolean>() {
+			@Override
+			public Boolean run(ClockItDataSource datasource) {
+				datasource.deleteService(serviceId);
+				return true;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Updates the description of a time stamp in the background.
+	 * 
+	 * @param description
+	 *            The new description of the time stamp.
+	 * @param timeStampId
+	 *            The id of the time stamp.
+	 * @param callback
+	 *            Receives the updated time stamp, or null if updating it
+	 *            failed.
+	 */
+	public void updateTimeStamp(final String description,
+			final int timeStampId, Callback<TimeStamp> callback) {
+		executeWrite(new Query<TimeStamp>() {
+			@Override
+			public TimeStamp run(ClockItDataSource datasource) {
+				return datasource.updateTimeStamp(description, timeStampId);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Deletes a time stamp and takes it out of its daily total in the
+	 * background.
+	 * 
+	 * @param timeStampId
+	 *            The id of the time stamp.
+	 * @param callback
+	 *            Receives true once deleted, or null if deleting failed.
+	 */
+	public void deleteTimeStamp(final int timeStampId,
+			Callback<Boolean> callback) {
+		executeWrite(new Query<Boolean>() {
+			@Override
+			public Boolean run(ClockItDataSource datasource) {
+				datasource.deleteTimeStamp(timeStampId);
+				return true;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Creates a contact for a client in the background.
+	 * 
+	 * @param clientId
+	 *            The client the contact is for.
+	 * @param firstName
+	 *            The contact's first name.
+	 * @param lastName
+	 *            The contact's last name.
+	 * @param email
+	 *            The contact's email address.
+	 * @param phone
+	 *            The contact's phone number.
+	 * @param callback
+	 *            Receives the id of the new contact, or -1 if creating it
+	 *            failed.
+	 */
+	public void createContact(final int clientId, final String firstName,
+			final String lastName, final String email, final String phone,
+			Callback<Integer> callback) {
+		executeWrite(new Query<Integer>() {
+			@Override
+			public Integer run(ClockItDataSource datasource) {
+				return datasource.createContact(clientId, firstName, lastName,
+						email, phone);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Imports finished time stamps in a single transaction in the background.
+	 * 
+	 * @param timeStamps
+	 *            The time stamps to import. Open time stamps are skipped.
+	 * @param callback
+	 *            Receives the number of time stamps imported, or 0 if the
+	 *            import failed.
+	 */
+	public void createTimeStamps(final List<TimeStamp> timeStamps,
+			Callback<Integer> callback) {
+		executeWrite(new Query<Integer>() {
+			@Override
+			public Integer run(ClockItDataSource datasource) {
+				return datasource.createTimeStamps(timeStamps);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Creates contacts for a client in a single transaction in the
+	 * background.
+	 * 
+	 * @param clientId
+	 *            The client the contacts are for.
+	 * @param contacts
+	 *            The contacts to create.
+	 * @param callback
+	 *            Receives the number of contacts created, or 0 if creating
+	 *            them failed.
+	 */
+	public void createContacts(final int clientId,
+			final List<Contact> contacts, Callback<Integer> callback) {
+		executeWrite(new Query<Integer>() {
+			@Override
+			public Integer run(ClockItDataSource datasource) {
+				return datasource.createContacts(clientId, contacts);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Clocks the user in through the clock journal and delivers the open
+	 * shift on the main thread. The shift is recorded at once if the journal
+	 * has an id ready, otherwise the clock in is handed to the journal's
+	 * writer thread, which reserves ids first, so the caller never waits.
+	 * 
+	 * @param clientId
+	 *            The client to clock in for.
+	 * @param clientName
+	 *            The client's name, shown with the open shift.
+	 * @param service
+	 *            The service to clock in to.
+	 * @param callback
+	 *            Receives the open shift, or null if clocking in failed.
+	 */
+	public void clockIn(final int clientId, final String clientName,
+			final Services service, final Callback<OpenShift> callback) {
+		final ClockJournal journal = datasource.getClockJournal();
+		OpenShift shift = journal.clockIn(clientId, clientName, service);
+		if (shift != null) {
+			post(shift, callback);
+			return;
+		}
+
+		journal.execute(new Runnable() {
+			@Override
+			public void run() {
+				OpenShift shift = null;
+				try {
+					shift = journal.clockInOnWriter(clientId, clientName,
+							service);
+				} catch (RuntimeException e) {
+					Log.e(LOGTAG, "Unable to clock in", e);
+				}
+				post(shift, callback);
+			}
+		});
+	}
+
+	/**
+	 * Checks the open shift record against the database in the background,
+	 * once the clock journal has applied the clock events appended so far.
+	 * The journal's writer thread only passes the check on to the shared
+	 * executor, so it is not held up by the read or moved to background
+	 * priority.
+	 * 
+	 * @param callback
+	 *            Receives true if the record had to be changed.
+	 */
+	public void reconcileActiveShift(Callback<Boolean> callback) {
+		final ClockJournal journal = datasource.getClockJournal();
+		final Runnable reconcile = task(new Query<Boolean>() {
+			@Override
+			public Boolean run(ClockItDataSource datasource) {
+				return journal.reconcile(datasource);
+			}
+		}, callback, false);
+		journal.execute(new Runnable() {
+			@Override
+			public void run() {
+				executor.execute(reconcile);
+			}
+		});
+	}
+
+	/**
+	 * Wraps an operation so it runs at background priority and posts its
+	 * result to the main thread unless the repository has been cancelled. An
+	 * operation that throws is logged and posts null, so the callback is
+	 * always delivered. The data source is held open from now until the
+	 * operation has run, or has been dropped if it is a read and the
+	 * repository was cancelled first.
+	 */
+	private <T> Runnable task(final Query<T> query, final Callback<T> callback,
+			final boolean read) {
+		datasource.acquire();
+		return new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (read && cancelled) {
+						return;
+					}
+
+					Process
+							.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+					T result = null;
+					try {
+						result = query.run(datasource);
+					} catch (RuntimeException e) {
+						Log.e(LOGTAG, "Unable to run data source operation", e);
+					}
+					post(result, callback);
+				} finally {
+					datasource.release();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Posts a result to the main thread unless the repository has been
+	 * cancelled.
+	 */
+	private <T> void post(final T result, final Callback<T> callback) {
+		if (callback == null || cancelled) {
+			return;
+		}
+
+		mainHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				// Check again in case the activity was destroyed while the
+				// result was queued
+				if (!cancelled) {
+					callback.onResult(result);
+				}
+			}
+		});
+	}
+
+}
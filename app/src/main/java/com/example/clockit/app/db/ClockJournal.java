@@ -0,0 +1,1113 @@
+package com.example.clockit.app.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.clockit.app.ClockItApplication;
+import com.example.clockit.app.model.Segments;
+import com.example.clockit.app.model.Services;
+import com.example.clockit.app.model.TimeStamp;
+
+/**
+ * Durable, ordered write-behind journal of clock events. Clocking in or out,
+ * pausing and resuming append an event to the journal file and update the open
+ * shift record in memory, then return at once without touching the database.
+ * A single writer thread applies the events to the database in the order they
+ * were appended, each in a transaction that also records the event's
+ * sequence, so every event is applied exactly once. Events left in the file
+ * when the process dies are replayed when the journal is next opened.
+ *
+ * Appending only hands an event to the operating system, so the caller does
+ * not wait on the disk. The writer thread syncs the file before it applies an
+ * event, covering every event appended by then in one sync. An event that was
+ * acknowledged survives the process dying, but not the device losing power
+ * before that sync. Clearing applied events out of the file is also left to
+ * the writer thread, which writes and syncs the new file first and only holds
+ * up appends while it swaps the files.
+ *
+ * The file is opened and replayed on the writer thread, so creating the
+ * journal does not touch the disk. Events appended before the file is open are
+ * held in memory and written ahead of any other once it is.
+ *
+ * Time stamp ids for clock ins are reserved from the database in blocks, one
+ * in use and one reserved ahead, and each reservation is recorded in the file
+ * so the unused ids survive a restart. Both blocks are filled as soon as the
+ * file is open. A clock in never waits for ids: if none are ready, because the
+ * file is not open yet or clock ins outran the writer thread by more than a
+ * block, it is left to be run on the writer thread instead.
+ *
+ * The file starts with the sequence of the last event cleared out of it, so
+ * sequences keep increasing after applied events are removed. Each event
+ * follows as its length, its bytes and a CRC32 of its bytes, so an event cut
+ * short by a crash is found and dropped. An event is written before the open
+ * shift record shows it, except for a clock in whose shift must be in the
+ * record before the writer thread can apply it.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ClockJournal {
+
+	/** Tag used for logcat */
+	private static final String LOGTAG = "CLOCKIT";
+
+	/** Name of the journal file in the application's files directory. */
+	private static final String FILE_NAME = "clock_events.journal";
+
+	/** Name of the file events that failed to apply are moved to. */
+	private static final String QUARANTINE_FILE_NAME = "clock_events.quarantine";
+
+	// Types of clock event
+	private static final byte EVENT_CLOCK_IN = 1;
+	private static final byte EVENT_CLOCK_OUT = 2;
+	private static final byte EVENT_PAUSE = 3;
+	private static final byte EVENT_RESUME = 4;
+
+	/**
+	 * Type of a reservation of time stamp ids. It has no sequence and is not
+	 * applied, and holds the first id reserved as its time stamp id and the
+	 * last as its client id.
+	 */
+	private static final byte EVENT_RESERVE = 5;
+
+	/** Largest event written, longer events read back are damage. */
+	private static final int MAX_EVENT_BYTES = 1024 * 1024;
+
+	/**
+	 * Longest description journaled with a clock out, in chars. Longer ones
+	 * are cut short, so the event always fits in MAX_EVENT_BYTES.
+	 */
+	public static final int MAX_DESCRIPTION_LENGTH = 64 * 1024;
+
+	/** Encoding of the descriptions in the file. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Size the file may grow to before applied events are cleared out. */
+	private static final long COMPACT_BYTES = 16 * 1024;
+
+	/** Number of time stamp ids reserved at a time for clock ins. */
+	private static final int TIME_STAMP_ID_BLOCK = 16;
+
+	/**
+	 * A single clock event as written to the journal.
+	 */
+	private static final class Event {
+		final byte type;
+		final long sequence;
+		final int timeStampId;
+		final long time;
+		final int clientId;
+		final int serviceId;
+		final String description;
+
+		Event(byte type, long sequence, int timeStampId, long time,
+				int clientId, int serviceId, String description) {
+			this.type = type;
+			this.sequence = sequence;
+			this.timeStampId = timeStampId;
+			this.time = time;
+			this.clientId = clientId;
+			this.serviceId = serviceId;
+			this.description = description;
+		}
+	}
+
+	/** Application owning the database the events are applied to. */
+	private final ClockItApplication application;
+
+	/** The application's registry of open shifts. */
+	private final ActiveShiftRegistry registry;
+
+	/** The journal file. */
+	private final File file;
+
+	/** Single thread applying the events in order. */
+	private final ExecutorService writer = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "ClockJournal");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * Data source the writer thread applies events through, created when the
+	 * thread starts so its compiled statements and caches are reused by every
+	 * event. Its reference to the database is released when the application
+	 * trims its memory and taken again by the next event. Only used on the
+	 * writer thread.
+	 */
+	private ClockItDataSource datasource;
+
+	/**
+	 * Stream appending to the journal file, or null until the writer thread
+	 * has opened it. Guarded by this.
+	 */
+	private FileOutputStream out;
+
+	/**
+	 * Events appended before the file was opened, numbered from zero. They are
+	 * numbered on from the file's last sequence and written when it is opened.
+	 * Guarded by this.
+	 */
+	private final List<Event> appendedBeforeOpen = new ArrayList<Event>();
+
+	/** Sequence of the last event appended. Guarded by this. */
+	private long lastSequence;
+
+	/** Sequence of the last event applied. Guarded by this. */
+	private long appliedSequence;
+
+	/** Sequence of the last event synced to the disk. Guarded by this. */
+	private long syncedSequence;
+
+	/**
+	 * Set when an event failed to apply, until the open shift record has been
+	 * brought in line with the database. Guarded by this.
+	 */
+	private boolean reconcilePending = false;
+
+	/** Guards the reserved time stamp ids. */
+	private final Object idLock = new Object();
+
+	/**
+	 * Next reserved time stamp id and the last one of the block in use.
+	 * Guarded by idLock.
+	 */
+	private int nextTimeStampId = 1;
+	private int lastTimeStampId = 0;
+
+	/**
+	 * First and last id of the block reserved ahead, used once the block in
+	 * use runs out. Guarded by idLock.
+	 */
+	private int spareTimeStampId = 1;
+	private int lastSpareTimeStampId = 0;
+
+	/** Set while a reservation of more ids is queued. Guarded by idLock. */
+	private boolean reserving = false;
+
+	/**
+	 * Constructor that queues the opening of the journal file on the writer
+	 * thread, ahead of everything else it runs. Opening it drops any event
+	 * cut short by a crash and replays the events that were not applied.
+	 *
+	 * @param application
+	 *            The application owning the database.
+	 */
+	public ClockJournal(ClockItApplication application) {
+		this.application = application;
+		registry = application.getActiveShifts();
+		file = new File(application.getFilesDir(), FILE_NAME);
+
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				open();
+			}
+		});
+	}
+
+	/**
+	 * Clocks the user in with an id reserved ahead of time, without waiting.
+	 * The time stamp is created in the background.
+	 *
+	 * @param clientId
+	 *            The client to clock in for.
+	 * @param clientName
+	 *            The client's name, shown with the open shift.
+	 * @param service
+	 *            The service to clock in to.
+	 * @return The open shift, or null if no id is ready, in which case the
+	 *         clock in is left to clockInOnWriter().
+	 */
+	public OpenShift clockIn(int clientId, String clientName, Services service) {
+		int timeStampId = takeTimeStampId();
+		if (timeStampId == -1) {
+			return null;
+		}
+		return clockIn(timeStampId, clientId, clientName, service);
+	}
+
+	/**
+	 * Clocks the user in, reserving ids first if none are ready. Run on the
+	 * writer thread through execute().
+	 *
+	 * @param clientId
+	 *            The client to clock in for.
+	 * @param clientName
+	 *            The client's name, shown with the open shift.
+	 * @param service
+	 *            The service to clock in to.
+	 * @return The open shift.
+	 * @throws IllegalStateException
+	 *             If no ids can be reserved.
+	 */
+	OpenShift clockInOnWriter(int clientId, String clientName,
+			Services service) {
+		int timeStampId = takeTimeStampId();
+		if (timeStampId == -1) {
+			reserveBlock();
+			timeStampId = takeTimeStampId();
+		}
+		if (timeStampId == -1) {
+			throw new IllegalStateException("Unable to reserve time stamp ids");
+		}
+		return clockIn(timeStampId, clientId, clientName, service);
+	}
+
+	/**
+	 * Clocks the user out of an open shift. The time stamp is completed in the
+	 * background. A description longer than MAX_DESCRIPTION_LENGTH is cut
+	 * short.
+	 *
+	 * @param timeStampId
+	 *            The id of the open time stamp to clock out of.
+	 * @param description
+	 *            A description of what was done during the shift.
+	 * @return True if the shift was recorded as open and has been clocked out
+	 *         of, and false otherwise. The shift stays open if the clock out
+	 *         could not be journaled.
+	 */
+	public synchronized boolean clockOut(int timeStampId, String description) {
+		boolean open = registry.get(timeStampId) != null;
+		try {
+			append(new Event(EVENT_CLOCK_OUT, lastSequence + 1, timeStampId,
+					System.currentTimeMillis(), 0, 0,
+					truncate(description)));
+		} catch (RuntimeException e) {
+			Log.e(LOGTAG, "Unable to clock out of time stamp " + timeStampId, e);
+			return false;
+		}
+		registry.remove(timeStampId);
+		return open;
+	}
+
+	/**
+	 * Pauses an open shift. The time stamp is updated in the background.
+	 *
+	 * @param timeStampId
+	 *            The id of the open time stamp to pause.
+	 * @return True if paused, or false if the shift is not open or is already
+	 *         paused.
+	 */
+	public boolean pause(int timeStampId) {
+		return appendSegmentTime(EVENT_PAUSE, timeStampId);
+	}
+
+	/**
+	 * Resumes a paused shift. The time stamp is updated in the background.
+	 *
+	 * @param timeStampId
+	 *            The id of the paused time stamp to resume.
+	 * @return True if resumed, or false if the shift is not open or is not
+	 *         paused.
+	 */
+	public boolean resume(int timeStampId) {
+		return appendSegmentTime(EVENT_RESUME, timeStampId);
+	}
+
+	/**
+	 * Releases the writer thread's reference to the database once the events
+	 * queued so far have been applied, then closes the shared connection if
+	 * no other data source is holding it. The next event takes the reference
+	 * again. Called when the application trims its memory.
+	 */
+	public void releaseDatabase() {
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (datasource != null && datasource.isOpen()) {
+					datasource.close();
+				}
+				application.closeIfUnused();
+			}
+		});
+	}
+
+	/**
+	 * Runs a task on the writer thread after every event appended so far has
+	 * been applied.
+	 *
+	 * @param task
+	 *            The task to run.
+	 */
+	void execute(Runnable task) {
+		writer.execute(task);
+	}
+
+	/**
+	 * Brings the open shift record in line with the database. Skipped while
+	 * events are waiting to be applied, since the record is ahead of the
+	 * database until they are. The database is read without holding the
+	 * journal, so clocking in or out is not held up, and the record is only
+	 * replaced if no event was appended meanwhile. Run on the writer thread,
+	 * or on another thread once the writer thread has applied the events
+	 * appended so far.
+	 *
+	 * @param datasource
+	 *            Data source used to read the open time stamps.
+	 * @return True if the record was changed and false otherwise.
+	 */
+	boolean reconcile(ClockItDataSource datasource) {
+		long sequence;
+		OpenShift[] snapshot;
+		synchronized (this) {
+			if (appliedSequence != lastSequence) {
+				return false;
+			}
+			sequence = lastSequence;
+			snapshot = registry.getShifts();
+		}
+
+		// Every event appended by the snapshot has been applied, so the
+		// database only changes while it is read for an event appended
+		// since, which leaves the record alone below
+		List<TimeStamp> open = datasource.getOpenTimeStamps();
+		boolean changed = false;
+		if (!ActiveShiftStore.matches(snapshot, open)) {
+			OpenShift[] replacement = new OpenShift[open.size()];
+			for (int i = 0; i < replacement.length; i++) {
+				replacement[i] = new OpenShift(open.get(i));
+			}
+			synchronized (this) {
+				// An event appended since the snapshot is ahead of what was
+				// read, and will reconcile again once applied if needed
+				if (lastSequence != sequence
+						|| !registry.replaceAll(snapshot, replacement)) {
+					return false;
+				}
+			}
+			datasource.getActiveShift().write();
+			changed = true;
+		}
+
+		synchronized (this) {
+			if (lastSequence == sequence) {
+				reconcilePending = false;
+			}
+		}
+		return changed;
+	}
+
+	// Private Methods
+
+	/**
+	 * Allows access to the writer thread's data source, taking its reference
+	 * to the database again if it was released. Run on the writer thread.
+	 */
+	private ClockItDataSource getDataSource() {
+		if (datasource == null) {
+			datasource = new ClockItDataSource(application);
+		} else if (!datasource.isOpen()) {
+			datasource.open();
+		}
+		return datasource;
+	}
+
+	/**
+	 * Cuts a description short to MAX_DESCRIPTION_LENGTH chars, without
+	 * splitting a surrogate pair.
+	 */
+	private static String truncate(String description) {
+		if (description == null
+				|| description.length() <= MAX_DESCRIPTION_LENGTH) {
+			return description;
+		}
+		int end = MAX_DESCRIPTION_LENGTH;
+		if (Character.isHighSurrogate(description.charAt(end - 1))) {
+			end--;
+		}
+		return description.substring(0, end);
+	}
+
+	/**
+	 * Records an open shift under a reserved id and appends its clock in.
+	 */
+	private synchronized OpenShift clockIn(int timeStampId, int clientId,
+			String clientName, Services service) {
+		long time = System.currentTimeMillis();
+		OpenShift shift = new OpenShift(timeStampId, time, clientName,
+				service.getName(), service.getRateCents(), null);
+		registry.put(shift);
+
+		try {
+			append(new Event(EVENT_CLOCK_IN, lastSequence + 1, timeStampId,
+					time, clientId, service.getId(), null));
+		} catch (RuntimeException e) {
+			registry.remove(timeStampId);
+			throw e;
+		}
+		return shift;
+	}
+
+	/**
+	 * Records a pause or resume time on an open shift and appends its event,
+	 * if it matches the state of the shift.
+	 */
+	private synchronized boolean appendSegmentTime(byte type, int timeStampId) {
+		OpenShift shift = registry.get(timeStampId);
+		if (shift == null || shift.isPaused() != (type == EVENT_RESUME)) {
+			return false;
+		}
+
+		long time = System.currentTimeMillis();
+		append(new Event(type, lastSequence + 1, timeStampId, time, 0, 0, null));
+		registry.updateSegments(timeStampId,
+				Segments.append(shift.getPackedSegments(), time));
+		return true;
+	}
+
+	/**
+	 * Writes an event to the end of the journal, then queues it to be synced
+	 * and applied. Before the file is open the event is held until it is.
+	 * Nothing has been written if it throws. Must be called holding this.
+	 */
+	private void append(final Event event) {
+		if (out == null) {
+			// Check the length now, so the event is not refused once open
+			encode(event);
+			appendedBeforeOpen.add(event);
+			lastSequence = event.sequence;
+			return;
+		}
+
+		try {
+			write(encode(event));
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to write clock event", e);
+		}
+
+		lastSequence = event.sequence;
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				apply(event);
+			}
+		});
+	}
+
+	/**
+	 * Writes a frame to the end of the journal without waiting for the disk,
+	 * cutting off any part of it that was written if it fails, so the events
+	 * after it are not hidden behind a damaged one. Must be called holding
+	 * this.
+	 */
+	private void write(byte[] frame) throws IOException {
+		long length = -1;
+		try {
+			length = out.getChannel().size();
+			out.write(frame);
+		} catch (IOException e) {
+			if (length >= 0) {
+				try {
+					out.getChannel().truncate(length);
+				} catch (IOException truncateFailed) {
+					Log.e(LOGTAG, "Unable to cut off clock event", truncateFailed);
+				}
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Syncs the journal to the disk if an event up to a sequence has not been,
+	 * covering every event appended so far, so a burst of events shares one
+	 * sync. Run on the writer thread before an event is applied, so the
+	 * database is not ahead of the file. The event is still applied if the
+	 * sync fails, since the database holds it safely once it is.
+	 */
+	private void sync(long sequence) {
+		FileOutputStream stream;
+		long synced;
+		synchronized (this) {
+			if (sequence <= syncedSequence) {
+				return;
+			}
+			// Only the writer thread replaces the stream, so it stays open
+			stream = out;
+			synced = lastSequence;
+		}
+
+		try {
+			stream.getFD().sync();
+		} catch (IOException e) {
+			Log.e(LOGTAG, "Unable to sync clock journal", e);
+			return;
+		}
+
+		synchronized (this) {
+			syncedSequence = synced;
+		}
+	}
+
+	/**
+	 * Applies an event to the database in a transaction that records its
+	 * sequence, then writes the open shift record. An event the database
+	 * already holds is skipped. An event that fails to apply is quarantined
+	 * so the events after it still are, and the record is brought in line
+	 * with the database once they have been. Either way the event then counts
+	 * as applied. Run on the writer thread.
+	 */
+	private void apply(Event event) {
+		sync(event.sequence);
+
+		boolean failed = false;
+		ClockItDataSource datasource = getDataSource();
+		try {
+			if (event.sequence > datasource.getAppliedClockEvent()) {
+				applyToDatabase(datasource, event);
+				datasource.getActiveShift().write();
+			}
+		} catch (RuntimeException e) {
+			Log.e(LOGTAG, "Unable to apply clock event " + event.sequence
+					+ ", moving it to " + QUARANTINE_FILE_NAME, e);
+			quarantine(datasource, event);
+			failed = true;
+		}
+
+		boolean drained;
+		boolean reconcile;
+		synchronized (this) {
+			appliedSequence = event.sequence;
+			reconcilePending |= failed;
+			drained = appliedSequence == lastSequence;
+			reconcile = reconcilePending && drained;
+		}
+
+		// Every event in the file has been applied, so it can be cleared out
+		if (drained && file.length() > COMPACT_BYTES) {
+			compact(event.sequence);
+		}
+
+		if (reconcile) {
+			try {
+				reconcile(datasource);
+			} catch (RuntimeException e) {
+				Log.e(LOGTAG, "Unable to reconcile the open shift record", e);
+			}
+		}
+	}
+
+	/**
+	 * Runs the statements of an event and records its sequence in a single
+	 * transaction. Run on the writer thread.
+	 */
+	private void applyToDatabase(ClockItDataSource datasource, Event event) {
+		SQLiteDatabase database = datasource.getDatabase();
+		database.beginTransaction();
+		try {
+			switch (event.type) {
+			case EVENT_CLOCK_IN:
+				if (datasource.createTimeStamp(event.timeStampId,
+						event.clientId, event.serviceId, event.time) == null) {
+					registry.remove(event.timeStampId);
+				}
+				break;
+			case EVENT_CLOCK_OUT:
+				datasource.ClockOut(event.timeStampId, event.description,
+						event.time);
+				break;
+			case EVENT_PAUSE:
+			case EVENT_RESUME:
+				datasource.appendSegmentTime(event.timeStampId,
+						event.type == EVENT_RESUME, event.time);
+				break;
+			}
+			datasource.setAppliedClockEvent(event.sequence);
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
+		}
+	}
+
+	/**
+	 * Moves an event that failed to apply out of the way. It is added to the
+	 * quarantine file so it can be recovered, then recorded as applied in a
+	 * statement of its own so it is not replayed, or replayed when the journal
+	 * is next opened if the database cannot be reached. Run on the writer
+	 * thread.
+	 */
+	private void quarantine(ClockItDataSource datasource, Event event) {
+		try {
+			FileOutputStream quarantine = new FileOutputStream(new File(
+					file.getParentFile(), QUARANTINE_FILE_NAME), true);
+			try {
+				quarantine.write(encode(event));
+				quarantine.getFD().sync();
+			} finally {
+				quarantine.close();
+			}
+		} catch (IOException e) {
+			Log.e(LOGTAG, "Unable to quarantine clock event " + event.sequence,
+					e);
+		}
+
+		try {
+			datasource.setAppliedClockEvent(event.sequence);
+		} catch (RuntimeException e) {
+			Log.e(LOGTAG, "Unable to skip clock event " + event.sequence, e);
+		}
+	}
+
+	/**
+	 * Opens the journal file, writes the events appended before it was open
+	 * and restores the reserved ids, then fills the blocks of ids and replays
+	 * the file. The file is read without holding this, since events are held
+	 * in memory until it is open. Run on the writer thread before anything
+	 * else.
+	 */
+	private void open() {
+		List<Event> events = new ArrayList<Event>();
+		List<Event> held = new ArrayList<Event>();
+		long opened;
+		FileOutputStream opening;
+		try {
+			opened = read(events);
+			opening = new FileOutputStream(file, true);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to open clock journal", e);
+		}
+
+		synchronized (this) {
+			out = opening;
+
+			// Number the held events on from the file's events
+			for (Event event : appendedBeforeOpen) {
+				Event numbered = new Event(event.type, opened + event.sequence,
+						event.timeStampId, event.time, event.clientId,
+						event.serviceId, event.description);
+				try {
+					write(encode(numbered));
+				} catch (IOException e) {
+					// The open shift record already shows the event, so it is
+					// still applied, but does not survive the process ending
+					Log.e(LOGTAG, "Unable to write clock event", e);
+				}
+				held.add(numbered);
+			}
+			appendedBeforeOpen.clear();
+			lastSequence += opened;
+			appliedSequence = opened;
+			syncedSequence = opened;
+		}
+		restoreTimeStampIds(events);
+		try {
+			reserveBlocks();
+		} catch (RuntimeException e) {
+			// Clock ins reserve their own ids on the writer thread until the
+			// blocks can be filled
+			Log.e(LOGTAG, "Unable to reserve time stamp ids", e);
+		}
+
+		replay(events, opened);
+		for (Event event : held) {
+			apply(event);
+		}
+	}
+
+	/**
+	 * Applies the events read from the file that were not applied before the
+	 * process ended, then brings the open shift record in line with the
+	 * database. Run on the writer thread when the file is opened.
+	 *
+	 * @param events
+	 *            The events read from the file.
+	 * @param opened
+	 *            The sequence of the last event in the file when it was
+	 *            opened.
+	 */
+	private void replay(List<Event> events, long opened) {
+		ClockItDataSource datasource = getDataSource();
+
+		// A marker past the file's events means the file was lost, so every
+		// event in it has been applied
+		long applied = datasource.getAppliedClockEvent();
+		if (applied > opened) {
+			datasource.setAppliedClockEvent(opened);
+			applied = opened;
+		}
+
+		int replayed = 0;
+		for (Event event : events) {
+			if (event.sequence > applied) {
+				apply(event);
+				replayed++;
+			}
+		}
+
+		if (replayed > 0) {
+			Log.i(LOGTAG, "Replayed " + replayed + " clock events");
+			reconcile(datasource);
+		}
+	}
+
+	/**
+	 * Takes a reserved time stamp id for a clock in, moving on to the block
+	 * reserved ahead when the one in use runs out and queuing the reservation
+	 * of another. Never waits for ids to be reserved.
+	 *
+	 * @return The id, or -1 if both blocks have run out.
+	 */
+	private int takeTimeStampId() {
+		synchronized (idLock) {
+			if (nextTimeStampId > lastTimeStampId) {
+				nextTimeStampId = spareTimeStampId;
+				lastTimeStampId = lastSpareTimeStampId;
+				spareTimeStampId = 1;
+				lastSpareTimeStampId = 0;
+			}
+			reserveTimeStampIds();
+			return nextTimeStampId <= lastTimeStampId ? nextTimeStampId++ : -1;
+		}
+	}
+
+	/**
+	 * Queues the filling of the blocks of time stamp ids on the writer
+	 * thread, unless both are full or it is already queued. Must be called
+	 * holding idLock.
+	 */
+	private void reserveTimeStampIds() {
+		if (reserving || spareTimeStampId <= lastSpareTimeStampId) {
+			return;
+		}
+		reserving = true;
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (idLock) {
+					reserving = false;
+				}
+				try {
+					reserveBlocks();
+				} catch (RuntimeException e) {
+					Log.e(LOGTAG, "Unable to reserve time stamp ids", e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reserves blocks of time stamp ids until both the block in use and the
+	 * one reserved ahead are full. Run on the writer thread.
+	 */
+	private void reserveBlocks() {
+		while (true) {
+			synchronized (idLock) {
+				if (spareTimeStampId <= lastSpareTimeStampId) {
+					return;
+				}
+			}
+			reserveBlock();
+		}
+	}
+
+	/**
+	 * Reserves the next block of time stamp ids from the database and records
+	 * it in the journal. The block is used at once if the one in use has run
+	 * out, and is otherwise reserved ahead. Run on the writer thread.
+	 */
+	private void reserveBlock() {
+		int first = getDataSource().reserveTimeStampIds(TIME_STAMP_ID_BLOCK);
+		int last = first + TIME_STAMP_ID_BLOCK - 1;
+
+		synchronized (this) {
+			try {
+				write(encode(new Event(EVENT_RESERVE, 0, first, 0, last, 0,
+						null)));
+			} catch (IOException e) {
+				// The ids can still be used until the process ends
+				Log.e(LOGTAG, "Unable to record time stamp ids", e);
+			}
+		}
+
+		synchronized (idLock) {
+			if (nextTimeStampId > lastTimeStampId) {
+				nextTimeStampId = first;
+				lastTimeStampId = last;
+			} else {
+				spareTimeStampId = first;
+				lastSpareTimeStampId = last;
+			}
+		}
+	}
+
+	/**
+	 * Takes the reservations of time stamp ids out of the events read from the
+	 * file and restores the ids a clock in in the file has not used. Ids are
+	 * taken in order, so every reserved id after the last one used is free.
+	 */
+	private void restoreTimeStampIds(List<Event> events) {
+		List<Event> reservations = new ArrayList<Event>();
+		int lastUsed = 0;
+		for (Iterator<Event> i = events.iterator(); i.hasNext();) {
+			Event event = i.next();
+			if (event.type == EVENT_RESERVE) {
+				reservations.add(event);
+				i.remove();
+			} else if (event.type == EVENT_CLOCK_IN) {
+				lastUsed = Math.max(lastUsed, event.timeStampId);
+			}
+		}
+
+		synchronized (idLock) {
+			for (Event reservation : reservations) {
+				int first = Math.max(reservation.timeStampId, lastUsed + 1);
+				int last = reservation.clientId;
+				if (first > last) {
+					continue;
+				}
+				if (nextTimeStampId > lastTimeStampId) {
+					nextTimeStampId = first;
+					lastTimeStampId = last;
+				} else {
+					spareTimeStampId = first;
+					lastSpareTimeStampId = last;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lays out the reservations of the time stamp ids not yet taken, to be
+	 * carried over when the journal is compacted.
+	 */
+	private byte[] encodeTimeStampIds() {
+		ByteArrayOutputStream frames = new ByteArrayOutputStream();
+		synchronized (idLock) {
+			if (nextTimeStampId <= lastTimeStampId) {
+				byte[] frame = encode(new Event(EVENT_RESERVE, 0,
+						nextTimeStampId, 0, lastTimeStampId, 0, null));
+				frames.write(frame, 0, frame.length);
+			}
+			if (spareTimeStampId <= lastSpareTimeStampId) {
+				byte[] frame = encode(new Event(EVENT_RESERVE, 0,
+						spareTimeStampId, 0, lastSpareTimeStampId, 0, null));
+				frames.write(frame, 0, frame.length);
+			}
+		}
+		return frames.toByteArray();
+	}
+
+	/**
+	 * Lays out an event as it is written to the file: its length, its bytes
+	 * and a CRC32 of its bytes. The description is written as a length and
+	 * its UTF-8 bytes.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If the event is longer than MAX_EVENT_BYTES.
+	 */
+	private static byte[] encode(Event event) {
+		byte[] description = event.description == null ? null
+				: event.description.getBytes(UTF_8);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				description == null ? 64 : 64 + description.length);
+		DataOutputStream data = new DataOutputStream(bytes);
+		try {
+			data.writeInt(0);
+			data.writeByte(event.type);
+			data.writeLong(event.sequence);
+			data.writeInt(event.timeStampId);
+			data.writeLong(event.time);
+			data.writeInt(event.clientId);
+			data.writeInt(event.serviceId);
+			data.writeBoolean(description != null);
+			if (description != null) {
+				data.writeInt(description.length);
+				data.write(description);
+			}
+			data.writeInt(0);
+		} catch (IOException e) {
+			// Writing to memory does not fail
+			throw new IllegalStateException(e);
+		}
+
+		// Fill in the length and checksum around the event's bytes
+		byte[] frame = bytes.toByteArray();
+		int length = frame.length - 8;
+		if (length > MAX_EVENT_BYTES) {
+			throw new IllegalArgumentException("Clock event of " + length
+					+ " bytes is too long to journal");
+		}
+		CRC32 crc = new CRC32();
+		crc.update(frame, 4, length);
+		writeInt(frame, 0, length);
+		writeInt(frame, frame.length - 4, (int) crc.getValue());
+		return frame;
+	}
+
+	/**
+	 * Reads the events and reservations in the journal file, creating it if
+	 * needed and cutting off any damaged event at the end.
+	 *
+	 * @return The sequence of the last event appended.
+	 */
+	private long read(List<Event> events) throws IOException {
+		if (!file.exists() || file.length() < 8) {
+			writeHeader(file, 0, null);
+			return 0;
+		}
+
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		long sequence = 0;
+		long validLength = 8;
+		try {
+			sequence = in.readLong();
+			CRC32 crc = new CRC32();
+			while (true) {
+				int length = in.readInt();
+				if (length <= 0 || length > MAX_EVENT_BYTES) {
+					break;
+				}
+				byte[] frame = new byte[length];
+				in.readFully(frame);
+				crc.reset();
+				crc.update(frame, 0, length);
+				if (in.readInt() != (int) crc.getValue()) {
+					break;
+				}
+
+				DataInputStream data = new DataInputStream(
+						new ByteArrayInputStream(frame));
+				byte type = data.readByte();
+				long eventSequence = data.readLong();
+				int timeStampId = data.readInt();
+				long time = data.readLong();
+				int clientId = data.readInt();
+				int serviceId = data.readInt();
+				String description = null;
+				if (data.readBoolean()) {
+					byte[] text = new byte[data.readInt()];
+					data.readFully(text);
+					description = new String(text, UTF_8);
+				}
+				events.add(new Event(type, eventSequence, timeStampId, time,
+						clientId, serviceId, description));
+
+				if (type != EVENT_RESERVE) {
+					sequence = eventSequence;
+				}
+				validLength += length + 8;
+			}
+		} catch (EOFException e) {
+			// The last event was cut short
+		} finally {
+			in.close();
+		}
+
+		if (validLength < file.length()) {
+			Log.w(LOGTAG, "Dropping " + (file.length() - validLength)
+					+ " damaged bytes from the clock journal");
+			RandomAccessFile truncate = new RandomAccessFile(file, "rw");
+			try {
+				truncate.setLength(validLength);
+				truncate.getFD().sync();
+			} finally {
+				truncate.close();
+			}
+		}
+		return sequence;
+	}
+
+	/**
+	 * Clears the applied events out of the journal by replacing the file with
+	 * one that only records the last sequence and the reserved time stamp ids
+	 * not yet taken. The new file is written and synced without holding this,
+	 * so clocking in or out never waits on the disk for it, and the old one
+	 * is only swapped for it under this. The old one is kept if it cannot be
+	 * replaced, or if an event was appended to it meanwhile, until the next
+	 * time the journal is drained. Run on the writer thread.
+	 *
+	 * @param sequence
+	 *            The sequence of the last event appended, all of them
+	 *            applied.
+	 */
+	private void compact(long sequence) {
+		File replacement = new File(file.getPath() + ".tmp");
+		try {
+			writeHeader(replacement, sequence, encodeTimeStampIds());
+		} catch (IOException e) {
+			Log.e(LOGTAG, "Unable to compact clock journal", e);
+			replacement.delete();
+			return;
+		}
+
+		synchronized (this) {
+			if (lastSequence != sequence) {
+				replacement.delete();
+				return;
+			}
+			if (!replacement.renameTo(file)) {
+				Log.e(LOGTAG, "Unable to replace " + file);
+				replacement.delete();
+				return;
+			}
+
+			try {
+				out.close();
+			} catch (IOException e) {
+				Log.w(LOGTAG, "Unable to close replaced clock journal", e);
+			}
+			try {
+				out = new FileOutputStream(file, true);
+			} catch (IOException e) {
+				throw new IllegalStateException(
+						"Unable to reopen clock journal", e);
+			}
+		}
+	}
+
+	/**
+	 * Writes a journal file holding the sequence of the last event cleared out
+	 * of it, followed by any frames carried over.
+	 */
+	private static void writeHeader(File target, long sequence, byte[] frames)
+			throws IOException {
+		FileOutputStream header = new FileOutputStream(target);
+		try {
+			byte[] bytes = new byte[8];
+			writeInt(bytes, 0, (int) (sequence >>> 32));
+			writeInt(bytes, 4, (int) sequence);
+			header.write(bytes);
+			if (frames != null) {
+				header.write(frames);
+			}
+			header.getFD().sync();
+		} finally {
+			header.close();
+		}
+	}
+
+	/**
+	 * Writes a big endian int into a byte array.
+	 */
+	private static void writeInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+
+}
@@ -0,0 +1,146 @@
+package com.example.clockit.app.db;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.util.SparseArray;
+
+/**
+ * Identity map of entities by id, owned by a single data source. Each entity
+ * is loaded at most once and the same object is handed out until it is
+ * invalidated.
+ *
+ * Data sources in other activities may change the same rows, so every cache
+ * of an entity type shares a generation counter. Invalidating an entry bumps
+ * the counter and every other cache of that type drops its entries the next
+ * time it is used.
+ *
+ * @author Cameron Irwin
+ *
+ * @param <T>
+ *            The type of entity being cached.
+ */
+public class EntityCache<T> {
+
+	/** Entities loaded so far by id. */
+	private final SparseArray<T> entities = new SparseArray<T>();
+
+	/** Generation counter shared by every cache of this entity type. */
+	private final AtomicInteger generation;
+
+	/** Generation the cached entities were loaded in. */
+	private int loadedGeneration;
+
+	/** Number of lookups answered from the cache. */
+	private int hits = 0;
+
+	/** Number of lookups that had to go to the database. */
+	private int misses = 0;
+
+	/**
+	 * Constructor that sets the generation counter shared by the entity type.
+	 *
+	 * @param generation
+	 *            The counter bumped whenever an entity of the type changes.
+	 */
+	EntityCache(AtomicInteger generation) {
+		this.generation = generation;
+		loadedGeneration = generation.get();
+	}
+
+	/**
+	 * Looks up an entity and counts the hit or miss.
+	 *
+	 * @param id
+	 *            The id of the entity.
+	 * @return The cached entity or null if it has to be loaded.
+	 */
+	synchronized T get(int id) {
+		T entity = current().get(id);
+		if (entity == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return entity;
+	}
+
+	/**
+	 * Adds a loaded entity to the cache.
+	 *
+	 * @param id
+	 *            The id of the entity.
+	 * @param entity
+	 *            The entity that was loaded.
+	 */
+	synchronized void put(int id, T entity) {
+		current().put(id, entity);
+	}
+
+	/**
+	 * Drops an entity after it was changed or deleted and tells every other
+	 * cache of its type to drop their entries.
+	 *
+	 * @param id
+	 *            The id of the entity that changed.
+	 */
+	synchronized void invalidate(int id) {
+		current().remove(id);
+
+		// Keep the other entries unless another cache bumped the counter too
+		int next = generation.incrementAndGet();
+		if (next != loadedGeneration + 1) {
+			entities.clear();
+		}
+		loadedGeneration = next;
+	}
+
+	/**
+	 * Drops every entity of the type, in this cache and all others.
+	 */
+	synchronized void invalidateAll() {
+		loadedGeneration = generation.incrementAndGet();
+		entities.clear();
+	}
+
+	/**
+	 * Retrieves the number of lookups answered from the cache.
+	 *
+	 * @return The number of hits.
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Retrieves the number of lookups that had to go to the database.
+	 *
+	 * @return The number of misses.
+	 */
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gives a simple string representation of the counters for logging.
+	 *
+	 * @return String representation of the cache.
+	 */
+	public synchronized String toString() {
+		return hits + " hits, " + misses + " misses, " + entities.size()
+				+ " cached";
+	}
+
+	/**
+	 * Returns the cached entities, dropping them first if an entity of the type
+	 * changed somewhere else since they were loaded.
+	 */
+	private SparseArray<T> current() {
+		int latest = generation.get();
+		if (latest != loadedGeneration) {
+			entities.clear();
+			loadedGeneration = latest;
+		}
+		return entities;
+	}
+
+}
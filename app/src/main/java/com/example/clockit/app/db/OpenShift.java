@@ -0,0 +1,220 @@
+package com.example.clockit.app.db;
+
+import java.util.Arrays;
+
+import com.example.clockit.app.model.Money;
+import com.example.clockit.app.model.Segments;
+import com.example.clockit.app.model.TimeStamp;
+
+/**
+ * Immutable record of a time stamp the user is clocked in to. It holds what is
+ * needed to show the shift while it runs, so the shift can be displayed without
+ * querying the time stamps table.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public final class OpenShift {
+
+	/** The id of the open time stamp. */
+	private final int TimeStampId;
+
+	/** The clock in time in milliseconds. */
+	private final long ClockIn;
+
+	/** The name of the time stamp's client. */
+	private final String ClientName;
+
+	/** The name of the time stamp's service. */
+	private final String ServiceName;
+
+	/** The service's pay rate in cents per hour. */
+	private final long RateCents;
+
+	/** The packed pause and resume times, or null if never paused. */
+	private final byte[] PackedSegments;
+
+	/**
+	 * Constructor that takes in the shift's values and sets them to
+	 * properties.
+	 *
+	 * @param timeStampId
+	 *            The id of the open time stamp.
+	 * @param clockIn
+	 *            The clock in time in milliseconds.
+	 * @param clientName
+	 *            The name of the time stamp's client.
+	 * @param serviceName
+	 *            The name of the time stamp's service.
+	 * @param rateCents
+	 *            The service's pay rate in cents per hour.
+	 * @param segments
+	 *            The packed pause and resume times, or null if never paused.
+	 */
+	public OpenShift(int timeStampId, long clockIn, String clientName,
+			String serviceName, long rateCents, byte[] segments) {
+		TimeStampId = timeStampId;
+		ClockIn = clockIn;
+		ClientName = clientName;
+		ServiceName = serviceName;
+		RateCents = rateCents;
+		PackedSegments = segments;
+	}
+
+	/**
+	 * Constructor that records an open time stamp.
+	 *
+	 * @param timeStamp
+	 *            The time stamp that was clocked in to.
+	 */
+	public OpenShift(TimeStamp timeStamp) {
+		this(timeStamp.getId(), timeStamp.getClockIn(), timeStamp.getClient()
+				.getName(), timeStamp.getService().getName(), timeStamp
+				.getService().getRateCents(), timeStamp.getPackedSegments());
+	}
+
+	/**
+	 * Creates a copy of the shift with new pause and resume times.
+	 *
+	 * @param segments
+	 *            The packed pause and resume times.
+	 * @return The updated shift.
+	 */
+	OpenShift withSegments(byte[] segments) {
+		return new OpenShift(TimeStampId, ClockIn, ClientName, ServiceName,
+				RateCents, segments);
+	}
+
+	/**
+	 * Allows access to private TimeStampId variable.
+	 *
+	 * @return The id of the open time stamp.
+	 */
+	public int getTimeStampId() {
+		return TimeStampId;
+	}
+
+	/**
+	 * Allows access to private ClockIn variable.
+	 *
+	 * @return The clock in time in milliseconds.
+	 */
+	public long getClockIn() {
+		return ClockIn;
+	}
+
+	/**
+	 * Allows access to private ClientName variable.
+	 *
+	 * @return The name of the time stamp's client.
+	 */
+	public String getClientName() {
+		return ClientName;
+	}
+
+	/**
+	 * Allows access to private ServiceName variable.
+	 *
+	 * @return The name of the time stamp's service.
+	 */
+	public String getServiceName() {
+		return ServiceName;
+	}
+
+	/**
+	 * Allows access to private RateCents variable.
+	 *
+	 * @return The service's pay rate in cents per hour.
+	 */
+	public long getRateCents() {
+		return RateCents;
+	}
+
+	/**
+	 * Allows access to private PackedSegments variable. The array must not be
+	 * modified.
+	 *
+	 * @return The packed pause and resume times, or null.
+	 */
+	public byte[] getPackedSegments() {
+		return PackedSegments;
+	}
+
+	/**
+	 * Lets the caller know if the shift is paused.
+	 *
+	 * @return True if paused and false otherwise.
+	 */
+	public boolean isPaused() {
+		return Segments.isPaused(PackedSegments);
+	}
+
+	/**
+	 * Calculates the time worked so far in the shift, leaving out its breaks
+	 * and treating a clock in time in the future (such as after the device
+	 * clock was changed) as no time.
+	 *
+	 * @param now
+	 *            The current time in milliseconds.
+	 * @return The time worked in milliseconds.
+	 */
+	public long getWorkedMillis(long now) {
+		long worked = Segments.getWorkedMillis(PackedSegments, ClockIn, now);
+		return worked > 0 ? worked : 0;
+	}
+
+	/**
+	 * Calculates the amount earned so far in the shift.
+	 *
+	 * @param now
+	 *            The current time in milliseconds.
+	 * @return The amount earned in cents.
+	 */
+	public long getEarnedCents(long now) {
+		return Money.earned(getWorkedMillis(now), RateCents);
+	}
+
+	/**
+	 * Calculates the amount earned so far in several shifts worked at once.
+	 *
+	 * @param shifts
+	 *            The open shifts.
+	 * @param now
+	 *            The current time in milliseconds.
+	 * @return The total amount earned in cents.
+	 */
+	public static long getEarnedCents(OpenShift[] shifts, long now) {
+		long earnedCents = 0;
+		for (OpenShift shift : shifts) {
+			earnedCents += shift.getEarnedCents(now);
+		}
+		return earnedCents;
+	}
+
+	/**
+	 * Lets the caller know if the shift matches an open time stamp from the
+	 * database.
+	 *
+	 * @param timeStamp
+	 *            The open time stamp.
+	 * @return True if every recorded value matches.
+	 */
+	boolean matches(TimeStamp timeStamp) {
+		return TimeStampId == timeStamp.getId()
+				&& ClockIn == timeStamp.getClockIn()
+				&& RateCents == timeStamp.getService().getRateCents()
+				&& ClientName.equals(timeStamp.getClient().getName())
+				&& ServiceName.equals(timeStamp.getService().getName())
+				&& Arrays.equals(PackedSegments, timeStamp.getPackedSegments());
+	}
+
+	/**
+	 * Gives a simple string representation of the shift.
+	 *
+	 * @return The client and service names.
+	 */
+	public String toString() {
+		return ClientName + " - " + ServiceName;
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.example.clockit.app.db;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Precompiled scalar queries, owned by a single data source. Each query is
+ * compiled the first time it is run and reused until the data source releases
+ * the connection, so hot lookups bind their primitive arguments straight into
+ * the compiled statement instead of parsing SQL and building a cursor.
+ *
+ * A compiled statement holds its bindings between calls, so running one is
+ * synchronized for data sources used from several threads.
+ *
+ * @author Cameron Irwin
+ *
+ */
+class StatementCache {
+
+	/** Connection the statements are compiled on. */
+	private final SQLiteDatabase database;
+
+	/** Statements compiled so far by their SQL. */
+	private final Map<String, SQLiteStatement> statements = new HashMap<String, SQLiteStatement>();
+
+	/**
+	 * Constructor that sets the connection to compile the statements on.
+	 *
+	 * @param database
+	 *            The open database connection.
+	 */
+	StatementCache(SQLiteDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * Runs a query for a single number with one argument.
+	 *
+	 * @param sql
+	 *            The query, which should be a constant so it is compiled once.
+	 * @param arg
+	 *            The value bound to the query's parameter.
+	 * @param notFound
+	 *            The value returned if the query has no rows.
+	 * @return The number in the first column of the first row.
+	 */
+	synchronized long queryForLong(String sql, long arg, long notFound) {
+		SQLiteStatement statement = get(sql);
+		statement.bindLong(1, arg);
+		return queryForLong(statement, notFound);
+	}
+
+	/**
+	 * Runs a query for a single number with two arguments.
+	 *
+	 * @param sql
+	 *            The query, which should be a constant so it is compiled once.
+	 * @param arg1
+	 *            The value bound to the query's first parameter.
+	 * @param arg2
+	 *            The value bound to the query's second parameter.
+	 * @param notFound
+	 *            The value returned if the query has no rows.
+	 * @return The number in the first column of the first row.
+	 */
+	synchronized long queryForLong(String sql, long arg1, long arg2,
+			long notFound) {
+		SQLiteStatement statement = get(sql);
+		statement.bindLong(1, arg1);
+		statement.bindLong(2, arg2);
+		return queryForLong(statement, notFound);
+	}
+
+	/**
+	 * Releases every compiled statement. Must be called before the connection
+	 * is released.
+	 */
+	synchronized void close() {
+		for (SQLiteStatement statement : statements.values()) {
+			statement.close();
+		}
+		statements.clear();
+	}
+
+	/**
+	 * Returns the compiled statement for the SQL, compiling it if needed.
+	 */
+	private SQLiteStatement get(String sql) {
+		SQLiteStatement statement = statements.get(sql);
+		if (statement == null) {
+			statement = database.compileStatement(sql);
+			statements.put(sql, statement);
+		}
+		return statement;
+	}
+
+	/**
+	 * Runs a bound statement, answering no rows with the supplied value.
+	 */
+	private static long queryForLong(SQLiteStatement statement, long notFound) {
+		try {
+			return statement.simpleQueryForLong();
+		} catch (SQLiteDoneException e) {
+			return notFound;
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.example.clockit.app.db;
+
+import java.util.List;
+
+/**
+ * Conditions used to narrow the list of time stamps. Every condition is
+ * optional and the ones that are set must all match. The filter is turned into
+ * a where clause over the time stamp join so the database does the filtering
+ * using its indexes.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class TimeStampFilter {
+
+	/** Earliest clock in time to include, or -1 for no lower bound. */
+	private long start = -1;
+
+	/** Clock in time to stop before, or -1 for no upper bound. */
+	private long end = -1;
+
+	/** Clients to include, or null for every client. */
+	private int[] clientIds;
+
+	/** Services to include, or null for every service. */
+	private int[] serviceIds;
+
+	/** Text the description, client name or service name must contain. */
+	private String text;
+
+	/**
+	 * Limits the time stamps to those clocked in during a time range.
+	 *
+	 * @param start
+	 *            The earliest clock in time to include, or -1 for no lower
+	 *            bound.
+	 * @param end
+	 *            The clock in time to stop before, or -1 for no upper bound.
+	 * @return This filter.
+	 */
+	public TimeStampFilter setTimeRange(long start, long end) {
+		this.start = start;
+		this.end = end;
+		return this;
+	}
+
+	/**
+	 * Limits the time stamps to those of the supplied clients.
+	 *
+	 * @param clientIds
+	 *            The ids of the clients to include, or null for every client.
+	 * @return This filter.
+	 */
+	public TimeStampFilter setClientIds(int... clientIds) {
+		this.clientIds = clientIds;
+		return this;
+	}
+
+	/**
+	 * Limits the time stamps to those of the supplied services.
+	 *
+	 * @param serviceIds
+	 *            The ids of the services to include, or null for every
+	 *            service.
+	 * @return This filter.
+	 */
+	public TimeStampFilter setServiceIds(int... serviceIds) {
+		this.serviceIds = serviceIds;
+		return this;
+	}
+
+	/**
+	 * Limits the time stamps to those whose description, client name or
+	 * service name contains the supplied text, ignoring case.
+	 *
+	 * @param text
+	 *            The text to match, or null to match everything.
+	 * @return This filter.
+	 */
+	public TimeStampFilter setText(String text) {
+		this.text = text == null || text.trim().length() == 0 ? null : text
+				.trim();
+		return this;
+	}
+
+	/**
+	 * Lets the caller know if any condition is set.
+	 *
+	 * @return True if the filter matches every time stamp.
+	 */
+	public boolean isEmpty() {
+		return start == -1 && end == -1 && clientIds == null
+				&& serviceIds == null && text == null;
+	}
+
+	/**
+	 * Appends the filter's conditions to a where clause over the time stamp
+	 * join (aliased ts, cs, c and s) and adds their values to the arguments.
+	 * Client and service conditions are answered from the client to service
+	 * index and then matched by the time stamp's client to service index
+	 * rather than by scanning the join.
+	 *
+	 * @param where
+	 *            The where clause to append to, which already holds at least
+	 *            one condition.
+	 * @param args
+	 *            The values bound to the where clause.
+	 */
+	void appendTo(StringBuilder where, List<String> args) {
+		if (start != -1) {
+			where.append(" AND ts.")
+					.append(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN)
+					.append(" >= ?");
+			args.add(String.valueOf(start));
+		}
+		if (end != -1) {
+			where.append(" AND ts.")
+					.append(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN)
+					.append(" < ?");
+			args.add(String.valueOf(end));
+		}
+
+		if (clientIds != null || serviceIds != null) {
+			where.append(" AND ts.")
+					.append(ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID)
+					.append(" IN (SELECT ")
+					.append(ClockItDBOpenHelper.CLIENTS_TO_SERVICES_ID)
+					.append(" FROM ")
+					.append(ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES)
+					.append(" WHERE 1");
+			appendIn(where, args,
+					ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID, clientIds);
+			appendIn(where, args,
+					ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID,
+					serviceIds);
+			where.append(")");
+		}
+
+		if (text != null) {
+			// Escape the wildcards so the text is matched literally
+			String pattern = "%"
+					+ text.replace("\\", "\\\\").replace("%", "\\%")
+							.replace("_", "\\_") + "%";
+			where.append(" AND (ts.")
+					.append(ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION)
+					.append(" LIKE ? ESCAPE '\\' OR c.")
+					.append(ClockItDBOpenHelper.CLIENTS_NAME)
+					.append(" LIKE ? ESCAPE '\\' OR s.")
+					.append(ClockItDBOpenHelper.SERVICES_NAME)
+					.append(" LIKE ? ESCAPE '\\')");
+			args.add(pattern);
+			args.add(pattern);
+			args.add(pattern);
+		}
+	}
+
+	/**
+	 * Appends an IN condition on a column for the supplied ids.
+	 */
+	private static void appendIn(StringBuilder where, List<String> args,
+			String column, int[] ids) {
+		if (ids == null) {
+			return;
+		}
+
+		where.append(" AND ").append(column).append(" IN (");
+		for (int i = 0; i < ids.length; i++) {
+			where.append(i == 0 ? "?" : ", ?");
+			args.add(String.valueOf(ids[i]));
+		}
+		where.append(")");
+	}
+
+}
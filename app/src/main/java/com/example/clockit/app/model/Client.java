@@ -11,6 +11,14 @@ import java.util.List;
  */
 public class Client {
 
+	/**
+	 * Loads the services associated with a client the first time they are
+	 * asked for.
+	 */
+	public interface ServicesLoader {
+		List<Services> load(int clientId);
+	}
+
 	/** The client's id. */
 	private int Id;
 	
@@ -20,9 +28,12 @@ public class Client {
 	/** The client's description. */
 	private String Description;
 	
-	/** The client's associated services. */
+	/** The client's associated services, or null until they are loaded. */
 	private List<Services> Services;
 
+	/** Loads the client's services if they were not supplied. */
+	private ServicesLoader Loader;
+
 	/**
 	 * Constructor that takes in column values and sets them to properties.
 	 * 
@@ -43,6 +54,28 @@ public class Client {
 		Services = services;
 	}
 
+	/**
+	 * Constructor that takes in column values and sets them to properties. The
+	 * client's services are loaded by the supplied loader the first time they
+	 * are asked for.
+	 * 
+	 * @param id
+	 *            The clients id.
+	 * @param name
+	 *            The clients name.
+	 * @param description
+	 *            The clients description.
+	 * @param loader
+	 *            Loads the services associated with the client.
+	 */
+	public Client(int id, String name, String description, ServicesLoader loader) {
+		// Set properties to the supplied values
+		Id = id;
+		Name = name;
+		Description = description;
+		Loader = loader;
+	}
+
 	/**
 	 * Allows access to private Id variable.
 	 * 
@@ -71,11 +104,16 @@ public class Client {
 	}
 	
 	/**
-	 * Allows access to private Services variable.
+	 * Allows access to private Services variable, loading the services the
+	 * first time they are asked for.
 	 * 
 	 * @return The client's services.
 	 */
-	public List<Services> getServices() {
+	public synchronized List<Services> getServices() {
+		if (Services == null && Loader != null) {
+			Services = Loader.load(Id);
+			Loader = null;
+		}
 		return Services;
 	}
 
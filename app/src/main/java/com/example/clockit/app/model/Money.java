@@ -0,0 +1,88 @@
+package com.example.clockit.app.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed point helpers for money amounts. Amounts are held as a long number of
+ * cents and rates as cents per hour so sums stay exact and no objects are
+ * created while adding them up.
+ * 
+ * @author Cameron Irwin
+ * 
+ */
+public final class Money {
+
+	/** Number of milliseconds in an hour. */
+	public static final long MILLIS_PER_HOUR = 3600000L;
+
+	/** Prevents instantiation of the helper class. */
+	private Money() {
+	}
+
+	/**
+	 * Calculates the amount earned for a duration at an hourly rate, rounded
+	 * half up to the nearest cent.
+	 * 
+	 * @param millis
+	 *            The duration worked in milliseconds.
+	 * @param centsPerHour
+	 *            The pay rate in cents per hour.
+	 * @return The amount earned in cents.
+	 */
+	public static long earned(long millis, long centsPerHour) {
+		return (millis * centsPerHour + MILLIS_PER_HOUR / 2) / MILLIS_PER_HOUR;
+	}
+
+	/**
+	 * Parses a dollar amount such as "12.5" into cents, rounding half up to the
+	 * nearest cent.
+	 * 
+	 * @param dollars
+	 *            The dollar amount as entered by the user.
+	 * @return The amount in cents.
+	 * @throws NumberFormatException
+	 *             If the text is not a valid amount.
+	 */
+	public static long parse(String dollars) {
+		return new BigDecimal(dollars.trim()).movePointRight(2)
+				.setScale(0, RoundingMode.HALF_UP).longValue();
+	}
+
+	/**
+	 * Formats an amount of cents as dollars with two decimal places, such as
+	 * "12.50".
+	 * 
+	 * @param cents
+	 *            The amount in cents.
+	 * @return The formatted amount without a currency sign.
+	 */
+	public static String format(long cents) {
+		StringBuilder builder = new StringBuilder(12);
+		appendTo(builder, cents);
+		return builder.toString();
+	}
+
+	/**
+	 * Appends an amount of cents as dollars with two decimal places to the
+	 * builder without creating any intermediate strings.
+	 * 
+	 * @param builder
+	 *            The builder to append to.
+	 * @param cents
+	 *            The amount in cents.
+	 */
+	public static void appendTo(StringBuilder builder, long cents) {
+		if (cents < 0) {
+			builder.append('-');
+			cents = -cents;
+		}
+		long remainder = cents % 100;
+		builder.append(cents / 100).append('.');
+		if (remainder < 10) {
+			builder.append('0');
+		}
+		builder.append(remainder);
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.example.clockit.app.model;
+
+/**
+ * Class for an object representation of a single full text search match. A
+ * match points at a time stamp, client, service or contact by its type and id.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class SearchResult {
+
+	// Types of entity a result can point at
+	public static final int TYPE_TIME_STAMP = 0;
+	public static final int TYPE_CLIENT = 1;
+	public static final int TYPE_SERVICE = 2;
+	public static final int TYPE_CONTACT = 3;
+
+	/** The type of entity that matched. */
+	private int Type;
+
+	/** The id of the entity that matched. */
+	private int Id;
+
+	/** The entity's name, or an empty string for time stamps. */
+	private String Title;
+
+	/** The part of the entity's text around the match. */
+	private String Snippet;
+
+	/** How well the entity matched, higher is better. */
+	private double Score;
+
+	/**
+	 * Constructor that takes in the match's values and sets them to
+	 * properties.
+	 *
+	 * @param type
+	 *            The type of entity that matched.
+	 * @param id
+	 *            The id of the entity that matched.
+	 * @param title
+	 *            The entity's name.
+	 * @param snippet
+	 *            The part of the entity's text around the match.
+	 * @param score
+	 *            How well the entity matched.
+	 */
+	public SearchResult(int type, int id, String title, String snippet,
+			double score) {
+		// Set properties to the supplied values
+		Type = type;
+		Id = id;
+		Title = title;
+		Snippet = snippet;
+		Score = score;
+	}
+
+	/**
+	 * Allows access to private Type variable.
+	 *
+	 * @return The type of entity that matched.
+	 */
+	public int getType() {
+		return Type;
+	}
+
+	/**
+	 * Allows access to private Id variable.
+	 *
+	 * @return The id of the entity that matched.
+	 */
+	public int getId() {
+		return Id;
+	}
+
+	/**
+	 * Allows access to private Title variable.
+	 *
+	 * @return The entity's name.
+	 */
+	public String getTitle() {
+		return Title;
+	}
+
+	/**
+	 * Allows access to private Snippet variable.
+	 *
+	 * @return The part of the entity's text around the match.
+	 */
+	public String getSnippet() {
+		return Snippet;
+	}
+
+	/**
+	 * Allows access to private Score variable.
+	 *
+	 * @return How well the entity matched.
+	 */
+	public double getScore() {
+		return Score;
+	}
+
+	/**
+	 * Gives a simple string representation of the object's properties.
+	 *
+	 * @return String representation of the result.
+	 */
+	public String toString() {
+		return Title.length() > 0 ? Title : Snippet;
+	}
+
+}
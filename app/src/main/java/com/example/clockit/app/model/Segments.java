@@ -0,0 +1,138 @@
+package com.example.clockit.app.model;
+
+/**
+ * Helpers for the packed breaks of a time stamp. A time stamp is worked in
+ * segments that start at its clock in and at each resume, and stop at each
+ * pause and at its clock out. The clock in and clock out are already columns
+ * of the time stamp, so only the pause and resume times between them are
+ * packed, as big endian longs in the order they happened. A time stamp that
+ * was never paused has no packed breaks (null).
+ *
+ * An odd number of times means the time stamp is paused; its last break lasts
+ * until it is resumed or clocked out. Every calculation reads the packed
+ * bytes in place, so totalling time stamps creates no objects.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public final class Segments {
+
+	/** Number of bytes each packed time takes. */
+	public static final int TIME_BYTES = 8;
+
+	/** Prevents instantiation of the helper class. */
+	private Segments() {
+	}
+
+	/**
+	 * Packs a single pause or resume time so it can be appended to the stored
+	 * breaks.
+	 *
+	 * @param time
+	 *            The time in milliseconds.
+	 * @return The packed time.
+	 */
+	public static byte[] pack(long time) {
+		byte[] packed = new byte[TIME_BYTES];
+		for (int i = TIME_BYTES - 1; i >= 0; i--) {
+			packed[i] = (byte) time;
+			time >>>= 8;
+		}
+		return packed;
+	}
+
+	/**
+	 * Copies packed breaks with one more pause or resume time on the end.
+	 *
+	 * @param packed
+	 *            The packed breaks, or null.
+	 * @param time
+	 *            The time in milliseconds.
+	 * @return The new packed breaks.
+	 */
+	public static byte[] append(byte[] packed, long time) {
+		int length = packed == null ? 0 : packed.length;
+		byte[] appended = new byte[length + TIME_BYTES];
+		if (length > 0) {
+			System.arraycopy(packed, 0, appended, 0, length);
+		}
+		System.arraycopy(pack(time), 0, appended, length, TIME_BYTES);
+		return appended;
+	}
+
+	/**
+	 * Retrieves the number of pause and resume times.
+	 *
+	 * @param packed
+	 *            The packed breaks, or null.
+	 * @return The number of times.
+	 */
+	public static int getTimeCount(byte[] packed) {
+		return packed == null ? 0 : packed.length / TIME_BYTES;
+	}
+
+	/**
+	 * Reads one of the pause and resume times.
+	 *
+	 * @param packed
+	 *            The packed breaks.
+	 * @param index
+	 *            The position of the time, starting at 0 for the first pause.
+	 * @return The time in milliseconds.
+	 */
+	public static long getTime(byte[] packed, int index) {
+		long time = 0;
+		for (int i = index * TIME_BYTES, end = i + TIME_BYTES; i < end; i++) {
+			time = (time << 8) | (packed[i] & 0xff);
+		}
+		return time;
+	}
+
+	/**
+	 * Lets the caller know if the last segment has been paused and not yet
+	 * resumed.
+	 *
+	 * @param packed
+	 *            The packed breaks, or null.
+	 * @return True if paused and false otherwise.
+	 */
+	public static boolean isPaused(byte[] packed) {
+		return getTimeCount(packed) % 2 == 1;
+	}
+
+	/**
+	 * Totals the time spent on breaks up to a time. A break that has not been
+	 * resumed lasts until that time.
+	 *
+	 * @param packed
+	 *            The packed breaks, or null.
+	 * @param end
+	 *            The clock out time, or the current time if still open.
+	 * @return The time on breaks in milliseconds.
+	 */
+	public static long getBreakMillis(byte[] packed, long end) {
+		int count = getTimeCount(packed);
+		long millis = 0;
+		for (int i = 0; i < count; i += 2) {
+			long resume = i + 1 < count ? getTime(packed, i + 1) : end;
+			millis += resume - getTime(packed, i);
+		}
+		return millis;
+	}
+
+	/**
+	 * Totals the time worked in every segment up to a time.
+	 *
+	 * @param packed
+	 *            The packed breaks, or null.
+	 * @param clockIn
+	 *            The clock in time.
+	 * @param end
+	 *            The clock out time, or the current time if still open.
+	 * @return The time worked in milliseconds.
+	 */
+	public static long getWorkedMillis(byte[] packed, long clockIn, long end) {
+		return end - clockIn - getBreakMillis(packed, end);
+	}
+
+}
@@ -18,8 +18,8 @@ public class Services {
 	/** The service's description. */
 	private String Description;
 	
-	/** The service's rate. */
-	private double Rate;
+	/** The service's rate in cents per hour. */
+	private long RateCents;
 
 	/**
 	 * Constructor that takes in column values and sets them to properties.
@@ -30,15 +30,15 @@ public class Services {
 	 *            The name of the service.
 	 * @param description
 	 *            The description of the service.
-	 * @param rate
-	 *            The pay rate of the service.
+	 * @param rateCents
+	 *            The pay rate of the service in cents per hour.
 	 */
-	public Services(int id, String name, String description, double rate) {
+	public Services(int id, String name, String description, long rateCents) {
 		// Set property values
 		Id = id;
 		Name = name;
 		Description = description;
-		Rate = rate;
+		RateCents = rateCents;
 	}
 
 	/**
@@ -69,12 +69,12 @@ public class Services {
 	}
 
 	/**
-	 * Allows access to private Rate variable.
+	 * Allows access to private RateCents variable.
 	 * 
-	 * @return The service's pay rate.
+	 * @return The service's pay rate in cents per hour.
 	 */
-	public double getRate() {
-		return Rate;
+	public long getRateCents() {
+		return RateCents;
 	}
 
 	/**
@@ -83,7 +83,7 @@ public class Services {
 	 * @return String representation of the service.
 	 */
 	public String toString() {
-		return Name + "\n" + Rate + "/hour";
+		return Name + "\n" + Money.format(RateCents) + "/hour";
 	}
 
 }
@@ -0,0 +1,155 @@
+package com.example.clockit.app.model;
+
+/**
+ * Renders the elapsed time and earnings of an open shift into reusable
+ * character buffers. The display is redrawn every second for the whole shift,
+ * so rendering creates no objects and reports whether the text changed so
+ * views are only updated when what they show is different.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ShiftDisplay {
+
+	/** Longest elapsed time text, a long number of hours plus ":mm:ss". */
+	private static final int MAX_TIME_LENGTH = 25;
+
+	/** Longest earnings text, "-$" plus a long number of dollars plus ".cc". */
+	private static final int MAX_EARNED_LENGTH = 25;
+
+	/** Characters of the elapsed time, such as "01:05:09". */
+	private final char[] time = new char[MAX_TIME_LENGTH];
+
+	/** Number of characters of the elapsed time in use. */
+	private int timeLength;
+
+	/** Whole seconds currently rendered, or -1 before the first render. */
+	private long renderedSeconds = -1;
+
+	/** Characters of the earnings, such as "$12.50". */
+	private final char[] earned = new char[MAX_EARNED_LENGTH];
+
+	/** Number of characters of the earnings in use. */
+	private int earnedLength;
+
+	/** Cents currently rendered. */
+	private long renderedCents;
+
+	/** Whether the earnings have been rendered yet. */
+	private boolean earnedRendered = false;
+
+	/**
+	 * Renders an elapsed time as hours, minutes and seconds. Negative times
+	 * are shown as zero.
+	 *
+	 * @param millis
+	 *            The elapsed time in milliseconds.
+	 * @return True if the rendered text changed.
+	 */
+	public boolean setElapsed(long millis) {
+		long seconds = millis > 0 ? millis / 1000 : 0;
+		if (seconds == renderedSeconds) {
+			return false;
+		}
+		renderedSeconds = seconds;
+
+		long hours = seconds / 3600;
+		int position = writeDigits(time, 0, hours, 2);
+		time[position++] = ':';
+		position = writeDigits(time, position, seconds / 60 % 60, 2);
+		time[position++] = ':';
+		timeLength = writeDigits(time, position, seconds % 60, 2);
+		return true;
+	}
+
+	/**
+	 * Renders an amount of cents as dollars with two decimal places.
+	 *
+	 * @param cents
+	 *            The amount in cents.
+	 * @return True if the rendered text changed.
+	 */
+	public boolean setEarnedCents(long cents) {
+		if (earnedRendered && cents == renderedCents) {
+			return false;
+		}
+		earnedRendered = true;
+		renderedCents = cents;
+
+		int position = 0;
+		if (cents < 0) {
+			earned[position++] = '-';
+			cents = -cents;
+		}
+		earned[position++] = '$';
+		position = writeDigits(earned, position, cents / 100, 1);
+		earned[position++] = '.';
+		earnedLength = writeDigits(earned, position, cents % 100, 2);
+		return true;
+	}
+
+	/**
+	 * Allows access to the elapsed time buffer. Only the first
+	 * getTimeLength() characters are in use.
+	 *
+	 * @return The characters of the elapsed time.
+	 */
+	public char[] getTime() {
+		return time;
+	}
+
+	/**
+	 * Retrieves the number of characters of the elapsed time in use.
+	 *
+	 * @return The length of the elapsed time text.
+	 */
+	public int getTimeLength() {
+		return timeLength;
+	}
+
+	/**
+	 * Allows access to the earnings buffer. Only the first getEarnedLength()
+	 * characters are in use.
+	 *
+	 * @return The characters of the earnings.
+	 */
+	public char[] getEarned() {
+		return earned;
+	}
+
+	/**
+	 * Retrieves the number of characters of the earnings in use.
+	 *
+	 * @return The length of the earnings text.
+	 */
+	public int getEarnedLength() {
+		return earnedLength;
+	}
+
+	// Private Methods
+
+	/**
+	 * Writes a non-negative number into a buffer, padded with leading zeros.
+	 *
+	 * @return The position after the last digit written.
+	 */
+	private static int writeDigits(char[] buffer, int position, long value,
+			int minDigits) {
+		// Count the digits so they can be written from last to first
+		int digits = 1;
+		for (long rest = value / 10; rest > 0; rest /= 10) {
+			digits++;
+		}
+		if (digits < minDigits) {
+			digits = minDigits;
+		}
+
+		int end = position + digits;
+		for (int i = end - 1; i >= position; i--) {
+			buffer[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return end;
+	}
+
+}
@@ -26,6 +26,9 @@ public class TimeStamp {
 	/** The time stamp's description. */
 	private String Description;
 
+	/** The time stamp's packed pause and resume times, or null. */
+	private byte[] PackedSegments;
+
 	/** The service for the time stamp. */
 	private Services Service;
 
@@ -50,12 +53,41 @@ public class TimeStamp {
 	 */
 	public TimeStamp(int id, int clientToServiceId, long clockIn,
 			long clockOut, String description, Services service, Client client) {
+		this(id, clientToServiceId, clockIn, clockOut, description, null,
+				service, client);
+	}
+
+	/**
+	 * Constructor that takes in column values, including the packed pause and
+	 * resume times, and sets to properties.
+	 * 
+	 * @param id
+	 *            Id of time stamp.
+	 * @param clientToServiceId
+	 *            Id connection to the client and service for the time stamp.
+	 * @param clockIn
+	 *            The time in milliseconds of the clock in for the time stamp.
+	 * @param clockOut
+	 *            The time in milliseconds of the clock out for the time stamp.
+	 * @param description
+	 *            The description of the time stamp.
+	 * @param segments
+	 *            The packed pause and resume times, or null if never paused.
+	 * @param service
+	 *            The service for the time stamp.
+	 * @param client
+	 *            The client for the time stamp.
+	 */
+	public TimeStamp(int id, int clientToServiceId, long clockIn,
+			long clockOut, String description, byte[] segments,
+			Services service, Client client) {
 		// Set properties to supplied values
 		Id = id;
 		ClientToServiceId = clientToServiceId;
 		ClockIn = clockIn;
 		ClockOut = clockOut;
 		Description = description;
+		PackedSegments = segments;
 		Service = service;
 		Client = client;
 	}
@@ -105,6 +137,25 @@ public class TimeStamp {
 		return Description;
 	}
 
+	/**
+	 * Allows access to private PackedSegments variable. The array must not be
+	 * modified.
+	 * 
+	 * @return The time stamp's packed pause and resume times, or null.
+	 */
+	public byte[] getPackedSegments() {
+		return PackedSegments;
+	}
+
+	/**
+	 * Lets the caller know if the time stamp is open and paused.
+	 * 
+	 * @return True if paused and false otherwise.
+	 */
+	public boolean isPaused() {
+		return ClockOut == -1 && Segments.isPaused(PackedSegments);
+	}
+
 	/**
 	 * Allows access to private Service variable.
 	 * 
@@ -135,24 +186,37 @@ public class TimeStamp {
 		return Client.getName() + "\n" + Service.getName() + "\n\n"
 				+ clockIn.toString() + "\n" + clockOut.toString()
 				+ "\n\nDescription: " + Description + "\nEarned Income: "
-				+ getEarnedIncome() + "\n\n";
+				+ Money.format(getEarnedCents()) + "\n\n";
 	}
 
-    public double getHoursWorked() {
-        if (ClockOut != -1) {
-            return (Double.valueOf((ClockOut - ClockIn) / 3600000.00));
-        } else {
-            return (Double.valueOf((System.currentTimeMillis() - ClockIn) / 3600000.00));
-        }
-    }
+	/**
+	 * Calculates the time worked during this time stamp, leaving out its
+	 * breaks. Time stamps that are still open are measured up to the current
+	 * time.
+	 * 
+	 * @return The time worked in milliseconds.
+	 */
+	public long getDurationMillis() {
+		long end = ClockOut != -1 ? ClockOut : System.currentTimeMillis();
+		return Segments.getWorkedMillis(PackedSegments, ClockIn, end);
+	}
+
+	/**
+	 * Calculates the time worked during this time stamp for display.
+	 * 
+	 * @return The time worked in hours.
+	 */
+	public double getHoursWorked() {
+		return getDurationMillis() / (double) Money.MILLIS_PER_HOUR;
+	}
 
 	/**
 	 * Calculates the income earned during this time stamp.
 	 * 
-	 * @return The amount earned in dollars.
+	 * @return The amount earned in cents.
 	 */
-	public double getEarnedIncome() {
-		return getHoursWorked() * getService().getRate();
+	public long getEarnedCents() {
+		return Money.earned(getDurationMillis(), getService().getRateCents());
 	}
 
 }
@@ -0,0 +1,21 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in for the Android application class. Only the lifecycle
+ * callbacks the app overrides are provided.
+ */
+public class Application extends Context {
+
+    public static final int TRIM_MEMORY_UI_HIDDEN = 20;
+
+    public void onCreate() {
+    }
+
+    public void onTrimMemory(int level) {
+    }
+
+    public void onLowMemory() {
+    }
+}
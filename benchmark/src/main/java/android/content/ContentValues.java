@@ -0,0 +1,50 @@
+package android.content;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JVM stand-in for the Android column to value map used by inserts and
+ * updates.
+ */
+public final class ContentValues {
+
+    private final Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+    public void put(String key, String value) {
+        values.put(key, value);
+    }
+
+    public void put(String key, Integer value) {
+        values.put(key, value);
+    }
+
+    public void put(String key, Long value) {
+        values.put(key, value);
+    }
+
+    public void put(String key, Double value) {
+        values.put(key, value);
+    }
+
+    public void put(String key, byte[] value) {
+        values.put(key, value);
+    }
+
+    public void putNull(String key) {
+        values.put(key, null);
+    }
+
+    public Object get(String key) {
+        return values.get(key);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public Set<Map.Entry<String, Object>> valueSet() {
+        return values.entrySet();
+    }
+}
@@ -0,0 +1,57 @@
+package android.content;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in for the Android context. Databases are kept in a plain
+ * directory and shared preferences are held in memory.
+ */
+public class Context {
+
+    public static final int MODE_PRIVATE = 0;
+
+    public static final String LAYOUT_INFLATER_SERVICE = "layout_inflater";
+
+    private File databaseDir = new File(System.getProperty("java.io.tmpdir"));
+
+    private final Map<String, SharedPreferences> preferences = new HashMap<String, SharedPreferences>();
+
+    /**
+     * Sets the directory databases are created in. Not part of the Android
+     * API.
+     */
+    public void setDatabaseDir(File databaseDir) {
+        this.databaseDir = databaseDir;
+    }
+
+    public File getDatabasePath(String name) {
+        return new File(databaseDir, name);
+    }
+
+    public File getFilesDir() {
+        return databaseDir;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    /**
+     * Returns null, since no system services are provided. Tests override it
+     * to provide the ones they need.
+     */
+    public Object getSystemService(String name) {
+        return null;
+    }
+
+    public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+        SharedPreferences prefs = preferences.get(name);
+        if (prefs == null) {
+            prefs = new MemorySharedPreferences();
+            preferences.put(name, prefs);
+        }
+        return prefs;
+    }
+}
@@ -0,0 +1,82 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared preferences held in a map, committed atomically like the Android
+ * implementation.
+ */
+class MemorySharedPreferences implements SharedPreferences {
+
+    private final Map<String, Object> values = new HashMap<String, Object>();
+
+    @Override
+    public synchronized boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    @Override
+    public synchronized int getInt(String key, int defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Integer) value;
+    }
+
+    @Override
+    public synchronized long getLong(String key, long defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (Long) value;
+    }
+
+    @Override
+    public synchronized String getString(String key, String defValue) {
+        Object value = values.get(key);
+        return value == null ? defValue : (String) value;
+    }
+
+    @Override
+    public Editor edit() {
+        return new MemoryEditor();
+    }
+
+    private class MemoryEditor implements Editor {
+
+        private final Map<String, Object> changes = new HashMap<String, Object>();
+        private boolean clear = false;
+
+        @Override
+        public Editor putInt(String key, int value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            synchronized (MemorySharedPreferences.this) {
+                if (clear) {
+                    values.clear();
+                }
+                values.putAll(changes);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package android.content;
+
+/**
+ * JVM stand-in for the Android shared preferences, limited to the value types
+ * the app stores.
+ */
+public interface SharedPreferences {
+
+    interface Editor {
+        Editor putInt(String key, int value);
+
+        Editor putLong(String key, long value);
+
+        Editor putString(String key, String value);
+
+        Editor clear();
+
+        boolean commit();
+    }
+
+    boolean contains(String key);
+
+    int getInt(String key, int defValue);
+
+    long getLong(String key, long defValue);
+
+    String getString(String key, String defValue);
+
+    Editor edit();
+}
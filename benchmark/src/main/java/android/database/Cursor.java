@@ -0,0 +1,39 @@
+package android.database;
+
+import java.io.Closeable;
+
+/**
+ * JVM stand-in for the Android cursor, limited to the calls the app makes.
+ */
+public interface Cursor extends Closeable {
+
+    int getCount();
+
+    int getPosition();
+
+    boolean moveToFirst();
+
+    boolean moveToNext();
+
+    boolean moveToPosition(int position);
+
+    int getColumnIndex(String columnName);
+
+    int getColumnCount();
+
+    String getString(int columnIndex);
+
+    int getInt(int columnIndex);
+
+    long getLong(int columnIndex);
+
+    double getDouble(int columnIndex);
+
+    byte[] getBlob(int columnIndex);
+
+    boolean isNull(int columnIndex);
+
+    boolean isClosed();
+
+    void close();
+}
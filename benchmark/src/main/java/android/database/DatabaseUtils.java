@@ -0,0 +1,30 @@
+package android.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * JVM stand-in for the Android database helpers the app uses.
+ */
+public class DatabaseUtils {
+
+    public static long queryNumEntries(SQLiteDatabase db, String table) {
+        return queryNumEntries(db, table, null, null);
+    }
+
+    public static long queryNumEntries(SQLiteDatabase db, String table, String selection,
+            String[] selectionArgs) {
+        String where = selection == null || selection.length() == 0 ? "" : " WHERE " + selection;
+        SQLiteStatement statement = db.compileStatement("SELECT COUNT(*) FROM " + table + where);
+        try {
+            if (selectionArgs != null) {
+                for (int i = 0; i < selectionArgs.length; i++) {
+                    statement.bindString(i + 1, selectionArgs[i]);
+                }
+            }
+            return statement.simpleQueryForLong();
+        } finally {
+            statement.close();
+        }
+    }
+}
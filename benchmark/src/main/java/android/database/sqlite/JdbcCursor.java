@@ -0,0 +1,157 @@
+package android.database.sqlite;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.database.Cursor;
+
+/**
+ * Cursor over rows copied out of a JDBC result set, the way an Android cursor
+ * fills its window before the first row is read.
+ */
+class JdbcCursor implements Cursor {
+
+    private final String[] columnNames;
+    private final List<Object[]> rows = new ArrayList<Object[]>();
+    private int position = -1;
+    private boolean closed = false;
+
+    JdbcCursor(ResultSet result) throws SQLException {
+        try {
+            ResultSetMetaData meta = result.getMetaData();
+            columnNames = new String[meta.getColumnCount()];
+            for (int i = 0; i < columnNames.length; i++) {
+                columnNames[i] = meta.getColumnLabel(i + 1);
+            }
+
+            while (result.next()) {
+                Object[] row = new Object[columnNames.length];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = result.getObject(i + 1);
+                }
+                rows.add(row);
+            }
+        } finally {
+            result.close();
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(position + 1);
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        if (position >= rows.size()) {
+            this.position = rows.size();
+            return false;
+        }
+        this.position = position;
+        return position >= 0;
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        // Android also matches the part after a table alias
+        for (int i = 0; i < columnNames.length; i++) {
+            String name = columnNames[i];
+            int dot = name.lastIndexOf('.');
+            if (name.equalsIgnoreCase(columnName)
+                    || (dot >= 0 && name.substring(dot + 1).equalsIgnoreCase(columnName))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        Object value = value(columnIndex);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        return (int) getLong(columnIndex);
+    }
+
+    @Override
+    public long getLong(int columnIndex) {
+        Object value = value(columnIndex);
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return (long) Double.parseDouble(value.toString());
+        }
+    }
+
+    @Override
+    public double getDouble(int columnIndex) {
+        Object value = value(columnIndex);
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    @Override
+    public byte[] getBlob(int columnIndex) {
+        Object value = value(columnIndex);
+        return value instanceof byte[] ? (byte[]) value : null;
+    }
+
+    @Override
+    public boolean isNull(int columnIndex) {
+        return value(columnIndex) == null;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private Object value(int columnIndex) {
+        if (position < 0 || position >= rows.size()) {
+            throw new IllegalStateException("Cursor is not on a row");
+        }
+        return rows.get(position)[columnIndex];
+    }
+}
@@ -0,0 +1,296 @@
+package android.database.sqlite;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+/**
+ * JVM stand-in for the Android SQLite database, backed by a JDBC connection to
+ * the same SQLite engine. Arguments are bound as strings and cursors are
+ * filled in one pass, as on the device.
+ */
+public class SQLiteDatabase {
+
+    /** Matches the Android signature of the open helper constructor. */
+    public interface CursorFactory {
+    }
+
+    /**
+     * Receives the SQL of every statement the database runs, so tests can
+     * count and inspect them. Not part of the Android API.
+     */
+    public interface StatementListener {
+        void onStatement(String sql);
+    }
+
+    private final Connection connection;
+
+    /** Depth of nested transactions and whether every level succeeded. */
+    private int transactionDepth = 0;
+    private boolean transactionFailed = false;
+    private boolean transactionSuccessful = false;
+
+    private StatementListener statementListener;
+
+    SQLiteDatabase(String path) {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+        } catch (ClassNotFoundException e) {
+            throw new SQLiteException("SQLite JDBC driver is missing", e);
+        } catch (SQLException e) {
+            throw new SQLiteException("Unable to open " + path, e);
+        }
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Sets the listener told of every statement run, or null to stop telling
+     * one. Not part of the Android API.
+     */
+    public synchronized void setStatementListener(StatementListener listener) {
+        statementListener = listener;
+    }
+
+    synchronized void onStatement(String sql) {
+        if (statementListener != null) {
+            statementListener.onStatement(sql);
+        }
+    }
+
+    public synchronized Cursor rawQuery(String sql, String[] selectionArgs) {
+        onStatement(sql);
+        try {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            try {
+                bind(statement, selectionArgs);
+                return new JdbcCursor(statement.executeQuery());
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new SQLiteException(sql, e);
+        }
+    }
+
+    public Cursor query(String table, String[] columns, String selection,
+            String[] selectionArgs, String groupBy, String having, String orderBy) {
+        return query(table, columns, selection, selectionArgs, groupBy, having, orderBy, null);
+    }
+
+    public Cursor query(String table, String[] columns, String selection,
+            String[] selectionArgs, String groupBy, String having, String orderBy, String limit) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (columns == null) {
+            sql.append('*');
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                sql.append(i == 0 ? "" : ", ").append(columns[i]);
+            }
+        }
+        sql.append(" FROM ").append(table);
+        appendClause(sql, " WHERE ", selection);
+        appendClause(sql, " GROUP BY ", groupBy);
+        appendClause(sql, " HAVING ", having);
+        appendClause(sql, " ORDER BY ", orderBy);
+        appendClause(sql, " LIMIT ", limit);
+        return rawQuery(sql.toString(), selectionArgs);
+    }
+
+    public long insert(String table, String nullColumnHack, ContentValues values) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        StringBuilder params = new StringBuilder();
+        Object[] args = new Object[values.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> value : values.valueSet()) {
+            sql.append(i == 0 ? "" : ", ").append(value.getKey());
+            params.append(i == 0 ? "?" : ", ?");
+            args[i++] = value.getValue();
+        }
+        sql.append(") VALUES (").append(params).append(')');
+
+        SQLiteStatement statement = compileStatement(sql.toString());
+        try {
+            statement.bindAllArgs(args);
+            return statement.executeInsert();
+        } catch (SQLiteException e) {
+            // Android's insert logs the failure and returns -1
+            return -1;
+        } finally {
+            statement.close();
+        }
+    }
+
+    public int update(String table, ContentValues values, String whereClause, String[] whereArgs) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        int argCount = values.size() + (whereArgs == null ? 0 : whereArgs.length);
+        Object[] args = new Object[argCount];
+        int i = 0;
+        for (Map.Entry<String, Object> value : values.valueSet()) {
+            sql.append(i == 0 ? "" : ", ").append(value.getKey()).append(" = ?");
+            args[i++] = value.getValue();
+        }
+        appendClause(sql, " WHERE ", whereClause);
+        if (whereArgs != null) {
+            for (String arg : whereArgs) {
+                args[i++] = arg;
+            }
+        }
+
+        SQLiteStatement statement = compileStatement(sql.toString());
+        try {
+            statement.bindAllArgs(args);
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    public int delete(String table, String whereClause, String[] whereArgs) {
+        StringBuilder sql = new StringBuilder("DELETE FROM ").append(table);
+        appendClause(sql, " WHERE ", whereClause);
+
+        SQLiteStatement statement = compileStatement(sql.toString());
+        try {
+            statement.bindAllArgs(whereArgs);
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    public synchronized void execSQL(String sql) {
+        onStatement(sql);
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                statement.execute(sql);
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new SQLiteException(sql, e);
+        }
+    }
+
+    public void execSQL(String sql, Object[] bindArgs) {
+        SQLiteStatement statement = compileStatement(sql);
+        try {
+            statement.bindAllArgs(bindArgs);
+            statement.execute();
+        } finally {
+            statement.close();
+        }
+    }
+
+    public SQLiteStatement compileStatement(String sql) {
+        return new SQLiteStatement(this, sql);
+    }
+
+    public synchronized void beginTransaction() {
+        if (transactionDepth == 0) {
+            execSQL("BEGIN IMMEDIATE");
+            transactionFailed = false;
+        }
+        transactionSuccessful = false;
+        transactionDepth++;
+    }
+
+    public synchronized void setTransactionSuccessful() {
+        transactionSuccessful = true;
+    }
+
+    public synchronized void endTransaction() {
+        if (!transactionSuccessful) {
+            transactionFailed = true;
+        }
+        transactionSuccessful = false;
+        transactionDepth--;
+
+        if (transactionDepth == 0) {
+            execSQL(transactionFailed ? "ROLLBACK" : "COMMIT");
+        }
+    }
+
+    public synchronized boolean inTransaction() {
+        return transactionDepth > 0;
+    }
+
+    public boolean enableWriteAheadLogging() {
+        execSQL("PRAGMA journal_mode = WAL");
+        return true;
+    }
+
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    public synchronized boolean isOpen() {
+        try {
+            return !connection.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    public synchronized int getVersion() {
+        Cursor cursor = rawQuery("PRAGMA user_version", null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void setVersion(int version) {
+        execSQL("PRAGMA user_version = " + version);
+    }
+
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new SQLiteException("Unable to close", e);
+        }
+    }
+
+    static void bind(PreparedStatement statement, Object[] args) throws SQLException {
+        if (args == null) {
+            return;
+        }
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg == null) {
+                statement.setNull(i + 1, java.sql.Types.NULL);
+            } else if (arg instanceof String) {
+                statement.setString(i + 1, (String) arg);
+            } else if (arg instanceof byte[]) {
+                statement.setBytes(i + 1, (byte[]) arg);
+            } else if (arg instanceof Double || arg instanceof Float) {
+                statement.setDouble(i + 1, ((Number) arg).doubleValue());
+            } else if (arg instanceof Number) {
+                statement.setLong(i + 1, ((Number) arg).longValue());
+            } else if (arg instanceof Boolean) {
+                statement.setLong(i + 1, (Boolean) arg ? 1 : 0);
+            } else {
+                statement.setString(i + 1, arg.toString());
+            }
+        }
+    }
+
+    private static void appendClause(StringBuilder sql, String name, String clause) {
+        if (clause != null && clause.length() > 0) {
+            sql.append(name).append(clause);
+        }
+    }
+}
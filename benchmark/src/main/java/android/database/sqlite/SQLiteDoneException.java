@@ -0,0 +1,11 @@
+package android.database.sqlite;
+
+/**
+ * JVM stand-in for the exception thrown when a simple query has no rows.
+ */
+public class SQLiteDoneException extends SQLiteException {
+
+    public SQLiteDoneException(String message) {
+        super(message, null);
+    }
+}
@@ -0,0 +1,11 @@
+package android.database.sqlite;
+
+/**
+ * JVM stand-in for the Android SQLite exception, wrapping the JDBC error.
+ */
+public class SQLiteException extends RuntimeException {
+
+    public SQLiteException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
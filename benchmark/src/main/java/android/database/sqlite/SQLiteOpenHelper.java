@@ -0,0 +1,70 @@
+package android.database.sqlite;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in for the Android open helper. It opens the database file under
+ * the context's database directory and runs onCreate, onUpgrade and onOpen
+ * the way the device does.
+ */
+public abstract class SQLiteOpenHelper {
+
+    private final Context context;
+    private final String name;
+    private final int version;
+    private SQLiteDatabase database;
+
+    public SQLiteOpenHelper(Context context, String name, SQLiteDatabase.CursorFactory factory,
+            int version) {
+        this.context = context;
+        this.name = name;
+        this.version = version;
+    }
+
+    public abstract void onCreate(SQLiteDatabase db);
+
+    public abstract void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion);
+
+    public void onOpen(SQLiteDatabase db) {
+    }
+
+    public synchronized SQLiteDatabase getWritableDatabase() {
+        if (database != null && database.isOpen()) {
+            return database;
+        }
+
+        context.getDatabasePath(name).getParentFile().mkdirs();
+        SQLiteDatabase db = new SQLiteDatabase(context.getDatabasePath(name).getPath());
+
+        int current = db.getVersion();
+        if (current != version) {
+            db.beginTransaction();
+            try {
+                if (current == 0) {
+                    onCreate(db);
+                } else {
+                    onUpgrade(db, current, version);
+                }
+                db.setVersion(version);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+
+        onOpen(db);
+        database = db;
+        return db;
+    }
+
+    public SQLiteDatabase getReadableDatabase() {
+        return getWritableDatabase();
+    }
+
+    public synchronized void close() {
+        if (database != null && database.isOpen()) {
+            database.close();
+        }
+        database = null;
+    }
+}
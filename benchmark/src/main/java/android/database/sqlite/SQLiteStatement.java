@@ -0,0 +1,169 @@
+package android.database.sqlite;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * JVM stand-in for the Android precompiled statement, backed by a JDBC
+ * prepared statement.
+ */
+public class SQLiteStatement {
+
+    private final SQLiteDatabase database;
+    private final String sql;
+    private final PreparedStatement statement;
+
+    SQLiteStatement(SQLiteDatabase database, String sql) {
+        this.database = database;
+        this.sql = sql;
+        try {
+            statement = database.getConnection().prepareStatement(sql,
+                    Statement.RETURN_GENERATED_KEYS);
+        } catch (SQLException e) {
+            throw new SQLiteException(sql, e);
+        }
+    }
+
+    public void bindLong(int index, long value) {
+        try {
+            statement.setLong(index, value);
+        } catch (SQLException e) {
+            throw new SQLiteException(sql, e);
+        }
+    }
+
+    public void bindDouble(int index, double value) {
+        try {
+            statement.setDouble(index, value);
+        } catch (SQLException e) {
+            throw new SQLiteException(sql, e);
+        }
+    }
+
+    public void bindString(int index, String value) {
+        try {
+            statement.setString(index, value);
+        } catch (SQLException e) {
+            throw new SQLiteException(sql, e);
+        }
+    }
+
+    public void bindBlob(int index, byte[] value) {
+        try {
+            statement.setBytes(index, value);
+        } catch (SQLException e) {
+            throw new SQLiteException(sql, e);
+        }
+    }
+
+    public void bindNull(int index) {
+        try {
+            statement.setNull(index, java.sql.Types.NULL);
+        } catch (SQLException e) {
+            throw new SQLiteException(sql, e);
+        }
+    }
+
+    public void bindAllArgs(Object[] args) {
+        try {
+            SQLiteDatabase.bind(statement, args);
+        } catch (SQLException e) {
+            throw new SQLiteException(sql, e);
+        }
+    }
+
+    public void clearBindings() {
+        try {
+            statement.clearParameters();
+        } catch (SQLException e) {
+            throw new SQLiteException(sql, e);
+        }
+    }
+
+    public void execute() {
+        synchronized (database) {
+            database.onStatement(sql);
+            try {
+                statement.execute();
+            } catch (SQLException e) {
+                throw new SQLiteException(sql, e);
+            }
+        }
+    }
+
+    public int executeUpdateDelete() {
+        synchronized (database) {
+            database.onStatement(sql);
+            try {
+                return statement.executeUpdate();
+            } catch (SQLException e) {
+                throw new SQLiteException(sql, e);
+            }
+        }
+    }
+
+    public long executeInsert() {
+        synchronized (database) {
+            database.onStatement(sql);
+            try {
+                statement.executeUpdate();
+                ResultSet keys = statement.getGeneratedKeys();
+                try {
+                    return keys.next() ? keys.getLong(1) : -1;
+                } finally {
+                    keys.close();
+                }
+            } catch (SQLException e) {
+                throw new SQLiteException(sql, e);
+            }
+        }
+    }
+
+    public long simpleQueryForLong() {
+        synchronized (database) {
+            database.onStatement(sql);
+            try {
+                ResultSet result = statement.executeQuery();
+                try {
+                    if (!result.next()) {
+                        throw new SQLiteDoneException(sql);
+                    }
+                    return result.getLong(1);
+                } finally {
+                    result.close();
+                }
+            } catch (SQLException e) {
+                throw new SQLiteException(sql, e);
+            }
+        }
+    }
+
+    public String simpleQueryForString() {
+        synchronized (database) {
+            database.onStatement(sql);
+            try {
+                ResultSet result = statement.executeQuery();
+                try {
+                    if (!result.next()) {
+                        throw new SQLiteDoneException(sql);
+                    }
+                    return result.getString(1);
+                } finally {
+                    result.close();
+                }
+            } catch (SQLException e) {
+                throw new SQLiteException(sql, e);
+            }
+        }
+    }
+
+    public void close() {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            throw new SQLiteException(sql, e);
+        }
+    }
+}
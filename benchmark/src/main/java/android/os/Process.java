@@ -0,0 +1,13 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android process tools. Thread priorities are left to
+ * the JVM.
+ */
+public class Process {
+
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+    public static void setThreadPriority(int priority) {
+    }
+}
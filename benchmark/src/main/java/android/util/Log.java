@@ -0,0 +1,41 @@
+package android.util;
+
+/**
+ * JVM stand-in for the Android log. Only warnings and errors are printed so
+ * the benchmarks are not measuring console output.
+ */
+public final class Log {
+
+    private Log() {
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+        System.err.println("W/" + tag + ": " + msg);
+        return 0;
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        System.err.println("W/" + tag + ": " + msg);
+        tr.printStackTrace();
+        return 0;
+    }
+
+    public static int e(String tag, String msg) {
+        System.err.println("E/" + tag + ": " + msg);
+        return 0;
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        System.err.println("E/" + tag + ": " + msg);
+        tr.printStackTrace();
+        return 0;
+    }
+}
@@ -0,0 +1,85 @@
+package android.util;
+
+import java.util.Arrays;
+
+/**
+ * JVM stand-in for the Android int to object map. Like the Android class it
+ * keeps its keys in a sorted array and finds them with a binary search, so its
+ * costs match the device.
+ */
+public class SparseArray<E> {
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    public SparseArray() {
+        this(10);
+    }
+
+    public SparseArray(int initialCapacity) {
+        keys = new int[Math.max(initialCapacity, 1)];
+        values = new Object[keys.length];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int key) {
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        return i < 0 ? null : (E) values[i];
+    }
+
+    public void put(int key, E value) {
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+
+        i = ~i;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(values, i, values, i + 1, size - i);
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    public void delete(int key) {
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i >= 0) {
+            removeAt(i);
+        }
+    }
+
+    public void remove(int key) {
+        delete(key);
+    }
+
+    public void removeAt(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        values[size] = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int keyAt(int index) {
+        return keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E valueAt(int index) {
+        return (E) values[index];
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.clockit.benchmark;
+
+import java.io.File;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.clockit.app.ClockItApplication;
+import com.example.clockit.app.db.ClockItDBOpenHelper;
+
+/**
+ * Creates the database a benchmark reads from. Each dataset size is generated
+ * once to its own directory and reused by later runs, with a fixed seed so
+ * every run reads the same rows.
+ * 
+ * @author Cameron Irwin
+ * 
+ */
+public class BenchmarkDatabase {
+
+	/** Seed of the generated datasets. */
+	private static final long SEED = 42;
+
+	/**
+	 * Sets up the generator of the dataset of the supplied size.
+	 * 
+	 * @param stamps
+	 *            The number of time stamps in the dataset.
+	 * @return The generator, whose sizes describe the dataset.
+	 */
+	public static DatasetGenerator generator(int stamps) {
+		return new DatasetGenerator(SEED).setTimeStamps(stamps);
+	}
+
+	/**
+	 * Opens the application over the dataset of the supplied size, generating
+	 * it first if it does not exist yet.
+	 * 
+	 * @param stamps
+	 *            The number of time stamps in the dataset.
+	 * @return The application holding the shared connection.
+	 */
+	public static ClockItApplication open(int stamps) {
+		ClockItApplication application = new ClockItApplication();
+		application.setDatabaseDir(new File(System
+				.getProperty("java.io.tmpdir"), "clockit-bench/" + stamps));
+		application.onCreate();
+
+		// Generate into a new database, whose tables are still empty
+		application.acquireDatabase();
+		SQLiteDatabase db = application.getDatabase();
+		boolean empty = DatabaseUtils.queryNumEntries(db,
+				ClockItDBOpenHelper.TABLE_TIME_STAMPS) == 0;
+		application.releaseDatabase();
+
+		if (empty) {
+			generator(stamps).generate(application);
+		}
+
+		return application;
+	}
+
+}
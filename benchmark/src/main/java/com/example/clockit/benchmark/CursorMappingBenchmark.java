@@ -0,0 +1,106 @@
+package com.example.clockit.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import android.database.Cursor;
+
+import com.example.clockit.app.ClockItApplication;
+import com.example.clockit.app.db.ClockItDBOpenHelper;
+
+/**
+ * Compares mapping time stamp rows by looking up every column by name on every
+ * row against reading them by constant ordinals. The rows are queried once so
+ * only the mapping itself is measured.
+ *
+ * @author Cameron Irwin
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CursorMappingBenchmark {
+
+	/** Number of time stamps in the dataset. */
+	@Param({ "1000", "10000" })
+	int stamps;
+
+	// Column ordinals of the select below
+	private static final int ID = 0;
+	private static final int CLIENT_TO_SERVICE_ID = 1;
+	private static final int CLOCK_IN = 2;
+	private static final int CLOCK_OUT = 3;
+	private static final int DESCRIPTION = 4;
+
+	private ClockItApplication application;
+	private Cursor cursor;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		application = BenchmarkDatabase.open(stamps);
+		application.acquireDatabase();
+		cursor = application.getDatabase().rawQuery(
+				"SELECT " + ClockItDBOpenHelper.TIME_STAMPS_ID + ", "
+						+ ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID
+						+ ", " + ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN + ", "
+						+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT + ", "
+						+ ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION + " FROM "
+						+ ClockItDBOpenHelper.TABLE_TIME_STAMPS, null);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		cursor.close();
+		application.releaseDatabase();
+		application.onTrimMemory(ClockItApplication.TRIM_MEMORY_UI_HIDDEN);
+	}
+
+	@Benchmark
+	public void byColumnName(Blackhole blackhole) {
+		cursor.moveToPosition(-1);
+		while (cursor.moveToNext()) {
+			blackhole.consume(cursor.getInt(cursor
+					.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_ID)));
+			blackhole
+					.consume(cursor.getInt(cursor
+							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID)));
+			blackhole.consume(cursor.getLong(cursor
+					.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN)));
+			blackhole.consume(cursor.getLong(cursor
+					.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT)));
+			blackhole
+					.consume(cursor.getString(cursor
+							.getColumnIndex(ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION)));
+		}
+	}
+
+	@Benchmark
+	public void byOrdinal(Blackhole blackhole) {
+		cursor.moveToPosition(-1);
+		while (cursor.moveToNext()) {
+			blackhole.consume(cursor.getInt(ID));
+			blackhole.consume(cursor.getInt(CLIENT_TO_SERVICE_ID));
+			blackhole.consume(cursor.getLong(CLOCK_IN));
+			blackhole.consume(cursor.getLong(CLOCK_OUT));
+			blackhole.consume(cursor.getString(DESCRIPTION));
+		}
+	}
+
+}
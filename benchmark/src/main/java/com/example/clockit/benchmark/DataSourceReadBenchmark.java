@@ -0,0 +1,203 @@
+package com.example.clockit.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import android.database.Cursor;
+
+import com.example.clockit.app.ClockItApplication;
+import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.TimeStampFilter;
+
+/**
+ * Measures every public read of ClockItDataSource against seeded datasets of
+ * increasing size. Run with the gc profiler (the jmh task does) to report the
+ * allocation rate next to the latency of each read.
+ * 
+ * @author Cameron Irwin
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataSourceReadBenchmark {
+
+	/** Number of time stamps in the dataset. */
+	@Param({ "1000", "10000", "100000" })
+	int stamps;
+
+	/** Rows per page, matching the time stamp list. */
+	private static final int PAGE_SIZE = 50;
+
+	private ClockItApplication application;
+	private ClockItDataSource datasource;
+	private TimeStampFilter filter;
+
+	// Rows looked up by id, taken from the middle of the dataset
+	private int clientId;
+	private int serviceId;
+	private int timeStampId;
+	private int contactId;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		application = BenchmarkDatabase.open(stamps);
+		datasource = new ClockItDataSource(application);
+
+		DatasetGenerator generator = BenchmarkDatabase.generator(stamps);
+		clientId = generator.getClients() / 2;
+		serviceId = datasource.getClientServices(clientId).get(0).getId();
+		timeStampId = stamps / 2;
+		contactId = 1;
+
+		filter = new TimeStampFilter().setClientIds(clientId).setText("review");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		datasource.close();
+		application.onTrimMemory(ClockItApplication.TRIM_MEMORY_UI_HIDDEN);
+	}
+
+	@Benchmark
+	public Object getAllClients() {
+		return datasource.getAllClients();
+	}
+
+	@Benchmark
+	public Object getClientSummaries() {
+		return datasource.getClientSummaries();
+	}
+
+	@Benchmark
+	public Object getClientById() {
+		return datasource.getClientById(clientId);
+	}
+
+	@Benchmark
+	public Object getClientServices() {
+		return datasource.getClientServices(clientId);
+	}
+
+	@Benchmark
+	public Object getAllServices() {
+		return datasource.getAllServices();
+	}
+
+	@Benchmark
+	public Object getServiceById() {
+		return datasource.getServiceById(serviceId);
+	}
+
+	@Benchmark
+	public boolean isClockedIn() {
+		return datasource.isClockedIn();
+	}
+
+	@Benchmark
+	public Object getOpenTimeStamps() {
+		return datasource.getOpenTimeStamps();
+	}
+
+	@Benchmark
+	public Object getTimeStampById() {
+		return datasource.getTimeStampById(timeStampId);
+	}
+
+	@Benchmark
+	public Object getAllTimeStamps() {
+		return datasource.getAllTimeStamps();
+	}
+
+	@Benchmark
+	public Object getTimeStampsPage() {
+		return datasource.getTimeStampsPage(Long.MAX_VALUE, Integer.MAX_VALUE,
+				PAGE_SIZE);
+	}
+
+	@Benchmark
+	public Object getTimeStampsPageFiltered() {
+		return datasource.getTimeStampsPage(filter, Long.MAX_VALUE,
+				Integer.MAX_VALUE, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public Object getClientsTimeStamps() {
+		return datasource.getClientsTimeStamps(clientId);
+	}
+
+	@Benchmark
+	public void getClientInvoiceRows(Blackhole blackhole) {
+		consume(datasource.getClientInvoiceRows(clientId), blackhole);
+	}
+
+	@Benchmark
+	public void getClientServiceTotals(Blackhole blackhole) {
+		consume(datasource.getClientServiceTotals(clientId), blackhole);
+	}
+
+	@Benchmark
+	public Object getTotalsBetween() {
+		return datasource.getTotalsBetween(0, System.currentTimeMillis());
+	}
+
+	@Benchmark
+	public int getClientToServiceId() {
+		return datasource.getClientToServiceId(clientId, serviceId);
+	}
+
+	@Benchmark
+	public Object getClientContacts() {
+		return datasource.getClientContacts(clientId);
+	}
+
+	@Benchmark
+	public Object getContactById() {
+		return datasource.getContactById(contactId);
+	}
+
+	@Benchmark
+	public int getContactClientId() {
+		return datasource.getContactClientId(contactId);
+	}
+
+	@Benchmark
+	public Object search() {
+		return datasource.search("review", 50);
+	}
+
+	/**
+	 * Reads every value of every row the way the invoice does and closes the
+	 * cursor.
+	 */
+	private static void consume(Cursor cursor, Blackhole blackhole) {
+		try {
+			int columns = cursor.getColumnCount();
+			while (cursor.moveToNext()) {
+				for (int i = 0; i < columns; i++) {
+					blackhole.consume(cursor.getString(i));
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+	}
+
+}
@@ -0,0 +1,541 @@
+package com.example.clockit.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.clockit.app.ClockItApplication;
+import com.example.clockit.app.db.ClockItDBOpenHelper;
+import com.example.clockit.app.db.ClockItDataSource;
+
+/**
+ * Fills an empty ClockIt database with synthetic data shaped like a real
+ * user's: a handful of busy clients and a long tail of small ones, services
+ * billed at typical hourly rates, and years of weekday shifts. The same seed
+ * and sizes always produce the same rows, so benchmarks and regression runs
+ * can share a dataset.
+ *
+ * Rows are written with precompiled inserts in transactions of BATCH_SIZE
+ * rows, so a million rows take seconds rather than one journal sync each.
+ *
+ * Can be run on its own to write a database file:
+ *
+ * <pre>
+ * DatasetGenerator &lt;directory&gt; &lt;time stamps&gt; [seed]
+ * </pre>
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class DatasetGenerator {
+
+	/** Number of rows written per transaction. */
+	private static final int BATCH_SIZE = 10000;
+
+	/** Length of the working day the shifts of a day are fitted into. */
+	private static final long WORKDAY_MILLIS = 10 * 3600000L;
+
+	/** Shortest shift generated. */
+	private static final long MIN_SHIFT_MILLIS = 15 * 60000L;
+
+	private static final String[] COMPANY_WORDS = { "Acme", "Northwind",
+			"Summit", "Blue", "River", "Oak", "Harbor", "Pioneer", "Cedar",
+			"Granite", "Maple", "Atlas", "Beacon", "Lakeside", "Crescent" };
+	private static final String[] COMPANY_SUFFIXES = { "Industries",
+			"Consulting", "Labs", "Partners", "Holdings", "Studio", "Group",
+			"Supply", "Dental", "Realty" };
+	private static final String[] SERVICE_NAMES = { "Consulting", "Design",
+			"Development", "Support", "Training", "Maintenance", "Research",
+			"Writing", "Bookkeeping", "Photography", "Installation",
+			"Project Management", "Testing", "Travel", "Meetings" };
+	private static final String[] FIRST_NAMES = { "James", "Mary", "John",
+			"Patricia", "Robert", "Jennifer", "Michael", "Linda", "David",
+			"Elizabeth", "Daniel", "Susan", "Maria", "Wei", "Priya", "Omar" };
+	private static final String[] LAST_NAMES = { "Smith", "Johnson",
+			"Williams", "Brown", "Jones", "Garcia", "Miller", "Davis",
+			"Rodriguez", "Martinez", "Nguyen", "Patel", "Kim", "Lee", "Clark" };
+	private static final String[] VERBS = { "Fixed", "Reviewed", "Updated",
+			"Planned", "Tested", "Met about", "Drafted", "Set up", "Deployed",
+			"Cleaned up", "Researched", "Called about" };
+	private static final String[] SUBJECTS = { "the invoice report",
+			"login page", "quarterly plan", "database backup", "new website",
+			"printer issue", "budget", "marketing copy", "server migration",
+			"onboarding docs", "bug in checkout", "product photos" };
+
+	/** Seed of the random numbers every row is drawn from. */
+	private final long seed;
+
+	// Number of rows of each table to generate
+	private int clients = 50;
+	private int services = 15;
+	private int timeStamps = 10000;
+
+	/** Most services a client is linked to. */
+	private int maxServicesPerClient = 5;
+
+	/** Most contacts a client has. */
+	private int maxContactsPerClient = 3;
+
+	/** Number of years the time stamps are spread over. */
+	private int years = 3;
+
+	/** Local midnight of the day after the last shift. */
+	private long end;
+
+	/** Rows written so far in the open transaction. */
+	private int batchRows;
+
+	/**
+	 * Constructor that sets the seed the data is drawn from. The shifts end on
+	 * a fixed local date, so within a time zone the seed alone decides the
+	 * data.
+	 *
+	 * @param seed
+	 *            The seed of the random numbers.
+	 */
+	public DatasetGenerator(long seed) {
+		this.seed = seed;
+
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(2015, Calendar.JANUARY, 1);
+		end = calendar.getTimeInMillis();
+	}
+
+	/**
+	 * Sets the number of clients.
+	 *
+	 * @param clients
+	 *            The number of clients to generate.
+	 * @return This generator.
+	 */
+	public DatasetGenerator setClients(int clients) {
+		this.clients = clients;
+		return this;
+	}
+
+	/**
+	 * Sets the number of services. Clients are linked to a few of them each.
+	 *
+	 * @param services
+	 *            The number of services to generate.
+	 * @return This generator.
+	 */
+	public DatasetGenerator setServices(int services) {
+		this.services = services;
+		return this;
+	}
+
+	/**
+	 * Sets the number of finished time stamps.
+	 *
+	 * @param timeStamps
+	 *            The number of time stamps to generate.
+	 * @return This generator.
+	 */
+	public DatasetGenerator setTimeStamps(int timeStamps) {
+		this.timeStamps = timeStamps;
+		return this;
+	}
+
+	/**
+	 * Sets the number of years the time stamps are spread over, ending on the
+	 * last day before the end date.
+	 *
+	 * @param years
+	 *            The number of years of shifts.
+	 * @return This generator.
+	 */
+	public DatasetGenerator setYears(int years) {
+		this.years = years;
+		return this;
+	}
+
+	/**
+	 * Sets the local day the shifts stop before.
+	 *
+	 * @param end
+	 *            Local midnight of the day after the last shift.
+	 * @return This generator.
+	 */
+	public DatasetGenerator setEnd(long end) {
+		this.end = end;
+		return this;
+	}
+
+	/**
+	 * Retrieves the number of clients generated.
+	 *
+	 * @return The number of clients.
+	 */
+	public int getClients() {
+		return clients;
+	}
+
+	/**
+	 * Retrieves the number of services generated.
+	 *
+	 * @return The number of services.
+	 */
+	public int getServices() {
+		return services;
+	}
+
+	/**
+	 * Retrieves the number of time stamps generated.
+	 *
+	 * @return The number of time stamps.
+	 */
+	public int getTimeStamps() {
+		return timeStamps;
+	}
+
+	/**
+	 * Fills the application's empty database and then builds the daily totals
+	 * and search index from the new rows. The triggers are dropped while the
+	 * rows are written, since indexing the rows one at a time is several times
+	 * slower than indexing them all at once afterwards.
+	 *
+	 * @param application
+	 *            The application owning the database connection.
+	 * @return The number of rows written to the six tables.
+	 */
+	public long generate(ClockItApplication application) {
+		application.acquireDatabase();
+		SQLiteDatabase db = application.getDatabase();
+		long rows;
+		try {
+			List<String> triggers = dropTriggers(db);
+			try {
+				rows = generate(db);
+			} finally {
+				for (String trigger : triggers) {
+					db.execSQL(trigger);
+				}
+			}
+		} finally {
+			application.releaseDatabase();
+		}
+
+		ClockItDataSource datasource = new ClockItDataSource(application);
+		datasource.rebuildDailyTotals();
+		datasource.rebuildSearchIndex();
+		datasource.close();
+
+		return rows;
+	}
+
+	/**
+	 * Writes the clients, services, links, contacts and time stamps. Ids are
+	 * assigned in order from 1, so client n is the n-th client written.
+	 *
+	 * @param db
+	 *            The empty database to write to.
+	 * @return The number of rows written.
+	 */
+	private long generate(SQLiteDatabase db) {
+		Random random = new Random(seed);
+		long rows = 0;
+
+		batchRows = 0;
+		db.beginTransaction();
+		try {
+			rows += writeClients(db, random);
+			rows += writeServices(db, random);
+			int[] links = new int[clients + 1];
+			rows += writeLinks(db, random, links);
+			rows += writeContacts(db, random);
+			rows += writeTimeStamps(db, random, links);
+
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+
+		return rows;
+	}
+
+	private int writeClients(SQLiteDatabase db, Random random) {
+		SQLiteStatement insert = db.compileStatement("INSERT INTO "
+				+ ClockItDBOpenHelper.TABLE_CLIENTS + " ("
+				+ ClockItDBOpenHelper.CLIENTS_NAME + ", "
+				+ ClockItDBOpenHelper.CLIENTS_DESCRIPTION + ") VALUES (?, ?)");
+		try {
+			for (int i = 1; i <= clients; i++) {
+				String name = pick(random, COMPANY_WORDS) + " "
+						+ pick(random, COMPANY_SUFFIXES);
+				insert.bindString(1, name + " " + i);
+				insert.bindString(2, "Client since " + (2000 + random.nextInt(15))
+						+ ", billed monthly");
+				insert.execute();
+				nextRow(db);
+			}
+		} finally {
+			insert.close();
+		}
+		return clients;
+	}
+
+	private int writeServices(SQLiteDatabase db, Random random) {
+		SQLiteStatement insert = db.compileStatement("INSERT INTO "
+				+ ClockItDBOpenHelper.TABLE_SERVICES + " ("
+				+ ClockItDBOpenHelper.SERVICES_NAME + ", "
+				+ ClockItDBOpenHelper.SERVICES_DESCRIPTION + ", "
+				+ ClockItDBOpenHelper.SERVICES_RATE_CENTS + ") VALUES (?, ?, ?)");
+		try {
+			for (int i = 1; i <= services; i++) {
+				String name = SERVICE_NAMES[(i - 1) % SERVICE_NAMES.length];
+				if (i > SERVICE_NAMES.length) {
+					name += " " + i;
+				}
+
+				// Hourly rates spread around $60, rounded to the dollar
+				long dollars = Math.round(Math.exp(Math.log(60)
+						+ random.nextGaussian() * 0.4));
+				insert.bindString(1, name);
+				insert.bindString(2, name + " billed by the hour");
+				insert.bindLong(3, Math.max(10, dollars) * 100);
+				insert.execute();
+				nextRow(db);
+			}
+		} finally {
+			insert.close();
+		}
+		return services;
+	}
+
+	/**
+	 * Links each client to between one and maxServicesPerClient different
+	 * services. The links of a client get consecutive ids, so links[n] holds
+	 * the first link id of client n + 1 and links[n + 1] the first of the
+	 * next.
+	 */
+	private int writeLinks(SQLiteDatabase db, Random random, int[] links) {
+		SQLiteStatement insert = db.compileStatement("INSERT INTO "
+				+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_SERVICES + " ("
+				+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_CLIENT_ID + ", "
+				+ ClockItDBOpenHelper.CLIENTS_TO_SERVICES_SERVICE_ID
+				+ ") VALUES (?, ?)");
+		int written = 0;
+		try {
+			for (int i = 1; i <= clients; i++) {
+				links[i - 1] = written + 1;
+
+				// Start at a random service and take the ones after it
+				int count = 1 + random.nextInt(Math.min(maxServicesPerClient,
+						services));
+				int first = random.nextInt(services);
+				for (int j = 0; j < count; j++) {
+					insert.bindLong(1, i);
+					insert.bindLong(2, (first + j) % services + 1);
+					insert.execute();
+					nextRow(db);
+					written++;
+				}
+			}
+			links[clients] = written + 1;
+		} finally {
+			insert.close();
+		}
+		return written;
+	}
+
+	private int writeContacts(SQLiteDatabase db, Random random) {
+		SQLiteStatement contact = db.compileStatement("INSERT INTO "
+				+ ClockItDBOpenHelper.TABLE_CONTACTS + " ("
+				+ ClockItDBOpenHelper.CONTACTS_FIRST_NAME + ", "
+				+ ClockItDBOpenHelper.CONTACTS_LAST_NAME + ", "
+				+ ClockItDBOpenHelper.CONTACTS_NUMBER + ", "
+				+ ClockItDBOpenHelper.CONTACTS_EMAIL + ") VALUES (?, ?, ?, ?)");
+		SQLiteStatement link = db.compileStatement("INSERT INTO "
+				+ ClockItDBOpenHelper.TABLE_CLIENTS_TO_CONTACTS + " ("
+				+ ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CLIENT_ID + ", "
+				+ ClockItDBOpenHelper.CLIENTS_TO_CONTACTS_CONTACT_ID
+				+ ") VALUES (?, ?)");
+		int written = 0;
+		try {
+			for (int i = 1; i <= clients; i++) {
+				int count = random.nextInt(maxContactsPerClient + 1);
+				for (int j = 0; j < count; j++) {
+					String first = pick(random, FIRST_NAMES);
+					String last = pick(random, LAST_NAMES);
+					contact.bindString(1, first);
+					contact.bindString(2, last);
+
+					// Not every contact has both a number and an email
+					if (random.nextInt(5) == 0) {
+						contact.bindNull(3);
+					} else {
+						contact.bindString(3, String.format(Locale.US,
+								"(%03d) 555-%04d",
+								200 + random.nextInt(800), random.nextInt(10000)));
+					}
+					if (random.nextInt(4) == 0) {
+						contact.bindNull(4);
+					} else {
+						contact.bindString(4, first.toLowerCase() + "."
+								+ last.toLowerCase() + i + "@example.com");
+					}
+
+					link.bindLong(1, i);
+					link.bindLong(2, contact.executeInsert());
+					link.execute();
+					nextRow(db);
+					nextRow(db);
+					written += 2;
+				}
+			}
+		} finally {
+			contact.close();
+			link.close();
+		}
+		return written;
+	}
+
+	/**
+	 * Spreads the time stamps evenly over the weekdays of the generated years.
+	 * Each day's shifts follow one another from the morning on, and their
+	 * clients are skewed so a few clients get most of the work.
+	 */
+	private int writeTimeStamps(SQLiteDatabase db, Random random, int[] links) {
+		// Collect the local midnights of the weekdays in the range
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(end);
+		calendar.add(Calendar.YEAR, -years);
+		int days = 0;
+		long[] weekdays = new long[years * 262 + 1];
+		while (calendar.getTimeInMillis() < end && days < weekdays.length) {
+			int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
+			if (dayOfWeek != Calendar.SATURDAY && dayOfWeek != Calendar.SUNDAY) {
+				weekdays[days++] = calendar.getTimeInMillis();
+			}
+			calendar.add(Calendar.DAY_OF_MONTH, 1);
+		}
+
+		SQLiteStatement insert = db.compileStatement("INSERT INTO "
+				+ ClockItDBOpenHelper.TABLE_TIME_STAMPS + " ("
+				+ ClockItDBOpenHelper.TIME_STAMPS_CLIENT_TO_SERVICE_ID + ", "
+				+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_IN + ", "
+				+ ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT + ", "
+				+ ClockItDBOpenHelper.TIME_STAMPS_DESCRIPTION
+				+ ") VALUES (?, ?, ?, ?)");
+		int written = 0;
+		try {
+			for (int day = 0; day < days && written < timeStamps; day++) {
+				int shifts = (int) ((long) timeStamps * (day + 1) / days - written);
+				if (shifts == 0) {
+					continue;
+				}
+
+				// Start between 8 and 10 and share out the working day
+				long clockIn = weekdays[day] + 8 * 3600000L
+						+ random.nextInt(2 * 3600000);
+				long slot = WORKDAY_MILLIS / shifts;
+				for (int i = 0; i < shifts; i++) {
+					long duration = Math.max(
+							Math.min(MIN_SHIFT_MILLIS, slot),
+							(long) (slot * (0.6 + 0.35 * random.nextDouble())));
+
+					// Squaring favours the first clients
+					double skew = random.nextDouble();
+					int client = (int) (skew * skew * clients);
+					int link = links[client]
+							+ random.nextInt(links[client + 1] - links[client]);
+
+					insert.bindLong(1, link);
+					insert.bindLong(2, clockIn);
+					insert.bindLong(3, clockIn + duration);
+					if (random.nextInt(10) == 0) {
+						insert.bindNull(4);
+					} else {
+						insert.bindString(4, pick(random, VERBS) + " "
+								+ pick(random, SUBJECTS));
+					}
+					insert.execute();
+					nextRow(db);
+
+					clockIn += slot;
+					written++;
+				}
+			}
+		} finally {
+			insert.close();
+		}
+		return written;
+	}
+
+	/**
+	 * Drops every trigger in the database.
+	 *
+	 * @return The statements that create the triggers again.
+	 */
+	private static List<String> dropTriggers(SQLiteDatabase db) {
+		List<String> triggers = new ArrayList<String>();
+		Cursor cursor = db.rawQuery(
+				"SELECT name, sql FROM sqlite_master WHERE type = 'trigger'",
+				null);
+		try {
+			while (cursor.moveToNext()) {
+				db.execSQL("DROP TRIGGER " + cursor.getString(0));
+				triggers.add(cursor.getString(1));
+			}
+		} finally {
+			cursor.close();
+		}
+		return triggers;
+	}
+
+	/**
+	 * Counts a written row and commits the batch once it is full.
+	 */
+	private void nextRow(SQLiteDatabase db) {
+		if (++batchRows == BATCH_SIZE) {
+			db.setTransactionSuccessful();
+			db.endTransaction();
+			db.beginTransaction();
+			batchRows = 0;
+		}
+	}
+
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+
+	/**
+	 * Writes a generated database to a directory.
+	 *
+	 * @param args
+	 *            The directory, the number of time stamps and optionally the
+	 *            seed.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: DatasetGenerator <directory> "
+					+ "<time stamps> [seed]");
+			System.exit(1);
+		}
+
+		ClockItApplication application = new ClockItApplication();
+		application.setDatabaseDir(new File(args[0]));
+		application.onCreate();
+
+		DatasetGenerator generator = new DatasetGenerator(
+				args.length > 2 ? Long.parseLong(args[2]) : 42)
+				.setTimeStamps(Integer.parseInt(args[1]));
+
+		long start = System.currentTimeMillis();
+		long rows = generator.generate(application);
+		System.out.println("Wrote " + rows + " rows in "
+				+ (System.currentTimeMillis() - start) + " ms");
+
+		application.onTrimMemory(ClockItApplication.TRIM_MEMORY_UI_HIDDEN);
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.example.clockit.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.clockit.app.db.OpenShift;
+import com.example.clockit.app.model.Money;
+import com.example.clockit.app.model.ShiftDisplay;
+
+/**
+ * Measures one second's redraw of the open shift on the main page, the way
+ * MainActivity works out and renders the time worked and amount earned. Each
+ * call advances the shift by a second, so every call renders new text. With the gc
+ * profiler the rendered tick should report no allocation, while the string
+ * building it replaced is kept for comparison.
+ *
+ * @author Cameron Irwin
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShiftDisplayBenchmark {
+
+	/** Pay rate of the shift in cents per hour. */
+	private static final long RATE_CENTS = 4250;
+
+	private final ShiftDisplay display = new ShiftDisplay();
+
+	/** The open shift, clocked in at time zero and never paused. */
+	private final OpenShift[] shifts = { new OpenShift(1, 0, "Client",
+			"Service", RATE_CENTS, null) };
+
+	/** Time since clocking in in milliseconds. */
+	private long time = 0;
+
+	@Benchmark
+	public void renderedTick(Blackhole blackhole) {
+		time += 1000;
+		if (display.setElapsed(shifts[0].getWorkedMillis(time))) {
+			blackhole.consume(display.getTimeLength());
+		}
+		if (display.setEarnedCents(OpenShift.getEarnedCents(shifts, time))) {
+			blackhole.consume(display.getEarnedLength());
+		}
+	}
+
+	@Benchmark
+	public void stringTick(Blackhole blackhole) {
+		time += 1000;
+		int h = (int) (time / 3600000);
+		int m = (int) (time - h * 3600000) / 60000;
+		int s = (int) (time - h * 3600000 - m * 60000) / 1000;
+		String hh = h < 10 ? "0" + h : h + "";
+		String mm = m < 10 ? "0" + m : m + "";
+		String ss = s < 10 ? "0" + s : s + "";
+		blackhole.consume(hh + ":" + mm + ":" + ss);
+		blackhole.consume("$" + Money.format(Money.earned(time, RATE_CENTS)));
+	}
+
+}
@@ -0,0 +1,31 @@
+package android.os;
+
+/**
+ * JVM stand-in for the Android handler. Runnables are queued on the looper's
+ * thread in the order they are posted.
+ */
+public class Handler {
+
+    private final Looper looper;
+
+    public Handler() {
+        this(Looper.myLooper());
+    }
+
+    public Handler(Looper looper) {
+        if (looper == null) {
+            throw new RuntimeException(
+                    "Can't create handler inside thread that has not called Looper.prepare()");
+        }
+        this.looper = looper;
+    }
+
+    public final Looper getLooper() {
+        return looper;
+    }
+
+    public final boolean post(Runnable runnable) {
+        looper.enqueue(runnable);
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package android.os;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * JVM stand-in for the Android looper. Only the main looper is provided, run
+ * by a daemon thread that is started the first time it is asked for.
+ */
+public final class Looper {
+
+    private static Looper mainLooper;
+
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+
+    private final Thread thread;
+
+    private Looper() {
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "main");
+        thread.setDaemon(true);
+    }
+
+    public static synchronized Looper getMainLooper() {
+        if (mainLooper == null) {
+            mainLooper = new Looper();
+            mainLooper.thread.start();
+        }
+        return mainLooper;
+    }
+
+    public static Looper myLooper() {
+        Looper main = getMainLooper();
+        return Thread.currentThread() == main.thread ? main : null;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    void enqueue(Runnable runnable) {
+        queue.add(runnable);
+    }
+
+    private void loop() {
+        while (true) {
+            Runnable runnable;
+            try {
+                runnable = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                // The device would crash, keep the loop alive so the test
+                // reports the failure instead of hanging
+                e.printStackTrace();
+            }
+        }
+    }
+}
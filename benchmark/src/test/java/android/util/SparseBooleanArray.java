@@ -0,0 +1,35 @@
+package android.util;
+
+/**
+ * JVM stand-in for the Android sparse boolean array, backed by a sparse array
+ * of boxed values.
+ */
+public class SparseBooleanArray {
+
+    private final SparseArray<Boolean> values = new SparseArray<Boolean>();
+
+    public boolean get(int key) {
+        return get(key, false);
+    }
+
+    public boolean get(int key, boolean valueIfKeyNotFound) {
+        Boolean value = values.get(key);
+        return value == null ? valueIfKeyNotFound : value;
+    }
+
+    public void put(int key, boolean value) {
+        values.put(key, value);
+    }
+
+    public void delete(int key) {
+        values.delete(key);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public void clear() {
+        values.clear();
+    }
+}
@@ -0,0 +1,10 @@
+package android.view;
+
+/**
+ * JVM stand-in for the Android layout inflater. There are no layout files, so
+ * tests subclass it to build the views of each layout.
+ */
+public abstract class LayoutInflater {
+
+    public abstract View inflate(int resource, ViewGroup root, boolean attachToRoot);
+}
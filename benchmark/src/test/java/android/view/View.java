@@ -0,0 +1,35 @@
+package android.view;
+
+/**
+ * JVM stand-in for the Android view. Only ids and tags are kept.
+ */
+public class View {
+
+    private int id;
+
+    private Object tag;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public Object getTag() {
+        return tag;
+    }
+
+    public void setTag(Object tag) {
+        this.tag = tag;
+    }
+
+    public final View findViewById(int id) {
+        return findViewTraversal(id);
+    }
+
+    View findViewTraversal(int id) {
+        return id == this.id ? this : null;
+    }
+}
@@ -0,0 +1,39 @@
+package android.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM stand-in for the Android view group, holding its children so views can
+ * be found by id.
+ */
+public class ViewGroup extends View {
+
+    private final List<View> children = new ArrayList<View>();
+
+    public void addView(View child) {
+        children.add(child);
+    }
+
+    public int getChildCount() {
+        return children.size();
+    }
+
+    public View getChildAt(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    View findViewTraversal(int id) {
+        if (id == getId()) {
+            return this;
+        }
+        for (View child : children) {
+            View found = child.findViewTraversal(id);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+}
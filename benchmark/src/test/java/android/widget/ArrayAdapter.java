@@ -0,0 +1,39 @@
+package android.widget;
+
+import java.util.List;
+
+import android.content.Context;
+
+/**
+ * JVM stand-in for the Android array adapter. Subclasses provide the views.
+ */
+public abstract class ArrayAdapter<T> extends BaseAdapter {
+
+    private final Context context;
+
+    private final List<T> objects;
+
+    public ArrayAdapter(Context context, int resource, List<T> objects) {
+        this.context = context;
+        this.objects = objects;
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    @Override
+    public int getCount() {
+        return objects.size();
+    }
+
+    @Override
+    public T getItem(int position) {
+        return objects.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+}
@@ -0,0 +1,26 @@
+package android.widget;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * JVM stand-in for the Android base adapter. There is no list view to tell
+ * of changes.
+ */
+public abstract class BaseAdapter {
+
+    public abstract int getCount();
+
+    public abstract Object getItem(int position);
+
+    public abstract long getItemId(int position);
+
+    public abstract View getView(int position, View convertView, ViewGroup parent);
+
+    public boolean hasStableIds() {
+        return false;
+    }
+
+    public void notifyDataSetChanged() {
+    }
+}
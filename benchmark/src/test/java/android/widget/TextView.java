@@ -0,0 +1,19 @@
+package android.widget;
+
+import android.view.View;
+
+/**
+ * JVM stand-in for the Android text view. The text is kept as set.
+ */
+public class TextView extends View {
+
+    private CharSequence text = "";
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public final void setText(CharSequence text) {
+        this.text = text == null ? "" : text;
+    }
+}
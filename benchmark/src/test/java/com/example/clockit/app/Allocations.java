@@ -0,0 +1,49 @@
+package com.example.clockit.app;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Measures the memory the current thread allocates while running code, using
+ * the JVM's count of the bytes allocated by each thread.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public final class Allocations {
+
+	/** Number of calls run before measuring, so the code is compiled. */
+	private static final int WARMUP_CALLS = 20000;
+
+	/** Prevents instantiation of the helper class. */
+	private Allocations() {
+	}
+
+	/**
+	 * Runs a call repeatedly once it has warmed up and measures the bytes it
+	 * allocates.
+	 *
+	 * @param call
+	 *            The call to measure.
+	 * @param calls
+	 *            The number of calls to measure over.
+	 * @return The average number of bytes allocated per call.
+	 */
+	public static long perCall(Runnable call, int calls) {
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		for (int i = 0; i < WARMUP_CALLS; i++) {
+			call.run();
+		}
+
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < calls; i++) {
+			call.run();
+		}
+		return (threads.getThreadAllocatedBytes(threadId) - before) / calls;
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.example.clockit.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.view.View;
+import android.widget.TextView;
+
+import com.example.clockit.app.model.Client;
+import com.example.clockit.app.model.Services;
+
+/**
+ * Checks that the client list binds recycled rows through their cached view
+ * references without inflating or allocating anything.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ClientAdapterTest {
+
+	/** Number of clients listed. */
+	private static final int CLIENTS = 20;
+
+	/** Number of getView calls measured. */
+	private static final int CALLS = 100000;
+
+	private RowInflater inflater;
+	private ClientAdapter adapter;
+
+	@Before
+	public void setUp() {
+		List<Client> clients = new ArrayList<Client>();
+		for (int i = 0; i < CLIENTS; i++) {
+			clients.add(new Client(i + 1, "Client " + i, "",
+					new ArrayList<Services>()));
+		}
+
+		inflater = new RowInflater(R.layout.client_row, R.id.tvClientName);
+		adapter = new ClientAdapter(inflater.context(), clients);
+	}
+
+	@Test
+	public void recycledRowIsNotInflatedAgain() {
+		View row = adapter.getView(0, null, null);
+
+		for (int i = 1; i < CLIENTS; i++) {
+			assertSame(row, adapter.getView(i, row, null));
+			assertEquals("Client " + i, ((TextView) row
+					.findViewById(R.id.tvClientName)).getText());
+		}
+		assertEquals(1, inflater.getInflated());
+	}
+
+	@Test
+	public void recycledRowAllocatesNothing() {
+		final View row = adapter.getView(0, null, null);
+
+		long bytes = Allocations.perCall(new Runnable() {
+			private int position;
+
+			@Override
+			public void run() {
+				adapter.getView(position++ % CLIENTS, row, null);
+			}
+		}, CALLS);
+
+		// Allow for the odd allocation of the thread's own bookkeeping
+		assertTrue(bytes + " bytes per row", bytes < 8);
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.example.clockit.app;
+
+/**
+ * Stand-in for the resource ids generated by the Android build, holding the
+ * rows the adapter tests inflate.
+ */
+public final class R {
+
+    public static final class id {
+        public static final int tvClientName = 0x7f050001;
+        public static final int tvServiceName = 0x7f050002;
+        public static final int tvServiceRate = 0x7f050003;
+        public static final int tvClockInDate = 0x7f050004;
+        public static final int tvClockInTime = 0x7f050005;
+        public static final int tvClockOutDate = 0x7f050006;
+        public static final int tvClockOutTime = 0x7f050007;
+        public static final int tvHours = 0x7f050008;
+        public static final int tvEarnings = 0x7f050009;
+    }
+
+    public static final class layout {
+        public static final int client_row = 0x7f030001;
+        public static final int service_row = 0x7f030002;
+        public static final int time_stamp_row = 0x7f030003;
+    }
+}
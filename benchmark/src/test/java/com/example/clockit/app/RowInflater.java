@@ -0,0 +1,80 @@
+package com.example.clockit.app;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+/**
+ * Inflates the list rows of the adapter tests as a group holding a text view
+ * for each of the row's ids, and counts the rows inflated.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class RowInflater extends LayoutInflater {
+
+	/** Layout of the rows inflated. */
+	private final int layout;
+
+	/** Ids of the text views in each row. */
+	private final int[] ids;
+
+	/** Number of rows inflated so far. */
+	private int inflated = 0;
+
+	/**
+	 * Constructor that sets the row layout and the text views it holds.
+	 *
+	 * @param layout
+	 *            The layout of the rows.
+	 * @param ids
+	 *            The ids of the text views in each row.
+	 */
+	public RowInflater(int layout, int... ids) {
+		this.layout = layout;
+		this.ids = ids;
+	}
+
+	@Override
+	public View inflate(int resource, ViewGroup root, boolean attachToRoot) {
+		if (resource != layout) {
+			throw new IllegalArgumentException("Unexpected layout " + resource);
+		}
+		inflated++;
+
+		ViewGroup row = new ViewGroup();
+		for (int id : ids) {
+			TextView text = new TextView();
+			text.setId(id);
+			row.addView(text);
+		}
+		return row;
+	}
+
+	/**
+	 * Lets the caller know how many rows have been inflated.
+	 *
+	 * @return The number of rows inflated.
+	 */
+	public int getInflated() {
+		return inflated;
+	}
+
+	/**
+	 * Creates a context whose layout inflater service is this inflater.
+	 *
+	 * @return The context to create the adapter with.
+	 */
+	public Context context() {
+		return new Context() {
+			@Override
+			public Object getSystemService(String name) {
+				return LAYOUT_INFLATER_SERVICE.equals(name) ? RowInflater.this
+						: null;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.example.clockit.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.view.View;
+import android.widget.TextView;
+
+import com.example.clockit.app.model.Services;
+
+/**
+ * Checks that the service list binds recycled rows through their cached view
+ * references, allocating no more than the rate text it shows.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ServiceAdapterTest {
+
+	/** Number of services listed. */
+	private static final int SERVICES = 20;
+
+	/** Number of getView calls measured. */
+	private static final int CALLS = 100000;
+
+	/**
+	 * Most bytes binding a recycled row may allocate, enough for the rate text
+	 * but not for a row or a view lookup.
+	 */
+	private static final long MAX_BYTES = 256;
+
+	private RowInflater inflater;
+	private ServiceAdapter adapter;
+
+	@Before
+	public void setUp() {
+		List<Services> services = new ArrayList<Services>();
+		for (int i = 0; i < SERVICES; i++) {
+			services.add(new Services(i + 1, "Service " + i, "",
+					1000 + i * 250));
+		}
+
+		inflater = new RowInflater(R.layout.service_row, R.id.tvServiceName,
+				R.id.tvServiceRate);
+		adapter = new ServiceAdapter(inflater.context(), services);
+	}
+
+	@Test
+	public void recycledRowIsNotInflatedAgain() {
+		View row = adapter.getView(0, null, null);
+
+		for (int i = 1; i < SERVICES; i++) {
+			assertSame(row, adapter.getView(i, row, null));
+			assertEquals("Service " + i, ((TextView) row
+					.findViewById(R.id.tvServiceName)).getText());
+		}
+		assertEquals("$57.50", ((TextView) row
+				.findViewById(R.id.tvServiceRate)).getText());
+		assertEquals(1, inflater.getInflated());
+	}
+
+	@Test
+	public void recycledRowAllocatesOnlyItsText() {
+		final View row = adapter.getView(0, null, null);
+
+		long bytes = Allocations.perCall(new Runnable() {
+			private int position;
+
+			@Override
+			public void run() {
+				adapter.getView(position++ % SERVICES, row, null);
+			}
+		}, CALLS);
+
+		assertTrue(bytes + " bytes per row", bytes < MAX_BYTES);
+	}
+
+}
@@ -0,0 +1,258 @@
+package com.example.clockit.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+import com.example.clockit.app.db.ClockItDataSource;
+import com.example.clockit.app.db.ClockItRepository;
+import com.example.clockit.app.db.ClockItRepository.Callback;
+import com.example.clockit.app.db.TimeStampFilter;
+import com.example.clockit.app.model.TimeStamp;
+import com.example.clockit.benchmark.DatasetGenerator;
+
+/**
+ * Checks that the time stamp list binds recycled rows through their cached
+ * view references and shared formatters. Binding a row allocates the text it
+ * shows, so it is measured against the cost of the formatters it would need
+ * if they were created per row. Also checks that a page that failed to load is
+ * asked for again.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class TimeStampAdapterTest {
+
+	/** Longest wait for the first page, in seconds. */
+	private static final long TIMEOUT = 10;
+
+	/** Rows bound, within the first page and short of the next page load. */
+	private static final int ROWS = 25;
+
+	/** Number of getView calls measured. */
+	private static final int CALLS = 20000;
+
+	private ClockItApplication application;
+	private ClockItDataSource datasource;
+
+	/** Handler running code on the main looper. */
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	private RowInflater inflater;
+	private TimeStampAdapter adapter;
+
+	@Before
+	public void setUp() throws InterruptedException {
+		File dir = new File(System.getProperty("java.io.tmpdir"),
+				"clockit-test/adapter");
+		dir.mkdirs();
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+
+		application = new ClockItApplication();
+		application.setDatabaseDir(dir);
+		application.onCreate();
+		new DatasetGenerator(1).setTimeStamps(200).generate(application);
+		datasource = new ClockItDataSource(application);
+
+		inflater = new RowInflater(R.layout.time_stamp_row, R.id.tvClientName,
+				R.id.tvServiceName, R.id.tvClockInDate, R.id.tvClockInTime,
+				R.id.tvClockOutDate, R.id.tvClockOutTime, R.id.tvHours,
+				R.id.tvEarnings);
+
+		// The adapter loads its pages through the repository, which delivers
+		// them on the main looper
+		onMain(new Runnable() {
+			@Override
+			public void run() {
+				adapter = new TimeStampAdapter(inflater.context(),
+						new ClockItRepository(datasource));
+			}
+		});
+		long deadline = System.currentTimeMillis() + TIMEOUT * 1000;
+		while (getCount() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue("First page not loaded", getCount() >= ROWS * 2);
+	}
+
+	@After
+	public void tearDown() {
+		datasource.close();
+		application.onTrimMemory(ClockItApplication.TRIM_MEMORY_UI_HIDDEN);
+	}
+
+	@Test
+	public void recycledRowIsNotInflatedAgain() throws InterruptedException {
+		onMain(new Runnable() {
+			@Override
+			public void run() {
+				View row = adapter.getView(0, null, null);
+				for (int i = 1; i < ROWS; i++) {
+					assertSame(row, adapter.getView(i, row, null));
+				}
+			}
+		});
+
+		assertEquals(1, inflater.getInflated());
+	}
+
+	@Test
+	public void recycledRowSharesFormatters() throws InterruptedException {
+		final long[] bytes = new long[2];
+		onMain(new Runnable() {
+			@Override
+			public void run() {
+				final View row = adapter.getView(0, null, null);
+				bytes[0] = Allocations.perCall(new Runnable() {
+					private int position;
+
+					@Override
+					public void run() {
+						adapter.getView(position++ % ROWS, row, null);
+					}
+				}, CALLS);
+			}
+		});
+		bytes[1] = Allocations.perCall(new Runnable() {
+			@Override
+			public void run() {
+				new SimpleDateFormat("MMM d", Locale.US);
+				new SimpleDateFormat("hh:mm a", Locale.US);
+				new DecimalFormat("#0.00");
+			}
+		}, CALLS);
+
+		assertTrue(bytes[0] + " bytes per row, formatters take " + bytes[1],
+				bytes[0] < bytes[1]);
+	}
+
+	@Test
+	public void failedPageIsLoadedAgain() throws InterruptedException {
+		final int[] requests = new int[1];
+		final TimeStampAdapter[] retrying = new TimeStampAdapter[1];
+		onMain(new Runnable() {
+			@Override
+			public void run() {
+				// Fails the first request for the second page
+				ClockItRepository repository = new ClockItRepository(
+						datasource) {
+					@Override
+					public void getTimeStampsPage(TimeStampFilter filter,
+							long afterClockIn, int afterId, int limit,
+							Callback<List<TimeStamp>> callback) {
+						if (afterClockIn != Long.MAX_VALUE
+								&& requests[0]++ == 0) {
+							callback.onResult(null);
+							return;
+						}
+						super.getTimeStampsPage(filter, afterClockIn, afterId,
+								limit, callback);
+					}
+				};
+				retrying[0] = new TimeStampAdapter(inflater.context(),
+						repository);
+			}
+		});
+		final int firstPage = waitForCount(retrying[0], 0);
+
+		// Showing the last row asks for the next page, which fails, then
+		// asks again
+		for (int attempt = 0; attempt < 2; attempt++) {
+			onMain(new Runnable() {
+				@Override
+				public void run() {
+					retrying[0].getView(firstPage - 1, null, null);
+				}
+			});
+		}
+
+		assertTrue(waitForCount(retrying[0], firstPage) > firstPage);
+		assertEquals(2, requests[0]);
+	}
+
+	// Private Methods
+
+	/**
+	 * Waits for an adapter's row count to grow past a number of rows.
+	 *
+	 * @return The new row count, or the old one if it did not grow in time.
+	 */
+	private int waitForCount(final TimeStampAdapter counted, int rows)
+			throws InterruptedException {
+		final int[] count = new int[1];
+		long deadline = System.currentTimeMillis() + TIMEOUT * 1000;
+		do {
+			Thread.sleep(10);
+			onMain(new Runnable() {
+				@Override
+				public void run() {
+					count[0] = counted.getCount();
+				}
+			});
+		} while (count[0] <= rows && System.currentTimeMillis() < deadline);
+		return count[0];
+	}
+
+	/**
+	 * Reads the adapter's row count on the main looper.
+	 */
+	private int getCount() throws InterruptedException {
+		final int[] count = new int[1];
+		onMain(new Runnable() {
+			@Override
+			public void run() {
+				count[0] = adapter.getCount();
+			}
+		});
+		return count[0];
+	}
+
+	/**
+	 * Runs code on the main looper and waits for it to finish.
+	 */
+	private void onMain(final Runnable runnable) throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(1);
+		final RuntimeException[] failure = new RuntimeException[1];
+		final Error[] error = new Error[1];
+		mainHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					runnable.run();
+				} catch (RuntimeException e) {
+					failure[0] = e;
+				} catch (Error e) {
+					error[0] = e;
+				} finally {
+					done.countDown();
+				}
+			}
+		});
+		assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+		if (error[0] != null) {
+			throw error[0];
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.example.clockit.app.db;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase.StatementListener;
+
+import com.example.clockit.app.ClockItApplication;
+import com.example.clockit.benchmark.BenchmarkDatabase;
+
+/**
+ * Checks the query plans of the data source's hot reads against the
+ * 10,000 time stamp benchmark dataset, so each one is known to search the
+ * secondary index added for it rather than scan its table. The open time
+ * stamp reads use the plain index on clock_out that stands in for a partial
+ * index on open shifts.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ClockItDBOpenHelperTest {
+
+	/** Number of time stamps in the dataset. */
+	private static final int STAMPS = 10000;
+
+	/** Client whose rows are read, taken from the middle of the dataset. */
+	private int clientId;
+
+	private ClockItApplication application;
+	private ClockItDataSource datasource;
+
+	@Before
+	public void setUp() {
+		application = BenchmarkDatabase.open(STAMPS);
+		datasource = new ClockItDataSource(application);
+		clientId = BenchmarkDatabase.generator(STAMPS).getClients() / 2;
+	}
+
+	@After
+	public void tearDown() {
+		datasource.getDatabase().setStatementListener(null);
+		datasource.close();
+		application.onTrimMemory(ClockItApplication.TRIM_MEMORY_UI_HIDDEN);
+	}
+
+	@Test
+	public void getOpenTimeStampsSearchesClockOutIndex() {
+		String plan = plan(new Runnable() {
+			@Override
+			public void run() {
+				datasource.getOpenTimeStamps();
+			}
+		});
+
+		assertSearches(plan, "time_stamps", "idx_time_stamps_clock_out");
+	}
+
+	@Test
+	public void isClockedInSearchesClockOutIndex() {
+		String plan = plan(new Runnable() {
+			@Override
+			public void run() {
+				datasource.isClockedIn();
+			}
+		});
+
+		assertSearches(plan, "time_stamps", "idx_time_stamps_clock_out");
+	}
+
+	@Test
+	public void getClientInvoiceRowsSearchesClientToServiceIndexes() {
+		String plan = plan(new Runnable() {
+			@Override
+			public void run() {
+				datasource.getClientInvoiceRows(clientId).close();
+			}
+		});
+
+		assertSearches(plan, "clients_to_services",
+				"idx_clients_to_services_client_service");
+		assertSearches(plan, "time_stamps",
+				"idx_time_stamps_client_to_service_id");
+	}
+
+	@Test
+	public void getClientServicesSearchesClientIndex() {
+		String plan = plan(new Runnable() {
+			@Override
+			public void run() {
+				datasource.getClientServices(clientId);
+			}
+		});
+
+		assertSearches(plan, "clients_to_services",
+				"idx_clients_to_services_client_service");
+	}
+
+	@Test
+	public void getClientToServiceIdSearchesClientServiceIndex() {
+		// Look up a link that exists, since a missing one is created
+		final int serviceId = datasource.getClientServices(clientId).get(0)
+				.getId();
+		String plan = plan(new Runnable() {
+			@Override
+			public void run() {
+				datasource.getClientToServiceId(clientId, serviceId);
+			}
+		});
+
+		assertSearches(plan, "clients_to_services",
+				"idx_clients_to_services_client_service");
+	}
+
+	@Test
+	public void getClientContactsSearchesClientIndex() {
+		String plan = plan(new Runnable() {
+			@Override
+			public void run() {
+				datasource.getClientContacts(clientId);
+			}
+		});
+
+		assertSearches(plan, "clients_to_contacts",
+				"idx_clients_to_contacts_client_id");
+	}
+
+	// Private Methods
+
+	/**
+	 * Runs a read, then explains the query plan of every statement it ran.
+	 * Statements run on other threads, such as by the clock journal, are left
+	 * out.
+	 *
+	 * @return One line per step of the plans.
+	 */
+	private String plan(Runnable read) {
+		final List<String> statements = new ArrayList<String>();
+		final Thread thread = Thread.currentThread();
+		datasource.getDatabase().setStatementListener(new StatementListener() {
+			@Override
+			public void onStatement(String sql) {
+				if (Thread.currentThread() == thread) {
+					statements.add(sql);
+				}
+			}
+		});
+		try {
+			read.run();
+		} finally {
+			datasource.getDatabase().setStatementListener(null);
+		}
+
+		StringBuilder plan = new StringBuilder();
+		for (String sql : statements) {
+			// The plan does not depend on the arguments, so bind nulls
+			String[] args = new String[sql.replaceAll("[^?]", "").length()];
+			Cursor cursor = datasource.getDatabase().rawQuery(
+					"EXPLAIN QUERY PLAN " + sql, args);
+			try {
+				while (cursor.moveToNext()) {
+					plan.append(cursor.getString(3)).append('\n');
+				}
+			} finally {
+				cursor.close();
+			}
+		}
+		return plan.toString();
+	}
+
+	/**
+	 * Asserts that a plan searches a table through an index and never scans a
+	 * whole table.
+	 */
+	private static void assertSearches(String plan, String table,
+			String index) {
+		assertTrue(plan, plan.matches("(?s).*SEARCH TABLE " + table
+				+ "\\b[^\n]* USING (COVERING )?INDEX " + index + " .*"));
+		assertFalse(plan, plan.contains("SCAN TABLE"));
+	}
+
+}
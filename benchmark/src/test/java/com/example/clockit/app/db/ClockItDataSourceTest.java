@@ -0,0 +1,108 @@
+package com.example.clockit.app.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase.StatementListener;
+
+import com.example.clockit.app.ClockItApplication;
+import com.example.clockit.app.model.TimeStamp;
+import com.example.clockit.benchmark.BenchmarkDatabase;
+
+/**
+ * Counts the statements the data source runs to load lists of time stamps
+ * from the 10,000 time stamp benchmark dataset, so a loader that goes back to
+ * the database for each row is caught.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ClockItDataSourceTest {
+
+	/** Number of time stamps in the dataset. */
+	private static final int STAMPS = 10000;
+
+	private ClockItApplication application;
+	private ClockItDataSource datasource;
+
+	/** SQL of the statements run while recording. */
+	private final List<String> statements = new ArrayList<String>();
+
+	@Before
+	public void setUp() {
+		application = BenchmarkDatabase.open(STAMPS);
+		datasource = new ClockItDataSource(application);
+	}
+
+	@After
+	public void tearDown() {
+		datasource.getDatabase().setStatementListener(null);
+		datasource.close();
+		application.onTrimMemory(ClockItApplication.TRIM_MEMORY_UI_HIDDEN);
+	}
+
+	@Test
+	public void getAllTimeStampsRunsOneQuery() {
+		long finished = DatabaseUtils.queryNumEntries(datasource.getDatabase(),
+				ClockItDBOpenHelper.TABLE_TIME_STAMPS,
+				ClockItDBOpenHelper.TIME_STAMPS_CLOCK_OUT + " != ?",
+				new String[] { String.valueOf(-1) });
+
+		record();
+		List<TimeStamp> timeStamps = datasource.getAllTimeStamps();
+
+		assertEquals(statements.toString(), 1, statements.size());
+		assertEquals(finished, timeStamps.size());
+		for (TimeStamp timeStamp : timeStamps) {
+			assertNotNull(timeStamp.getClient().getName());
+			assertNotNull(timeStamp.getService().getName());
+		}
+	}
+
+	@Test
+	public void getTimeStampsPageRunsOneQuery() {
+		record();
+		List<TimeStamp> page = datasource.getTimeStampsPage(Long.MAX_VALUE,
+				Integer.MAX_VALUE, 50);
+
+		assertEquals(statements.toString(), 1, statements.size());
+		assertEquals(50, page.size());
+	}
+
+	@Test
+	public void getOpenTimeStampsRunsOneQuery() {
+		record();
+		datasource.getOpenTimeStamps();
+
+		assertEquals(statements.toString(), 1, statements.size());
+	}
+
+	// Private Methods
+
+	/**
+	 * Starts recording the statements the data source runs on this thread,
+	 * leaving out those of the clock journal opened when the application
+	 * started.
+	 */
+	private void record() {
+		statements.clear();
+		final Thread thread = Thread.currentThread();
+		datasource.getDatabase().setStatementListener(new StatementListener() {
+			@Override
+			public void onStatement(String sql) {
+				if (Thread.currentThread() == thread) {
+					statements.add(sql);
+				}
+			}
+		});
+	}
+
+}
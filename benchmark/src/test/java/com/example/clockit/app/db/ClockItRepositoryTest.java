@@ -0,0 +1,441 @@
+package com.example.clockit.app.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDatabase.StatementListener;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.clockit.app.ClockItApplication;
+import com.example.clockit.app.db.ClockItRepository.Callback;
+import com.example.clockit.app.db.ClockItRepository.Query;
+import com.example.clockit.app.model.Client;
+import com.example.clockit.app.model.Contact;
+import com.example.clockit.app.model.SearchResult;
+import com.example.clockit.app.model.Services;
+import com.example.clockit.app.model.TimeStamp;
+import com.example.clockit.benchmark.DatasetGenerator;
+
+/**
+ * Calls the repository from the main looper the way the activities do and
+ * checks that no statement runs on the main looper, that every result is
+ * delivered on it, and that closing the data source waits for the operations
+ * holding it. Also checks that deleting a client or service drops the open
+ * shifts of its time stamps, and that the daily totals the data source keeps
+ * fall on the same days as those filled by the database upgrade.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ClockItRepositoryTest {
+
+	/** Longest wait for background operations, in seconds. */
+	private static final long TIMEOUT = 10;
+
+	private ClockItApplication application;
+
+	/** Data source opened off the main looper, holding the connection. */
+	private ClockItDataSource datasource;
+
+	/** Handler running code on the main looper. */
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	/** SQL of the statements run on the main looper. */
+	private final List<String> mainStatements = Collections
+			.synchronizedList(new ArrayList<String>());
+
+	/** Names of the callbacks delivered off the main looper. */
+	private final List<String> offMainCallbacks = Collections
+			.synchronizedList(new ArrayList<String>());
+
+	@Before
+	public void setUp() {
+		File dir = new File(System.getProperty("java.io.tmpdir"),
+				"clockit-test/repository");
+		dir.mkdirs();
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+
+		application = new ClockItApplication();
+		application.setDatabaseDir(dir);
+		application.onCreate();
+		new DatasetGenerator(1).setTimeStamps(200).generate(application);
+
+		datasource = new ClockItDataSource(application);
+		datasource.getDatabase().setStatementListener(new StatementListener() {
+			@Override
+			public void onStatement(String sql) {
+				if (Looper.myLooper() == Looper.getMainLooper()) {
+					mainStatements.add(sql);
+				}
+			}
+		});
+	}
+
+	@After
+	public void tearDown() {
+		datasource.getDatabase().setStatementListener(null);
+		datasource.close();
+		application.onTrimMemory(ClockItApplication.TRIM_MEMORY_UI_HIDDEN);
+	}
+
+	@Test
+	public void noStatementRunsOnMainLooper() throws Exception {
+		final CountDownLatch delivered = new CountDownLatch(25);
+		final Services service = datasource.getAllServices().get(0);
+		onMain(new Runnable() {
+			@Override
+			public void run() {
+				callEveryOperation(service, delivered);
+			}
+		});
+
+		assertTrue("Results not delivered",
+				delivered.await(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(Collections.emptyList(), mainStatements);
+		assertEquals(Collections.emptyList(), offMainCallbacks);
+	}
+
+	@Test
+	public void failedOperationDeliversNull() throws Exception {
+		final CountDownLatch delivered = new CountDownLatch(1);
+		final Object[] result = { "not delivered" };
+		final ClockItDataSource activitySource = new ClockItDataSource(
+				application);
+
+		onMain(new Runnable() {
+			@Override
+			public void run() {
+				ClockItRepository repository = new ClockItRepository(
+						activitySource);
+				repository.execute(new Query<List<Client>>() {
+					@Override
+					public List<Client> run(ClockItDataSource datasource) {
+						throw new IllegalStateException("Query failed");
+					}
+				}, new Callback<List<Client>>() {
+					@Override
+					public void onResult(List<Client> clients) {
+						result[0] = clients;
+						delivered.countDown();
+					}
+				});
+				activitySource.close();
+			}
+		});
+
+		assertTrue("Result not delivered",
+				delivered.await(TIMEOUT, TimeUnit.SECONDS));
+		assertNull(result[0]);
+	}
+
+	@Test
+	public void closeWaitsForRunningOperation() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch resume = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(1);
+		final RuntimeException[] failure = new RuntimeException[1];
+		final ClockItDataSource activitySource = new ClockItDataSource(
+				application);
+
+		onMain(new Runnable() {
+			@Override
+			public void run() {
+				ClockItRepository repository = new ClockItRepository(
+						activitySource);
+				repository.execute(new Query<List<Client>>() {
+					@Override
+					public List<Client> run(ClockItDataSource datasource) {
+						started.countDown();
+						try {
+							resume.await();
+							return datasource.getAllClients();
+						} catch (InterruptedException e) {
+							throw new IllegalStateException(e);
+						} catch (RuntimeException e) {
+							failure[0] = e;
+							throw e;
+						} finally {
+							finished.countDown();
+						}
+					}
+				}, null);
+			}
+		});
+		assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+
+		// Destroy the activity and hide the UI while the read is running
+		onMain(new Runnable() {
+			@Override
+			public void run() {
+				activitySource.close();
+			}
+		});
+		datasource.getDatabase().setStatementListener(null);
+		datasource.close();
+		application.onTrimMemory(ClockItApplication.TRIM_MEMORY_UI_HIDDEN);
+		assertTrue(activitySource.isOpen());
+
+		resume.countDown();
+		assertTrue(finished.await(TIMEOUT, TimeUnit.SECONDS));
+		assertNull(failure[0]);
+
+		// The close finishes once the read releases the data source
+		long deadline = System.currentTimeMillis() + TIMEOUT * 1000;
+		while (activitySource.isOpen()
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertFalse(activitySource.isOpen());
+
+		// Leave a data source for tearDown to close
+		datasource = new ClockItDataSource(application);
+	}
+
+	@Test
+	public void deleteClientRemovesItsOpenShifts() throws Exception {
+		Client client = datasource.getAllClients().get(0);
+		OpenShift shift = clockIn(client, client.getServices().get(0));
+		assertNotNull(datasource.getActiveShift().getShift(
+				shift.getTimeStampId()));
+
+		datasource.deleteClient(client.getId());
+
+		assertNull(datasource.getActiveShift().getShift(
+				shift.getTimeStampId()));
+		assertFalse(datasource.getActiveShift().isClockedIn());
+	}
+
+	@Test
+	public void deleteServiceRemovesItsOpenShifts() throws Exception {
+		Client client = datasource.getAllClients().get(0);
+		Services service = client.getServices().get(0);
+		OpenShift shift = clockIn(client, service);
+		assertNotNull(datasource.getActiveShift().getShift(
+				shift.getTimeStampId()));
+
+		datasource.deleteService(service.getId());
+
+		assertNull(datasource.getActiveShift().getShift(
+				shift.getTimeStampId()));
+		assertFalse(datasource.getActiveShift().isClockedIn());
+	}
+
+	@Test
+	public void dailyTotalsMatchUpgradeFill() {
+		Client client = datasource.getAllClients().get(0);
+		int clientToServiceId = datasource.getClientToServiceId(
+				client.getId(), client.getServices().get(0).getId());
+
+		// Half hour shifts starting every hour around two midnights
+		List<TimeStamp> timeStamps = new ArrayList<TimeStamp>();
+		long start = 1400000000000L / 86400000L * 86400000L;
+		long end = start + 2 * 86400000L;
+		for (long clockIn = start; clockIn < end; clockIn += 3600000L) {
+			timeStamps.add(new TimeStamp(0, clientToServiceId, clockIn,
+					clockIn + 1800000L, null, null, null));
+		}
+
+		// Import while Java's local time zone differs from SQLite's
+		TimeZone zone = TimeZone.getDefault();
+		TimeZone.setDefault(TimeZone.getTimeZone(zone.getRawOffset() == 0
+				? "Pacific/Kiritimati" : "UTC"));
+		try {
+			assertEquals(timeStamps.size(),
+					datasource.createTimeStamps(timeStamps));
+		} finally {
+			TimeZone.setDefault(zone);
+		}
+		List<String> kept = dailyTotals();
+
+		SQLiteDatabase db = datasource.getDatabase();
+		db.execSQL("DELETE FROM " + ClockItDBOpenHelper.TABLE_DAILY_TOTALS);
+		ClockItDBOpenHelper.fillDailyTotals(db, null, null);
+
+		assertEquals(dailyTotals(), kept);
+	}
+
+	// Private Methods
+
+	/**
+	 * Reads every daily total, one line per total in day and client to
+	 * service order.
+	 */
+	private List<String> dailyTotals() {
+		List<String> totals = new ArrayList<String>();
+		Cursor cursor = datasource.getDatabase().rawQuery("SELECT "
+				+ ClockItDBOpenHelper.DAILY_TOTALS_DAY + ", "
+				+ ClockItDBOpenHelper.DAILY_TOTALS_CLIENT_TO_SERVICE_ID + ", "
+				+ ClockItDBOpenHelper.DAILY_TOTALS_MILLIS + ", "
+				+ ClockItDBOpenHelper.DAILY_TOTALS_CENTS + ", "
+				+ ClockItDBOpenHelper.DAILY_TOTALS_STAMPS + " FROM "
+				+ ClockItDBOpenHelper.TABLE_DAILY_TOTALS + " ORDER BY 1, 2",
+				null);
+		try {
+			while (cursor.moveToNext()) {
+				totals.add(cursor.getLong(0) + " " + cursor.getLong(1) + " "
+						+ cursor.getLong(2) + " " + cursor.getLong(3) + " "
+						+ cursor.getLong(4));
+			}
+		} finally {
+			cursor.close();
+		}
+		return totals;
+	}
+
+	/**
+	 * Clocks in through the clock journal and waits for the time stamp to be
+	 * created.
+	 */
+	private OpenShift clockIn(final Client client, final Services service)
+			throws InterruptedException {
+		final ClockJournal journal = datasource.getClockJournal();
+		final OpenShift[] shift = new OpenShift[1];
+		final CountDownLatch applied = new CountDownLatch(1);
+		journal.execute(new Runnable() {
+			@Override
+			public void run() {
+				shift[0] = journal.clockInOnWriter(client.getId(),
+						client.getName(), service);
+
+				// Runs once the clock in has been applied
+				journal.execute(new Runnable() {
+					@Override
+					public void run() {
+						applied.countDown();
+					}
+				});
+			}
+		});
+		assertTrue(applied.await(TIMEOUT, TimeUnit.SECONDS));
+		return shift[0];
+	}
+
+	/**
+	 * Opens a data source and calls every operation of a repository over it,
+	 * then closes the data source, as an activity does from creation to
+	 * destruction. Run on the main looper.
+	 */
+	private void callEveryOperation(Services service,
+			CountDownLatch delivered) {
+		ClockItDataSource activitySource = new ClockItDataSource(application);
+		ClockItRepository repository = new ClockItRepository(activitySource);
+
+		repository.getAllTimeStamps(this.<List<TimeStamp>> callback(
+				"getAllTimeStamps", delivered));
+		repository.getTimeStampsPage(Long.MAX_VALUE, Integer.MAX_VALUE, 50, this
+				.<List<TimeStamp>> callback("getTimeStampsPage", delivered));
+		repository.getTimeStampsPage(new TimeStampFilter().setText("review"),
+				Long.MAX_VALUE, Integer.MAX_VALUE, 50, this
+						.<List<TimeStamp>> callback(
+								"getTimeStampsPage filtered", delivered));
+		repository.getAllClients(this.<List<Client>> callback("getAllClients",
+				delivered));
+		repository.getClientSummaries(this.<List<Client>> callback(
+				"getClientSummaries", delivered));
+		repository.getAllServices(this.<List<Services>> callback(
+				"getAllServices", delivered));
+		repository.search("review", 20, this.<List<SearchResult>> callback(
+				"search", delivered));
+		repository.getContactClientId(1, this.<Integer> callback(
+				"getContactClientId", delivered));
+		repository.createTimeStamps(new ArrayList<TimeStamp>(), this
+				.<Integer> callback("createTimeStamps", delivered));
+		repository.createContacts(1, new ArrayList<Contact>(), this
+				.<Integer> callback("createContacts", delivered));
+		repository.reconcileActiveShift(this.<Boolean> callback(
+				"reconcileActiveShift", delivered));
+		repository.clockIn(1, "Client", service, this
+				.<OpenShift> callback("clockIn", delivered));
+		repository.getClientById(1, this.<Client> callback("getClientById",
+				delivered));
+		repository.getServiceById(service.getId(), this.<Services> callback(
+				"getServiceById", delivered));
+		repository.getTimeStampById(1, this.<TimeStamp> callback(
+				"getTimeStampById", delivered));
+		repository.getClientContacts(1, this.<List<Contact>> callback(
+				"getClientContacts", delivered));
+		repository.createClient("Client", "", this.<Client> callback(
+				"createClient", delivered));
+		repository.updateClient("Client", "", 1, this.<Client> callback(
+				"updateClient", delivered));
+		repository.deleteClient(Integer.MAX_VALUE, this.<Boolean> callback(
+				"deleteClient", delivered));
+		repository.createService("Service", "", 2500, this.<Services> callback(
+				"createService", delivered));
+		repository.updateService(service.getName(), service.getDescription(),
+				service.getRateCents(), service.getId(), this.<Services> callback(
+						"updateService", delivered));
+		repository.deleteService(Integer.MAX_VALUE, this.<Boolean> callback(
+				"deleteService", delivered));
+		repository.updateTimeStamp("Reviewed", 1, this.<TimeStamp> callback(
+				"updateTimeStamp", delivered));
+		repository.deleteTimeStamp(Integer.MAX_VALUE, this.<Boolean> callback(
+				"deleteTimeStamp", delivered));
+		repository.createContact(1, "First", "Last", "", "", this
+				.<Integer> callback("createContact", delivered));
+
+		activitySource.close();
+	}
+
+	/**
+	 * Creates a callback that records whether it was delivered on the main
+	 * looper.
+	 */
+	private <T> Callback<T> callback(final String name,
+			final CountDownLatch latch) {
+		return new Callback<T>() {
+			@Override
+			public void onResult(T result) {
+				if (Looper.myLooper() != Looper.getMainLooper()) {
+					offMainCallbacks.add(name);
+				}
+				latch.countDown();
+			}
+		};
+	}
+
+	/**
+	 * Runs code on the main looper and waits for it to finish.
+	 */
+	private void onMain(final Runnable runnable) throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(1);
+		final RuntimeException[] failure = new RuntimeException[1];
+		mainHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					runnable.run();
+				} catch (RuntimeException e) {
+					failure[0] = e;
+				} finally {
+					done.countDown();
+				}
+			}
+		});
+		assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.example.clockit.app.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.example.clockit.app.ClockItApplication;
+import com.example.clockit.app.model.Client;
+import com.example.clockit.app.model.Segments;
+import com.example.clockit.app.model.TimeStamp;
+import com.example.clockit.benchmark.DatasetGenerator;
+
+/**
+ * Pauses and resumes a shift until the clock journal has been compacted
+ * several times, and checks that every event still reaches the database and
+ * that the compacted file is read back when the journal is opened again, and
+ * that an event which cannot be applied is quarantined.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ClockJournalTest {
+
+	/** Longest wait for the writer thread, in seconds. */
+	private static final long TIMEOUT = 10;
+
+	/** Number of pauses and resumes, enough to fill the file many times. */
+	private static final int TIMES = 2000;
+
+	private File dir;
+	private ClockItApplication application;
+	private ClockItDataSource datasource;
+
+	@Before
+	public void setUp() {
+		dir = new File(System.getProperty("java.io.tmpdir"),
+				"clockit-test/journal");
+		dir.mkdirs();
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+
+		application = new ClockItApplication();
+		application.setDatabaseDir(dir);
+		application.onCreate();
+		new DatasetGenerator(1).setTimeStamps(20).generate(application);
+		datasource = new ClockItDataSource(application);
+	}
+
+	@After
+	public void tearDown() {
+		datasource.close();
+		application.onTrimMemory(ClockItApplication.TRIM_MEMORY_UI_HIDDEN);
+	}
+
+	@Test
+	public void compactionKeepsEveryEvent() throws Exception {
+		ClockJournal journal = application.getClockJournal();
+		int timeStampId = clockIn(journal);
+
+		for (int i = 0; i < TIMES; i++) {
+			assertTrue(i % 2 == 0 ? journal.pause(timeStampId) : journal
+					.resume(timeStampId));
+		}
+		drain(journal);
+
+		File file = new File(dir, "clock_events.journal");
+		assertTrue(file.length() + " bytes left in the journal",
+				file.length() <= 16 * 1024);
+		assertEquals(TIMES, getSegmentTimes(timeStampId));
+
+		// The compacted file carries the sequence on to the reopened journal
+		ClockJournal reopened = new ClockJournal(application);
+		drain(reopened);
+		assertTrue(reopened.pause(timeStampId));
+		drain(reopened);
+		assertEquals(TIMES + 1, getSegmentTimes(timeStampId));
+	}
+
+	@Test
+	public void damagedClockOutIsQuarantined() throws Exception {
+		ClockJournal journal = application.getClockJournal();
+		int timeStampId = clockIn(journal);
+
+		// Leave the pause and resume times short of a whole time
+		datasource.getDatabase().execSQL(
+				"UPDATE " + ClockItDBOpenHelper.TABLE_TIME_STAMPS + " SET "
+						+ ClockItDBOpenHelper.TIME_STAMPS_SEGMENTS
+						+ " = X'0102030405' WHERE "
+						+ ClockItDBOpenHelper.TIME_STAMPS_ID + " = "
+						+ timeStampId);
+		assertTrue(journal.clockOut(timeStampId, "Damaged"));
+		drain(journal);
+
+		File quarantine = new File(dir, "clock_events.quarantine");
+		assertTrue(quarantine.length() > 0);
+
+		// The writer thread carries on with the events after it
+		int next = clockIn(journal);
+		assertTrue(journal.pause(next));
+		drain(journal);
+		assertEquals(1, getSegmentTimes(next));
+	}
+
+	// Private Methods
+
+	/**
+	 * Clocks in to the first service of the first client on the writer
+	 * thread, returning the id of the new time stamp.
+	 */
+	private int clockIn(final ClockJournal journal) throws InterruptedException {
+		final Client client = datasource.getAllClients().get(0);
+		final OpenShift[] shift = new OpenShift[1];
+		journal.execute(new Runnable() {
+			@Override
+			public void run() {
+				shift[0] = journal.clockInOnWriter(client.getId(),
+						client.getName(), client.getServices().get(0));
+			}
+		});
+		// Once the clock in has run, its event is queued ahead of the next
+		drain(journal);
+		drain(journal);
+		return shift[0].getTimeStampId();
+	}
+
+	/**
+	 * Waits for the writer thread to apply every event appended so far.
+	 */
+	private void drain(ClockJournal journal) throws InterruptedException {
+		final CountDownLatch applied = new CountDownLatch(1);
+		journal.execute(new Runnable() {
+			@Override
+			public void run() {
+				applied.countDown();
+			}
+		});
+		assertTrue(applied.await(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Counts the pause and resume times the database holds for a time stamp.
+	 */
+	private int getSegmentTimes(int timeStampId) {
+		for (TimeStamp open : datasource.getOpenTimeStamps()) {
+			if (open.getId() == timeStampId) {
+				return Segments.getTimeCount(open.getPackedSegments());
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.example.clockit.app.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.example.clockit.app.Allocations;
+import com.example.clockit.app.db.OpenShift;
+
+/**
+ * Checks that redrawing the open shifts on the main page allocates nothing
+ * once it has warmed up, running the same steps as the main page's tick.
+ *
+ * @author Cameron Irwin
+ *
+ */
+public class ShiftDisplayTest {
+
+	/** Number of ticks measured. */
+	private static final int TICKS = 100000;
+
+	/** Clock in time of the first shift in milliseconds. */
+	private static final long CLOCK_IN = 1400000000000L;
+
+	private final ShiftDisplay display = new ShiftDisplay();
+
+	/** Open shifts, the first paused for an hour and resumed. */
+	private OpenShift[] shifts;
+
+	@Before
+	public void setUp() {
+		byte[] segments = Segments.append(null, CLOCK_IN + 3600000);
+		segments = Segments.append(segments, CLOCK_IN + 7200000);
+		shifts = new OpenShift[] {
+				new OpenShift(1, CLOCK_IN, "Client", "Service", 4250,
+						segments),
+				new OpenShift(2, CLOCK_IN + 60000, "Client", "Other", 1999,
+						null) };
+	}
+
+	@Test
+	public void tickRendersShift() {
+		long now = CLOCK_IN + 3 * 3600000 + 65000;
+		tick(now);
+
+		assertEquals("02:01:05", new String(display.getTime(), 0,
+				display.getTimeLength()));
+		assertEquals("$145.77", new String(display.getEarned(), 0,
+				display.getEarnedLength()));
+	}
+
+	@Test
+	public void tickAllocatesNothing() {
+		long bytes = Allocations.perCall(new Runnable() {
+			/** Current time, advanced a second per tick. */
+			private long now = CLOCK_IN + 7200000;
+
+			@Override
+			public void run() {
+				now += 1000;
+				tick(now);
+			}
+		}, TICKS);
+
+		assertEquals(0, bytes);
+	}
+
+	// Private Methods
+
+	/**
+	 * Renders the open shifts at a time, as the main page does each second.
+	 */
+	private void tick(long now) {
+		display.setElapsed(shifts[0].getWorkedMillis(now));
+		display.setEarnedCents(OpenShift.getEarnedCents(shifts, now));
+	}
+
+}